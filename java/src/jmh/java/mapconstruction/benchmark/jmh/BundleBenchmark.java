@@ -0,0 +1,85 @@
+package mapconstruction.benchmark.jmh;
+
+import mapconstruction.algorithms.bundles.TrajectorySegmentIndex;
+import mapconstruction.algorithms.bundles.graph.GeneratingRTSemiWeakFDLabelledGraph;
+import mapconstruction.algorithms.bundles.sweep.FurthestEndpointSweep;
+import mapconstruction.algorithms.representative.Forces;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.Trajectory;
+import mapconstruction.web.config.DatasetConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static mapconstruction.GUI.datastorage.DataStorage.STORAGE;
+
+/**
+ * Benchmarks operations on the bundles generated for a sample of representatives: lambda-subbundle checks between
+ * pairs of bundles, and computing force representatives.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BundleBenchmark extends TrajectoryState {
+
+    private static final int PAIRS = 1000;
+
+    @Param("30")
+    public double epsilon;
+
+    @Param("20")
+    public int representatives;
+
+    private List<Bundle> bundles;
+    private Bundle[] supers;
+    private Bundle[] subs;
+
+    @Override
+    protected void prepare() {
+        if (STORAGE.getDatasetConfig() == null) {
+            // Read by the force representative
+            STORAGE.setDatasetConfig(new DatasetConfig());
+        }
+
+        TrajectorySegmentIndex index = TrajectorySegmentIndex.build(trajectories, false);
+        bundles = new ArrayList<>();
+        for (Trajectory representative : sample(index.getRepresentatives(), representatives)) {
+            FurthestEndpointSweep sweep = new FurthestEndpointSweep(new GeneratingRTSemiWeakFDLabelledGraph(epsilon,
+                    representative, index.getConcatenated(), index.getRTree()), 2 * epsilon);
+            sweep.initialize();
+            bundles.addAll(sweep.sweep());
+        }
+        if (bundles.isEmpty()) {
+            throw new IllegalStateException("No bundles found for epsilon " + epsilon);
+        }
+
+        supers = new Bundle[PAIRS];
+        subs = new Bundle[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            supers[i] = bundles.get(random.nextInt(bundles.size()));
+            subs[i] = bundles.get(random.nextInt(bundles.size()));
+        }
+        bundles = sample(bundles, representatives);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void hasAsLambdaSubBundle(Blackhole bh) {
+        for (int i = 0; i < PAIRS; i++) {
+            bh.consume(supers[i].hasAsLambdaSubBundle(subs[i], 2 * epsilon));
+        }
+    }
+
+    @Benchmark
+    public void forceRepresentative(Blackhole bh) {
+        for (Bundle b : bundles) {
+            bh.consume(Forces.representativeTrajectory(b.getSubtrajectories(), b.getOriginalRepresentative(), epsilon,
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package mapconstruction.benchmark.jmh;
+
+import mapconstruction.algorithms.distance.frechet.DiscreteFrechetDistance;
+import mapconstruction.trajectories.Trajectory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the discrete Frechet distance between random pairs of trajectories. Scores are per pair.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrechetBenchmark extends TrajectoryState {
+
+    private static final int PAIRS = 100;
+
+    private Trajectory[] firsts;
+    private Trajectory[] seconds;
+
+    @Override
+    protected void prepare() {
+        firsts = new Trajectory[PAIRS];
+        seconds = new Trajectory[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            firsts[i] = trajectories.get(random.nextInt(trajectories.size()));
+            seconds[i] = trajectories.get(random.nextInt(trajectories.size()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public double discreteFrechetDistance() {
+        double sum = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            sum += new DiscreteFrechetDistance().compute(firsts[i], seconds[i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,82 @@
+package mapconstruction.benchmark.jmh;
+
+import mapconstruction.algorithms.bundles.TrajectorySegmentIndex;
+import mapconstruction.algorithms.bundles.graph.GeneratingRTSemiWeakFDLabelledGraph;
+import mapconstruction.algorithms.bundles.sweep.FurthestEndpointSweep;
+import mapconstruction.trajectories.Trajectory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the steps of generating the bundles of a representative: computing its free space, collecting the
+ * events from it, and sweeping over the events.
+ * <p>
+ * Every invocation processes the same sample of representatives.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FreeSpaceBenchmark extends TrajectoryState {
+
+    @Param("30")
+    public double epsilon;
+
+    @Param("20")
+    public int representatives;
+
+    private TrajectorySegmentIndex index;
+    private List<Trajectory> sample;
+    private List<GeneratingRTSemiWeakFDLabelledGraph> computed;
+    private List<FurthestEndpointSweep> sweeps;
+
+    @Override
+    protected void prepare() {
+        index = TrajectorySegmentIndex.build(trajectories, false);
+        sample = sample(index.getRepresentatives(), representatives);
+
+        computed = new ArrayList<>(sample.size());
+        sweeps = new ArrayList<>(sample.size());
+        for (Trajectory representative : sample) {
+            GeneratingRTSemiWeakFDLabelledGraph freeSpace = freeSpace(representative);
+            freeSpace.compute();
+            computed.add(freeSpace);
+
+            FurthestEndpointSweep sweep = new FurthestEndpointSweep(freeSpace(representative), 2 * epsilon);
+            sweep.initialize();
+            sweeps.add(sweep);
+        }
+    }
+
+    private GeneratingRTSemiWeakFDLabelledGraph freeSpace(Trajectory representative) {
+        return new GeneratingRTSemiWeakFDLabelledGraph(epsilon, representative, index.getConcatenated(), index.getRTree());
+    }
+
+    @Benchmark
+    public void compute(Blackhole bh) {
+        for (Trajectory representative : sample) {
+            GeneratingRTSemiWeakFDLabelledGraph freeSpace = freeSpace(representative);
+            freeSpace.compute();
+            bh.consume(freeSpace);
+        }
+    }
+
+    @Benchmark
+    public void collectEvents(Blackhole bh) {
+        for (GeneratingRTSemiWeakFDLabelledGraph freeSpace : computed) {
+            bh.consume(freeSpace.collectEvents());
+        }
+    }
+
+    @Benchmark
+    public void sweep(Blackhole bh) {
+        for (FurthestEndpointSweep sweep : sweeps) {
+            bh.consume(sweep.sweep());
+        }
+    }
+}
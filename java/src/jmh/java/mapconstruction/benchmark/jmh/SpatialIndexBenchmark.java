@@ -0,0 +1,97 @@
+package mapconstruction.benchmark.jmh;
+
+import mapconstruction.algorithms.bundles.TrajectorySegmentIndex;
+import mapconstruction.algorithms.distance.KdTree;
+import mapconstruction.algorithms.distance.QuadTree;
+import mapconstruction.algorithms.distance.RTree;
+import mapconstruction.trajectories.Trajectory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks range queries on the spatial indices: a window query on the R-tree of all edges, and radius queries on a
+ * kd-tree and a quadtree of all points.
+ * <p>
+ * The queries are centred near random points of the trajectories. Scores are per query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpatialIndexBenchmark extends TrajectoryState {
+
+    private static final int QUERIES = 1000;
+
+    @Param("30")
+    public double radius;
+
+    private RTree<Line2D, Integer> rTree;
+    private KdTree<Integer> kdTree;
+    private QuadTree<Integer> quadTree;
+    private double[] xs;
+    private double[] ys;
+
+    @Override
+    protected void prepare() {
+        rTree = TrajectorySegmentIndex.build(trajectories, false).getRTree();
+        kdTree = new KdTree<>(2);
+        quadTree = new QuadTree<>();
+        double x1 = Double.MAX_VALUE, y1 = Double.MAX_VALUE, x2 = -Double.MAX_VALUE, y2 = -Double.MAX_VALUE;
+        for (Trajectory t : trajectories) {
+            for (Point2D p : t.points()) {
+                x1 = Math.min(x1, p.getX());
+                y1 = Math.min(y1, p.getY());
+                x2 = Math.max(x2, p.getX());
+                y2 = Math.max(y2, p.getY());
+            }
+        }
+        quadTree.initialize(x1, y1, x2, y2);
+
+        int id = 0;
+        for (Trajectory t : trajectories) {
+            for (Point2D p : t.points()) {
+                kdTree.insert(id, p.getX(), p.getY());
+                quadTree.insert(p.getX(), p.getY(), id);
+                id++;
+            }
+        }
+
+        xs = new double[QUERIES];
+        ys = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            Trajectory t = trajectories.get(random.nextInt(trajectories.size()));
+            Point2D p = t.getPoint(random.nextInt(t.numPoints()));
+            xs[i] = p.getX() + random.nextGaussian() * radius;
+            ys[i] = p.getY() + random.nextGaussian() * radius;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void rTreeWindowQuery(Blackhole bh) {
+        for (int i = 0; i < QUERIES; i++) {
+            bh.consume(rTree.windowQuery(xs[i] - radius, ys[i] - radius, xs[i] + radius, ys[i] + radius));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void kdTreeRangeQuery(Blackhole bh) {
+        for (int i = 0; i < QUERIES; i++) {
+            bh.consume(kdTree.rangeQuery(radius, xs[i], ys[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void quadTreeGetInRange(Blackhole bh) {
+        for (int i = 0; i < QUERIES; i++) {
+            bh.consume(quadTree.getInRange(xs[i], ys[i], radius));
+        }
+    }
+}
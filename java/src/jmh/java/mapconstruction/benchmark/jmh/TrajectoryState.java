@@ -0,0 +1,86 @@
+package mapconstruction.benchmark.jmh;
+
+import mapconstruction.GUI.io.ColumnarDataset;
+import mapconstruction.GUI.io.MappedTxtTrajectoryReader;
+import mapconstruction.benchmark.SyntheticTrajectoryGenerator;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Trajectory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Base state of the benchmarks: the trajectories to run on.
+ * <p>
+ * By default, the trajectories are generated by a {@link SyntheticTrajectoryGenerator} from a fixed seed. A real
+ * dataset is used by passing its path with {@code -p dataset=<path>}, either a {@link ColumnarDataset} file or a
+ * directory with one txt file per trajectory. Of a real dataset, the first {@code count} trajectories are used.
+ */
+@State(Scope.Benchmark)
+public abstract class TrajectoryState {
+
+    static final String SYNTHETIC = "synthetic";
+
+    @Param(SYNTHETIC)
+    public String dataset;
+
+    @Param("200")
+    public int count;
+
+    @Param("42")
+    public long seed;
+
+    protected List<Trajectory> trajectories;
+
+    /**
+     * Random generator of the benchmark, seeded with {@link #seed}.
+     */
+    protected Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        random = new Random(seed);
+        if (SYNTHETIC.equals(dataset)) {
+            trajectories = new SyntheticTrajectoryGenerator(seed).generate(count);
+        } else {
+            trajectories = load(new File(dataset), count);
+        }
+        prepare();
+    }
+
+    /**
+     * Prepares the data of the benchmark, after the trajectories have been loaded.
+     */
+    protected abstract void prepare();
+
+    /**
+     * @return n elements of the given list, picked at random, or all of them if it has at most n elements.
+     */
+    protected <T> List<T> sample(List<T> list, int n) {
+        List<T> shuffled = new ArrayList<>(list);
+        Collections.shuffle(shuffled, random);
+        return new ArrayList<>(shuffled.subList(0, Math.min(n, shuffled.size())));
+    }
+
+    /**
+     * Loads the first count trajectories of a dataset.
+     */
+    static List<Trajectory> load(File file, int count) throws IOException {
+        List<FullTrajectory> loaded;
+        if (file.isDirectory()) {
+            File[] files = file.listFiles(f -> f.getName().toLowerCase().endsWith(".txt"));
+            if (files == null) {
+                throw new IOException("Can not list " + file);
+            }
+            Arrays.sort(files);
+            loaded = new MappedTxtTrajectoryReader().readFiles(Arrays.asList(files));
+        } else if (ColumnarDataset.isColumnarDataset(file)) {
+            loaded = ColumnarDataset.read(file).getTrajectories();
+        } else {
+            throw new IOException(file + " is neither a directory nor a columnar dataset");
+        }
+        return new ArrayList<>(loaded.subList(0, Math.min(count, loaded.size())));
+    }
+}
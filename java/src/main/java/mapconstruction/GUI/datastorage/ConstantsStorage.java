@@ -16,6 +16,19 @@ public enum ConstantsStorage {
      * Number of threads we use to run our program
      */
     private int numThreads;
+    /**
+     * Directory in which the evolution diagram construction logs its completed levels, so that an interrupted
+     * construction of the same dataset is resumed. Null if no checkpoints are kept.
+     */
+    private String checkpointDirectory;
+    /**
+     * Fraction of the maximum heap above which the evolution diagram construction submits no further levels.
+     */
+    private double diagramHeapBudget;
+    /**
+     * Number of levels the evolution diagram construction may keep pending on top of the number of threads.
+     */
+    private int diagramMaxBufferedLevels;
 
     /* Cut ending of representative constants */
     /**
@@ -148,6 +161,8 @@ public enum ConstantsStorage {
     ConstantsStorage() {
         // Bundling algorithm constants
         numThreads = Runtime.getRuntime().availableProcessors();
+        diagramHeapBudget = 0.7;
+        diagramMaxBufferedLevels = 1;
 
         // Cut off constant
         enableCutOff = true;
@@ -245,6 +260,30 @@ public enum ConstantsStorage {
         this.numThreads = numThreads;
     }
     
+    public String getCheckpointDirectory() {
+        return checkpointDirectory;
+    }
+
+    public void setCheckpointDirectory(String checkpointDirectory) {
+        this.checkpointDirectory = checkpointDirectory;
+    }
+
+    public double getDiagramHeapBudget() {
+        return diagramHeapBudget;
+    }
+
+    public void setDiagramHeapBudget(double diagramHeapBudget) {
+        this.diagramHeapBudget = diagramHeapBudget;
+    }
+
+    public int getDiagramMaxBufferedLevels() {
+        return diagramMaxBufferedLevels;
+    }
+
+    public void setDiagramMaxBufferedLevels(int diagramMaxBufferedLevels) {
+        this.diagramMaxBufferedLevels = diagramMaxBufferedLevels;
+    }
+
     public double getForceMaxEps() {
         return forceMaxEps;
     }
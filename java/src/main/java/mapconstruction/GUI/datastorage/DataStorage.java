@@ -15,6 +15,8 @@ import mapconstruction.algorithms.maps.network.RoadNetwork;
 import mapconstruction.algorithms.representative.CutEnd;
 import mapconstruction.attributes.BundleClassAttribute;
 import mapconstruction.attributes.BundleClassAttributes;
+import mapconstruction.benchmark.Benchmark;
+import mapconstruction.exceptions.AlgorithmAbortedException;
 import mapconstruction.log.Log;
 import mapconstruction.log.LogLevel;
 import mapconstruction.trajectories.Bundle;
@@ -25,8 +27,12 @@ import mapconstruction.web.config.DatasetConfig;
 import mapconstruction.workers.ComputeEvolutionDiagram;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import static mapconstruction.GUI.datastorage.ConstantsStorage.ALGOCONSTANTS;
+
 /**
  * Singleton instance storing the relevant data for the GUI.
  *
@@ -187,7 +193,12 @@ public enum DataStorage {
         return Collections.unmodifiableList(originalTrajectories);
     }
 
+    /**
+     * Sets the trajectories of a newly loaded dataset. The undirectional ids of the trajectories of the previous
+     * dataset are forgotten.
+     */
     public synchronized void setOriginalTrajectories(List<Trajectory> trajectories) {
+        Trajectory.resetUndirectionalIds();
         this.originalTrajectories.clear();
         this.originalTrajectories.addAll(trajectories);
     }
@@ -233,34 +244,43 @@ public enum DataStorage {
      *
      * @param bundlesWithClasses
      */
-    public synchronized void setBundlesWithClasses(BiMap<Bundle, Integer> bundlesWithClasses) {
+    public void setBundlesWithClasses(BiMap<Bundle, Integer> bundlesWithClasses) {
         setBundlesWithClasses(bundlesWithClasses, true);
     }
 
-    public synchronized void setBundlesWithClasses(BiMap<Bundle, Integer> bundlesWithClasses, boolean postprocess) {
-        this.allBundlesWithClassesUnfiltered = HashBiMap.create(bundlesWithClasses);
-        if (postprocess) {
-            postprocessAllBundles();
-        } else {
-            this.allBundlesWithClasses = this.allBundlesWithClassesUnfiltered;
-            setDiplayedBundlesWithClasses(bundlesWithClasses);
+    public void setBundlesWithClasses(BiMap<Bundle, Integer> bundlesWithClasses, boolean postprocess) {
+        BundlePropertyInputs inputs;
+        synchronized (this) {
+            this.allBundlesWithClassesUnfiltered = HashBiMap.create(bundlesWithClasses);
+            if (postprocess) {
+                postprocessAllBundles();
+            } else {
+                this.allBundlesWithClasses = this.allBundlesWithClassesUnfiltered;
+                setDiplayedBundlesWithClasses(bundlesWithClasses);
+            }
+            inputs = new BundlePropertyInputs(this.displayedBundlesWithClasses.keySet(), this.allBundlesWithClasses);
         }
-        computeSomeBundleProperties();
+        computeSomeBundleProperties(inputs);
     }
 
-    public synchronized void setBundlesWithClasses(BiMap<Bundle,Integer> allBundlesWithClasses, BiMap<Bundle,Integer> bundlesWithClasses) {
-        this.allBundlesWithClassesUnfiltered = HashBiMap.create(allBundlesWithClasses);
-        this.allBundlesWithClasses = this.allBundlesWithClassesUnfiltered;
-        setDiplayedBundlesWithClasses(bundlesWithClasses);
+    public void setBundlesWithClasses(BiMap<Bundle,Integer> allBundlesWithClasses, BiMap<Bundle,Integer> bundlesWithClasses) {
+        BundlePropertyInputs inputs;
+        synchronized (this) {
+            this.allBundlesWithClassesUnfiltered = HashBiMap.create(allBundlesWithClasses);
+            this.allBundlesWithClasses = this.allBundlesWithClassesUnfiltered;
+            setDiplayedBundlesWithClasses(bundlesWithClasses);
 
-//        this.allBundlesWithClasses = HashBiMap.create(bundlesWithClasses);
-//        setDiplayedBundlesWithClasses(bundlesWithClasses);
-//        if (allBundlesWithClasses.containsKey(null)) {
-//            System.out.println("OKAY?");
-//        }
+//            this.allBundlesWithClasses = HashBiMap.create(bundlesWithClasses);
+//            setDiplayedBundlesWithClasses(bundlesWithClasses);
+//            if (allBundlesWithClasses.containsKey(null)) {
+//                System.out.println("OKAY?");
+//            }
 
-        computeSomeBundleProperties();
-        this.allBundlesWithClasses = bundlesWithClasses;
+            // The properties are computed for all unfiltered bundles, with their classes.
+            inputs = new BundlePropertyInputs(this.displayedBundlesWithClasses.keySet(), this.allBundlesWithClasses);
+            this.allBundlesWithClasses = bundlesWithClasses;
+        }
+        computeSomeBundleProperties(inputs);
     }
 
     /**
@@ -369,32 +389,113 @@ public enum DataStorage {
 
     /**
      * Function is called by setBundlesWithClasses, which is the last function called in ComputeEvolutionDiagram.
+     * <p>
+     * The properties of a bundle only depend on the bundle itself and the best epsilon of its class, which are looked
+     * up beforehand. Hence every stage runs in parallel over the bundles, and without holding the lock of the storage.
+     * Returns once all properties are computed.
      */
-    private synchronized void computeSomeBundleProperties(){
+    private void computeSomeBundleProperties(BundlePropertyInputs inputs) {
         // First we cut off the bundle ends to make sure they are fitting well.
-        CutEnd.cutOffBundlesEndsForSet(this.displayedBundlesWithClasses.keySet());
+        if (ALGOCONSTANTS.isEnableCutOff()) {
+            System.out.println("Starting cutting off bundles");
+            long time = runBundleStage("cut", inputs.displayed, b -> CutEnd.cutOffBundleEnd(b, inputs.cutEpsilon(b)));
+            Log.log(LogLevel.INFO, "Cutting representatives", "Cutting off bundles time: %d ms", time);
+            System.out.println("Finished cutting off bundles");
+        }
         // Then we calculate the bundle properties.
         System.out.println("DataStorage - Computing all bundle properties.");
-        long start = System.currentTimeMillis();
 
-        for (Bundle b : this.allBundlesWithClasses.keySet()) {
-            b.calculateForceProperties();
+        long time = runBundleStage("force", inputs.all,
+                b -> b.calculateForceProperties(inputs.bundleClass(b), inputs.bestEpsilon(b)));
+        Log.log(LogLevel.INFO, "ForceRepresentative", "Calculated forcerep for no bundles: %d", inputs.all.size());
+        Log.log(LogLevel.INFO, "ForceRepresentative", "Force representative time: %d ms", time);
+
+        time = runBundleStage("turn", inputs.all, Bundle::calculateTurnProperties);
+        Log.log(LogLevel.INFO, "TurnRepresentative", "Turn detection time: %d ms", time);
+    }
+
+    /**
+     * Runs the given action for every bundle on {@link ConstantsStorage#getNumThreads()} threads.
+     *
+     * @return the running time in ms.
+     */
+    private static long runBundleStage(String name, List<Bundle> bundles, Consumer<Bundle> action) {
+        long start = System.currentTimeMillis();
+        try (Benchmark.Span span = Benchmark.span(name)) {
+            int numThreads = Math.max(1, Math.min(ALGOCONSTANTS.getNumThreads(), bundles.size()));
+            if (numThreads <= 1) {
+                bundles.forEach(action);
+            } else {
+                List<Callable<Void>> tasks = new ArrayList<>(bundles.size());
+                for (Bundle b : bundles) {
+                    tasks.add(() -> {
+                        action.accept(b);
+                        return null;
+                    });
+                }
+                ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+                try {
+                    for (Future<Void> future : executor.invokeAll(tasks)) {
+                        future.get();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AlgorithmAbortedException();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } finally {
+                    executor.shutdown();
+                }
+            }
         }
+        return System.currentTimeMillis() - start;
+    }
 
-        long end = System.currentTimeMillis();
+    /**
+     * The bundles to compute the properties of, with their classes and best epsilons, taken while holding the lock
+     * of the storage.
+     */
+    private final class BundlePropertyInputs {
+        final List<Bundle> displayed;
+        final List<Bundle> all;
+        final Map<Bundle, Integer> classes;
+        final Map<Integer, Double> bestEpsilons;
 
-        Log.log(LogLevel.INFO, "ForceRepresentative", "Calculated forcerep for no bundles: %d", this.allBundlesWithClasses.keySet().size());
-        Log.log(LogLevel.INFO, "ForceRepresentative", "Force representative time: %d ms", end - start);
-        start = System.currentTimeMillis();
+        BundlePropertyInputs(Set<Bundle> displayed, BiMap<Bundle, Integer> all) {
+            this.displayed = new ArrayList<>(displayed);
+            this.all = new ArrayList<>(all.keySet());
+            this.classes = new HashMap<>(all);
+            // The best epsilons are cached lazily by the diagram, so look them up on this thread.
+            this.bestEpsilons = new HashMap<>();
+            for (int bundleClass : classes.values()) {
+                bestEpsilons.computeIfAbsent(bundleClass, evolutionDiagram::getBestEpsilon);
+            }
+            if (ALGOCONSTANTS.isEnableCutOff()) {
+                for (Bundle b : this.displayed) {
+                    bestEpsilons.computeIfAbsent(bundleClass(b), evolutionDiagram::getBestEpsilon);
+                }
+            }
+        }
 
-        for (Bundle b : this.allBundlesWithClasses.keySet()) {
-            b.calculateTurnProperties();
+        int bundleClass(Bundle b) {
+            return classes.getOrDefault(b, -1);
         }
 
-        end = System.currentTimeMillis();
-        Log.log(LogLevel.INFO, "TurnRepresentative", "Turn detection time: %d ms", end - start);
-    }
+        double bestEpsilon(Bundle b) {
+            int bundleClass = bundleClass(b);
+            return bundleClass == -1 ? Double.NaN : bestEpsilons.get(bundleClass);
+        }
 
+        /**
+         * Best epsilon to cut off a displayed bundle with, also looked up if it has no class.
+         */
+        double cutEpsilon(Bundle b) {
+            return bestEpsilons.get(bundleClass(b));
+        }
+    }
 
     /**
      * Returns the class of the given bundle.
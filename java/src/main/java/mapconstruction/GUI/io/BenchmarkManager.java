@@ -1,7 +1,7 @@
 package mapconstruction.GUI.io;
 
 import mapconstruction.benchmark.BundleRenderer;
-import mapconstruction.benchmark.Timing;
+import mapconstruction.benchmark.ProfileNode;
 import mapconstruction.log.Log;
 import mapconstruction.log.LogLevel;
 import mapconstruction.trajectories.Bundle;
@@ -29,14 +29,14 @@ public class BenchmarkManager {
         this.path = path;
     }
 
-    public void saveStats(String name, Date date, Timing timings) {
+    public void saveStats(String name, Date date, ProfileNode timings) {
         this.saveStats(name, date, timings, null);
     }
 
     /**
-     * Given the timings and bundle results of an algorithm, create a statistical summary and save it to a file.
+     * Given the merged call tree and bundle results of an algorithm, create a statistical summary and save it to a file.
      */
-    public void saveStats(String name, Date date, Timing timings, Map<String, Set<Bundle>> results) {
+    public void saveStats(String name, Date date, ProfileNode timings, Map<String, Set<Bundle>> results) {
         String subPath = name + '/' + DATES.format(date);
         createDirectoryIfAbsent(subPath);
 
@@ -112,7 +112,7 @@ public class BenchmarkManager {
     /**
      * Preprocessor for YAML creation for the result statistics.
      */
-    private Map<String, Object> makeStats(Timing timings, Map<String, Set<Bundle>> results) {
+    private Map<String, Object> makeStats(ProfileNode timings, Map<String, Set<Bundle>> results) {
         Map<String, Object> t = new TreeMap<>();
         t.put("timings", makeTimings(timings));
         if (results != null) {
@@ -127,21 +127,32 @@ public class BenchmarkManager {
     }
 
     /**
-     * Preprocessor for YAML creation for the timings.
+     * Preprocessor for YAML creation for the timings. Every node reports the total time of its spans, the time not
+     * spent in nested spans on the same thread, how often it was entered and by how many threads, and the allocated
+     * memory.
      */
-    private Map<String, Object> makeTimings(Timing timings) {
-        Map<String,Object> t = new TreeMap<>((t1, t2) -> (t1.equals("splits") ? 1 : 0) + (t2.equals("splits") ? -1 : 0));
-        long duration = timings.getDuration();
-        long minutes = duration / 60000;
-        long seconds = (duration % 60000) / 1000;
-        long millis = duration % 1000;
-        t.put(timings.getTitle(), String.format("%d:%02d.%d", minutes, seconds, millis));
-        if (!timings.getSubtimings().isEmpty()) {
+    private Map<String, Object> makeTimings(ProfileNode timings) {
+        Map<String, Object> t = new LinkedHashMap<>();
+        t.put("name", timings.getName());
+        t.put("total", formatDuration(timings.getTotalNanos()));
+        t.put("self", formatDuration(timings.getSelfNanos()));
+        t.put("count", timings.getCount());
+        t.put("threads", timings.getThreads());
+        t.put("allocatedMB", Math.round(timings.getAllocatedBytes() / (1024.0 * 1024.0)));
+        if (!timings.getChildren().isEmpty()) {
             List<Object> subtimings = new ArrayList<>();
-            timings.getSubtimings().forEach(s -> subtimings.add(makeTimings(s)));
+            timings.getChildren().forEach(s -> subtimings.add(makeTimings(s)));
             t.put("splits", subtimings);
         }
         return t;
     }
 
+    private static String formatDuration(long nanos) {
+        long duration = nanos / 1000000;
+        long minutes = duration / 60000;
+        long seconds = (duration % 60000) / 1000;
+        long millis = duration % 1000;
+        return String.format("%d:%02d.%03d", minutes, seconds, millis);
+    }
+
 }
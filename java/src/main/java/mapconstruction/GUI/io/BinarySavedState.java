@@ -0,0 +1,496 @@
+package mapconstruction.GUI.io;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import mapconstruction.algorithms.diagram.EvolutionDiagram;
+import mapconstruction.algorithms.maps.ComputeRoadNetwork;
+import mapconstruction.trajectories.*;
+import mapconstruction.web.config.DatasetConfig;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Versioned binary format for the saved state of the program: the dataset configuration, the original and the
+ * current trajectories, the evolution diagram and the road network computer.
+ * <p>
+ * The file consists of the following sections, with all values big-endian:
+ * <ol>
+ * <li>Header: magic number and version.</li>
+ * <li>Dataset configuration.</li>
+ * <li>Trajectory table: id, label and number of points of every distinct trajectory, followed by the coordinates of
+ * all trajectories as an x and a y column. The trajectory lists refer to the table by index.</li>
+ * <li>Bundle table: every bundle of the diagram, with its subtrajectories as (table index, reversed, from, to).</li>
+ * <li>Diagram: per state its epsilon, the bundle classes by bundle index, births and merges; then the birth and merge
+ * moments.</li>
+ * <li>Road network computer, as a Java serialized object, since it is an object graph of its own.</li>
+ * </ol>
+ * The file is read through memory-mapped windows. The coordinates of all trajectories are loaded into a single pair of
+ * columns, shared by the trajectories.
+ */
+public class BinarySavedState {
+
+    private static final int MAGIC = 0x4D435353;
+    private static final int VERSION = 1;
+
+    private static final byte BUNDLE = 0;
+    private static final byte UNDIRECTIONAL_BUNDLE = 1;
+
+    private final DatasetConfig datasetConfig;
+    private final List<Trajectory> originalTrajectories;
+    private final List<Trajectory> trajectories;
+    private final EvolutionDiagram diagram;
+    private final ComputeRoadNetwork roadNetworkComputer;
+
+    /**
+     * @param diagram             diagram, may be {@code null}.
+     * @param roadNetworkComputer road network computer, may be {@code null}.
+     */
+    public BinarySavedState(DatasetConfig datasetConfig, List<Trajectory> originalTrajectories, List<Trajectory> trajectories,
+                            EvolutionDiagram diagram, ComputeRoadNetwork roadNetworkComputer) {
+        this.datasetConfig = datasetConfig;
+        this.originalTrajectories = originalTrajectories;
+        this.trajectories = trajectories;
+        this.diagram = diagram;
+        this.roadNetworkComputer = roadNetworkComputer;
+    }
+
+    public DatasetConfig getDatasetConfig() {
+        return datasetConfig;
+    }
+
+    public List<Trajectory> getOriginalTrajectories() {
+        return originalTrajectories;
+    }
+
+    public List<Trajectory> getTrajectories() {
+        return trajectories;
+    }
+
+    public EvolutionDiagram getDiagram() {
+        return diagram;
+    }
+
+    public ComputeRoadNetwork getRoadNetworkComputer() {
+        return roadNetworkComputer;
+    }
+
+    /**
+     * Determines whether the given file starts like a file in this format, as opposed to a Java serialized state.
+     */
+    public static boolean isBinarySavedState(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= 4 && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Writes the state to the given file.
+     *
+     * @throws IOException if writing fails, or the state contains trajectories or bundles of a type that can not be
+     *                     stored.
+     */
+    public void write(File file) throws IOException {
+        TrajectoryTable table = new TrajectoryTable();
+        table.addAll(originalTrajectories);
+        table.addAll(trajectories);
+
+        // Bundles in order of first occurrence in the diagram
+        Map<Bundle, Integer> bundleIds = new IdentityHashMap<>();
+        List<Bundle> bundles = new ArrayList<>();
+        if (diagram != null) {
+            for (double eps : diagram.getEpsilons()) {
+                for (Bundle b : diagram.getBundleClasses(eps).keySet()) {
+                    if (!bundleIds.containsKey(b)) {
+                        bundleIds.put(b, bundles.size());
+                        bundles.add(b);
+                        for (Subtrajectory t : subtrajectoriesOf(b)) {
+                            table.reference(t.getParent());
+                        }
+                    }
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeBoolean(datasetConfig != null);
+            if (datasetConfig != null) {
+                MappedInput.writeString(out, datasetConfig.getSystem());
+                out.writeDouble(datasetConfig.getZone());
+                MappedInput.writeString(out, datasetConfig.getHemisphere());
+                MappedInput.writeString(out, datasetConfig.getPath());
+                out.writeBoolean(datasetConfig.isWalkingDataset());
+            }
+
+            table.write(out);
+            writeReferences(out, table, originalTrajectories);
+            writeReferences(out, table, trajectories);
+
+            out.writeInt(bundles.size());
+            for (Bundle b : bundles) {
+                writeBundle(out, table, b);
+            }
+
+            out.writeBoolean(diagram != null);
+            if (diagram != null) {
+                out.writeInt(diagram.getEpsilons().size());
+                for (double eps : diagram.getEpsilons()) {
+                    out.writeDouble(eps);
+                    BiMap<Bundle, Integer> bundleClasses = diagram.getBundleClasses(eps);
+                    out.writeInt(bundleClasses.size());
+                    for (Map.Entry<Bundle, Integer> entry : bundleClasses.entrySet()) {
+                        out.writeInt(bundleIds.get(entry.getKey()));
+                        out.writeInt(entry.getValue());
+                    }
+                    Set<Integer> births = diagram.getBirths(eps);
+                    out.writeInt(births.size());
+                    for (int c : births) {
+                        out.writeInt(c);
+                    }
+                    Map<Integer, Integer> merges = diagram.getMerges(eps);
+                    out.writeInt(merges.size());
+                    for (Map.Entry<Integer, Integer> merge : merges.entrySet()) {
+                        out.writeInt(merge.getKey());
+                        out.writeInt(merge.getValue());
+                    }
+                }
+                writeMoments(out, diagram.getBirthMoments());
+                writeMoments(out, diagram.getMergeMoments());
+            }
+
+            out.writeBoolean(roadNetworkComputer != null);
+            if (roadNetworkComputer != null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                    objects.writeObject(roadNetworkComputer);
+                }
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Reads a state from the given file.
+     *
+     * @throws IOException if reading fails or the file is not in this format.
+     */
+    public static BinarySavedState read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedInput in = new MappedInput(channel);
+            if (in.getInt() != MAGIC) {
+                throw new IOException(file + " is not a binary saved state");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of saved state " + file);
+            }
+
+            DatasetConfig datasetConfig = null;
+            if (in.getBoolean()) {
+                datasetConfig = new DatasetConfig();
+                datasetConfig.setSystem(in.getString());
+                datasetConfig.setZone(in.getDouble());
+                datasetConfig.setHemisphere(in.getString());
+                datasetConfig.setPath(in.getString());
+                datasetConfig.setWalkingDataset(in.getBoolean());
+            }
+
+            FullTrajectory[] table = readTrajectoryTable(in);
+            List<Trajectory> originalTrajectories = readReferences(in, table);
+            List<Trajectory> trajectories = readReferences(in, table);
+
+            Bundle[] bundles = new Bundle[in.getInt()];
+            for (int i = 0; i < bundles.length; i++) {
+                bundles[i] = readBundle(in, table);
+            }
+
+            EvolutionDiagram diagram = null;
+            if (in.getBoolean()) {
+                int numStates = in.getInt();
+                double[] epsilons = new double[numStates];
+                List<BiMap<Bundle, Integer>> classes = new ArrayList<>(numStates);
+                List<Set<Integer>> births = new ArrayList<>(numStates);
+                List<Map<Integer, Integer>> merges = new ArrayList<>(numStates);
+                for (int s = 0; s < numStates; s++) {
+                    epsilons[s] = in.getDouble();
+                    int numClasses = in.getInt();
+                    BiMap<Bundle, Integer> bundleClasses = HashBiMap.create(numClasses);
+                    for (int i = 0; i < numClasses; i++) {
+                        Bundle b = bundles[in.getInt()];
+                        bundleClasses.put(b, in.getInt());
+                    }
+                    classes.add(bundleClasses);
+                    int numBirths = in.getInt();
+                    Set<Integer> stateBirths = new HashSet<>();
+                    for (int i = 0; i < numBirths; i++) {
+                        stateBirths.add(in.getInt());
+                    }
+                    births.add(stateBirths);
+                    int numMerges = in.getInt();
+                    Map<Integer, Integer> stateMerges = new HashMap<>();
+                    for (int i = 0; i < numMerges; i++) {
+                        stateMerges.put(in.getInt(), in.getInt());
+                    }
+                    merges.add(stateMerges);
+                }
+                Map<Integer, Double> birthMoments = readMoments(in);
+                Map<Integer, Double> mergeMoments = readMoments(in);
+
+                diagram = new EvolutionDiagram(new HashMap<>(), birthMoments, mergeMoments);
+                for (int s = 0; s < numStates; s++) {
+                    diagram.restoreState(epsilons[s], classes.get(s), births.get(s), merges.get(s));
+                }
+            }
+
+            ComputeRoadNetwork roadNetworkComputer = null;
+            if (in.getBoolean()) {
+                byte[] bytes = new byte[in.getInt()];
+                in.getBytes(bytes);
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    roadNetworkComputer = (ComputeRoadNetwork) objects.readObject();
+                } catch (ClassNotFoundException ex) {
+                    throw new IOException(ex);
+                }
+            }
+
+            return new BinarySavedState(datasetConfig, originalTrajectories, trajectories, diagram, roadNetworkComputer);
+        }
+    }
+
+    /**
+     * Gets the subtrajectories needed to rebuild the bundle: its representative, its subtrajectories and its named
+     * subtrajectories that are no longer part of it.
+     */
+    private static List<Subtrajectory> subtrajectoriesOf(Bundle b) {
+        List<Subtrajectory> result = new ArrayList<>(b.getSubtrajectories());
+        if (b.getOriginalRepresentative() != null) {
+            result.add(b.getOriginalRepresentative());
+        }
+        result.addAll(removedSubtrajectories(b));
+        return result;
+    }
+
+    /**
+     * Named subtrajectories of the bundle that are not among its subtrajectories. That only is the original
+     * representative, if it was replaced by {@link Bundle#setNewRepresentativeSubtrajectory(Subtrajectory)}.
+     */
+    private static List<Subtrajectory> removedSubtrajectories(Bundle b) {
+        List<Subtrajectory> result = new ArrayList<>();
+        for (String name : b.getTrajectoryNames()) {
+            Subtrajectory t = b.getTrajectoryByName(name);
+            if (!b.getSubtrajectories().contains(t)) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    private static void writeBundle(DataOutput out, TrajectoryTable table, Bundle b) throws IOException {
+        if (b.getClass() == UndirectionalBundle.class) {
+            out.writeByte(UNDIRECTIONAL_BUNDLE);
+        } else if (b.getClass() == Bundle.class) {
+            out.writeByte(BUNDLE);
+        } else {
+            throw new IOException("Can not store bundles of type " + b.getClass().getName());
+        }
+        out.writeBoolean(b.isBundleRepCutOff());
+
+        Subtrajectory representative = b.getOriginalRepresentative();
+        out.writeBoolean(representative != null);
+        if (representative != null) {
+            writeSubtrajectory(out, table, representative);
+        }
+        List<Subtrajectory> removed = removedSubtrajectories(b);
+        out.writeInt(removed.size());
+        for (Subtrajectory t : removed) {
+            writeSubtrajectory(out, table, t);
+        }
+        out.writeInt(b.size());
+        for (Subtrajectory t : b.getSubtrajectories()) {
+            writeSubtrajectory(out, table, t);
+        }
+    }
+
+    private static Bundle readBundle(MappedInput in, FullTrajectory[] table) throws IOException {
+        byte type = in.getByte();
+        boolean repCutOff = in.getBoolean();
+        Subtrajectory representative = in.getBoolean() ? readSubtrajectory(in, table) : null;
+        int numRemoved = in.getInt();
+        List<Subtrajectory> removed = new ArrayList<>(numRemoved);
+        for (int i = 0; i < numRemoved; i++) {
+            removed.add(readSubtrajectory(in, table));
+        }
+        int size = in.getInt();
+        List<Subtrajectory> subtrajectories = new ArrayList<>(size + numRemoved);
+        for (int i = 0; i < size; i++) {
+            subtrajectories.add(readSubtrajectory(in, table));
+        }
+
+        Bundle b;
+        if (removed.size() == 1 && representative != null) {
+            // The original representative was replaced, replay that.
+            subtrajectories.add(removed.get(0));
+            b = create(type, subtrajectories, removed.get(0));
+            b.setNewRepresentativeSubtrajectory(representative);
+        } else {
+            b = create(type, subtrajectories, representative);
+        }
+        b.setBundleRepCutOff(repCutOff);
+        return b;
+    }
+
+    private static Bundle create(byte type, List<Subtrajectory> subtrajectories, Subtrajectory representative) {
+        return type == UNDIRECTIONAL_BUNDLE
+                ? UndirectionalBundle.create(subtrajectories, representative)
+                : Bundle.create(subtrajectories, representative);
+    }
+
+    private static void writeSubtrajectory(DataOutput out, TrajectoryTable table, Subtrajectory t) throws IOException {
+        Trajectory parent = t.getParent();
+        Integer index = table.indexOf(parent);
+        boolean reverse = false;
+        if (index == null) {
+            index = table.indexOf(parent.reverse());
+            reverse = true;
+        }
+        out.writeInt(index);
+        out.writeBoolean(reverse);
+        out.writeDouble(t.getFromIndex());
+        out.writeDouble(t.getToIndex());
+    }
+
+    private static Subtrajectory readSubtrajectory(MappedInput in, FullTrajectory[] table) throws IOException {
+        FullTrajectory parent = table[in.getInt()];
+        boolean reverse = in.getBoolean();
+        double from = in.getDouble();
+        double to = in.getDouble();
+        return new Subtrajectory(reverse ? parent.reverse() : parent, from, to);
+    }
+
+    private static void writeReferences(DataOutput out, TrajectoryTable table, List<Trajectory> list) throws IOException {
+        out.writeInt(list.size());
+        for (Trajectory t : list) {
+            out.writeInt(table.indexOf(t));
+        }
+    }
+
+    private static List<Trajectory> readReferences(MappedInput in, FullTrajectory[] table) throws IOException {
+        int size = in.getInt();
+        List<Trajectory> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(table[in.getInt()]);
+        }
+        return result;
+    }
+
+    private static FullTrajectory[] readTrajectoryTable(MappedInput in) throws IOException {
+        int n = in.getInt();
+        long[] ids = new long[n];
+        String[] labels = new String[n];
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            ids[i] = in.getLong();
+            labels[i] = in.getString();
+            offsets[i + 1] = offsets[i] + in.getInt();
+        }
+        double[] xs = new double[offsets[n]];
+        double[] ys = new double[offsets[n]];
+        in.getDoubles(xs);
+        in.getDoubles(ys);
+        PointColumns columns = new PointColumns(xs, ys);
+
+        // Create in order of increasing id, such that new trajectories get an id above all of them.
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> ids[i]));
+        FullTrajectory[] table = new FullTrajectory[n];
+        for (int i : order) {
+            table[i] = new FullTrajectory(columns, offsets[i], offsets[i + 1] - offsets[i], ids[i]);
+            if (labels[i] != null) {
+                table[i].setLabel(labels[i]);
+            }
+        }
+        return table;
+    }
+
+    private static void writeMoments(DataOutput out, Map<Integer, Double> moments) throws IOException {
+        out.writeInt(moments.size());
+        for (Map.Entry<Integer, Double> moment : moments.entrySet()) {
+            out.writeInt(moment.getKey());
+            out.writeDouble(moment.getValue());
+        }
+    }
+
+    private static Map<Integer, Double> readMoments(MappedInput in) throws IOException {
+        int size = in.getInt();
+        Map<Integer, Double> moments = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            moments.put(in.getInt(), in.getDouble());
+        }
+        return moments;
+    }
+
+    /**
+     * Table of the distinct trajectories, by identity.
+     */
+    private static class TrajectoryTable {
+        private final Map<Trajectory, Integer> indices = new IdentityHashMap<>();
+        private final List<FullTrajectory> trajectories = new ArrayList<>();
+
+        void addAll(List<Trajectory> list) throws IOException {
+            for (Trajectory t : list) {
+                add(t);
+            }
+        }
+
+        /**
+         * Ensures that a subtrajectory of the given parent can be stored.
+         */
+        void reference(Trajectory parent) throws IOException {
+            if (indexOf(parent) == null && indexOf(parent.reverse()) == null) {
+                add(parent);
+            }
+        }
+
+        private void add(Trajectory t) throws IOException {
+            if (!(t instanceof FullTrajectory)) {
+                throw new IOException("Can not store trajectories of type " + t.getClass().getName());
+            }
+            if (!indices.containsKey(t)) {
+                indices.put(t, trajectories.size());
+                trajectories.add((FullTrajectory) t);
+            }
+        }
+
+        Integer indexOf(Trajectory t) {
+            return indices.get(t);
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeInt(trajectories.size());
+            for (FullTrajectory t : trajectories) {
+                out.writeLong(t.getId());
+                MappedInput.writeString(out, t.getRawLabel());
+                out.writeInt(t.numPoints());
+            }
+            for (FullTrajectory t : trajectories) {
+                for (int i = 0; i < t.numPoints(); i++) {
+                    out.writeDouble(t.getX(i));
+                }
+            }
+            for (FullTrajectory t : trajectories) {
+                for (int i = 0; i < t.numPoints(); i++) {
+                    out.writeDouble(t.getY(i));
+                }
+            }
+        }
+    }
+}
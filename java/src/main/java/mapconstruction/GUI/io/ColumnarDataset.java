@@ -0,0 +1,241 @@
+package mapconstruction.GUI.io;
+
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.PointColumns;
+
+import java.awt.geom.Rectangle2D;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A dataset of trajectories stored in a single binary file, as an alternative to a directory of txt files.
+ * <p>
+ * The file consists of the following sections, with all values big-endian:
+ * <ol>
+ * <li>Header: magic number, version, flags, number of trajectories and total number of points.</li>
+ * <li>Bounding box of all points, if {@link #HAS_BOUNDS} is set.</li>
+ * <li>Offset table: the id of every trajectory, followed by the index of the first point of every trajectory in the
+ * columns and the total number of points.</li>
+ * <li>The label of every trajectory.</li>
+ * <li>The euclidean length of every trajectory, if {@link #HAS_LENGTHS} is set.</li>
+ * <li>Columns: the x-coordinates and y-coordinates of all points, and their timestamps if {@link #HAS_TIMES} is
+ * set.</li>
+ * </ol>
+ * The file is read through memory-mapped windows, directly into a single {@link PointColumns} shared by all
+ * trajectories.
+ */
+public class ColumnarDataset {
+
+    /**
+     * Extension of files in this format.
+     */
+    public static final String EXTENSION = "traj";
+
+    static final int HAS_TIMES = 1;
+    static final int HAS_BOUNDS = 2;
+    static final int HAS_LENGTHS = 4;
+
+    private static final int MAGIC = 0x4D434344;
+    private static final int VERSION = 1;
+
+    private final List<FullTrajectory> trajectories;
+    private final Rectangle2D bounds;
+    private final double[] lengths;
+
+    private ColumnarDataset(List<FullTrajectory> trajectories, Rectangle2D bounds, double[] lengths) {
+        this.trajectories = trajectories;
+        this.bounds = bounds;
+        this.lengths = lengths;
+    }
+
+    /**
+     * @return the trajectories, in the order in which they were written.
+     */
+    public List<FullTrajectory> getTrajectories() {
+        return Collections.unmodifiableList(trajectories);
+    }
+
+    /**
+     * @return the bounding box of all points, or {@code null} if it was not stored.
+     */
+    public Rectangle2D getBounds() {
+        return bounds == null ? null : (Rectangle2D) bounds.clone();
+    }
+
+    /**
+     * @return the euclidean length of the trajectory at the given index, or {@code NaN} if the lengths were not
+     * stored.
+     */
+    public double getLength(int index) {
+        return lengths == null ? Double.NaN : lengths[index];
+    }
+
+    /**
+     * Writes the given trajectories to a file, with their lengths and, if there are any points, their bounds.
+     * Timestamps are stored if any of the points has one.
+     *
+     * @throws IOException if writing fails.
+     */
+    public static void write(File file, List<FullTrajectory> trajectories) throws IOException {
+        long numPoints = 0;
+        boolean hasTimes = false;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (FullTrajectory t : trajectories) {
+            numPoints += t.numPoints();
+            for (int i = 0; i < t.numPoints(); i++) {
+                minX = Math.min(minX, t.getX(i));
+                minY = Math.min(minY, t.getY(i));
+                maxX = Math.max(maxX, t.getX(i));
+                maxY = Math.max(maxY, t.getY(i));
+                hasTimes |= t.getTimestamp(i) != PointColumns.NO_TIME;
+            }
+        }
+        if (numPoints > Integer.MAX_VALUE) {
+            throw new IOException("Too many points to store in a single dataset: " + numPoints);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(HAS_LENGTHS | (numPoints > 0 ? HAS_BOUNDS : 0) | (hasTimes ? HAS_TIMES : 0));
+            out.writeInt(trajectories.size());
+            out.writeLong(numPoints);
+
+            if (numPoints > 0) {
+                out.writeDouble(minX);
+                out.writeDouble(minY);
+                out.writeDouble(maxX);
+                out.writeDouble(maxY);
+            }
+
+            for (FullTrajectory t : trajectories) {
+                out.writeLong(t.getId());
+            }
+            long offset = 0;
+            for (FullTrajectory t : trajectories) {
+                out.writeLong(offset);
+                offset += t.numPoints();
+            }
+            out.writeLong(offset);
+
+            for (FullTrajectory t : trajectories) {
+                MappedInput.writeString(out, t.getRawLabel());
+            }
+            for (FullTrajectory t : trajectories) {
+                out.writeDouble(t.euclideanLength());
+            }
+
+            for (FullTrajectory t : trajectories) {
+                for (int i = 0; i < t.numPoints(); i++) {
+                    out.writeDouble(t.getX(i));
+                }
+            }
+            for (FullTrajectory t : trajectories) {
+                for (int i = 0; i < t.numPoints(); i++) {
+                    out.writeDouble(t.getY(i));
+                }
+            }
+            if (hasTimes) {
+                for (FullTrajectory t : trajectories) {
+                    for (int i = 0; i < t.numPoints(); i++) {
+                        out.writeLong(t.getTimestamp(i));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines whether the given file starts like a file in this format.
+     */
+    public static boolean isColumnarDataset(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= 4 && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Reads a dataset from the given file.
+     *
+     * @throws IOException if reading fails or the file is not in this format.
+     */
+    public static ColumnarDataset read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedInput in = new MappedInput(channel);
+            if (in.getInt() != MAGIC) {
+                throw new IOException(file + " is not a columnar dataset");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of dataset " + file);
+            }
+            int flags = in.getInt();
+            int n = in.getInt();
+            long numPoints = in.getLong();
+            if (n < 0 || numPoints < 0 || numPoints > Integer.MAX_VALUE) {
+                throw new IOException("Invalid header of dataset " + file);
+            }
+
+            Rectangle2D bounds = null;
+            if ((flags & HAS_BOUNDS) != 0) {
+                double minX = in.getDouble();
+                double minY = in.getDouble();
+                double maxX = in.getDouble();
+                double maxY = in.getDouble();
+                bounds = new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+            }
+
+            long[] ids = new long[n];
+            in.getLongs(ids);
+            long[] offsets = new long[n + 1];
+            in.getLongs(offsets);
+            for (int i = 0; i < n; i++) {
+                if (offsets[i] < 0 || offsets[i] > offsets[i + 1]) {
+                    throw new IOException("Invalid offset table in dataset " + file);
+                }
+            }
+            if (offsets[n] != numPoints) {
+                throw new IOException("Invalid offset table in dataset " + file);
+            }
+
+            String[] labels = new String[n];
+            for (int i = 0; i < n; i++) {
+                labels[i] = in.getString();
+            }
+
+            double[] lengths = null;
+            if ((flags & HAS_LENGTHS) != 0) {
+                lengths = new double[n];
+                in.getDoubles(lengths);
+            }
+
+            double[] xs = new double[(int) numPoints];
+            double[] ys = new double[(int) numPoints];
+            in.getDoubles(xs);
+            in.getDoubles(ys);
+            long[] times = null;
+            if ((flags & HAS_TIMES) != 0) {
+                times = new long[(int) numPoints];
+                in.getLongs(times);
+            }
+            PointColumns columns = new PointColumns(xs, ys, times);
+
+            List<FullTrajectory> trajectories = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                FullTrajectory t = new FullTrajectory(columns, (int) offsets[i], (int) (offsets[i + 1] - offsets[i]), ids[i]);
+                if (labels[i] != null) {
+                    t.setLabel(labels[i]);
+                }
+                trajectories.add(t);
+            }
+            return new ColumnarDataset(trajectories, bounds, lengths);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package mapconstruction.GUI.io;
+
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.PointColumns;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Converts datasets to a {@link ColumnarDataset} file.
+ * <p>
+ * Two inputs are supported: a dataset directory with one txt file per trajectory, and a file in the format of the
+ * test suite, with on each line {@code <id> <time> <lat> <long>}. The latter gives the same trajectories as converting
+ * it with {@code script/javafy.py} and reading the resulting directory.
+ */
+public class ColumnarDatasetConverter {
+
+    private ColumnarDatasetConverter() {
+    }
+
+    /**
+     * Converts the txt files in the given dataset directory.
+     *
+     * @return the number of trajectories written.
+     * @throws IOException if the directory can not be listed or the output can not be written.
+     */
+    public static int convertDirectory(File directory, File output) throws IOException {
+        File[] files = directory.listFiles(file -> file.getName().toLowerCase().endsWith(".txt"));
+        if (files == null) {
+            throw new IOException("Can not list " + directory);
+        }
+        List<FullTrajectory> trajectories = new MappedTxtTrajectoryReader().readFiles(Arrays.asList(files));
+        ColumnarDataset.write(output, trajectories);
+        return trajectories.size();
+    }
+
+    /**
+     * Converts a file in the format of the test suite. The points of a trajectory are ordered by time, and the
+     * trajectories by their first occurrence in the file. Trajectory {@code id} gets label {@code trip_<id>.txt} and
+     * identifier {@code id + 1}, as when read from the directory written by {@code script/javafy.py}.
+     *
+     * @return the number of trajectories written.
+     * @throws IOException if reading or writing fails, or a line is malformed.
+     */
+    public static int convertTestSuiteFile(File input, File output) throws IOException {
+        Map<Long, List<double[]>> points = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(input))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] values = line.trim().split("\\s+");
+                if (values.length == 1 && values[0].isEmpty()) {
+                    continue;
+                }
+                if (values.length != 4) {
+                    throw new IOException("Expected <id> <time> <lat> <long> on line " + lineNumber + " of " + input);
+                }
+                try {
+                    long id = Long.parseLong(values[0]);
+                    double time = Long.parseLong(values[1]);
+                    double lat = Double.parseDouble(values[2]);
+                    double lon = Double.parseDouble(values[3]);
+                    points.computeIfAbsent(id, k -> new ArrayList<>()).add(new double[]{time, lat, lon});
+                } catch (NumberFormatException ex) {
+                    throw new IOException("Malformed number on line " + lineNumber + " of " + input, ex);
+                }
+            }
+        }
+
+        int total = 0;
+        for (List<double[]> trajectory : points.values()) {
+            total += trajectory.size();
+        }
+        double[] xs = new double[total];
+        double[] ys = new double[total];
+        long[] times = new long[total];
+        int size = 0;
+        List<int[]> ranges = new ArrayList<>(points.size());
+        for (List<double[]> trajectory : points.values()) {
+            trajectory.sort(Comparator.<double[]>comparingDouble(p -> p[0])
+                    .thenComparingDouble(p -> p[1])
+                    .thenComparingDouble(p -> p[2]));
+            int offset = size;
+            for (double[] p : trajectory) {
+                if (size > offset && xs[size - 1] == p[1] && ys[size - 1] == p[2]) {
+                    // Ignore consecutive duplicate points
+                    continue;
+                }
+                times[size] = (long) p[0];
+                xs[size] = p[1];
+                ys[size] = p[2];
+                size++;
+            }
+            ranges.add(new int[]{offset, size - offset});
+        }
+        PointColumns columns = new PointColumns(Arrays.copyOf(xs, size), Arrays.copyOf(ys, size), Arrays.copyOf(times, size));
+
+        List<FullTrajectory> trajectories = new ArrayList<>(points.size());
+        Iterator<int[]> range = ranges.iterator();
+        for (long id : points.keySet()) {
+            int[] r = range.next();
+            FullTrajectory t = new FullTrajectory(columns, r[0], r[1], id + 1);
+            t.setLabel("trip_" + id + ".txt");
+            trajectories.add(t);
+        }
+        ColumnarDataset.write(output, trajectories);
+        return trajectories.size();
+    }
+
+    /**
+     * Converts a dataset directory or a test suite file.
+     * <p>
+     * Usage: {@code ColumnarDatasetConverter <dataset directory | test suite file> <output file>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: ColumnarDatasetConverter <dataset directory | test suite file> <output ." + ColumnarDataset.EXTENSION + " file>");
+            System.exit(1);
+        }
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        int count = input.isDirectory() ? convertDirectory(input, output) : convertTestSuiteFile(input, output);
+        System.out.println("Wrote " + count + " trajectories to " + output);
+    }
+}
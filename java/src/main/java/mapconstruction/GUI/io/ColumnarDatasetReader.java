@@ -0,0 +1,29 @@
+package mapconstruction.GUI.io;
+
+import mapconstruction.log.Log;
+import mapconstruction.log.LogLevel;
+import mapconstruction.trajectories.Trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads trajectories from a {@link ColumnarDataset} file.
+ */
+public class ColumnarDatasetReader implements TrajectoryReader {
+
+    @Override
+    public List<? extends Trajectory> parse(File f) {
+        try {
+            return ColumnarDataset.read(f).getTrajectories();
+        } catch (IOException ex) {
+            Log.log(LogLevel.ERROR, "TrajectoryIO", "Exception while reading dataset %s: %s", f.getName(), ex.getMessage());
+            Logger.getLogger(ColumnarDatasetReader.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return Collections.emptyList();
+    }
+}
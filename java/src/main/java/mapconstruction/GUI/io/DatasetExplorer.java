@@ -53,10 +53,35 @@ public class DatasetExplorer {
         return false;
     }
 
+    /**
+     * Gets the trajectory files of a dataset. If the dataset was converted to a {@link ColumnarDataset} and that file
+     * is not older than any txt file, only that file is returned, otherwise all txt files. A converted file that is
+     * older than the txt files is ignored, as the txt files were changed after the conversion.
+     */
     public File[] getAllFilesInDataset(String relative_dir) {
 //        File datasetFolder = new File(System.getProperty("user.dir") + this.path + '/' + relative_dir);
         File datasetFolder = new File(this.path + '/' + relative_dir);
-        return datasetFolder.listFiles(file -> file.getName().toLowerCase().endsWith(".txt"));
+        File[] txtFiles = datasetFolder.listFiles(file -> file.getName().toLowerCase().endsWith(".txt"));
+        File[] columnarFiles = datasetFolder.listFiles(file -> file.getName().toLowerCase().endsWith("." + ColumnarDataset.EXTENSION));
+        if (columnarFiles == null || columnarFiles.length == 0) {
+            return txtFiles;
+        }
+
+        long newestTxt = 0;
+        if (txtFiles != null) {
+            for (File txtFile : txtFiles) {
+                newestTxt = Math.max(newestTxt, txtFile.lastModified());
+            }
+        }
+        for (File columnarFile : columnarFiles) {
+            if (columnarFile.lastModified() < newestTxt) {
+                Log.log(LogLevel.WARNING, "DatasetExplorer", "%s is older than the txt files of %s, reading the txt files instead",
+                        columnarFile.getName(), relative_dir);
+                return txtFiles;
+            }
+        }
+        Log.log(LogLevel.INFO, "DatasetExplorer", "Reading %s from %s", relative_dir, Arrays.toString(columnarFiles));
+        return columnarFiles;
     }
 
     public Map<String,Pair<File,File>> getRoadmapFiles(String relative_dir) {
@@ -0,0 +1,136 @@
+package mapconstruction.GUI.io;
+
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sequential reader over a big-endian binary file, through memory-mapped windows of at most {@link #WINDOW_SIZE}
+ * bytes, such that files larger than a single buffer can be read.
+ */
+class MappedInput {
+
+    /**
+     * Maximum size of a memory-mapped window of the file.
+     */
+    private static final int WINDOW_SIZE = 1 << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    MappedInput(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        map(0);
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+    }
+
+    /**
+     * Makes sure that the next n bytes are in the window.
+     */
+    private ByteBuffer require(int n) throws IOException {
+        if (window.remaining() < n) {
+            long position = position();
+            if (size - position < n) {
+                throw new EOFException();
+            }
+            map(position);
+        }
+        return window;
+    }
+
+    /**
+     * @return position in the file of the next byte to read.
+     */
+    long position() {
+        return windowStart + window.position();
+    }
+
+    byte getByte() throws IOException {
+        return require(1).get();
+    }
+
+    boolean getBoolean() throws IOException {
+        return getByte() != 0;
+    }
+
+    int getInt() throws IOException {
+        return require(4).getInt();
+    }
+
+    long getLong() throws IOException {
+        return require(8).getLong();
+    }
+
+    double getDouble() throws IOException {
+        return require(8).getDouble();
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     */
+    String getString() throws IOException {
+        int length = getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        getBytes(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void getBytes(byte[] bytes) throws IOException {
+        int done = 0;
+        while (done < bytes.length) {
+            ByteBuffer buffer = require(1);
+            int n = Math.min(bytes.length - done, buffer.remaining());
+            buffer.get(bytes, done, n);
+            done += n;
+        }
+    }
+
+    void getDoubles(double[] values) throws IOException {
+        int done = 0;
+        while (done < values.length) {
+            ByteBuffer buffer = require(8);
+            int n = Math.min(values.length - done, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().get(values, done, n);
+            buffer.position(buffer.position() + 8 * n);
+            done += n;
+        }
+    }
+
+    void getLongs(long[] values) throws IOException {
+        int done = 0;
+        while (done < values.length) {
+            ByteBuffer buffer = require(8);
+            int n = Math.min(values.length - done, buffer.remaining() / 8);
+            buffer.asLongBuffer().get(values, done, n);
+            buffer.position(buffer.position() + 8 * n);
+            done += n;
+        }
+    }
+
+    /**
+     * Writes a nullable string as its length in UTF-8 bytes, or -1 for {@code null}, followed by the bytes.
+     */
+    static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
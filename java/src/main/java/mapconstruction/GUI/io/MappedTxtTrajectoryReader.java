@@ -0,0 +1,371 @@
+package mapconstruction.GUI.io;
+
+import com.google.common.base.Preconditions;
+import mapconstruction.log.Log;
+import mapconstruction.log.LogLevel;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.PointColumns;
+import mapconstruction.trajectories.Trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static mapconstruction.GUI.datastorage.ConstantsStorage.ALGOCONSTANTS;
+
+/**
+ * Reads trajectories from txt files, in the format of {@link TxtTrajectoryReader}, keeping the timestamps.
+ * <p>
+ * The files are memory-mapped and parsed in parallel, without creating objects per line or per number. The points
+ * of all files read together are stored in a single {@link PointColumns}, shared by the resulting trajectories.
+ * Trajectories are created in the order of the files, such that they get the same identifiers as when read by
+ * {@link TxtTrajectoryReader}.
+ * <p>
+ * Timestamps of a file are only kept if every line of it has one.
+ */
+public class MappedTxtTrajectoryReader implements TrajectoryReader {
+
+    /**
+     * Maximum size of a memory-mapped window of a file.
+     */
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    /**
+     * Largest integer such that it and all smaller integers are exactly representable as a double.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Exactly representable powers of ten.
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Number of files parsed at the same time, or 0 to use the configured number of threads.
+     */
+    private final int numThreads;
+
+    public MappedTxtTrajectoryReader() {
+        this(0);
+    }
+
+    /**
+     * @param numThreads number of files parsed at the same time, or 0 to use the configured number of threads.
+     */
+    public MappedTxtTrajectoryReader(int numThreads) {
+        Preconditions.checkArgument(numThreads >= 0, "numThreads < 0");
+        this.numThreads = numThreads;
+    }
+
+    @Override
+    public List<? extends Trajectory> parse(File f) {
+        return readFiles(Collections.singletonList(f));
+    }
+
+    /**
+     * Reads the trajectories from the given files.
+     * <p>
+     * Files that can not be read are logged and skipped.
+     *
+     * @return the trajectories, in the order of the files.
+     */
+    public List<FullTrajectory> readFiles(List<File> files) {
+        int threads = numThreads > 0 ? numThreads : ALGOCONSTANTS.getNumThreads();
+        List<ParsedFile> parsed = new ArrayList<>(files.size());
+        if (threads <= 1 || files.size() <= 1) {
+            for (File f : files) {
+                parsed.add(readFile(f));
+            }
+        } else {
+            List<Callable<ParsedFile>> tasks = new ArrayList<>(files.size());
+            for (File f : files) {
+                tasks.add(() -> readFile(f));
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+            try {
+                for (Future<ParsedFile> future : executor.invokeAll(tasks)) {
+                    parsed.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Collections.emptyList();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        // Concatenate all files into shared columns
+        int total = 0;
+        boolean hasTimes = false;
+        for (ParsedFile p : parsed) {
+            if (p != null) {
+                total += p.size;
+                hasTimes |= p.times != null;
+            }
+        }
+        double[] xs = new double[total];
+        double[] ys = new double[total];
+        long[] times = hasTimes ? new long[total] : null;
+        int offset = 0;
+        for (ParsedFile p : parsed) {
+            if (p != null) {
+                System.arraycopy(p.xs, 0, xs, offset, p.size);
+                System.arraycopy(p.ys, 0, ys, offset, p.size);
+                if (p.times != null) {
+                    System.arraycopy(p.times, 0, times, offset, p.size);
+                } else if (times != null) {
+                    Arrays.fill(times, offset, offset + p.size, PointColumns.NO_TIME);
+                }
+                offset += p.size;
+            }
+        }
+        PointColumns columns = new PointColumns(xs, ys, times);
+
+        List<FullTrajectory> trajectories = new ArrayList<>(files.size());
+        offset = 0;
+        for (int i = 0; i < files.size(); i++) {
+            ParsedFile p = parsed.get(i);
+            if (p == null) {
+                continue;
+            }
+            File f = files.get(i);
+            // try to parse id from filename, add 1 to avoid 0 id's
+            FullTrajectory t;
+            try {
+                int id = Integer.parseInt(f.getName().replaceAll("[^0-9]", "")) + 1;
+                t = new FullTrajectory(columns, offset, p.size, id);
+            } catch (NumberFormatException e) {
+                t = new FullTrajectory(columns, offset, p.size);
+            }
+            t.setLabel(f.getName());
+            trajectories.add(t);
+            offset += p.size;
+        }
+        return trajectories;
+    }
+
+    /**
+     * Parses a single file.
+     *
+     * @return the parsed points, or {@code null} if reading the file failed.
+     */
+    private static ParsedFile readFile(File f) {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ParsedFile result = new ParsedFile();
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = length;
+                if (position + length < size) {
+                    // Only parse complete lines, the rest goes into the next window
+                    while (end > 0 && window.get(end - 1) != '\n') {
+                        end--;
+                    }
+                    if (end == 0) {
+                        throw new IOException("Line too long in " + f.getName());
+                    }
+                }
+                result.parse(window, end);
+                position += end;
+            }
+            return result.trim();
+        } catch (IOException | NumberFormatException ex) {
+            Log.log(LogLevel.ERROR, "TrajectoryIO", "Exception while reading trajectory %s: %s", f.getName(), ex.getMessage());
+            System.out.println("TrajectoryIO, Exception while reading trajectory: " + ex.getMessage());
+        }
+        return null;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Points parsed from a single file.
+     */
+    private static class ParsedFile {
+        double[] xs = new double[256];
+        double[] ys = new double[256];
+        long[] times = new long[256];
+        int size;
+
+        /**
+         * Parses the lines in the first {@code end} bytes of the buffer.
+         */
+        void parse(ByteBuffer buffer, int end) {
+            double[] numbers = new double[3];
+            int i = 0;
+            while (i < end) {
+                // Split the line on whitespace, only the first three numbers are used
+                int count = 0;
+                while (i < end && buffer.get(i) != '\n') {
+                    if (isWhitespace(buffer.get(i))) {
+                        i++;
+                        continue;
+                    }
+                    int start = i;
+                    while (i < end && buffer.get(i) != '\n' && !isWhitespace(buffer.get(i))) {
+                        i++;
+                    }
+                    if (count < numbers.length) {
+                        numbers[count] = parseDouble(buffer, start, i);
+                    }
+                    count++;
+                }
+                i++;
+
+                if (count == 0) {
+                    continue;
+                }
+                if (count == 1) {
+                    throw new NumberFormatException("Line without y-coordinate");
+                }
+                add(numbers[0], numbers[1], count > 2 ? (long) numbers[2] : PointColumns.NO_TIME, count > 2);
+            }
+        }
+
+        private void add(double x, double y, long time, boolean hasTime) {
+            if (size > 0 && xs[size - 1] == x && ys[size - 1] == y) {
+                // Ignore consecutive duplicate points
+                return;
+            }
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, 2 * size);
+                ys = Arrays.copyOf(ys, 2 * size);
+                if (times != null) {
+                    times = Arrays.copyOf(times, 2 * size);
+                }
+            }
+            xs[size] = x;
+            ys[size] = y;
+            if (!hasTime) {
+                times = null;
+            } else if (times != null) {
+                times[size] = time;
+            }
+            size++;
+        }
+
+        ParsedFile trim() {
+            xs = Arrays.copyOf(xs, size);
+            ys = Arrays.copyOf(ys, size);
+            if (times != null) {
+                times = Arrays.copyOf(times, size);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Parses the number in the given range of the buffer.
+     * <p>
+     * Numbers of which the digits form an exactly representable integer and with a small exponent, which covers the
+     * coordinates and timestamps of the datasets, are converted with a single correctly rounded multiplication or
+     * division, without allocating. Other numbers fall back on
+     * {@link Double#parseDouble(String)}, so the result is always the same as that of the latter.
+     *
+     * @throws NumberFormatException if the range does not contain a number.
+     */
+    static double parseDouble(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+        for (; i < end && isDigit(buffer.get(i)); i++) {
+            anyDigits = true;
+            mantissa = mantissa * 10 + (buffer.get(i) - '0');
+            if (mantissa != 0 && ++digits > 18) {
+                return fallback(buffer, start, end);
+            }
+        }
+        if (i < end && buffer.get(i) == '.') {
+            for (i++; i < end && isDigit(buffer.get(i)); i++) {
+                anyDigits = true;
+                mantissa = mantissa * 10 + (buffer.get(i) - '0');
+                exponent--;
+                if (mantissa != 0 && ++digits > 18) {
+                    return fallback(buffer, start, end);
+                }
+            }
+        }
+        if (anyDigits && i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negativeExponent = buffer.get(i) == '-';
+                i++;
+            }
+            int e = 0;
+            boolean anyExponentDigits = false;
+            for (; i < end && isDigit(buffer.get(i)); i++) {
+                anyExponentDigits = true;
+                if (e < 10000) {
+                    e = e * 10 + (buffer.get(i) - '0');
+                }
+            }
+            if (!anyExponentDigits) {
+                return fallback(buffer, start, end);
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!anyDigits || i != end) {
+            return fallback(buffer, start, end);
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (mantissa > MAX_EXACT_MANTISSA) {
+            return fallback(buffer, start, end);
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return fallback(buffer, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static double fallback(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            bytes[i - start] = buffer.get(i);
+        }
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+}
@@ -5,19 +5,21 @@ import mapconstruction.algorithms.bundles.graph.GeneratingRTSemiWeakFDLabelledGr
 import mapconstruction.algorithms.bundles.graph.GeneratingSemiWeakFDLabelledGraph;
 import mapconstruction.algorithms.bundles.sweep.FurthestEndpointSweep;
 import mapconstruction.algorithms.bundles.sweep.KLSweepline;
-import mapconstruction.algorithms.distance.KdTree;
 import mapconstruction.algorithms.distance.QuadTree;
 import mapconstruction.algorithms.distance.RTree;
 import mapconstruction.benchmark.Benchmark;
 import mapconstruction.log.Log;
 import mapconstruction.log.LogLevel;
 import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.ConcatenatedTrajectory;
 import mapconstruction.trajectories.Subtrajectory;
 import mapconstruction.trajectories.Trajectory;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -28,29 +30,83 @@ public class KLSubbundleAlgorithm extends BundleGenerationAlgorithm {
     private double epsilon;
     private double lambda;
 
+    /**
+     * Number of worker threads used to generate the bundles of the representatives. The free space of every
+     * representative is independent, hence these are distributed over a work-stealing pool. A value of 1 processes
+     * all representatives sequentially on the calling thread.
+     */
+    private final int parallelism;
+
+    /**
+     * Prebuilt index over the edges of the input, possibly shared with other instances. May be null, in which case
+     * the index is built on every run.
+     */
+    private final TrajectorySegmentIndex segmentIndex;
+
     private Map<Bundle, Bundle> merges;
 
+    private volatile LambdaSubbundleRemoval removal;
+
     public KLSubbundleAlgorithm(double epsilon, double lambda, boolean ignoreDirection) {
+        this(epsilon, lambda, ignoreDirection, 1);
+    }
+
+    public KLSubbundleAlgorithm(double epsilon, double lambda, boolean ignoreDirection, int parallelism) {
+        this(epsilon, lambda, ignoreDirection, parallelism, null);
+    }
+
+    /**
+     * @param segmentIndex index over the trajectories the algorithm will be run on. It is only used if it was built
+     *                     for exactly those trajectories with the same {@code ignoreDirection}, otherwise a new index
+     *                     is built.
+     */
+    public KLSubbundleAlgorithm(double epsilon, double lambda, boolean ignoreDirection, int parallelism, TrajectorySegmentIndex segmentIndex) {
         super(ignoreDirection);
         this.epsilon = epsilon;
         this.lambda = lambda;
+        this.parallelism = Math.max(1, parallelism);
+        this.segmentIndex = segmentIndex;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public double getLambda() {
+        return lambda;
     }
 
     @Override
     protected Set<Bundle> runAlgorithm(List<Trajectory> trajectories) {
-        Set<Bundle> bundles;
         Log.log(LogLevel.STATUS, LOGTAG, "Generating all bundles");
         Log.log(LogLevel.INFO, LOGTAG, "Parameters for Generating bundles: eps=%.2f, ignoreDir=%b", epsilon, ignoreDirection);
 
+        Set<Bundle> bundles;
+        try (Benchmark.Span span = Benchmark.span("generate")) {
+            bundles = generateAllBundlesRT(trajectories);
+        }
+        return runOnGeneratedBundles(bundles);
+    }
+
+    /**
+     * Finishes the algorithm on bundles that were generated elsewhere with the same epsilon and lambda, for instance
+     * by {@link MultiEpsilonBundleGenerator}. This only removes the lambda-subbundles.
+     *
+     * @param bundles all generated bundles, in the order of their representatives. Modified in place.
+     * @return the given set.
+     */
+    public Set<Bundle> runOnGeneratedBundles(Set<Bundle> bundles) {
         merges = new HashMap<>();
 
-        bundles = generateAllBundlesRT(trajectories);
         int old_number_of_bundles = bundles.size();
         Log.log(LogLevel.INFO, LOGTAG, "Result: %d bundles before removal.", old_number_of_bundles);
         Log.log(LogLevel.STATUS, LOGTAG, "Removing lambda-subbundles");
         Log.log(LogLevel.INFO, LOGTAG, "Parameters for removing subbundles: lambda=%.2f, ignoreDir=%b", lambda, ignoreDirection);
 
-        removeLambdaSubbundles(bundles, lambda);
+        removal = new LambdaSubbundleRemoval(epsilon, lambda, parallelism);
+        try (Benchmark.Span span = Benchmark.span("lambda")) {
+            removal.removeLambdaSubbundles(bundles, merges);
+        }
 
         old_number_of_bundles = old_number_of_bundles - bundles.size();
         Log.log(LogLevel.STATUS, LOGTAG, "Total number of subbundles removed: %d", old_number_of_bundles);
@@ -65,6 +121,15 @@ public class KLSubbundleAlgorithm extends BundleGenerationAlgorithm {
         return merges;
     }
 
+    @Override
+    public void abort() {
+        super.abort();
+        LambdaSubbundleRemoval current = removal;
+        if (current != null) {
+            current.abort();
+        }
+    }
+
     private Set<Bundle> generateAllBundles(List<Trajectory> trajectories) {
         Set<Bundle> results = new LinkedHashSet<>();
 
@@ -92,32 +157,45 @@ public class KLSubbundleAlgorithm extends BundleGenerationAlgorithm {
     private Set<Bundle> generateAllBundlesRT(List<Trajectory> trajectories) {
         Set<Bundle> results = new LinkedHashSet<>();
 
-        List<Trajectory> representatives = new ArrayList<>(trajectories);
-        if (ignoreDirection) {
-            trajectories = Stream.concat(trajectories.stream(), trajectories.stream().map(Trajectory::reverse)).collect(Collectors.toList());
+        TrajectorySegmentIndex index = segmentIndex;
+        if (index == null || !index.isIndexOf(trajectories, ignoreDirection)) {
+            index = TrajectorySegmentIndex.build(trajectories, ignoreDirection);
         }
 
-        Map<Line2D, Integer> values = new HashMap<>();
-        int i = 0;
-        for (Trajectory t : trajectories) {
-            for (Line2D segment : t.edges()) {
-                values.put(segment, i);
-                i++;
+        // Shared by the free spaces of all representatives
+        List<Trajectory> representatives = index.getRepresentatives();
+        ConcatenatedTrajectory concatenated = index.getConcatenated();
+        RTree<Line2D, Integer> rTree = index.getRTree();
+
+        if (parallelism > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                results.addAll(pool.invoke(new RepresentativeBundlesTask(representatives, 0, representatives.size(), concatenated, rTree)));
+            } finally {
+                pool.shutdown();
             }
-            i++;
+            return results;
         }
-        RTree<Line2D, Integer> rTree = new RTree<>(10, values);
 
         for (Trajectory representative : representatives) {
-            GeneratingRTSemiWeakFDLabelledGraph freeSpace = new GeneratingRTSemiWeakFDLabelledGraph(epsilon, representative, trajectories, rTree);
-            KLSweepline klSweepline = new FurthestEndpointSweep(freeSpace, lambda);
-            klSweepline.initialize();
-            Set<Bundle> representativeBundles = klSweepline.sweep();
-            results.addAll(representativeBundles);
+            results.addAll(generateRepresentativeBundlesRT(representative, concatenated, rTree));
         }
         return results;
     }
 
+    private Set<Bundle> generateRepresentativeBundlesRT(Trajectory representative, ConcatenatedTrajectory concatenated, RTree<Line2D, Integer> rTree) {
+        return sweep(new GeneratingRTSemiWeakFDLabelledGraph(epsilon, representative, concatenated, rTree));
+    }
+
+    /**
+     * Computes the given free space of a single representative and sweeps over it to find its bundles.
+     */
+    Set<Bundle> sweep(GeneratingRTSemiWeakFDLabelledGraph freeSpace) {
+        KLSweepline klSweepline = new FurthestEndpointSweep(freeSpace, lambda);
+        klSweepline.initialize();
+        return klSweepline.sweep();
+    }
+
     private Set<Bundle> generateAllBundlesQT(List<Trajectory> trajectories) {
         Set<Bundle> results = new LinkedHashSet<>();
         // find bounds of the problem
@@ -142,7 +220,6 @@ public class KLSubbundleAlgorithm extends BundleGenerationAlgorithm {
             KLSweepline klSweepline = new FurthestEndpointSweep(freeSpace, lambda);
             klSweepline.initialize();
             Set<Bundle> representativeBundles = klSweepline.sweep();
-            Benchmark.pop();
 
             results.addAll(representativeBundles);
         }
@@ -167,81 +244,15 @@ public class KLSubbundleAlgorithm extends BundleGenerationAlgorithm {
         return quadTree;
     }
 
-    public Map<Bundle, Bundle> removeLambdaSubbundlesKD(Set<Bundle> bundles, double lambda) {
-        // Of the removed bundles, it keeps track into which bundle it merged.
-        Map<Bundle, Bundle> merge = new HashMap<>();
-
-        // Comparator to sort bundles, first by decreasing size, then by decreasing length.
-        Comparator<Bundle> compSizeDec = (b1, b2) -> Integer.compare(b2.size(), b1.size());
-        Comparator<Bundle> compSizeLengthLex = compSizeDec.thenComparing(Comparator.comparingDouble(Bundle::continuousLength).reversed());
-
-        // Sort all the bundles.
-        List<Bundle> bundleList = bundles.stream()
-                .sorted(compSizeLengthLex)
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        // First and last pair in the coordinate are representing endpoints such that
-        // the distance between two 4d coordinates is the maximum of the eucledian distance
-        // of both pairs.
-        KdTree<Bundle> bundleQuery = new KdTree<>(4, (c1, c2) -> Math.max(
-                Math.sqrt(Math.pow(c1[0] - c2[0], 2) + Math.pow(c1[1] - c2[1], 2)),
-                Math.sqrt(Math.pow(c1[2] - c2[2], 2) + Math.pow(c1[3] - c2[3], 2))
-        ));
-
-        for (Bundle b1 : bundleList) {
-            Subtrajectory representative = b1.getOriginalRepresentative();
-            Point2D s = representative.getFirstPoint();
-            Point2D t = representative.getLastPoint();
-            Set<Bundle> closeBundles = bundleQuery.rangeQuery(2*epsilon + lambda, s.getX(), s.getY(), t.getX(), t.getY());
-
-            Bundle b2 = null;
-            for (Bundle c : closeBundles) {
-                if (c.hasAsLambdaSubBundle(b1, lambda)) {
-                    b2 = c;
-                    break;
-                }
-            }
-            if (b2 == null) {
-                bundleQuery.insert(b1, s.getX(), s.getY(), t.getX(), t.getY());
-            } else {
-                merge.put(b1, b2);
-                bundles.remove(b1);
-            }
-        }
-
-        return merge;
-    }
-
-    public void mergeLambdaSubbundles(Set<Bundle> resultSet, Set<Bundle> bundles, double lambda) {
-        // Comparator to sort bundles, first by decreasing size, then by decreasing length.
-        Comparator<Bundle> compSizeDec = (b1, b2) -> Integer.compare(b2.size(), b1.size());
-        Comparator<Bundle> compSizeLengthLex = compSizeDec.thenComparing(Comparator.comparingDouble(Bundle::continuousLength).reversed());
-
-        // Sort all the bundles.
-        List<Bundle> bundleList = bundles.stream()
-                .sorted(compSizeLengthLex)
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        for (Bundle b1 : bundleList) {
-            if (merges.containsKey(b1)) continue;
-
-            for (Bundle b2 : bundleList) {
-                if (b1 == b2 || merges.containsKey(b2)) continue;
-
-                if (!b1.getOriginalRepresentative().hasAsLambdaSimilar(b2.getOriginalRepresentative(), 2*epsilon)) continue;
-
-                if (b1.hasAsLambdaSubBundle(b2, lambda)) {
-                    // b2 is a lambda subbundle of b1
-                    merges.put(b2, b1);
-                    bundles.remove(b2);
-                }
-            }
+    /**
+     * Removes the lambda-subbundles by comparing all pairs of bundles. Reference implementation of
+     * {@link LambdaSubbundleRemoval}, which is used by the algorithm itself.
+     */
+    public void removeLambdaSubbundles(Set<Bundle> bundles, double lambda) {
+        if (merges == null) {
+            merges = new HashMap<>();
         }
 
-        resultSet.addAll(bundles);
-    }
-
-    public void removeLambdaSubbundles(Set<Bundle> bundles, double lambda) {
         // Comparator to sort bundles lexicograpgically,
         // first by decreasing size, then by decreasing length.
         Comparator<Bundle> compSizeDec = (b1, b2) -> Integer.compare(b2.size(), b1.size());
@@ -277,42 +288,46 @@ public class KLSubbundleAlgorithm extends BundleGenerationAlgorithm {
         }
     }
 
-    public void removeLambdaSubbundlesRT(Set<Bundle> bundles, double lambda) {
-        // Comparator to sort bundles lexicograpgically,
-        // first by decreasing size, then by decreasing length.
-        Comparator<Bundle> compSizeDec = (b1, b2) -> Integer.compare(b2.size(), b1.size());
-        Comparator<Bundle> compSizeLengthLex = compSizeDec.thenComparing(Comparator.comparingDouble(Bundle::continuousLength).reversed());
-        Comparator<Bundle> compSizeLengthUnique = compSizeLengthLex.thenComparing(Bundle::hashCode);
-
-        // Sort all the bundles.
-        List<Bundle> bundleList = bundles.stream()
-                .sorted(compSizeLengthLex)
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        RTree<Line2D,Bundle> rTree = new RTree<>(30);
-        bundleList.forEach(b -> {
-            b.getOriginalRepresentative().edges().forEach(e -> {
-                rTree.insert(e, b);
-            });
-        });
-
-        for (Bundle b1 : bundleList) {
-            if (merges.containsKey(b1)) continue;
-
-            Point2D p = b1.getOriginalRepresentative().getPoint(0);
-            double r = 2*epsilon;
-            Set<Bundle> candidates = rTree.windowQuery(p.getX() - r, p.getY() - r, p.getX() + r, p.getY() + r, new TreeSet<>(compSizeLengthUnique));
-            for (Bundle b2 : candidates) {
-                if (b1 == b2 || merges.containsKey(b2)) continue;
-
-                if (!b1.getOriginalRepresentative().hasAsLambdaSimilar(b2.getOriginalRepresentative(), 2*epsilon)) continue;
+    /**
+     * Fork-join task generating the bundles of the representatives in the range [from, to).
+     * <p>
+     * The range is split in halves until a single representative remains. Results are merged in the order of the
+     * representatives, left half first, so the resulting set iterates in exactly the same order as the sequential loop.
+     * Subtasks do not share any mutable state; the merge happens in the joining thread only.
+     */
+    private class RepresentativeBundlesTask extends RecursiveTask<LinkedHashSet<Bundle>> {
+
+        private final List<Trajectory> representatives;
+        private final int from;
+        private final int to;
+        private final ConcatenatedTrajectory concatenated;
+        private final RTree<Line2D, Integer> rTree;
+
+        RepresentativeBundlesTask(List<Trajectory> representatives, int from, int to, ConcatenatedTrajectory concatenated, RTree<Line2D, Integer> rTree) {
+            this.representatives = representatives;
+            this.from = from;
+            this.to = to;
+            this.concatenated = concatenated;
+            this.rTree = rTree;
+        }
 
-                if (b1.hasAsLambdaSubBundle(b2, lambda)) {
-                    // b2 is a lambda subbundle of b1
-                    merges.put(b2, b1);
-                    bundles.remove(b2);
+        @Override
+        protected LinkedHashSet<Bundle> compute() {
+            if (to - from <= 1) {
+                LinkedHashSet<Bundle> results = new LinkedHashSet<>();
+                if (from < to && !aborted) {
+                    results.addAll(generateRepresentativeBundlesRT(representatives.get(from), concatenated, rTree));
                 }
+                return results;
             }
+
+            int mid = (from + to) >>> 1;
+            RepresentativeBundlesTask left = new RepresentativeBundlesTask(representatives, from, mid, concatenated, rTree);
+            RepresentativeBundlesTask right = new RepresentativeBundlesTask(representatives, mid, to, concatenated, rTree);
+            right.fork();
+            LinkedHashSet<Bundle> results = left.compute();
+            results.addAll(right.join());
+            return results;
         }
     }
 }
@@ -0,0 +1,283 @@
+package mapconstruction.algorithms.bundles;
+
+import mapconstruction.exceptions.AlgorithmAbortedException;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.Subtrajectory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Removes the lambda-subbundles of a set of bundles, with exactly the same result as the pairwise
+ * {@link KLSubbundleAlgorithm#removeLambdaSubbundles(Set, double)}, but without comparing all pairs.
+ * <p>
+ * A bundle b2 can only be a lambda-subbundle of b1 if every trajectory in b2 has a subtrajectory in b1, i.e. if the
+ * (undirectional) parent labels of b2 are a subset of those of b1. Every bundle is indexed on its least frequent
+ * parent label, such that the candidates of b1 are found by looking up only the labels of b1. Candidates are then
+ * filtered on the sorted label ids before the geometric checks are done.
+ * <p>
+ * Bundles are processed in the same order as the pairwise removal, in blocks of consecutive bundles. The checks of
+ * the bundles in a block are independent of each other and are evaluated in parallel; afterwards the merges are
+ * applied in order, skipping bundles that were merged by an earlier bundle of the same block.
+ */
+public class LambdaSubbundleRemoval {
+
+    /**
+     * Number of consecutive bundles of which the checks are evaluated together.
+     */
+    private static final int BLOCK_SIZE = 256;
+
+    private final double epsilon;
+    private final double lambda;
+    private final int parallelism;
+
+    private volatile boolean aborted;
+
+    /**
+     * @param epsilon     epsilon with which the bundles were generated.
+     * @param lambda      lambda of the lambda-subbundles to remove.
+     * @param parallelism number of threads to evaluate the checks on.
+     */
+    public LambdaSubbundleRemoval(double epsilon, double lambda, int parallelism) {
+        this.epsilon = epsilon;
+        this.lambda = lambda;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Removes all lambda-subbundles from the given set.
+     *
+     * @param bundles set of bundles, modified in place.
+     * @param merges  map to which every removed bundle is added, mapped to the bundle it merged into. Bundles that
+     *                are already a key are treated as removed.
+     * @throws AlgorithmAbortedException if aborted.
+     */
+    public void removeLambdaSubbundles(Set<Bundle> bundles, Map<Bundle, Bundle> merges) {
+        aborted = false;
+
+        // Comparator to sort bundles lexicograpgically,
+        // first by decreasing size, then by decreasing length.
+        Comparator<Bundle> compSizeDec = (b1, b2) -> Integer.compare(b2.size(), b1.size());
+        Comparator<Bundle> compSizeLengthLex = compSizeDec.thenComparing(Comparator.comparingDouble(Bundle::continuousLength).reversed());
+
+        List<Bundle> bundleList = bundles.stream()
+                .sorted(compSizeLengthLex)
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        Candidates candidates = new Candidates(bundleList);
+
+        ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        try {
+            for (int from = 0; from < bundleList.size(); from += BLOCK_SIZE) {
+                if (aborted) {
+                    throw new AlgorithmAbortedException();
+                }
+                int to = Math.min(bundleList.size(), from + BLOCK_SIZE);
+
+                List<Callable<List<Bundle>>> checks = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    int index = i;
+                    checks.add(() -> findSubbundles(index, bundleList, candidates, merges));
+                }
+
+                List<List<Bundle>> subbundles = evaluate(executor, checks);
+
+                // Apply in order, as the pairwise removal would.
+                for (int i = from; i < to; i++) {
+                    Bundle b1 = bundleList.get(i);
+                    if (merges.containsKey(b1)) continue;
+
+                    for (Bundle b2 : subbundles.get(i - from)) {
+                        if (!merges.containsKey(b2)) {
+                            merges.put(b2, b1);
+                            bundles.remove(b2);
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Attempts to abort the removal.
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    private List<List<Bundle>> evaluate(ExecutorService executor, List<Callable<List<Bundle>>> checks) {
+        List<List<Bundle>> results = new ArrayList<>(checks.size());
+        try {
+            if (executor == null) {
+                for (Callable<List<Bundle>> check : checks) {
+                    results.add(check.call());
+                }
+            } else {
+                for (Future<List<Bundle>> future : executor.invokeAll(checks)) {
+                    results.add(future.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AlgorithmAbortedException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (Exception e) {
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new IllegalStateException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Finds the bundles that are lambda-subbundles of the i-th bundle, ignoring bundles that are merged already.
+     * Does not modify any state, such that it can be called concurrently.
+     */
+    private List<Bundle> findSubbundles(int i, List<Bundle> bundleList, Candidates candidates, Map<Bundle, Bundle> merges) {
+        Bundle b1 = bundleList.get(i);
+        if (merges.containsKey(b1)) {
+            return Collections.emptyList();
+        }
+
+        List<Bundle> result = new ArrayList<>();
+        String label = b1.getOriginalRepresentative().getParent().getUndirectionalLabel();
+        for (int j : candidates.of(i)) {
+            Bundle b2 = bundleList.get(j);
+            if (b1 == b2 || b2.size() > b1.size() || merges.containsKey(b2)) continue;
+
+            // FurthestEndpointSweep already filters same-rep bundles.
+            if (label.equals(b2.getOriginalRepresentative().getParent().getUndirectionalLabel())) continue;
+
+            if (!b1.getOriginalRepresentative().hasAsLambdaSimilar(b2.getOriginalRepresentative(), 2 * epsilon)) continue;
+
+            if (b1.hasAsLambdaSubBundle(b2, lambda, false)) {
+                result.add(b2);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Index of the bundles on their parent labels.
+     */
+    private static class Candidates {
+
+        /**
+         * Per bundle, the sorted ids of the undirectional labels of its parents.
+         */
+        private final int[][] labels;
+
+        /**
+         * Per label id, the bundles indexed on that label.
+         */
+        private final int[][] indexed;
+
+        /**
+         * Bundles without trajectories, these are a candidate for every bundle.
+         */
+        private final int[] unlabelled;
+
+        Candidates(List<Bundle> bundleList) {
+            Map<String, Integer> ids = new HashMap<>();
+            labels = new int[bundleList.size()][];
+            for (int i = 0; i < bundleList.size(); i++) {
+                labels[i] = bundleList.get(i).getSubtrajectories().stream()
+                        .map(Subtrajectory::getParent)
+                        .mapToInt(t -> ids.computeIfAbsent(t.getUndirectionalLabel(), l -> ids.size()))
+                        .distinct()
+                        .sorted()
+                        .toArray();
+            }
+
+            int[] frequency = new int[ids.size()];
+            for (int[] l : labels) {
+                for (int id : l) {
+                    frequency[id]++;
+                }
+            }
+
+            // index every bundle on its least frequent label
+            int[] key = new int[labels.length];
+            int[] counts = new int[ids.size()];
+            int numUnlabelled = 0;
+            for (int i = 0; i < labels.length; i++) {
+                key[i] = -1;
+                for (int id : labels[i]) {
+                    if (key[i] < 0 || frequency[id] < frequency[key[i]]) {
+                        key[i] = id;
+                    }
+                }
+                if (key[i] < 0) {
+                    numUnlabelled++;
+                } else {
+                    counts[key[i]]++;
+                }
+            }
+
+            indexed = new int[ids.size()][];
+            for (int id = 0; id < indexed.length; id++) {
+                indexed[id] = new int[counts[id]];
+                counts[id] = 0;
+            }
+            unlabelled = new int[numUnlabelled];
+            numUnlabelled = 0;
+            for (int i = 0; i < labels.length; i++) {
+                if (key[i] < 0) {
+                    unlabelled[numUnlabelled++] = i;
+                } else {
+                    indexed[key[i]][counts[key[i]]++] = i;
+                }
+            }
+        }
+
+        /**
+         * Gets all bundles of which the labels are a subset of the labels of the i-th bundle, in increasing order.
+         */
+        int[] of(int i) {
+            int count = unlabelled.length;
+            for (int id : labels[i]) {
+                count += indexed[id].length;
+            }
+
+            int[] result = new int[count];
+            int n = 0;
+            for (int j : unlabelled) {
+                result[n++] = j;
+            }
+            for (int id : labels[i]) {
+                for (int j : indexed[id]) {
+                    if (isSubset(labels[j], labels[i])) {
+                        result[n++] = j;
+                    }
+                }
+            }
+            result = Arrays.copyOf(result, n);
+            Arrays.sort(result);
+            return result;
+        }
+
+        /**
+         * Whether the sorted array a is a subset of the sorted array b.
+         */
+        private static boolean isSubset(int[] a, int[] b) {
+            if (a.length > b.length) return false;
+            int j = 0;
+            for (int x : a) {
+                while (j < b.length && b[j] < x) j++;
+                if (j == b.length || b[j] != x) return false;
+                j++;
+            }
+            return true;
+        }
+    }
+}
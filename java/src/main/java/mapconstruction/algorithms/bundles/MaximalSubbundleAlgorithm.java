@@ -1,7 +1,6 @@
 package mapconstruction.algorithms.bundles;
 
 import mapconstruction.benchmark.Benchmark;
-import mapconstruction.benchmark.Timing;
 import mapconstruction.log.Log;
 import mapconstruction.log.LogLevel;
 import mapconstruction.trajectories.Bundle;
@@ -107,7 +106,7 @@ public class MaximalSubbundleAlgorithm extends BundleGenerationAlgorithm {
     @Override
     public Set<Bundle> runAlgorithm(List<Trajectory> trajectories) {
         Set<Bundle> bundles;
-//        try (Timing _t = Benchmark.parallel("epsilon %.0f", epsilon)) {
+//        try (Benchmark.Span _t = Benchmark.span("epsilon %.0f", epsilon)) {
             Log.log(LogLevel.STATUS, LOGTAG, "Finding all maximal lambda-subbundles");
 
             Log.log(LogLevel.STATUS, LOGTAG, "Generating all bundles");
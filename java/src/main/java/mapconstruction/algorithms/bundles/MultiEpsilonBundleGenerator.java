@@ -0,0 +1,123 @@
+package mapconstruction.algorithms.bundles;
+
+import com.google.common.base.Preconditions;
+import mapconstruction.algorithms.bundles.graph.GeneratingRTSemiWeakFDLabelledGraph;
+import mapconstruction.algorithms.bundles.graph.MultiEpsilonFreeSpace;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.Trajectory;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Generates the bundles of multiple {@link KLSubbundleAlgorithm} levels, which only differ in epsilon and lambda, at
+ * once.
+ * <p>
+ * For every representative, the geometry of its free space is computed once at the largest epsilon in a
+ * {@link MultiEpsilonFreeSpace}. The labelled graph and events of each level are then derived from it by thresholding.
+ * The bundles generated for every level are identical to those generated by the level itself; the lambda-subbundles
+ * still have to be removed by {@link KLSubbundleAlgorithm#runOnGeneratedBundles(Set)}.
+ * <p>
+ * Note that the generated bundles of all levels are kept in memory at the same time.
+ */
+public class MultiEpsilonBundleGenerator {
+
+    /**
+     * Levels to generate the bundles for.
+     */
+    private final List<KLSubbundleAlgorithm> levels;
+    private final TrajectorySegmentIndex segmentIndex;
+    private final int parallelism;
+    private final double maxEpsilon;
+
+    private volatile boolean aborted;
+
+    /**
+     * @param levels       levels to generate the bundles for.
+     * @param segmentIndex index over the trajectories to generate the bundles on.
+     * @param parallelism  number of threads over which the representatives are distributed.
+     * @throws IllegalArgumentException if there are no levels.
+     */
+    public MultiEpsilonBundleGenerator(List<KLSubbundleAlgorithm> levels, TrajectorySegmentIndex segmentIndex, int parallelism) {
+        Preconditions.checkArgument(!levels.isEmpty(), "levels must not be empty");
+        this.levels = new ArrayList<>(levels);
+        this.segmentIndex = segmentIndex;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxEpsilon = levels.stream().mapToDouble(KLSubbundleAlgorithm::getEpsilon).max().getAsDouble();
+    }
+
+    /**
+     * Generates the bundles of all levels.
+     *
+     * @return per level, in the order of the given levels, the generated bundles in the order of their
+     * representatives.
+     */
+    public List<Set<Bundle>> generate() {
+        aborted = false;
+        List<Trajectory> representatives = segmentIndex.getRepresentatives();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return new ArrayList<>(pool.invoke(new RepresentativesTask(representatives, 0, representatives.size())));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Attempts to stop the generation. Bundles of representatives that were not processed yet are omitted.
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    private List<LinkedHashSet<Bundle>> generateRepresentative(Trajectory representative) {
+        MultiEpsilonFreeSpace freeSpace = new MultiEpsilonFreeSpace(representative, segmentIndex.getConcatenated(), segmentIndex.getRTree(), maxEpsilon);
+        List<LinkedHashSet<Bundle>> results = new ArrayList<>(levels.size());
+        for (KLSubbundleAlgorithm level : levels) {
+            results.add(new LinkedHashSet<>(level.sweep(new GeneratingRTSemiWeakFDLabelledGraph(level.getEpsilon(), freeSpace))));
+        }
+        return results;
+    }
+
+    /**
+     * Fork-join task generating the bundles of the representatives in the range [from, to) for all levels. Results
+     * are merged left half first, such that every level iterates in the order of the representatives.
+     */
+    private class RepresentativesTask extends RecursiveTask<List<LinkedHashSet<Bundle>>> {
+
+        private final List<Trajectory> representatives;
+        private final int from;
+        private final int to;
+
+        RepresentativesTask(List<Trajectory> representatives, int from, int to) {
+            this.representatives = representatives;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<LinkedHashSet<Bundle>> compute() {
+            if (to - from <= 1) {
+                if (from < to && !aborted) {
+                    return generateRepresentative(representatives.get(from));
+                }
+                List<LinkedHashSet<Bundle>> results = new ArrayList<>(levels.size());
+                for (int k = 0; k < levels.size(); k++) {
+                    results.add(new LinkedHashSet<>());
+                }
+                return results;
+            }
+
+            int mid = (from + to) >>> 1;
+            RepresentativesTask right = new RepresentativesTask(representatives, mid, to);
+            right.fork();
+            List<LinkedHashSet<Bundle>> results = new RepresentativesTask(representatives, from, mid).compute();
+            List<LinkedHashSet<Bundle>> rightResults = right.join();
+            for (int k = 0; k < results.size(); k++) {
+                results.get(k).addAll(rightResults.get(k));
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package mapconstruction.algorithms.bundles;
+
+import com.google.common.base.Preconditions;
+import mapconstruction.algorithms.distance.RTree;
+import mapconstruction.trajectories.ConcatenatedTrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Line2D;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index over all edges of a set of trajectories, as used to generate the bundles of every representative.
+ * <p>
+ * It consists of the (possibly direction-extended) list of trajectories, their concatenation and an R-tree mapping
+ * each edge to the index of its first point in the concatenation. None of these depend on epsilon, so a single index
+ * can be built per data set and shared by the bundle generation of all epsilon levels.
+ * <p>
+ * After creation, the index is never modified, hence it can be queried by multiple threads concurrently.
+ */
+public final class TrajectorySegmentIndex {
+
+    /**
+     * Trajectories the index was built for, in order. Used as representatives.
+     */
+    private final List<Trajectory> representatives;
+
+    /**
+     * Whether the reversed trajectories were added as well.
+     */
+    private final boolean ignoreDirection;
+
+    private final ConcatenatedTrajectory concatenated;
+    private final RTree<Line2D, Integer> rTree;
+
+    private TrajectorySegmentIndex(List<Trajectory> representatives, boolean ignoreDirection, ConcatenatedTrajectory concatenated, RTree<Line2D, Integer> rTree) {
+        this.representatives = representatives;
+        this.ignoreDirection = ignoreDirection;
+        this.concatenated = concatenated;
+        this.rTree = rTree;
+    }
+
+    /**
+     * Builds the index for the given trajectories.
+     *
+     * @param trajectories    trajectories to index.
+     * @param ignoreDirection whether the reverse of every trajectory should be indexed as well.
+     * @throws NullPointerException     if {@code trajectories == null}
+     * @throws IllegalArgumentException if the trajectories have no edges.
+     */
+    public static TrajectorySegmentIndex build(List<Trajectory> trajectories, boolean ignoreDirection) {
+        Preconditions.checkNotNull(trajectories, "trajectories == null");
+        List<Trajectory> representatives = Collections.unmodifiableList(new ArrayList<>(trajectories));
+
+        List<Trajectory> indexed = representatives;
+        if (ignoreDirection) {
+            indexed = Stream.concat(representatives.stream(), representatives.stream().map(Trajectory::reverse)).collect(Collectors.toList());
+        }
+
+        Map<Line2D, Integer> values = new HashMap<>();
+        int i = 0;
+        for (Trajectory t : indexed) {
+            for (Line2D segment : t.edges()) {
+                values.put(segment, i);
+                i++;
+            }
+            i++;
+        }
+
+        return new TrajectorySegmentIndex(representatives, ignoreDirection, new ConcatenatedTrajectory(indexed), new RTree<>(10, values));
+    }
+
+    /**
+     * @return the trajectories the index was built for, without reversed trajectories.
+     */
+    public List<Trajectory> getRepresentatives() {
+        return representatives;
+    }
+
+    public boolean isIgnoreDirection() {
+        return ignoreDirection;
+    }
+
+    /**
+     * @return concatenation of all indexed trajectories, including the reversed ones if direction is ignored.
+     */
+    public ConcatenatedTrajectory getConcatenated() {
+        return concatenated;
+    }
+
+    /**
+     * @return R-tree mapping every edge to the index of its first point in the concatenation.
+     */
+    public RTree<Line2D, Integer> getRTree() {
+        return rTree;
+    }
+
+    /**
+     * Determines whether this index can be used to generate bundles on the given trajectories.
+     */
+    public boolean isIndexOf(List<Trajectory> trajectories, boolean ignoreDirection) {
+        return this.ignoreDirection == ignoreDirection && representatives.equals(trajectories);
+    }
+}
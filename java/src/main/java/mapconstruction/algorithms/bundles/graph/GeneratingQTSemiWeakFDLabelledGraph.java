@@ -1,6 +1,5 @@
 package mapconstruction.algorithms.bundles.graph;
 
-import mapconstruction.algorithms.bundles.graph.representation.LabelledEdge;
 import mapconstruction.algorithms.distance.QuadTree;
 import mapconstruction.trajectories.Trajectory;
 
@@ -45,11 +44,10 @@ public class GeneratingQTSemiWeakFDLabelledGraph extends GeneratingSemiWeakFDLab
                         int x = vertexGraphCoord(i);
                         int y = edgeGraphCoord(j);
                         if (isFree(x, y)) {
-                            ArrayList<LabelledEdge> edges = new ArrayList<>();
-                            tryVertAddLeftEdge(x, y, edges);
-                            tryVertAddBottomEdge(x, y, edges);
-                            if (edges.size() > 0) {
-                                labelledGraph.put(x, y, edges);
+                            int source = labelledGraph.findOrAdd(x, y);
+                            tryVertAddLeftEdge(x, y, source);
+                            tryVertAddBottomEdge(x, y, source);
+                            if (labelledGraph.hasEdges(source)) {
                                 previous.add(j);
                             }
                         }
@@ -59,11 +57,10 @@ public class GeneratingQTSemiWeakFDLabelledGraph extends GeneratingSemiWeakFDLab
                         x = edgeGraphCoord(i - 1);
                         y = vertexGraphCoord(j + 1);
                         if (isFree(x, y)) {
-                            ArrayList<LabelledEdge> edges = new ArrayList<>();
-                            tryHorAddLeftEdge(x, y, edges);
-                            tryHorAddBottomEdge(x, y, edges);
-                            if (edges.size() > 0) {
-                                labelledGraph.put(x, y, edges);
+                            int source = labelledGraph.findOrAdd(x, y);
+                            tryHorAddLeftEdge(x, y, source);
+                            tryHorAddBottomEdge(x, y, source);
+                            if (labelledGraph.hasEdges(source)) {
                                 // insert new j (if needed) at the correct location
                                 if (iter.hasNext()) {
                                     if (iter.next() > j + 1) {
@@ -117,11 +114,10 @@ public class GeneratingQTSemiWeakFDLabelledGraph extends GeneratingSemiWeakFDLab
                 int x = vertexGraphCoord(i);
                 int y = edgeGraphCoord(j - 1);
                 if (isFree(x, y)) {
-                    ArrayList<LabelledEdge> edges = new ArrayList<>();
-                    tryVertAddLeftEdge(x, y, edges);
-                    tryVertAddBottomEdge(x, y, edges);
-                    if (edges.size() > 0) {
-                        labelledGraph.put(x, y, edges);
+                    int source = labelledGraph.findOrAdd(x, y);
+                    tryVertAddLeftEdge(x, y, source);
+                    tryVertAddBottomEdge(x, y, source);
+                    if (labelledGraph.hasEdges(source)) {
                         free.add(j - 1);
                     }
                 }
@@ -133,12 +129,9 @@ public class GeneratingQTSemiWeakFDLabelledGraph extends GeneratingSemiWeakFDLab
                 x = edgeGraphCoord(i - 1);
                 y = vertexGraphCoord(j);
                 if (isFree(x, y)) {
-                    ArrayList<LabelledEdge> edges = new ArrayList<>();
-                    tryHorAddLeftEdge(x, y, edges);
-                    tryHorAddBottomEdge(x, y, edges);
-                    if (edges.size() > 0) {
-                        labelledGraph.put(x, y, edges);
-                    }
+                    int source = labelledGraph.findOrAdd(x, y);
+                    tryHorAddLeftEdge(x, y, source);
+                    tryHorAddBottomEdge(x, y, source);
                 }
             }
         }
@@ -1,35 +1,56 @@
 package mapconstruction.algorithms.bundles.graph;
 
-import mapconstruction.algorithms.bundles.graph.representation.LabelledEdge;
+import com.google.common.base.Preconditions;
 import mapconstruction.algorithms.distance.RTree;
+import mapconstruction.trajectories.ConcatenatedTrajectory;
 import mapconstruction.trajectories.Trajectory;
 
 import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
 import java.util.*;
 
 public class GeneratingRTSemiWeakFDLabelledGraph extends GeneratingSemiWeakFDLabelledGraph {
 
     private RTree<Line2D, Integer> rTree;
 
+    /**
+     * Shared geometry of multiple epsilon levels, used instead of the R-tree if not null.
+     */
+    private MultiEpsilonFreeSpace multiEpsilon;
+
     public GeneratingRTSemiWeakFDLabelledGraph(double epsilon, Trajectory representative, List<Trajectory> concatenated, RTree<Line2D, Integer> rTree) {
         super(epsilon, representative, concatenated);
         this.rTree = rTree;
     }
 
+    public GeneratingRTSemiWeakFDLabelledGraph(double epsilon, Trajectory representative, ConcatenatedTrajectory concatenated, RTree<Line2D, Integer> rTree) {
+        super(epsilon, representative, concatenated);
+        this.rTree = rTree;
+    }
+
+    /**
+     * Creates the free space for the given epsilon by thresholding the precomputed geometry, instead of querying the
+     * R-tree and computing distances again.
+     *
+     * @throws IllegalArgumentException if epsilon exceeds the maximum epsilon of the given free space.
+     */
+    public GeneratingRTSemiWeakFDLabelledGraph(double epsilon, MultiEpsilonFreeSpace multiEpsilon) {
+        super(epsilon, multiEpsilon.getRepresentative(), multiEpsilon.getConcatenated());
+        Preconditions.checkArgument(epsilon <= multiEpsilon.getMaxEpsilon(), "epsilon must be at most maxEpsilon");
+        this.multiEpsilon = multiEpsilon;
+    }
+
     public void compute() {
         int x, y;
 
         for (int i = 0; i < representative.numEdges(); i++) {
-            Set<Integer> query = query(i);
+            Collection<Integer> query = query(i);
             Map<Integer, List<Integer>> candidates = new HashMap<>();
 
             for (int j : query) {
                 x = vertexGraphCoord(i + 1);
                 y = edgeGraphCoord(j);
                 if (isFree(x, y)) {
-                    List<LabelledEdge> edges = getEdges(x, y);
-                    tryVertAddLeftEdge(x, y, edges);
+                    tryVertAddLeftEdge(x, y, labelledGraph.findOrAdd(x, y));
                 }
 
                 x = edgeGraphCoord(i);
@@ -38,9 +59,9 @@ public class GeneratingRTSemiWeakFDLabelledGraph extends GeneratingSemiWeakFDLab
                     Map.Entry<Integer, Trajectory> index = concatenated.floorEntry(j);
                     // if j+1 strictly fits the trajectory at j, add it to the candidates
                     if (j + 1 < index.getKey() + index.getValue().numEdges()) {
-                        List<LabelledEdge> edges = getEdges(x, y);
-                        tryHorAddLeftEdge(x, y, edges);
-                        if (edges.size() > 0) {
+                        int source = labelledGraph.findOrAdd(x, y);
+                        tryHorAddLeftEdge(x, y, source);
+                        if (labelledGraph.hasEdges(source)) {
                             // add (x,y) as candidate
                             List<Integer> candidate = getCandidate(candidates, index.getKey());
                             candidate.add(j + 1);
@@ -59,15 +80,14 @@ public class GeneratingRTSemiWeakFDLabelledGraph extends GeneratingSemiWeakFDLab
                     x = vertexGraphCoord(i + 1);
                     y = edgeGraphCoord(j);
                     if (isFree(x, y)) {
-                        List<LabelledEdge> edges = getEdges(x, y);
-                        tryVertAddBottomEdge(x, y, edges);
+                        tryVertAddBottomEdge(x, y, labelledGraph.findOrAdd(x, y));
                     }
                     x = edgeGraphCoord(i);
                     y = vertexGraphCoord(j + 1);
                     if (isFree(x, y)) {
-                        List<LabelledEdge> edges = getEdges(x, y);
-                        tryHorAddBottomEdge(x, y, edges);
-                        if (edges.size() > 0) {
+                        int source = labelledGraph.findOrAdd(x, y);
+                        tryHorAddBottomEdge(x, y, source);
+                        if (labelledGraph.hasEdges(source)) {
                             Map.Entry<Integer,Trajectory> index = concatenated.floorEntry(j);
                             if (j + 1 < index.getKey() + index.getValue().numEdges()) {
                                 // insert new j (if needed) at the correct location, move pointer back to current index.
@@ -83,16 +103,18 @@ public class GeneratingRTSemiWeakFDLabelledGraph extends GeneratingSemiWeakFDLab
         }
     }
 
-    private Set<Integer> query(int i) {
-        Point2D p = representative.getPoint(i);
-        return rTree.windowQuery(p.getX() - epsilon, p.getY() - epsilon, p.getX() + epsilon, p.getY() + epsilon);
+    @Override
+    double cellDistance(int x, int y) {
+        return multiEpsilon == null ? super.cellDistance(x, y) : multiEpsilon.distance(x, y);
     }
 
-    private List<LabelledEdge> getEdges(int x, int y) {
-        if (!labelledGraph.contains(x, y)) {
-            labelledGraph.put(x, y, new ArrayList<>(2));
+    private Collection<Integer> query(int i) {
+        if (multiEpsilon != null) {
+            return multiEpsilon.query(i, epsilon);
         }
-        return labelledGraph.get(x, y);
+        double x = representative.getX(i);
+        double y = representative.getY(i);
+        return rTree.windowQuery(x - epsilon, y - epsilon, x + epsilon, y + epsilon);
     }
 
     private List<Integer> getCandidate(Map<Integer, List<Integer>> candidates, int index) {
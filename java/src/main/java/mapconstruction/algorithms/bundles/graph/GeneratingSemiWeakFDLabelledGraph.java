@@ -1,14 +1,11 @@
 package mapconstruction.algorithms.bundles.graph;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Range;
-import com.google.common.collect.Table;
 import mapconstruction.algorithms.bundles.graph.representation.Event;
-import mapconstruction.algorithms.bundles.graph.representation.LabelledEdge;
+import mapconstruction.algorithms.bundles.graph.representation.PackedLabelledGraph;
 import mapconstruction.algorithms.bundles.graph.representation.Vertex;
 import mapconstruction.algorithms.distance.DistanceMatrix;
 import mapconstruction.benchmark.Benchmark;
-import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.ConcatenatedTrajectory;
 import mapconstruction.trajectories.Subtrajectory;
 import mapconstruction.trajectories.Trajectory;
 import mapconstruction.util.GeometryUtil;
@@ -28,6 +25,8 @@ import java.util.List;
  * <p>
  * Additionally this representation provides means to collect a queue of sweepline events after having discovered the
  * (partial) labelled graph.
+ * <p>
+ * The labelled graph is kept in a {@link PackedLabelledGraph}, which also tracks which vertices are path endpoints.
  *
  * @author Jorren
  */
@@ -35,28 +34,27 @@ public class GeneratingSemiWeakFDLabelledGraph implements EventGenerator<Event>
 
     double epsilon;
     Trajectory representative;
-    TreeMap<Integer, Trajectory> concatenated;
+    NavigableMap<Integer, Trajectory> concatenated;
 
-    final Table<Integer, Integer, List<LabelledEdge>> labelledGraph;
+    final PackedLabelledGraph labelledGraph;
     private DistanceMatrix dm;
 
-    private Set<Vertex> endpoints;
-
     public GeneratingSemiWeakFDLabelledGraph(double epsilon, Trajectory representative, List<Trajectory> concatenated) {
+        this(epsilon, representative, new ConcatenatedTrajectory(concatenated));
+    }
+
+    /**
+     * Creates the free space of the representative against an already concatenated trajectory, such that the
+     * concatenation can be shared between representatives.
+     */
+    public GeneratingSemiWeakFDLabelledGraph(double epsilon, Trajectory representative, ConcatenatedTrajectory concatenated) {
         this.epsilon = epsilon;
         this.representative = representative;
-        // Build a concatenated trajectory and a mapping from index to original trajectory
-        this.concatenated = new TreeMap<>();
-        List<Point2D> points = new ArrayList<>();
-        for (Trajectory t : concatenated) {
-            this.concatenated.put(points.size(), t);
-            points.addAll(t.points());
-        }
-
-        dm = new DistanceMatrix(representative, new FullTrajectory(points));
-        labelledGraph = HashBasedTable.create();
+        // Mapping from index to original trajectory
+        this.concatenated = concatenated.getOffsets();
 
-        endpoints = new HashSet<>();
+        dm = new DistanceMatrix(representative, concatenated);
+        labelledGraph = new PackedLabelledGraph(representative.numPoints() * 4);
     }
 
     public void compute() {
@@ -68,10 +66,9 @@ public class GeneratingSemiWeakFDLabelledGraph implements EventGenerator<Event>
                     int x = vertexGraphCoord(i);
                     int y = edgeGraphCoord(j - 1);
                     if (isFree(x, y)) {
-                        ArrayList<LabelledEdge> edges = new ArrayList<>();
-                        tryVertAddLeftEdge(x, y, edges);
-                        tryVertAddBottomEdge(x, y, edges);
-                        labelledGraph.put(x, y, edges);
+                        int source = labelledGraph.findOrAdd(x, y);
+                        tryVertAddLeftEdge(x, y, source);
+                        tryVertAddBottomEdge(x, y, source);
                     }
 
                     // don't try to add edges to the 'top' of the diagram
@@ -81,10 +78,9 @@ public class GeneratingSemiWeakFDLabelledGraph implements EventGenerator<Event>
                     x = edgeGraphCoord(i - 1);
                     y = vertexGraphCoord(j);
                     if (isFree(x, y)) {
-                        ArrayList<LabelledEdge> edges = new ArrayList<>();
-                        tryHorAddLeftEdge(x, y, edges);
-                        tryHorAddBottomEdge(x, y, edges);
-                        labelledGraph.put(x, y, edges);
+                        int source = labelledGraph.findOrAdd(x, y);
+                        tryHorAddLeftEdge(x, y, source);
+                        tryHorAddBottomEdge(x, y, source);
                     }
                 }
             }
@@ -93,34 +89,40 @@ public class GeneratingSemiWeakFDLabelledGraph implements EventGenerator<Event>
 
     @Override
     public SortedSet<Event> collectEvents() {
-        Map<Vertex, Set<Vertex>> events = new HashMap<>();
         SortedSet<Event> result = new TreeSet<>();
 
-        for (Vertex t : endpoints) {
-            t = findVerticalEdge(t); // find first vertical edge in path
-            if (t == null) continue;
+        for (int v = 0; v < labelledGraph.numVertices(); v++) {
+            if (!labelledGraph.isEndpoint(v)) continue;
+
+            int t = findVerticalEdge(v); // find first vertical edge in path
+            if (t < 0) continue;
 
-            List<LabelledEdge> edges = labelledGraph.get(t.x(), t.y());
             // only add longest
-            if (edges != null) {
-                Vertex b = t.toSubtrajectoryEnd();
-                edges.stream().min(Comparator.comparingInt(LabelledEdge::getLabel)).ifPresent(edge -> {
-                    Vertex a = edge.getOrigin().toSubtrajectoryStart();
-                    result.add(new Event(a, b, true));
-                    result.add(new Event(a, b, false));
-                });
+            int edge = labelledGraph.minLabelEdge(t);
+            if (edge >= 0) {
+                Vertex b = new Vertex(labelledGraph.x(t), labelledGraph.y(t)).toSubtrajectoryEnd();
+                Vertex a = new Vertex(labelledGraph.originX(edge), labelledGraph.originY(edge)).toSubtrajectoryStart();
+                result.add(new Event(a, b, true));
+                result.add(new Event(a, b, false));
             }
         }
         return result;
     }
 
-    private Vertex findVerticalEdge(Vertex t) {
-        while (!isVerticalGridEdge(t)) {
-            List<LabelledEdge> edges = labelledGraph.get(t.x(), t.y());
-            if (!edges.isEmpty()) {
-                t = edges.get(0).getTarget();
-            } else {
-                return null;
+    /**
+     * Follows the first outgoing edges starting at vertex t until a vertex representing a vertical grid edge is found.
+     *
+     * @return id of the found vertex, or -1 if the path ends before.
+     */
+    private int findVerticalEdge(int t) {
+        while (!isEven(labelledGraph.x(t))) {
+            int edge = labelledGraph.firstEdge(t);
+            if (edge < 0) {
+                return -1;
+            }
+            t = labelledGraph.find(labelledGraph.targetX(edge), labelledGraph.targetY(edge));
+            if (t < 0) {
+                return -1;
             }
         }
         return t;
@@ -244,96 +246,106 @@ public class GeneratingSemiWeakFDLabelledGraph implements EventGenerator<Event>
      * Whether the given vertex given by two coordinates is free.
      */
     boolean isFree(int x, int y) {
+        return cellDistance(x, y) <= epsilon;
+    }
+
+    /**
+     * Distance of the free space cell given by two coordinates.
+     */
+    double cellDistance(int x, int y) {
         if (isEven(x)) {
             // x is singleton [i,i]
             // This means y is an interval [j, j+1].
             // We compare the ith point to the jth edge
-            return dm.getPointEdgeDistance(low(x), low(y)) <= epsilon;
+            return dm.getPointEdgeDistance(low(x), low(y));
         } else {
             // y is singleton [j,j]
             // This means x is an interval [i, i + 1].
             // We compare the ith edge to the jth point
-            return dm.getEdgePointDistance(low(x), low(y)) <= epsilon;
+            return dm.getEdgePointDistance(low(x), low(y));
         }
 
     }
 
-    void tryVertAddLeftEdge(int x, int y, List<LabelledEdge> edges) {
-        Vertex target = verticalGridEdge(low(x) - 1, low(y));
+    /**
+     * Tries to add the edge from (x,y), a vertical grid edge with the given vertex id, to its left neighbour.
+     *
+     * @return whether an edge was added.
+     */
+    boolean tryVertAddLeftEdge(int x, int y, int source) {
+        int tx = vertexGraphCoord(low(x) - 1);
+        int ty = edgeGraphCoord(low(y));
         // Check whether there is a free path from (x,y) to target.
-        if (isFree(target)) {
-            edges.add(createEdgeToVertical(new Vertex(x, y), target));
-        }
+        return isFree(tx, ty) && createEdgeToVertical(source, tx, ty);
     }
 
-    void tryVertAddBottomEdge(int x, int y, List<LabelledEdge> edges) {
-        Vertex target = horizontalGridEdge(low(x) - 1, low(y));
+    boolean tryVertAddBottomEdge(int x, int y, int source) {
+        int tx = edgeGraphCoord(low(x) - 1);
+        int ty = vertexGraphCoord(low(y));
         // Check whether there is a free path from (x,y) to target.
-        if (isFree(target)) {
-            Optional<LabelledEdge> opt = createEdgeToHorizontal(new Vertex(x, y), target);
-            opt.ifPresent(edges::add);
-        }
+        return isFree(tx, ty) && createEdgeToHorizontal(source, tx, ty);
     }
 
-    void tryHorAddLeftEdge(int x, int y, List<LabelledEdge> edges) {
-        Vertex target = verticalGridEdge(low(x), low(y) - 1);
+    boolean tryHorAddLeftEdge(int x, int y, int source) {
+        int tx = vertexGraphCoord(low(x));
+        int ty = edgeGraphCoord(low(y) - 1);
         // Check whether there is a free path from (x,y) to target.
-        if (isFree(target)) {
-            edges.add(createEdgeToVertical(new Vertex(x, y), target));
-        }
+        return isFree(tx, ty) && createEdgeToVertical(source, tx, ty);
     }
 
-    void tryHorAddBottomEdge(int x, int y, List<LabelledEdge> edges) {
-        Vertex target = horizontalGridEdge(low(x), low(y) - 1);
+    boolean tryHorAddBottomEdge(int x, int y, int source) {
+        int tx = edgeGraphCoord(low(x));
+        int ty = vertexGraphCoord(low(y) - 1);
         // Check whether there is a free path from (x,y) to target.
-        if (isFree(target)) {
-            Optional<LabelledEdge> opt = createEdgeToHorizontal(new Vertex(x, y), target);
-            opt.ifPresent(edges::add);
-        }
+        return isFree(tx, ty) && createEdgeToHorizontal(source, tx, ty);
     }
 
     /**
-     * Creates a labelled edge from source to target, where target is a vertex
+     * Creates a labelled edge from source to target (tx, ty), where target is a vertex
      * representing a vertical grid edge.
+     *
+     * @return whether the edge was added, which is always the case.
      */
-    private LabelledEdge createEdgeToVertical(Vertex source, Vertex target) {
+    private boolean createEdgeToVertical(int source, int tx, int ty) {
         // get edges of target
-        List<LabelledEdge> tedges = labelledGraph.get(target.x(), target.y());
-        if (tedges == null) tedges = new ArrayList<>();
+        int target = labelledGraph.find(tx, ty);
 
         // Find the labelled edge with the 'maximum' (smallest x) label.
-        Optional<LabelledEdge> min = tedges.stream().min(Comparator.comparingInt(LabelledEdge::getLabel));
-        // if no such edge exists, make target the new origin.
-        int label = min.map(LabelledEdge::getLabel).orElse(low(target.x()));
-        Vertex origin = min.map(LabelledEdge::getOrigin).orElse(target);
+        int min = target < 0 ? -1 : labelledGraph.minLabelEdge(target);
+        if (min >= 0) {
+            labelledGraph.addEdge(source, tx, ty, labelledGraph.label(min), labelledGraph.originX(min), labelledGraph.originY(min));
+        } else {
+            // if no such edge exists, make target the new origin.
+            labelledGraph.addEdge(source, tx, ty, low(tx), tx, ty);
+        }
 
         // update endpoints
-        endpoints.remove(target);
-        endpoints.add(source);
-
-        return new LabelledEdge(source, target, label, origin);
+        if (target >= 0) labelledGraph.setEndpoint(target, false);
+        labelledGraph.setEndpoint(source, true);
+        return true;
     }
 
     /**
-     * Creates a labelled edge from source to target, where target is a vertex
+     * Creates a labelled edge from source to target (tx, ty), where target is a vertex
      * representing a horizontal grid edge.
+     *
+     * @return whether the edge was added.
      */
-    private Optional<LabelledEdge> createEdgeToHorizontal(Vertex source, Vertex target) {
+    private boolean createEdgeToHorizontal(int source, int tx, int ty) {
         // get edges of target
-        List<LabelledEdge> tedges = labelledGraph.get(target.x(), target.y());
-        if (tedges == null) tedges = new ArrayList<>();
+        int target = labelledGraph.find(tx, ty);
 
-        Optional<LabelledEdge> min = tedges.stream().min(Comparator.comparingInt(LabelledEdge::getLabel));
-        if (!min.isPresent()) {
+        int min = target < 0 ? -1 : labelledGraph.minLabelEdge(target);
+        if (min < 0) {
             // target has no outgoing edges. Do not add edge to prevent dead ends.
-            return Optional.empty();
+            return false;
         }
+        labelledGraph.addEdge(source, tx, ty, labelledGraph.label(min), labelledGraph.originX(min), labelledGraph.originY(min));
 
         // update endpoints
-        endpoints.remove(target);
-        endpoints.add(source);
-
-        return Optional.of(new LabelledEdge(source, target, min.get().getLabel(), min.get().getOrigin()));
+        labelledGraph.setEndpoint(target, false);
+        labelledGraph.setEndpoint(source, true);
+        return true;
     }
 
     public Trajectory getRepresentative() {
@@ -373,25 +385,25 @@ public class GeneratingSemiWeakFDLabelledGraph implements EventGenerator<Event>
     }
 
     private Vertex backpass(Vertex start, int lower, int higher) {
-        while (start.x() > higher) {
-            Vertex target = null;
-            List<LabelledEdge> edges = labelledGraph.get(start.x(), start.y());
-            if (edges == null) {
+        int x = start.x();
+        int y = start.y();
+        while (x > higher) {
+            int v = labelledGraph.find(x, y);
+            if (v < 0) {
                 return null;
             }
-            for (LabelledEdge edge : edges) {
-                if (edge.getOrigin().x() <= lower) {
-                    target = edge.getTarget();
-                    break;
-                }
+            int edge = labelledGraph.firstEdge(v);
+            while (edge >= 0 && labelledGraph.originX(edge) > lower) {
+                edge = labelledGraph.nextEdge(edge);
             }
 
-            if (target == null) {
+            if (edge < 0) {
                 return null;
             }
-            start = target;
+            x = labelledGraph.targetX(edge);
+            y = labelledGraph.targetY(edge);
         }
-        return start;
+        return x == start.x() && y == start.y() ? start : new Vertex(x, y);
     }
 
     /**
@@ -55,6 +55,22 @@ public abstract class LabelledGraph {
      */
     public abstract OptionalInt findStart(int s, int t, int yt, Collection<Range<Integer>> forbidden);
 
+    /**
+     * Gets the largest y-coordinate at most yt for which
+     * {@link #findStart(int, int, int, Collection)} may find a curve ending at
+     * (t, y), such that the coordinates in between can be skipped.
+     * <p>
+     * Returns -1 if there is no such coordinate. By default, no coordinates
+     * are skipped.
+     *
+     * @param t  x-coordinate of the end point
+     * @param yt y-coordinate to start searching from
+     * @return
+     */
+    public int previousEnd(int t, int yt) {
+        return yt;
+    }
+
     /**
      * Adds a column at the end of the graph, if possible.
      */
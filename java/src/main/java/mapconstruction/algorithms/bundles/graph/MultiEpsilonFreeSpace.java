@@ -0,0 +1,161 @@
+package mapconstruction.algorithms.bundles.graph;
+
+import com.google.common.base.Preconditions;
+import mapconstruction.algorithms.distance.DistanceMatrix;
+import mapconstruction.algorithms.distance.RTree;
+import mapconstruction.trajectories.ConcatenatedTrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+
+/**
+ * Geometry of the free space of a single representative against the concatenated trajectories, shared by multiple
+ * values of epsilon up to a given maximum.
+ * <p>
+ * Free space cells differ between values of epsilon only in whether their distance is at most epsilon. Hence the
+ * candidate segments near every representative edge are queried once at the maximum epsilon, and the exact distance
+ * of every cell is computed at most once and stored. The labelled graph of a single epsilon,
+ * {@link GeneratingRTSemiWeakFDLabelledGraph#GeneratingRTSemiWeakFDLabelledGraph(double, MultiEpsilonFreeSpace)},
+ * is then obtained by thresholding these values, and is identical to the graph computed directly on the R-tree.
+ * <p>
+ * Distances are cached lazily, so instances are not thread-safe.
+ */
+public class MultiEpsilonFreeSpace {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final Trajectory representative;
+    private final ConcatenatedTrajectory concatenated;
+    private final double maxEpsilon;
+    private final DistanceMatrix dm;
+
+    /**
+     * Per representative point i (except the last), the sorted indices of the segments within the query window of
+     * maxEpsilon around i.
+     */
+    private final int[][] candidates;
+
+    /**
+     * Open-addressing table from encoded graph coordinates to the distance of the corresponding cell.
+     */
+    private long[] keys;
+    private double[] distances;
+    private int size;
+
+    /**
+     * @param rTree R-tree mapping every edge of the concatenation to the index of its first point.
+     * @throws IllegalArgumentException if {@code maxEpsilon < 0}.
+     */
+    public MultiEpsilonFreeSpace(Trajectory representative, ConcatenatedTrajectory concatenated, RTree<Line2D, Integer> rTree, double maxEpsilon) {
+        Preconditions.checkArgument(maxEpsilon >= 0, "maxEpsilon must be non-negative");
+        this.representative = representative;
+        this.concatenated = concatenated;
+        this.maxEpsilon = maxEpsilon;
+        this.dm = new DistanceMatrix(representative, concatenated);
+
+        candidates = new int[representative.numEdges()][];
+        for (int i = 0; i < candidates.length; i++) {
+            double x = representative.getX(i);
+            double y = representative.getY(i);
+            Set<Integer> query = rTree.windowQuery(x - maxEpsilon, y - maxEpsilon, x + maxEpsilon, y + maxEpsilon);
+            candidates[i] = query.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        keys = new long[1024];
+        distances = new double[1024];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public Trajectory getRepresentative() {
+        return representative;
+    }
+
+    public ConcatenatedTrajectory getConcatenated() {
+        return concatenated;
+    }
+
+    public double getMaxEpsilon() {
+        return maxEpsilon;
+    }
+
+    /**
+     * Finds the segments within the query window of epsilon around the i-th point of the representative. This is
+     * exactly the set of segments the R-tree reports for that window.
+     *
+     * @return indices of the segments, in increasing order.
+     * @throws IllegalArgumentException if {@code epsilon > maxEpsilon}.
+     */
+    public List<Integer> query(int i, double epsilon) {
+        Preconditions.checkArgument(epsilon <= maxEpsilon, "epsilon must be at most maxEpsilon");
+        double x = representative.getX(i);
+        double y = representative.getY(i);
+        double x1 = x - epsilon, y1 = y - epsilon, x2 = x + epsilon, y2 = y + epsilon;
+        // Same window as in RTree.windowQuery
+        Rectangle2D window = new Rectangle2D.Double(x1, y1, x2 - x1, y2 - y1);
+
+        List<Integer> result = new ArrayList<>(candidates[i].length);
+        for (int j : candidates[i]) {
+            if (epsilon == maxEpsilon || window.intersectsLine(concatenated.getX(j), concatenated.getY(j), concatenated.getX(j + 1), concatenated.getY(j + 1))) {
+                result.add(j);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the distance of the free space cell at the given graph coordinates, where an even coordinate denotes a
+     * point and an odd one an edge.
+     */
+    public double distance(int x, int y) {
+        long key = ((long) x << 32) | (y & 0xFFFFFFFFL);
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        for (; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return distances[slot];
+            }
+        }
+
+        double d = (x & 1) == 0
+                ? dm.getPointEdgeDistance(x / 2, y / 2)
+                : dm.getEdgePointDistance(x / 2, y / 2);
+        keys[slot] = key;
+        distances[slot] = d;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return d;
+    }
+
+    /**
+     * @return number of cells of which the distance is stored.
+     */
+    public int numCells() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        double[] oldDistances = distances;
+        keys = new long[oldKeys.length * 2];
+        distances = new double[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        int mask = keys.length - 1;
+        for (int s = 0; s < oldKeys.length; s++) {
+            if (oldKeys[s] == EMPTY) continue;
+            int slot = hash(oldKeys[s]) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[s];
+            distances[slot] = oldDistances[s];
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
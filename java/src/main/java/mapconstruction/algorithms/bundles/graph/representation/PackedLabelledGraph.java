@@ -0,0 +1,254 @@
+package mapconstruction.algorithms.bundles.graph.representation;
+
+import java.util.Arrays;
+
+/**
+ * Primitive store for a partial labelled graph on a free space diagram.
+ * <p>
+ * Vertices are identified by their (x, y) graph coordinates, which are encoded in a single long and kept in an
+ * open-addressing hash table. Every vertex gets a dense id in order of insertion. Outgoing edges are packed into int
+ * arrays and chained per vertex in insertion order, such that no boxed keys, nested maps, lists, {@link Vertex} or
+ * {@link LabelledEdge} objects are created per free cell.
+ * <p>
+ * Each edge stores its target, its label and the origin of the path it labels; its source is the vertex it is
+ * attached to. Vertices may exist without edges, to mark a free cell without reachable neighbours.
+ */
+public class PackedLabelledGraph {
+
+    private static final int NONE = -1;
+
+    /**
+     * Number of ints per edge: target x, target y, label, origin x and origin y.
+     */
+    private static final int EDGE_STRIDE = 5;
+
+    /**
+     * Hash table mapping to vertex ids, {@code NONE} for empty slots. The length is always a power of two.
+     */
+    private int[] slots;
+
+    /**
+     * Per vertex: encoded (x, y) key, first and last outgoing edge and whether it is a path endpoint.
+     */
+    private long[] keys;
+    private int[] firstEdge;
+    private int[] lastEdge;
+    private boolean[] endpoint;
+    private int numVertices;
+
+    /**
+     * Per edge: packed edge data and the next edge of the same source vertex.
+     */
+    private int[] edgeData;
+    private int[] nextEdge;
+    private int numEdges;
+
+    public PackedLabelledGraph() {
+        this(64);
+    }
+
+    /**
+     * @param expectedVertices expected number of vertices, used for the initial capacity.
+     */
+    public PackedLabelledGraph(int expectedVertices) {
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, expectedVertices)) << 1);
+        slots = new int[capacity];
+        Arrays.fill(slots, NONE);
+        keys = new long[capacity / 2];
+        firstEdge = new int[capacity / 2];
+        lastEdge = new int[capacity / 2];
+        endpoint = new boolean[capacity / 2];
+        edgeData = new int[capacity * EDGE_STRIDE];
+        nextEdge = new int[capacity];
+    }
+
+    /**
+     * @return number of vertices in the graph. Vertex ids range from 0 (inclusive) to this value (exclusive).
+     */
+    public int numVertices() {
+        return numVertices;
+    }
+
+    /**
+     * @return number of edges in the graph.
+     */
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /**
+     * Finds the id of the vertex at the given coordinates.
+     *
+     * @return id of the vertex, or -1 if it is not present.
+     */
+    public int find(int x, int y) {
+        long key = encode(x, y);
+        int mask = slots.length - 1;
+        for (int slot = hash(key) & mask; slots[slot] != NONE; slot = (slot + 1) & mask) {
+            if (keys[slots[slot]] == key) {
+                return slots[slot];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds the id of the vertex at the given coordinates, adding the vertex if it is not yet present.
+     *
+     * @return id of the vertex.
+     */
+    public int findOrAdd(int x, int y) {
+        long key = encode(x, y);
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        for (; slots[slot] != NONE; slot = (slot + 1) & mask) {
+            if (keys[slots[slot]] == key) {
+                return slots[slot];
+            }
+        }
+
+        if (numVertices == keys.length) {
+            growVertices();
+            return findOrAdd(x, y);
+        }
+
+        int v = numVertices++;
+        keys[v] = key;
+        firstEdge[v] = NONE;
+        lastEdge[v] = NONE;
+        endpoint[v] = false;
+        slots[slot] = v;
+        return v;
+    }
+
+    public int x(int vertex) {
+        return (int) (keys[vertex] >> 32);
+    }
+
+    public int y(int vertex) {
+        return (int) keys[vertex];
+    }
+
+    /**
+     * Adds an edge from the given source vertex to the given target coordinates. Edges of a vertex are kept in order
+     * of insertion.
+     *
+     * @return id of the new edge.
+     */
+    public int addEdge(int source, int targetX, int targetY, int label, int originX, int originY) {
+        if (numEdges == nextEdge.length) {
+            edgeData = Arrays.copyOf(edgeData, edgeData.length * 2);
+            nextEdge = Arrays.copyOf(nextEdge, nextEdge.length * 2);
+        }
+        int e = numEdges++;
+        int offset = e * EDGE_STRIDE;
+        edgeData[offset] = targetX;
+        edgeData[offset + 1] = targetY;
+        edgeData[offset + 2] = label;
+        edgeData[offset + 3] = originX;
+        edgeData[offset + 4] = originY;
+        nextEdge[e] = NONE;
+
+        if (lastEdge[source] == NONE) {
+            firstEdge[source] = e;
+        } else {
+            nextEdge[lastEdge[source]] = e;
+        }
+        lastEdge[source] = e;
+        return e;
+    }
+
+    /**
+     * @return first outgoing edge of the given vertex, or -1 if it has none.
+     */
+    public int firstEdge(int vertex) {
+        return firstEdge[vertex];
+    }
+
+    /**
+     * @return next outgoing edge of the same source vertex, or -1 if the given edge is the last one.
+     */
+    public int nextEdge(int edge) {
+        return nextEdge[edge];
+    }
+
+    public boolean hasEdges(int vertex) {
+        return firstEdge[vertex] != NONE;
+    }
+
+    /**
+     * Finds the outgoing edge with the smallest label. If multiple edges have the smallest label, the first inserted
+     * one is returned.
+     *
+     * @return id of the edge, or -1 if the vertex has no outgoing edges.
+     */
+    public int minLabelEdge(int vertex) {
+        int min = NONE;
+        for (int e = firstEdge[vertex]; e != NONE; e = nextEdge[e]) {
+            if (min == NONE || label(e) < label(min)) {
+                min = e;
+            }
+        }
+        return min;
+    }
+
+    public int targetX(int edge) {
+        return edgeData[edge * EDGE_STRIDE];
+    }
+
+    public int targetY(int edge) {
+        return edgeData[edge * EDGE_STRIDE + 1];
+    }
+
+    public int label(int edge) {
+        return edgeData[edge * EDGE_STRIDE + 2];
+    }
+
+    public int originX(int edge) {
+        return edgeData[edge * EDGE_STRIDE + 3];
+    }
+
+    public int originY(int edge) {
+        return edgeData[edge * EDGE_STRIDE + 4];
+    }
+
+    /**
+     * Marks whether the given vertex is the endpoint of a path, i.e. it has outgoing edges but no incoming ones.
+     */
+    public void setEndpoint(int vertex, boolean isEndpoint) {
+        endpoint[vertex] = isEndpoint;
+    }
+
+    public boolean isEndpoint(int vertex) {
+        return endpoint[vertex];
+    }
+
+    private void growVertices() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        firstEdge = Arrays.copyOf(firstEdge, capacity);
+        lastEdge = Arrays.copyOf(lastEdge, capacity);
+        endpoint = Arrays.copyOf(endpoint, capacity);
+
+        // keep the load factor of the table at most one half
+        slots = new int[capacity * 2];
+        Arrays.fill(slots, NONE);
+        int mask = slots.length - 1;
+        for (int v = 0; v < numVertices; v++) {
+            int slot = hash(keys[v]) & mask;
+            while (slots[slot] != NONE) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = v;
+        }
+    }
+
+    private static long encode(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
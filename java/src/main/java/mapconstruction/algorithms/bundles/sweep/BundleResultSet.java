@@ -0,0 +1,388 @@
+package mapconstruction.algorithms.bundles.sweep;
+
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * Set of resulting bundles of a sweep, indexed such that lambda-subbundle relations with a new bundle can be found
+ * without testing every bundle in the set.
+ * <p>
+ * The index relies on the following property of {@link Subtrajectory#hasAsLambdaSubtrajectory}: if a subtrajectory
+ * {@code sub} and a subtrajectory {@code sup} of the same parent do not overlap, all of {@code sub} is uncovered, so
+ * {@code sup} can only have {@code sub} as lambda-subtrajectory if {@code sub} is at most lambda long. We call a
+ * subtrajectory <i>anchored</i> if it is too long for that. Consequently, if bundle {@code c} has bundle {@code b} as
+ * lambda-subbundle, then every anchored subtrajectory of {@code b} overlaps a subtrajectory of {@code c} on the same
+ * parent.
+ * <p>
+ * Undirectional bundles also match a subtrajectory with the reverse of a subtrajectory on the reversed parent, so the
+ * subtrajectories are kept per non-reversed parent, where the interval of a subtrajectory of a reversed parent is
+ * mirrored to the non-reversed parent. A subtrajectory is only anchored if it is anchored in both directions.
+ * <p>
+ * Candidates are found through the subtrajectories of the bundles, kept per parent in an interval tree ordered by
+ * start index, in which every subtree knows the highest end index in it. Subtrees that end before a query interval are
+ * skipped. Bundles without anchored subtrajectories are always candidates. Candidates are finally tested with
+ * {@link Bundle#hasAsLambdaSubBundle(Bundle, double)}, so the results are exactly those of testing all bundles.
+ * <p>
+ * The bundles themselves are kept in a {@link HashSet} that sees the same additions and removals as the plain
+ * set did, so it iterates in the same order.
+ */
+class BundleResultSet {
+
+    private final double lambda;
+
+    private final Set<Bundle> results = new HashSet<>();
+
+    /**
+     * All subtrajectories of all bundles, per non-reversed parent.
+     */
+    private final Map<Trajectory, IntervalTree> subtrajectories = new HashMap<>();
+
+    /**
+     * One anchored subtrajectory of every bundle that has one, per non-reversed parent.
+     */
+    private final Map<Trajectory, IntervalTree> anchors = new HashMap<>();
+
+    /**
+     * Bundles without anchored subtrajectories.
+     */
+    private final Set<Bundle> unanchored = new LinkedHashSet<>();
+
+    /**
+     * Entries of every bundle, to remove them again.
+     */
+    private final Map<Bundle, List<Entry>> entries = new HashMap<>();
+
+    private long nextSequence = 0;
+
+    BundleResultSet(double lambda) {
+        this.lambda = lambda;
+    }
+
+    /**
+     * @return the set of bundles. Must not be modified directly.
+     */
+    Set<Bundle> getResults() {
+        return results;
+    }
+
+    /**
+     * Whether some bundle in the set has the given bundle as lambda-subbundle.
+     */
+    boolean hasSuperBundleOf(Bundle b) {
+        // Use the anchored subtrajectory with the least subtrajectories on its parent
+        Subtrajectory pivot = null;
+        int pivotCount = Integer.MAX_VALUE;
+        for (Subtrajectory t : b.getSubtrajectories()) {
+            if (!isAnchored(t)) continue;
+            int count = count(subtrajectories, forwardParent(t));
+            if (count < pivotCount) {
+                pivot = t;
+                pivotCount = count;
+            }
+        }
+
+        if (pivot == null) {
+            return results.stream().anyMatch(c -> c.hasAsLambdaSubBundle(b, lambda));
+        }
+        for (Entry e : overlapping(subtrajectories, pivot)) {
+            if (e.bundle.hasAsLambdaSubBundle(b, lambda)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds all bundles in the set that are a lambda-subbundle of the given bundle.
+     */
+    List<Bundle> findSubBundlesOf(Bundle b) {
+        Set<Bundle> candidates = new LinkedHashSet<>(unanchored);
+        for (Subtrajectory t : b.getSubtrajectories()) {
+            for (Entry e : overlapping(anchors, t)) {
+                candidates.add(e.bundle);
+            }
+        }
+
+        List<Bundle> result = new ArrayList<>();
+        for (Bundle r : candidates) {
+            if (b.hasAsLambdaSubBundle(r, lambda)) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    void add(Bundle b) {
+        if (!results.add(b)) {
+            return;
+        }
+
+        List<Entry> bundleEntries = new ArrayList<>();
+        Subtrajectory anchor = null;
+        int anchorCount = Integer.MAX_VALUE;
+        for (Subtrajectory t : b.getSubtrajectories()) {
+            bundleEntries.add(insert(subtrajectories, t, b));
+            if (isAnchored(t)) {
+                int count = count(anchors, forwardParent(t));
+                if (count < anchorCount) {
+                    anchor = t;
+                    anchorCount = count;
+                }
+            }
+        }
+
+        if (anchor == null) {
+            unanchored.add(b);
+        } else {
+            bundleEntries.add(insert(anchors, anchor, b));
+        }
+        entries.put(b, bundleEntries);
+    }
+
+    void remove(Bundle b) {
+        if (!results.remove(b)) {
+            return;
+        }
+
+        unanchored.remove(b);
+        for (Entry e : entries.remove(b)) {
+            e.owner.remove(e);
+        }
+    }
+
+    /**
+     * Whether the given subtrajectory and its reverse are uncovered by more than lambda by any non-overlapping
+     * subtrajectory of the same parent.
+     */
+    private boolean isAnchored(Subtrajectory t) {
+        return isAnchoredInDirection(t) && isAnchoredInDirection(t.reverse());
+    }
+
+    /**
+     * Whether the given subtrajectory is uncovered by more than lambda by any non-overlapping subtrajectory of the
+     * same parent.
+     * <p>
+     * If the other subtrajectory precedes it, all of it is uncovered. If the other one succeeds it, the uncovered
+     * length computed by {@link Subtrajectory#hasAsLambdaSubtrajectory} is at least the length up to the last point
+     * before its end, which is used as a lower bound.
+     */
+    private boolean isAnchoredInDirection(Subtrajectory t) {
+        double length = 0;
+        double partial = 0;
+        double len = t.getToIndex() - t.getFromIndex();
+        for (int i = 0; i < t.numEdges(); i++) {
+            double d = Point2D.distance(t.getX(i), t.getY(i), t.getX(i + 1), t.getY(i + 1));
+            length += d;
+            if (i < (int) len) {
+                partial += d;
+            }
+        }
+        // margin for rounding differences between this computation and the one of the check itself
+        return partial > lambda + 1E-6 + 1E-9 * (1 + length);
+    }
+
+    private Entry insert(Map<Trajectory, IntervalTree> index, Subtrajectory t, Bundle b) {
+        IntervalTree set = index.computeIfAbsent(forwardParent(t), p -> new IntervalTree());
+        Entry e = new Entry(forwardFrom(t), forwardTo(t), b, nextSequence++, set);
+        set.add(e);
+        return e;
+    }
+
+    private static int count(Map<Trajectory, IntervalTree> index, Trajectory parent) {
+        IntervalTree set = index.get(parent);
+        return set == null ? 0 : set.size;
+    }
+
+    /**
+     * Finds the entries on the non-reversed parent of t whose interval overlaps the interval of t, including touching
+     * intervals.
+     */
+    private static List<Entry> overlapping(Map<Trajectory, IntervalTree> index, Subtrajectory t) {
+        IntervalTree set = index.get(forwardParent(t));
+        if (set == null) {
+            return Collections.emptyList();
+        }
+        List<Entry> result = new ArrayList<>();
+        set.overlapping(set.root, forwardFrom(t), forwardTo(t), result);
+        return result;
+    }
+
+    /**
+     * @return the parent of t if it is not reversed, otherwise the reverse of the parent.
+     */
+    private static Trajectory forwardParent(Subtrajectory t) {
+        return t.isReverse() ? t.getParent().reverse() : t.getParent();
+    }
+
+    /**
+     * @return the start index of t on its non-reversed parent.
+     */
+    private static double forwardFrom(Subtrajectory t) {
+        return t.isReverse() ? t.getParent().numPoints() - 1 - t.getToIndex() : t.getFromIndex();
+    }
+
+    /**
+     * @return the end index of t on its non-reversed parent.
+     */
+    private static double forwardTo(Subtrajectory t) {
+        return t.isReverse() ? t.getParent().numPoints() - 1 - t.getFromIndex() : t.getToIndex();
+    }
+
+    /**
+     * Interval of a subtrajectory on its non-reversed parent, ordered by start index. It is a node of the
+     * {@link IntervalTree} of that parent.
+     */
+    private static class Entry implements Comparable<Entry> {
+        final double from;
+        final double to;
+        final Bundle bundle;
+        final long sequence;
+        final IntervalTree owner;
+
+        /**
+         * Heap priority of the node, derived from the sequence number so that runs are reproducible.
+         */
+        final long priority;
+        Entry left;
+        Entry right;
+        /**
+         * Highest end index in the subtree of which this entry is the root.
+         */
+        double maxTo;
+
+        Entry(double from, double to, Bundle bundle, long sequence, IntervalTree owner) {
+            this.from = from;
+            this.to = to;
+            this.bundle = bundle;
+            this.sequence = sequence;
+            this.owner = owner;
+            this.priority = mix(sequence);
+            this.maxTo = to;
+        }
+
+        private static long mix(long x) {
+            x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+            x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return x ^ (x >>> 33);
+        }
+
+        void update() {
+            maxTo = to;
+            if (left != null) maxTo = Math.max(maxTo, left.maxTo);
+            if (right != null) maxTo = Math.max(maxTo, right.maxTo);
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int c = Double.compare(from, o.from);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /**
+     * Entries of one parent in a treap ordered by start index, where every node knows the highest end index in its
+     * subtree. An overlap query skips every subtree that ends before the query interval, and stops at the first entry
+     * that starts after it.
+     */
+    private static class IntervalTree {
+        Entry root;
+        int size;
+
+        void add(Entry e) {
+            root = insert(root, e);
+            size++;
+        }
+
+        void remove(Entry e) {
+            root = delete(root, e);
+            size--;
+        }
+
+        private static Entry insert(Entry node, Entry e) {
+            if (node == null) {
+                return e;
+            }
+            if (e.compareTo(node) < 0) {
+                node.left = insert(node.left, e);
+                if (node.left.priority > node.priority) {
+                    node = rotateRight(node);
+                }
+            } else {
+                node.right = insert(node.right, e);
+                if (node.right.priority > node.priority) {
+                    node = rotateLeft(node);
+                }
+            }
+            node.update();
+            return node;
+        }
+
+        private static Entry delete(Entry node, Entry e) {
+            if (node == e) {
+                return merge(node.left, node.right);
+            }
+            if (e.compareTo(node) < 0) {
+                node.left = delete(node.left, e);
+            } else {
+                node.right = delete(node.right, e);
+            }
+            node.update();
+            return node;
+        }
+
+        /**
+         * Merges two treaps, all entries of the first preceding those of the second.
+         */
+        private static Entry merge(Entry a, Entry b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            if (a.priority > b.priority) {
+                a.right = merge(a.right, b);
+                a.update();
+                return a;
+            } else {
+                b.left = merge(a, b.left);
+                b.update();
+                return b;
+            }
+        }
+
+        private static Entry rotateRight(Entry node) {
+            Entry l = node.left;
+            node.left = l.right;
+            l.right = node;
+            node.update();
+            l.update();
+            return l;
+        }
+
+        private static Entry rotateLeft(Entry node) {
+            Entry r = node.right;
+            node.right = r.left;
+            r.left = node;
+            node.update();
+            r.update();
+            return r;
+        }
+
+        /**
+         * Adds the entries in the subtree whose interval overlaps [from, to] to the result, in order of start index.
+         */
+        void overlapping(Entry node, double from, double to, List<Entry> result) {
+            while (node != null && node.maxTo >= from) {
+                overlapping(node.left, from, to, result);
+                if (node.from > to) {
+                    return;
+                }
+                if (node.to >= from) {
+                    result.add(node);
+                }
+                node = node.right;
+            }
+        }
+    }
+}
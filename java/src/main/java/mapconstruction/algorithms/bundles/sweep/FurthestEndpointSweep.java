@@ -6,7 +6,6 @@ import mapconstruction.algorithms.bundles.graph.representation.Vertex;
 import mapconstruction.trajectories.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class FurthestEndpointSweep extends KLSweepline {
 
@@ -31,7 +30,7 @@ public class FurthestEndpointSweep extends KLSweepline {
     public Set<Bundle> sweep() {
         Map<Trajectory, Edge> status = new HashMap<>();
         TreeSet<Edge> edges = new TreeSet<>();
-        Set<Bundle> results = new HashSet<>();
+        BundleResultSet results = new BundleResultSet(lambda);
 
         int high = -1;
         for (Event e : eventQueue) {
@@ -81,7 +80,7 @@ public class FurthestEndpointSweep extends KLSweepline {
                 edges.remove(new Edge(e.s, e.t));
             }
         }
-        return results;
+        return results.getResults();
     }
 
     /**
@@ -110,14 +109,14 @@ public class FurthestEndpointSweep extends KLSweepline {
      * Update the set of resulting bundles by adding b if there is no bundle overlapping b already present.
      * When b is added, any bundles overlapped by b are removed from the set.
      * In this instance we take 'overlap' somewhat loosely and also look at lambda-subbundles.
+     * The result set is indexed, such that only bundles that may overlap b are tested.
      */
-    private void updateBundles(Set<Bundle> results, Bundle b) {
+    private void updateBundles(BundleResultSet results, Bundle b) {
         // lambda/2 is 'hack' to obtain epsilon, should rewrite class to have epsilon as parameter
         if (b.size() >= kMin && b.continuousLength() >= lambda / 2d) {
-            Optional<Bundle> b2 = results.stream().filter(c -> c.hasAsLambdaSubBundle(b, lambda)).findFirst();
-            if (!b2.isPresent()) {
+            if (!results.hasSuperBundleOf(b)) {
                 // remove all bundles covered by 'b'
-                results.stream().filter(r -> b.hasAsLambdaSubBundle(r, lambda)).collect(Collectors.toList()).forEach(results::remove);
+                results.findSubBundlesOf(b).forEach(results::remove);
                 // add b to the result set
                 results.add(b);
             }
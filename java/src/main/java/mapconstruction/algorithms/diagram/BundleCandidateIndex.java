@@ -0,0 +1,203 @@
+package mapconstruction.algorithms.diagram;
+
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.util.*;
+
+/**
+ * Index over an ordered collection of bundles, to find the bundles that may be related to a given bundle without
+ * testing all of them.
+ * <p>
+ * The relations used by the evolution diagram all require the parents of one bundle to occur in the other:
+ * <ul>
+ * <li>{@link Bundle#hasAsSubBundle(Bundle)} needs a subtrajectory with an equal parent (or, for undirectional
+ * bundles, the reverse parent) for every subtrajectory of the subbundle.</li>
+ * <li>{@link Bundle#hasAsLambdaSubBundle(Bundle, double)} needs the undirectional label of the parent of every
+ * subtrajectory of the subbundle to be a name of the superbundle.</li>
+ * </ul>
+ * Every bundle is indexed on one <i>pivot</i> subtrajectory, the one of which the label is least frequent, per size,
+ * and on all of its names. Candidates are reported as positions in the original order, such that the first matching
+ * bundle is the same as when testing all bundles in order.
+ */
+class BundleCandidateIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final List<Bundle> bundles;
+
+    /**
+     * Per size, positions of the bundles keyed on the parent of their pivot and the reverse of that parent.
+     */
+    private final Map<Integer, Map<Trajectory, int[]>> byPivotParent = new HashMap<>();
+
+    /**
+     * Per size, positions of the bundles keyed on the undirectional label of their pivot.
+     */
+    private final Map<Integer, Map<String, int[]>> byPivotLabel = new HashMap<>();
+
+    /**
+     * Per size, positions of the bundles without subtrajectories.
+     */
+    private final Map<Integer, int[]> unpivoted = new HashMap<>();
+
+    /**
+     * Positions of the bundles keyed on each of their names.
+     */
+    private final Map<String, int[]> byName = new HashMap<>();
+
+    /**
+     * @param bundles bundles to index, in the order in which they should be reported.
+     */
+    BundleCandidateIndex(Collection<Bundle> bundles) {
+        this.bundles = new ArrayList<>(bundles);
+
+        Map<String, Integer> frequency = new HashMap<>();
+        for (Bundle b : this.bundles) {
+            for (Subtrajectory t : b.getSubtrajectories()) {
+                frequency.merge(t.getParent().getUndirectionalLabel(), 1, Integer::sum);
+            }
+        }
+
+        Map<Integer, Map<Trajectory, List<Integer>>> parents = new HashMap<>();
+        Map<Integer, Map<String, List<Integer>>> labels = new HashMap<>();
+        Map<Integer, List<Integer>> empty = new HashMap<>();
+        Map<String, List<Integer>> names = new HashMap<>();
+        for (int i = 0; i < this.bundles.size(); i++) {
+            Bundle b = this.bundles.get(i);
+            for (String name : b.getTrajectoryNames()) {
+                names.computeIfAbsent(name, n -> new ArrayList<>()).add(i);
+            }
+
+            Subtrajectory pivot = null;
+            int pivotFrequency = Integer.MAX_VALUE;
+            for (Subtrajectory t : b.getSubtrajectories()) {
+                int f = frequency.get(t.getParent().getUndirectionalLabel());
+                if (f < pivotFrequency) {
+                    pivot = t;
+                    pivotFrequency = f;
+                }
+            }
+
+            if (pivot == null) {
+                empty.computeIfAbsent(b.size(), s -> new ArrayList<>()).add(i);
+                continue;
+            }
+            Map<Trajectory, List<Integer>> sizeParents = parents.computeIfAbsent(b.size(), s -> new HashMap<>());
+            Trajectory parent = pivot.getParent();
+            sizeParents.computeIfAbsent(parent, p -> new ArrayList<>()).add(i);
+            List<Integer> reverse = sizeParents.computeIfAbsent(parent.reverse(), p -> new ArrayList<>());
+            if (reverse.isEmpty() || reverse.get(reverse.size() - 1) != i) {
+                reverse.add(i);
+            }
+            labels.computeIfAbsent(b.size(), s -> new HashMap<>())
+                    .computeIfAbsent(parent.getUndirectionalLabel(), l -> new ArrayList<>()).add(i);
+        }
+
+        parents.forEach((size, map) -> byPivotParent.put(size, toArrays(map)));
+        labels.forEach((size, map) -> byPivotLabel.put(size, toArrays(map)));
+        empty.forEach((size, list) -> unpivoted.put(size, toArray(list)));
+        byName.putAll(toArrays(names));
+    }
+
+    /**
+     * @return the indexed bundles, in order.
+     */
+    List<Bundle> getBundles() {
+        return bundles;
+    }
+
+    /**
+     * Finds the positions of the bundles of the same size as b that b may have as subbundle.
+     *
+     * @return positions in increasing order.
+     */
+    int[] candidateSubBundles(Bundle b) {
+        if (b.size() == 0) {
+            return unpivoted.getOrDefault(0, NONE);
+        }
+        Map<Trajectory, int[]> map = byPivotParent.getOrDefault(b.size(), Collections.emptyMap());
+        List<int[]> lists = new ArrayList<>();
+        for (Subtrajectory t : b.getSubtrajectories()) {
+            lists.add(map.getOrDefault(t.getParent(), NONE));
+        }
+        return union(lists);
+    }
+
+    /**
+     * Finds the positions of the bundles of the same size as b that b may have as lambda-subbundle.
+     *
+     * @return positions in increasing order.
+     */
+    int[] candidateLambdaSubBundles(Bundle b) {
+        if (b.size() == 0) {
+            return unpivoted.getOrDefault(0, NONE);
+        }
+        Map<String, int[]> map = byPivotLabel.getOrDefault(b.size(), Collections.emptyMap());
+        List<int[]> lists = new ArrayList<>();
+        for (String name : b.getTrajectoryNames()) {
+            lists.add(map.getOrDefault(name, NONE));
+        }
+        return union(lists);
+    }
+
+    /**
+     * Finds the positions of the bundles that may have b as lambda-subbundle.
+     *
+     * @return positions in increasing order.
+     */
+    int[] candidateSuperBundles(Bundle b) {
+        int[] result = null;
+        for (Subtrajectory t : b.getSubtrajectories()) {
+            int[] list = byName.getOrDefault(t.getParent().getUndirectionalLabel(), NONE);
+            if (result == null || list.length < result.length) {
+                result = list;
+            }
+        }
+        if (result == null) {
+            // Without subtrajectories, every bundle is a candidate
+            result = new int[bundles.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = i;
+            }
+        }
+        return result;
+    }
+
+    private static int[] union(List<int[]> lists) {
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        int count = 0;
+        for (int[] list : lists) {
+            count += list.length;
+        }
+        int[] all = new int[count];
+        int n = 0;
+        for (int[] list : lists) {
+            System.arraycopy(list, 0, all, n, list.length);
+            n += list.length;
+        }
+        Arrays.sort(all);
+
+        // remove duplicates
+        n = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (n == 0 || all[n - 1] != all[i]) {
+                all[n++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, n);
+    }
+
+    private static <K> Map<K, int[]> toArrays(Map<K, List<Integer>> map) {
+        Map<K, int[]> result = new HashMap<>();
+        map.forEach((k, list) -> result.put(k, toArray(list)));
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,331 @@
+package mapconstruction.algorithms.diagram;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.Trajectory;
+import mapconstruction.trajectories.UndirectionalBundle;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Append-only log of the levels of an evolution diagram under construction, such that an interrupted construction
+ * can be resumed.
+ * <p>
+ * The log starts with a header holding the parameters of the builder and a fingerprint of the input trajectories,
+ * followed by one record per completed level: its epsilon, the next free class number and its {@link DiagramState}.
+ * Subtrajectories are stored as a reference to their input trajectory with their interval, and each record is
+ * compressed and guarded by a checksum. A record that was only partially written when the process was killed is
+ * discarded when the log is opened again.
+ */
+class DiagramCheckpoint {
+
+    private static final int MAGIC = 0x45444350;
+    private static final int VERSION = 1;
+
+    private static final byte BUNDLE = 0;
+    private static final byte UNDIRECTIONAL_BUNDLE = 1;
+
+    private final File file;
+    private final List<Trajectory> trajectories;
+    private final Map<Trajectory, Integer> trajectoryIndices;
+    private final List<Level> levels;
+
+    private DiagramCheckpoint(File file, List<Trajectory> trajectories) {
+        this.file = file;
+        this.trajectories = trajectories;
+        this.trajectoryIndices = new HashMap<>();
+        for (int i = 0; i < trajectories.size(); i++) {
+            trajectoryIndices.putIfAbsent(trajectories.get(i), i);
+        }
+        this.levels = new ArrayList<>();
+    }
+
+    /**
+     * Opens the log in the given file, reading the levels it already contains. If the file does not exist or is
+     * empty, a new log is started.
+     *
+     * @param file         file of the log.
+     * @param trajectories input trajectories of the diagram.
+     * @param parameters   description of the parameters of the builder.
+     * @throws IllegalStateException if the log was written for other parameters or other trajectories.
+     * @throws IOException           if the file can not be read or written, or is not a log.
+     */
+    static DiagramCheckpoint open(File file, List<Trajectory> trajectories, String parameters) throws IOException {
+        DiagramCheckpoint checkpoint = new DiagramCheckpoint(file, trajectories);
+        long fingerprint = fingerprint(trajectories);
+
+        if (file.length() == 0) {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                DataOutputStream header = new DataOutputStream(new BufferedOutputStream(out));
+                header.writeInt(MAGIC);
+                header.writeInt(VERSION);
+                header.writeUTF(parameters);
+                header.writeInt(trajectories.size());
+                header.writeLong(fingerprint);
+                header.flush();
+                out.getChannel().force(false);
+            }
+            return checkpoint;
+        }
+
+        long valid;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            DataInputStream in = new DataInputStream(counter);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not an evolution diagram checkpoint");
+            }
+            String writtenParameters = in.readUTF();
+            int numTrajectories = in.readInt();
+            long writtenFingerprint = in.readLong();
+            if (!writtenParameters.equals(parameters)) {
+                throw new IllegalStateException("Checkpoint " + file + " was written with other parameters: " + writtenParameters);
+            }
+            if (numTrajectories != trajectories.size() || writtenFingerprint != fingerprint) {
+                throw new IllegalStateException("Checkpoint " + file + " was written for other trajectories");
+            }
+
+            valid = counter.count;
+            Level level;
+            while ((level = checkpoint.readLevel(in)) != null) {
+                checkpoint.levels.add(level);
+                valid = counter.count;
+            }
+        }
+
+        // Drop a partially written record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(valid);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return the levels read when the log was opened, in order.
+     */
+    List<Level> getLevels() {
+        return Collections.unmodifiableList(levels);
+    }
+
+    /**
+     * Appends a completed level to the log, and forces it to disk.
+     *
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if a bundle of the state can not be stored.
+     */
+    void append(double epsilon, int nextClassNumber, DiagramState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream payload = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            payload.writeDouble(epsilon);
+            payload.writeInt(nextClassNumber);
+
+            payload.writeInt(state.getBundleClasses().size());
+            for (Map.Entry<Bundle, Integer> entry : state.getBundleClasses().entrySet()) {
+                payload.writeInt(entry.getValue());
+                writeBundle(payload, entry.getKey());
+            }
+
+            payload.writeInt(state.getBirths().size());
+            for (int c : state.getBirths()) {
+                payload.writeInt(c);
+            }
+
+            payload.writeInt(state.getMerges().size());
+            for (Map.Entry<Integer, Integer> merge : state.getMerges().entrySet()) {
+                payload.writeInt(merge.getKey());
+                payload.writeInt(merge.getValue());
+            }
+        }
+
+        byte[] data = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            DataOutputStream record = new DataOutputStream(new BufferedOutputStream(out));
+            record.writeInt(data.length);
+            record.write(data);
+            record.writeLong(crc.getValue());
+            record.flush();
+            out.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Reads the next level, or returns {@code null} if there is no complete and intact record left.
+     */
+    private Level readLevel(DataInputStream in) throws IOException {
+        byte[] data;
+        try {
+            int length = in.readInt();
+            if (length < 0 || length > file.length()) {
+                return null;
+            }
+            data = new byte[length];
+            in.readFully(data);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if (in.readLong() != crc.getValue()) {
+                return null;
+            }
+        } catch (EOFException ex) {
+            return null;
+        }
+
+        try (DataInputStream payload = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            double epsilon = payload.readDouble();
+            int nextClassNumber = payload.readInt();
+
+            int numBundles = payload.readInt();
+            BiMap<Bundle, Integer> bundleClasses = HashBiMap.create(numBundles);
+            for (int i = 0; i < numBundles; i++) {
+                int c = payload.readInt();
+                bundleClasses.put(readBundle(payload), c);
+            }
+
+            int numBirths = payload.readInt();
+            Set<Integer> births = new HashSet<>();
+            for (int i = 0; i < numBirths; i++) {
+                births.add(payload.readInt());
+            }
+
+            int numMerges = payload.readInt();
+            Map<Integer, Integer> merges = new HashMap<>();
+            for (int i = 0; i < numMerges; i++) {
+                merges.put(payload.readInt(), payload.readInt());
+            }
+
+            return new Level(epsilon, nextClassNumber, new DiagramState(bundleClasses, births, merges));
+        }
+    }
+
+    private void writeBundle(DataOutput out, Bundle b) throws IOException {
+        if (b.getClass() == UndirectionalBundle.class) {
+            out.writeByte(UNDIRECTIONAL_BUNDLE);
+        } else if (b.getClass() == Bundle.class) {
+            out.writeByte(BUNDLE);
+        } else {
+            throw new IllegalArgumentException("Can not store bundles of type " + b.getClass().getName());
+        }
+
+        Subtrajectory representative = b.getOriginalRepresentative();
+        out.writeBoolean(representative != null);
+        if (representative != null) {
+            writeSubtrajectory(out, representative);
+        }
+        out.writeInt(b.size());
+        for (Subtrajectory t : b.getSubtrajectories()) {
+            writeSubtrajectory(out, t);
+        }
+    }
+
+    private Bundle readBundle(DataInput in) throws IOException {
+        byte type = in.readByte();
+        Subtrajectory representative = in.readBoolean() ? readSubtrajectory(in) : null;
+        int size = in.readInt();
+        List<Subtrajectory> subtrajectories = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            subtrajectories.add(readSubtrajectory(in));
+        }
+        return type == UNDIRECTIONAL_BUNDLE
+                ? UndirectionalBundle.create(subtrajectories, representative)
+                : Bundle.create(subtrajectories, representative);
+    }
+
+    private void writeSubtrajectory(DataOutput out, Subtrajectory t) throws IOException {
+        Trajectory parent = t.getParent();
+        Integer index = trajectoryIndices.get(parent);
+        boolean reverse = false;
+        if (index == null) {
+            index = trajectoryIndices.get(parent.reverse());
+            reverse = true;
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("Can not store a subtrajectory of " + parent.getLabel() + ", which is not an input trajectory");
+        }
+        out.writeInt(index);
+        out.writeBoolean(reverse);
+        out.writeDouble(t.getFromIndex());
+        out.writeDouble(t.getToIndex());
+    }
+
+    private Subtrajectory readSubtrajectory(DataInput in) throws IOException {
+        int index = in.readInt();
+        if (index < 0 || index >= trajectories.size()) {
+            throw new IOException("Invalid trajectory index " + index + " in checkpoint " + file);
+        }
+        Trajectory parent = in.readBoolean() ? trajectories.get(index).reverse() : trajectories.get(index);
+        double from = in.readDouble();
+        double to = in.readDouble();
+        return new Subtrajectory(parent, from, to);
+    }
+
+    /**
+     * Checksum over the labels and number of points of the trajectories, to detect resuming on other data.
+     */
+    private static long fingerprint(List<Trajectory> trajectories) {
+        CRC32 crc = new CRC32();
+        for (Trajectory t : trajectories) {
+            crc.update(t.getLabel().getBytes(StandardCharsets.UTF_8));
+            crc.update(t.numPoints());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * A completed level of the diagram.
+     */
+    static class Level {
+        final double epsilon;
+        final int nextClassNumber;
+        final DiagramState state;
+
+        Level(double epsilon, int nextClassNumber, DiagramState state) {
+            this.epsilon = epsilon;
+            this.nextClassNumber = nextClassNumber;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Input stream that counts the bytes read, to find the end of the last intact record.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -132,6 +132,19 @@ public class EvolutionDiagram implements Serializable {
         states.put(epsilon, state);
     }
 
+    /**
+     * Adds the state for the given epsilon, as when restoring a stored
+     * diagram. Birth and merge moments are not updated.
+     *
+     * @param epsilon
+     * @param bundleClasses
+     * @param births
+     * @param merges
+     */
+    public void restoreState(double epsilon, BiMap<Bundle, Integer> bundleClasses, Set<Integer> births, Map<Integer, Integer> merges) {
+        addState(epsilon, new DiagramState(bundleClasses, births, merges));
+    }
+
     void addBirthMoment(int bundleClass, double epsilon) {
         birthMoments.put(bundleClass, epsilon);
     }
@@ -470,4 +483,24 @@ public class EvolutionDiagram implements Serializable {
         return Collections.unmodifiableSet(birthMoments.keySet());
     }
 
+    /**
+     * Gets the birth moment of every class.
+     *
+     * @return
+     */
+    public Map<Integer, Double> getBirthMoments() {
+        return Collections.unmodifiableMap(birthMoments);
+    }
+
+    /**
+     * Gets the merge moment of every class that has merged. Unlike
+     * {@link #getMergeMoment(int)}, classes that are alive in the last state
+     * are not included.
+     *
+     * @return
+     */
+    public Map<Integer, Double> getMergeMoments() {
+        return Collections.unmodifiableMap(mergeMoments);
+    }
+
 }
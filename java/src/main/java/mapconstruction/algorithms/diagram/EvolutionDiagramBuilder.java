@@ -1,11 +1,14 @@
 package mapconstruction.algorithms.diagram;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import mapconstruction.algorithms.AbstractTrajectoryAlgorithm;
 import mapconstruction.algorithms.bundles.BundleGenerationAlgorithm;
 import mapconstruction.algorithms.bundles.KLSubbundleAlgorithm;
 import mapconstruction.algorithms.bundles.MaximalSubbundleAlgorithm;
+import mapconstruction.algorithms.bundles.MultiEpsilonBundleGenerator;
+import mapconstruction.algorithms.bundles.TrajectorySegmentIndex;
 import mapconstruction.algorithms.bundles.graph.GeneratingSemiWeakFDLabelledGraph;
 import mapconstruction.algorithms.bundles.sweep.FurthestEndpointSweep;
 import mapconstruction.algorithms.distance.KdTree;
@@ -22,12 +25,18 @@ import java.awt.*;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.util.*;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.*;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
 import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
 
 import static mapconstruction.GUI.datastorage.ConstantsStorage.ALGOCONSTANTS;
 
@@ -43,6 +52,10 @@ import static mapconstruction.GUI.datastorage.ConstantsStorage.ALGOCONSTANTS;
 public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<EvolutionDiagram> {
 
     static final String LOGTAG = "Evolution";
+    /**
+     * Number of bundles of which the continuations or merges are checked by a single task.
+     */
+    private static final int CHECK_BLOCK_SIZE = 64;
     /**
      * The value of lambda to use will be labdaFactor * epsilon
      */
@@ -90,6 +103,28 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
      */
     private BundleGenerationAlgorithm algo;
     private Set<Bundle> encounteredBundles;
+    /**
+     * Whether the free space geometry of every representative is computed once for all epsilon levels, see
+     * {@link #runAlgorithmMultiEpsilon(List)}.
+     */
+    private boolean multiEpsilon = false;
+    private MultiEpsilonBundleGenerator generator;
+    /**
+     * Maximum number of levels that {@link #runAlgorithmParallel(List)} keeps
+     * submitted but unprocessed, on top of the number of worker threads.
+     */
+    private int maxBufferedLevels = 1;
+    /**
+     * Fraction of the maximum heap above which {@link #runAlgorithmParallel(List)}
+     * submits no further levels while earlier levels are pending.
+     */
+    private double heapBudget = 0.7;
+    /**
+     * File to which completed levels are logged, and from which an
+     * interrupted construction is resumed. Null if no checkpoint is kept.
+     */
+    private File checkpointFile;
+    private DiagramCheckpoint checkpoint;
 
     /**
      * Constructs a diagram builder with the given parameters
@@ -174,78 +209,140 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
 
         Log.log(LogLevel.INFO, LOGTAG, "Parameters for evolution diagram: lambdaFactor=%.2f, incr=%.2f, incrType=%s, minEps=%.2f, maxEps=%.2f, ignoreDir=%b", lambdaFactor, incrementer, incrType.name(), minEps, maxEps, ignoreDirection);
 
+        epsilon = resume(trajectories, diagram, epsilon, false);
+
         // Assign all remaining threads to subtasks, keep one free for the current thread.
-        ExecutorService executor = Executors.newFixedThreadPool(ALGOCONSTANTS.getNumThreads() - 1);
-//        CompletionService<String> manager = new ExecutorCompletionService<>(executor);
+        int numWorkers = Math.max(1, ALGOCONSTANTS.getNumThreads() - 1);
+        ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
 
-//        Map<Double, Future<String>> results = new HashMap();
-        Map<Double, Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>>> results = new LinkedHashMap<>();
+        // Levels are submitted in order and processed in order, as soon as the first pending level is done.
+        // Bounding the pending levels bounds the number of finished levels of which the bundles are kept in memory.
+        Deque<Pair<Double, Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>>>> pending = new ArrayDeque<>();
+        int maxPending = numWorkers + maxBufferedLevels;
 
-        Log.log(LogLevel.STATUS, LOGTAG, "Starting Threads to find all bundles.");
+        Log.log(LogLevel.STATUS, LOGTAG, "Starting Threads to find all bundles, at most %d levels at a time.", maxPending);
 
         trajectories = Collections.synchronizedList(trajectories);
 
-        // start workers to compute bundles
-        while (epsilon <= maxEps && !aborted) {
-            try {
-                Callable<Pair<Set<Bundle>, Map<Bundle, Bundle>>> worker = new FindAllBundles(trajectories,
-//                        new MaximalSubbundleAlgorithm(epsilon, epsilon * lambdaFactor, this.ignoreDirection, kStep)
-                        new KLSubbundleAlgorithm(epsilon, epsilon * lambdaFactor, this.ignoreDirection)
-                );
-                results.put(epsilon, executor.submit(worker));
-
-                // proper incrementing
-                if (epsilon < maxEps && nextEpsilon.applyAsDouble(epsilon) > maxEps) {
-                    epsilon = maxEps;
-                } else {
-                    epsilon = nextEpsilon.applyAsDouble(epsilon);
+        // The edge index does not depend on epsilon, so build it once and share it between all workers.
+        TrajectorySegmentIndex segmentIndex = TrajectorySegmentIndex.build(trajectories, ignoreDirection);
+        Benchmark.Context context = Benchmark.capture();
+
+        try {
+            while (!aborted) {
+                // start workers to compute bundles
+                while (epsilon <= maxEps && pending.size() < maxPending && (pending.isEmpty() || isWithinHeapBudget())) {
+                    Callable<Pair<Set<Bundle>, Map<Bundle, Bundle>>> worker = new FindAllBundles(trajectories, epsilon, context,
+//                            new MaximalSubbundleAlgorithm(epsilon, epsilon * lambdaFactor, this.ignoreDirection, kStep)
+                            new KLSubbundleAlgorithm(epsilon, epsilon * lambdaFactor, this.ignoreDirection, 1, segmentIndex)
+                    );
+                    pending.add(new Pair<>(epsilon, executor.submit(worker)));
+
+                    epsilon = nextLevel(epsilon);
                 }
 
-                setProgress((int) (100 * epsilon / (maxEps - minEps + 1) / 2));
-            } catch (AlgorithmAbortedException ex) {
-                // algorithm aborted return partial diagram
-                Log.log(LogLevel.WARNING, LOGTAG, "Algorithm aborted. Showing partial diagram");
-                break;
+                if (pending.isEmpty()) {
+                    break;
+                }
+                if (epsilon <= maxEps && pending.size() < maxPending) {
+                    Log.log(LogLevel.INFO, LOGTAG, "Heap budget reached, %d levels pending", pending.size());
+                }
+
+                Pair<Double, Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>>> next = pending.poll();
+                if (!addState(next.k, next.v, diagram)) {
+                    break;
+                }
+            }
+        } finally {
+            for (Pair<Double, Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>>> level : pending) {
+                level.v.cancel(true);
             }
+            executor.shutdown();
         }
 
-        for (Iterator<Double> it = results.keySet().iterator(); it.hasNext();) {
-            try {
-                epsilon = it.next();
-                Pair<Set<Bundle>, Map<Bundle, Bundle>> p = results.get(epsilon).get();
+        setProgress(100);
+        Log.log(LogLevel.STATUS, LOGTAG, "Diagram finished");
+        return diagram;
+    }
 
-                Log.log(LogLevel.INFO, LOGTAG, "Starting processBundles bundl=%d eps=%f", p.k.size(), epsilon);
+    /**
+     * Build the diagram for the given list of trajectories, computing the free space geometry of every representative
+     * only once for all values of epsilon.
+     * <p>
+     * Free space cells of different epsilon levels only differ in whether their distance is at most epsilon, so the
+     * cells are computed at the maximum epsilon and thresholded for each level. The resulting diagram is the same as
+     * the one of {@link #runAlgorithmParallel(List)}, however the generated bundles of all levels are kept in memory
+     * until the lambda-subbundles are removed.
+     *
+     * @param trajectories
+     * @return
+     */
+    public EvolutionDiagram runAlgorithmMultiEpsilon(List<Trajectory> trajectories) {
+        EvolutionDiagram diagram = initialDiagram;
 
-                DiagramState state = processBundles(p.k, p.v, epsilon, diagram);
+        double epsilon;
+        this.encounteredBundles = new HashSet<>();
+        if (initialDiagram.isEmpty()) {
+            Log.log(LogLevel.STATUS, LOGTAG, "Starting to build diagram from scratch");
+            epsilon = minEps;
+        } else {
+            Log.log(LogLevel.STATUS, LOGTAG, "Starting to build diagram, extending an existing one");
+            epsilon = nextEpsilon.applyAsDouble(diagram.getEpsilons().last());
+            nextClassNumber = diagram.numClasses();
+        }
 
-                // Add the state
-                Log.log(LogLevel.INFO, LOGTAG, "Got processBundles births=%d merges=%d", state.getBirths().size(), state.getMerges().size());
+        Log.log(LogLevel.INFO, LOGTAG, "Parameters for evolution diagram: lambdaFactor=%.2f, incr=%.2f, incrType=%s, minEps=%.2f, maxEps=%.2f, ignoreDir=%b, multiEpsilon", lambdaFactor, incrementer, incrType.name(), minEps, maxEps, ignoreDirection);
 
-                diagram.addState(epsilon, state);
+        epsilon = resume(trajectories, diagram, epsilon, false);
 
-                for (int c : state.getBirths()) {
-                    // Process birth moments
-                    diagram.addBirthMoment(c, epsilon);
-                }
+        List<KLSubbundleAlgorithm> levels = new ArrayList<>();
+        while (epsilon <= maxEps) {
+            levels.add(new KLSubbundleAlgorithm(epsilon, epsilon * lambdaFactor, this.ignoreDirection));
 
-                for (int c : state.getMerges().keySet()) {
-                    // Process merges
-                    diagram.addMergeMoment(c, epsilon);
-                }
+            epsilon = nextLevel(epsilon);
+        }
+        if (levels.isEmpty()) {
+            setProgress(100);
+            return diagram;
+        }
 
-                // DISABLED: encounteredBundles has no useful functionality
-//                encounteredBundles.addAll(state.getBundleClasses().keySet());
-                // remove bundles so they can be cleared from memory
-                it.remove();
+        Log.log(LogLevel.STATUS, LOGTAG, "Generating bundles of %d levels.", levels.size());
+        TrajectorySegmentIndex segmentIndex = TrajectorySegmentIndex.build(trajectories, ignoreDirection);
+        generator = new MultiEpsilonBundleGenerator(levels, segmentIndex, ALGOCONSTANTS.getNumThreads());
+        List<Set<Bundle>> generated;
+        try (Benchmark.Span span = Benchmark.span("generate")) {
+            generated = generator.generate();
+        }
+        if (aborted) {
+            Log.log(LogLevel.WARNING, LOGTAG, "Algorithm aborted. Showing partial diagram");
+            setProgress(100);
+            return diagram;
+        }
+        setProgress(50);
 
-                setProgress((int) (100 * epsilon / (maxEps - minEps + 1) / 2) + 50);
-            } catch (AlgorithmAbortedException | InterruptedException e) {
-                // algorithm aborted return partial diagram
-                Log.log(LogLevel.WARNING, LOGTAG, "Algorithm aborted. Showing partial diagram");
-                break;
-            } catch (Exception e) {
-                e.printStackTrace();
+        // The removal of lambda-subbundles is independent per level
+        ExecutorService executor = Executors.newFixedThreadPool(ALGOCONSTANTS.getNumThreads());
+        Benchmark.Context context = Benchmark.capture();
+        Map<Double, Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>>> results = new LinkedHashMap<>();
+        for (int k = 0; k < levels.size(); k++) {
+            KLSubbundleAlgorithm level = levels.get(k);
+            Set<Bundle> bundles = generated.get(k);
+            results.put(level.getEpsilon(), executor.submit(() -> {
+                try (Benchmark.Span span = Benchmark.span(context, "epsilon %.2f", level.getEpsilon())) {
+                    return new Pair<>(level.runOnGeneratedBundles(bundles), level.getMerges());
+                }
+            }));
+        }
+        generated.clear();
+
+        try {
+            addStates(results, diagram);
+        } finally {
+            // Levels left after an abort are not needed anymore
+            for (Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>> level : results.values()) {
+                level.cancel(true);
             }
+            executor.shutdownNow();
         }
 
         setProgress(100);
@@ -253,12 +350,248 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
         return diagram;
     }
 
+    /**
+     * Adds the states of the given levels to the diagram, in order of the levels. Futures are removed once processed.
+     */
+    private void addStates(Map<Double, Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>>> results, EvolutionDiagram diagram) {
+        for (Iterator<Entry<Double, Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>>>> it = results.entrySet().iterator(); it.hasNext();) {
+            Entry<Double, Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>>> level = it.next();
+            // remove bundles so they can be cleared from memory
+            it.remove();
+            if (!addState(level.getKey(), level.getValue(), diagram)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Waits for the bundles of the given level and adds its state to the diagram.
+     *
+     * @return {@code false} if the algorithm was aborted, {@code true} otherwise.
+     */
+    private boolean addState(double epsilon, Future<Pair<Set<Bundle>, Map<Bundle, Bundle>>> level, EvolutionDiagram diagram) {
+        try {
+            Pair<Set<Bundle>, Map<Bundle, Bundle>> p = level.get();
+
+            Log.log(LogLevel.INFO, LOGTAG, "Starting processBundles bundl=%d eps=%f", p.k.size(), epsilon);
+
+            DiagramState state;
+            try (Benchmark.Span levelSpan = Benchmark.span("epsilon %.2f", epsilon);
+                 Benchmark.Span span = Benchmark.span("process")) {
+                state = processBundles(p.k, p.v, epsilon, diagram);
+            }
+
+            // Add the state
+            Log.log(LogLevel.INFO, LOGTAG, "Got processBundles births=%d merges=%d", state.getBirths().size(), state.getMerges().size());
+
+            diagram.addState(epsilon, state);
+
+            for (int c : state.getBirths()) {
+                // Process birth moments
+                diagram.addBirthMoment(c, epsilon);
+            }
+
+            for (int c : state.getMerges().keySet()) {
+                // Process merges
+                diagram.addMergeMoment(c, epsilon);
+            }
+
+            // DISABLED: encounteredBundles has no useful functionality
+//            encounteredBundles.addAll(state.getBundleClasses().keySet());
+
+            recordLevel(epsilon, state);
+
+            setProgress((int) (100 * epsilon / (maxEps - minEps + 1) / 2) + 50);
+        } catch (AlgorithmAbortedException | InterruptedException e) {
+            // algorithm aborted return partial diagram
+            Log.log(LogLevel.WARNING, LOGTAG, "Algorithm aborted. Showing partial diagram");
+            return false;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    /**
+     * Gets the epsilon of the level after the given one, which is at most
+     * maxEps if the given one is below it.
+     */
+    private double nextLevel(double epsilon) {
+        // proper incrementing
+        if (epsilon < maxEps && nextEpsilon.applyAsDouble(epsilon) > maxEps) {
+            return maxEps;
+        }
+        return nextEpsilon.applyAsDouble(epsilon);
+    }
+
+    /**
+     * Replays the levels logged in the checkpoint, if any, as the run that
+     * wrote them would have added them to the diagram.
+     *
+     * @param epsilon    epsilon of the first level if nothing was logged.
+     * @param sequential whether the run is sequential, which tracks the
+     *                   encountered bundles and skips to maxEps when at most
+     *                   one class is left.
+     * @return epsilon of the first level that still has to be computed.
+     * @throws UncheckedIOException  if the checkpoint can not be read.
+     * @throws IllegalStateException if the checkpoint was written for other
+     *                               parameters or trajectories.
+     */
+    private double resume(List<Trajectory> trajectories, EvolutionDiagram diagram, double epsilon, boolean sequential) {
+        checkpoint = null;
+        if (checkpointFile == null) {
+            return epsilon;
+        }
+
+        String parameters = String.format(Locale.ROOT, "%s incr=%s lambdaFactor=%s minEps=%s maxEps=%s ignoreDir=%b sequential=%b",
+                incrType.name(), incrementer, lambdaFactor, minEps, maxEps, ignoreDirection, sequential);
+        try {
+            checkpoint = DiagramCheckpoint.open(checkpointFile, trajectories, parameters);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        for (DiagramCheckpoint.Level level : checkpoint.getLevels()) {
+            DiagramState state = level.state;
+            diagram.addState(level.epsilon, state);
+            for (int c : state.getBirths()) {
+                diagram.addBirthMoment(c, level.epsilon);
+            }
+            for (int c : state.getMerges().keySet()) {
+                diagram.addMergeMoment(c, level.epsilon);
+            }
+            nextClassNumber = level.nextClassNumber;
+
+            epsilon = nextLevel(level.epsilon);
+            if (sequential) {
+                encounteredBundles.addAll(state.getBundleClasses().keySet());
+                if (epsilon < maxEps && state.getBundleClasses().size() <= 1) {
+                    epsilon = maxEps;
+                }
+            }
+        }
+        if (!checkpoint.getLevels().isEmpty()) {
+            Log.log(LogLevel.STATUS, LOGTAG, "Resumed %d levels from checkpoint %s, continuing at eps=%f", checkpoint.getLevels().size(), checkpointFile, epsilon);
+        }
+        return epsilon;
+    }
+
+    /**
+     * Logs a completed level to the checkpoint, if any. If that fails, no
+     * further levels are logged, but the construction continues.
+     */
+    private void recordLevel(double epsilon, DiagramState state) {
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            checkpoint.append(epsilon, nextClassNumber, state);
+        } catch (IOException | IllegalArgumentException ex) {
+            Log.log(LogLevel.ERROR, LOGTAG, "Writing checkpoint %s failed, no further levels are logged: %s", checkpointFile, ex.getMessage());
+            checkpoint = null;
+        }
+    }
+
+    /**
+     * Whether the live heap is within the heap budget. The used heap includes
+     * garbage that is not collected yet, so if it exceeds the budget, the heap
+     * that was still in use after the last garbage collection is used
+     * instead. That is the collection usage of the heap pools, of which the
+     * tenured pool holds the bundles of the pending levels. If the JVM reports
+     * no collection usage, the used heap is taken.
+     */
+    private boolean isWithinHeapBudget() {
+        Runtime runtime = Runtime.getRuntime();
+        long budget = (long) (heapBudget * runtime.maxMemory());
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        if (used <= budget) {
+            return true;
+        }
+
+        long live = 0;
+        boolean collected = false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) {
+                continue;
+            }
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) {
+                live += usage.getUsed();
+                collected = true;
+            }
+        }
+        return collected && live <= budget;
+    }
+
+    public int getMaxBufferedLevels() {
+        return maxBufferedLevels;
+    }
+
+    /**
+     * Sets how many levels {@link #runAlgorithmParallel(List)} may keep
+     * submitted but unprocessed on top of the number of worker threads. Each
+     * of those levels may hold all its bundles in memory.
+     *
+     * @throws IllegalArgumentException if {@code maxBufferedLevels < 0}
+     */
+    public void setMaxBufferedLevels(int maxBufferedLevels) {
+        Preconditions.checkArgument(maxBufferedLevels >= 0, "maxBufferedLevels must be non-negative");
+        this.maxBufferedLevels = maxBufferedLevels;
+    }
+
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Sets the file in which every completed level is logged. If the file
+     * already holds levels of an interrupted construction with the same
+     * parameters and trajectories, those are added to the diagram and the
+     * construction continues at the next level.
+     *
+     * @param checkpointFile file of the log, or {@code null} to keep no log.
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public double getHeapBudget() {
+        return heapBudget;
+    }
+
+    /**
+     * Sets the fraction of the maximum heap above which
+     * {@link #runAlgorithmParallel(List)} submits no further levels until
+     * the pending levels have been processed. At least one level is always
+     * pending.
+     *
+     * @throws IllegalArgumentException if {@code heapBudget} is not in (0, 1]
+     */
+    public void setHeapBudget(double heapBudget) {
+        Preconditions.checkArgument(heapBudget > 0 && heapBudget <= 1, "heapBudget must be in (0, 1]");
+        this.heapBudget = heapBudget;
+    }
+
     @Override
     public EvolutionDiagram runAlgorithm(List<Trajectory> trajectories) {
 //        return runAlgorithmSequential(trajectories);
+        if (multiEpsilon) {
+            return runAlgorithmMultiEpsilon(trajectories);
+        }
         return runAlgorithmParallel(trajectories);
     }
 
+    public boolean isMultiEpsilon() {
+        return multiEpsilon;
+    }
+
+    /**
+     * Sets whether {@link #runAlgorithm(List)} computes the free space geometry once for all epsilon levels.
+     */
+    public void setMultiEpsilon(boolean multiEpsilon) {
+        this.multiEpsilon = multiEpsilon;
+    }
+
     /**
      * Build the diagram for the given list of trajectories. If aborted early,
      * returns a partial diagram.
@@ -268,6 +601,7 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
      */
     public EvolutionDiagram runAlgorithmSequential(List<Trajectory> trajectories) {
         EvolutionDiagram diagram = initialDiagram;
+        TrajectorySegmentIndex segmentIndex = TrajectorySegmentIndex.build(trajectories, ignoreDirection);
 
         double epsilon;
         this.encounteredBundles = new HashSet<>();
@@ -287,22 +621,30 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
 
         Log.log(LogLevel.INFO, LOGTAG, "Parameters for evolution diagram: lambdaFactor=%.2f, incr=%.2f, incrType=%s, minEps=%.2f, maxEps=%.2f, ignoreDir=%b", lambdaFactor, incrementer, incrType.name(), minEps, maxEps, ignoreDirection);
 
+        epsilon = resume(trajectories, diagram, epsilon, true);
+
         while (epsilon <= maxEps /*&& result.size() > 1*/ && !aborted) {
             try {
+                // Levels are processed one at a time, so the representatives of a level may use all threads.
                 BundleGenerationAlgorithm lambdaAlgo =
 //                        new MaximalSubbundleAlgorithm(epsilon, epsilon * lambdaFactor, this.ignoreDirection, kStep);
-                        new KLSubbundleAlgorithm(epsilon, epsilon * lambdaFactor, this.ignoreDirection);
+                        new KLSubbundleAlgorithm(epsilon, epsilon * lambdaFactor, this.ignoreDirection, ALGOCONSTANTS.getNumThreads(), segmentIndex);
 
                 algo = lambdaAlgo;
 
                 Log.log(LogLevel.STATUS, LOGTAG, "Finding all bundles.");
 
-                result = algo.run(trajectories);
-                Map<Bundle, Bundle> merges = lambdaAlgo.getMerges();
+                DiagramState state;
+                try (Benchmark.Span levelSpan = Benchmark.span("epsilon %.2f", epsilon)) {
+                    result = algo.run(trajectories);
+                    Map<Bundle, Bundle> merges = lambdaAlgo.getMerges();
 
-                Log.log(LogLevel.STATUS, LOGTAG, "Building state");
+                    Log.log(LogLevel.STATUS, LOGTAG, "Building state");
 
-                DiagramState state = processBundles(result, merges, epsilon, diagram);
+                    try (Benchmark.Span span = Benchmark.span("process")) {
+                        state = processBundles(result, merges, epsilon, diagram);
+                    }
+                }
 
                 // Add the state
                 diagram.addState(epsilon, state);
@@ -319,15 +661,12 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
 
                 encounteredBundles.addAll(state.getBundleClasses().keySet());
 
+                recordLevel(epsilon, state);
+
 //                Benchmark.addResult("Epsilon " + epsilon, state.getBundleClasses().keySet());
 
                 setProgress((int) (100 * epsilon / (maxEps - minEps + 1)));
-                // proper incrementing
-                if (epsilon < maxEps && nextEpsilon.applyAsDouble(epsilon) > maxEps) {
-                    epsilon = maxEps;
-                } else {
-                    epsilon = nextEpsilon.applyAsDouble(epsilon);
-                }
+                epsilon = nextLevel(epsilon);
 
                 if (epsilon < maxEps && state.getBundleClasses().size() <= 1) {
                     epsilon = maxEps;
@@ -366,10 +705,17 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
         } else {
             // Get the previous state
             DiagramState previousState = diagram.getPrevious(epsilon);
+            BundleCandidateIndex previousIndex = new BundleCandidateIndex(previousState.getBundleClasses().keySet());
+
+            // The checks of the new bundles are independent of each other,
+            // the classes are assigned in order afterwards.
+            List<Bundle> newBundles = new ArrayList<>(result);
+            List<Pair<int[], int[]>> continuations = evaluate(newBundles, bunNew -> findContinuations(previousIndex, bunNew, epsilon));
 
-            for (Bundle bunNew : result) {
+            for (int i = 0; i < newBundles.size(); i++) {
+                Bundle bunNew = newBundles.get(i);
 
-                boolean isContinuation = tryFindContinuation(previousState, bunNew, bundleClasses, epsilon);
+                boolean isContinuation = tryFindContinuation(previousState, previousIndex, continuations.get(i), bunNew, bundleClasses);
 
                 if (!isContinuation && !encounteredBundles.contains(bunNew)) {
                     // No old bundle found that the new one continues.
@@ -394,8 +740,17 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
 
             Log.log(LogLevel.STATUS, "processBundles", "mergedClasses size %d", mergedClasses.size());
 
+            BundleCandidateIndex currentIndex = new BundleCandidateIndex(bundleClasses.keySet());
+            BundleCandidateIndex mergedIndex = new BundleCandidateIndex(bundleMerges.keySet());
+            List<Bundle> mergedBundles = new ArrayList<>(mergedClasses.size());
+            for (int c : mergedClasses) {
+                mergedBundles.add(previousState.getBundleClasses().inverse().get(c));
+            }
+            List<Pair<Bundle, Bundle>> mergeTargets = evaluate(mergedBundles, mergedBundle -> findMerge(currentIndex, mergedIndex, mergedBundle, epsilon));
+
+            int i = 0;
             for (int c : mergedClasses) {
-                tryFindMerge(previousState, c, bundleClasses, epsilon, merges, bundleMerges);
+                tryFindMerge(mergeTargets.get(i++), c, bundleClasses, merges, bundleMerges);
             }
 
         }
@@ -403,43 +758,57 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
         return new DiagramState(bundleClasses, births, merges);
     }
 
-    private void tryFindMerge(DiagramState previousState, int bundleClass, BiMap<Bundle, Integer> bundleClasses, double epsilon, Map<Integer, Integer> merges, Map<Bundle, Bundle> bundleMerges) {
-        // Find into which classes the bundles have merged.
-
-        Bundle mergedBundle = previousState.getBundleClasses().inverse().get(bundleClass);
+    /**
+     * Finds the first current bundle that has the merged bundle as lambda-subbundle and, if there is none, the first
+     * bundle merged away by the bundle algorithm that has it as lambda-subbundle. Does not modify any state, such that
+     * it can be called concurrently.
+     *
+     * @return the current bundle as key, the merged away bundle as value, at most one of which is non-null.
+     */
+    private Pair<Bundle, Bundle> findMerge(BundleCandidateIndex currentIndex, BundleCandidateIndex mergedIndex, Bundle mergedBundle, double epsilon) {
         // find other class
-        for (Entry<Bundle, Integer> bunClassPair : bundleClasses.entrySet()) {
+        for (int j : currentIndex.candidateSuperBundles(mergedBundle)) {
             // Candidate
-            Bundle otherBundle = bunClassPair.getKey();
-            int otherClass = bunClassPair.getValue();
+            Bundle otherBundle = currentIndex.getBundles().get(j);
             if (otherBundle.hasAsLambdaSubBundle(mergedBundle, epsilon * lambdaFactor)) {
                 // We allow a decrease of size
-                merges.put(bundleClass, otherClass);
-                return; // Found the merge for this class
+                return new Pair<>(otherBundle, null);
             }
         }
         // Another attempt to find merges
         // find find correct bundle in bundle merges
-        for (Entry<Bundle, Bundle> entry : bundleMerges.entrySet()) {
-            Bundle from = entry.getKey();
-            Bundle to = entry.getValue();
+        for (int j : mergedIndex.candidateSuperBundles(mergedBundle)) {
+            Bundle from = mergedIndex.getBundles().get(j);
             if (from.hasAsLambdaSubBundle(mergedBundle, epsilon * lambdaFactor)) {
-                // Find proper class
-                while (!bundleClasses.containsKey(to) && bundleMerges.containsKey(to)) {
-                    to = bundleMerges.get(to);
-                    if (to == null) {
-                        System.err.println("to == null");
-                        Log.log(LogLevel.WARNING, LOGTAG, "to == null");
-                        return;
-                    }
-                }
-                if (debugMerges) {
-                    System.err.println("WARNING: Second merge attempt used!");
+                return new Pair<>(null, from);
+            }
+        }
+        return new Pair<>(null, null);
+    }
+
+    private void tryFindMerge(Pair<Bundle, Bundle> target, int bundleClass, BiMap<Bundle, Integer> bundleClasses, Map<Integer, Integer> merges, Map<Bundle, Bundle> bundleMerges) {
+        // Find into which classes the bundles have merged.
+        if (target.k != null) {
+            merges.put(bundleClass, bundleClasses.get(target.k));
+            return; // Found the merge for this class
+        }
+        if (target.v != null) {
+            Bundle to = bundleMerges.get(target.v);
+            // Find proper class
+            while (!bundleClasses.containsKey(to) && bundleMerges.containsKey(to)) {
+                to = bundleMerges.get(to);
+                if (to == null) {
+                    System.err.println("to == null");
+                    Log.log(LogLevel.WARNING, LOGTAG, "to == null");
+                    return;
                 }
-                Log.log(LogLevel.WARNING, LOGTAG, "Second merge attempt used!");
-                merges.put(bundleClass, bundleClasses.get(to));
-                return;
             }
+            if (debugMerges) {
+                System.err.println("WARNING: Second merge attempt used!");
+            }
+            Log.log(LogLevel.WARNING, LOGTAG, "Second merge attempt used!");
+            merges.put(bundleClass, bundleClasses.get(to));
+            return;
         }
         if (debugMerges) {
             System.err.println("WARNING: No merge found!");
@@ -447,8 +816,24 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
         Log.log(LogLevel.WARNING, LOGTAG, "No merge found!");
     }
 
-    private boolean tryFindContinuation(DiagramState previousState, Bundle bunNew, BiMap<Bundle, Integer> bundleClasses, double epsilon) {
-        Set<Bundle> candidates = previousState.getBundleClasses().keySet();
+    /**
+     * Finds the positions of the previous bundles of which the new bundle is a continuation, in order: first those it
+     * has as subbundle, then those it has as lambda-subbundle. Does not modify any state, such that it can be called
+     * concurrently.
+     */
+    private Pair<int[], int[]> findContinuations(BundleCandidateIndex previousIndex, Bundle bunNew, double epsilon) {
+        List<Bundle> candidates = previousIndex.getBundles();
+        int[] subBundles = Arrays.stream(previousIndex.candidateSubBundles(bunNew))
+                .filter(j -> bunNew.hasAsSubBundle(candidates.get(j)))
+                .toArray();
+        int[] lambdaSubBundles = Arrays.stream(previousIndex.candidateLambdaSubBundles(bunNew))
+                .filter(j -> bunNew.hasAsLambdaSubBundle(candidates.get(j), epsilon * lambdaFactor))
+                .toArray();
+        return new Pair<>(subBundles, lambdaSubBundles);
+    }
+
+    private boolean tryFindContinuation(DiagramState previousState, BundleCandidateIndex previousIndex, Pair<int[], int[]> continuations, Bundle bunNew, BiMap<Bundle, Integer> bundleClasses) {
+        List<Bundle> candidates = previousIndex.getBundles();
 
         // For every new bundle, we have to check to every previous bundle
         // whether it is a continuation of a previous bundle.
@@ -456,33 +841,70 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
         // Otherwise we add a new class
         // We prefer proper subbundles over lambda subbundles. First attempt,
         // proper subbundles
-        for (Bundle bunOld : candidates) {
-            int classNumber = previousState.getBundleClasses().get(bunOld);
-            if (bunNew.size() == bunOld.size() && !bundleClasses.containsValue(classNumber)) {
-                // finally check for subbundle, as this is the most expensive check
-                if (bunNew.hasAsSubBundle(bunOld)) {
-                    // Continuation of old bundle
-                    bundleClasses.put(bunNew, classNumber);
-                    return true;
-                }
+        for (int j : continuations.k) {
+            int classNumber = previousState.getBundleClasses().get(candidates.get(j));
+            if (!bundleClasses.containsValue(classNumber)) {
+                // Continuation of old bundle
+                bundleClasses.put(bunNew, classNumber);
+                return true;
             }
         }
         // Second attempt, with lambda subbundle.
-        for (Bundle bunOld : candidates) {
-            int classNumber = previousState.getBundleClasses().get(bunOld);
-            if (bunNew.size() == bunOld.size() && !bundleClasses.containsValue(classNumber)) {
-                // finally check for lambdasubbundle, as this is the most expensive check
-                if (bunNew.hasAsLambdaSubBundle(bunOld, epsilon * lambdaFactor)) {
-                    // Continuation of old bundle
-                    bundleClasses.put(bunNew, classNumber);
-                    return true;
-                }
+        for (int j : continuations.v) {
+            int classNumber = previousState.getBundleClasses().get(candidates.get(j));
+            if (!bundleClasses.containsValue(classNumber)) {
+                // Continuation of old bundle
+                bundleClasses.put(bunNew, classNumber);
+                return true;
             }
         }
 
         return false;
     }
 
+    /**
+     * Applies the given check to all bundles, distributed over the available threads.
+     *
+     * @return results of the check, in order of the bundles.
+     * @throws AlgorithmAbortedException if aborted.
+     */
+    private <T> List<T> evaluate(List<Bundle> bundles, Function<Bundle, T> check) {
+        int numThreads = Math.max(1, ALGOCONSTANTS.getNumThreads());
+        if (numThreads == 1 || bundles.size() < 2 * CHECK_BLOCK_SIZE) {
+            return bundles.stream().map(check).collect(Collectors.toList());
+        }
+
+        List<Callable<List<T>>> blocks = new ArrayList<>();
+        for (int from = 0; from < bundles.size(); from += CHECK_BLOCK_SIZE) {
+            List<Bundle> block = bundles.subList(from, Math.min(bundles.size(), from + CHECK_BLOCK_SIZE));
+            blocks.add(() -> {
+                if (aborted) {
+                    throw new AlgorithmAbortedException();
+                }
+                return block.stream().map(check).collect(Collectors.toList());
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<T> results = new ArrayList<>(bundles.size());
+            for (Future<List<T>> future : executor.invokeAll(blocks)) {
+                results.addAll(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AlgorithmAbortedException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private void handleFirstState(Set<Bundle> result, BiMap<Bundle, Integer> bundleClasses, Set<Integer> births) {
         // No previous states yet to compare to
         Log.log(LogLevel.STATUS, "FirstState", "Adding %d bundles.", result.size());
@@ -501,7 +923,12 @@ public class EvolutionDiagramBuilder extends AbstractTrajectoryAlgorithm<Evoluti
     @Override
     public void abort() {
         super.abort(); //To change body of generated methods, choose Tools | Templates.
-        algo.abort();
+        if (algo != null) {
+            algo.abort();
+        }
+        if (generator != null) {
+            generator.abort();
+        }
     }
 
     /**
@@ -529,10 +956,17 @@ class Pair<K, V> implements Serializable {
 class FindAllBundles implements Callable<Pair<Set<Bundle>, Map<Bundle, Bundle>>> {
 
     List<Trajectory> trajectories;
+    double epsilon;
+    Benchmark.Context context;
     BundleGenerationAlgorithm lambdaAlgo;
 
-    FindAllBundles(List<Trajectory> trajectories, BundleGenerationAlgorithm lambdaAlgo) {
+    /**
+     * @param context the benchmark spans to record the spans of this task in, may be null.
+     */
+    FindAllBundles(List<Trajectory> trajectories, double epsilon, Benchmark.Context context, BundleGenerationAlgorithm lambdaAlgo) {
         this.trajectories = trajectories;
+        this.epsilon = epsilon;
+        this.context = context;
         this.lambdaAlgo = lambdaAlgo;
     }
 
@@ -541,7 +975,9 @@ class FindAllBundles implements Callable<Pair<Set<Bundle>, Map<Bundle, Bundle>>>
     public Pair<Set<Bundle>, Map<Bundle, Bundle>> call() throws Exception {
         Set<Bundle> result;
         Log.log(LogLevel.STATUS, EvolutionDiagramBuilder.LOGTAG, "Finding all bundles.");
-        result = lambdaAlgo.run(trajectories);
+        try (Benchmark.Span span = Benchmark.span(context, "epsilon %.2f", epsilon)) {
+            result = lambdaAlgo.run(trajectories);
+        }
         Log.log(LogLevel.STATUS, EvolutionDiagramBuilder.LOGTAG, "Found %d bundles.", result.size());
         Pair<Set<Bundle>, Map<Bundle, Bundle>> p = new Pair<Set<Bundle>, Map<Bundle, Bundle>>(result, lambdaAlgo.getMerges());
 
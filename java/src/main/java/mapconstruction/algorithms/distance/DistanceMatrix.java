@@ -11,7 +11,8 @@ import java.awt.geom.Point2D;
  * Distance matrix between two trajectories.
  * <p>
  * Does not explicitly store all the distances, as that costs too much memory,
- * but it is calculated every query.
+ * but it is calculated every query. Distances are computed on the coordinates
+ * of the trajectories directly, without creating point or edge objects.
  *
  * @author Roel
  */
@@ -78,9 +79,7 @@ public class DistanceMatrix {
     public double getPointDistance(int i, int j) {
         Preconditions.checkPositionIndex(i, t1.numPoints(), "i");
         Preconditions.checkPositionIndex(j, t2.numPoints(), "j");
-        final Point2D p1 = t1.getPoint(i);
-        final Point2D p2 = t2.getPoint(j);
-        return p1.distance(p2);
+        return Point2D.distance(t1.getX(i), t1.getY(i), t2.getX(j), t2.getY(j));
     }
 
     /**
@@ -103,14 +102,14 @@ public class DistanceMatrix {
     public double getEdgeDistanceNoIntersect(int i, int j) {
         Preconditions.checkPositionIndex(i, t1.numEdges(), "i");
         Preconditions.checkPositionIndex(j, t2.numEdges(), "j");
-        Line2D edge1 = t1.getEdge(i);
-        Line2D edge2 = t2.getEdge(j);
+        final double x11 = t1.getX(i), y11 = t1.getY(i), x12 = t1.getX(i + 1), y12 = t1.getY(i + 1);
+        final double x21 = t2.getX(j), y21 = t2.getY(j), x22 = t2.getX(j + 1), y22 = t2.getY(j + 1);
 
-        double d11 = edge2.ptSegDist(edge1.getP1());
-        double d12 = edge2.ptSegDist(edge1.getP2());
+        double d11 = Line2D.ptSegDist(x21, y21, x22, y22, x11, y11);
+        double d12 = Line2D.ptSegDist(x21, y21, x22, y22, x12, y12);
 
-        double d21 = edge1.ptSegDist(edge2.getP1());
-        double d22 = edge1.ptSegDist(edge2.getP2());
+        double d21 = Line2D.ptSegDist(x11, y11, x12, y12, x21, y21);
+        double d22 = Line2D.ptSegDist(x11, y11, x12, y12, x22, y22);
 
         return Doubles.min(d11, d12, d21, d22);
     }
@@ -133,10 +132,8 @@ public class DistanceMatrix {
     public double getEdgeDistance(int i, int j) {
         Preconditions.checkPositionIndex(i, t1.numEdges(), "i");
         Preconditions.checkPositionIndex(j, t2.numEdges(), "j");
-        Line2D edge1 = t1.getEdge(i);
-        Line2D edge2 = t2.getEdge(j);
-
-        if (edge1.intersectsLine(edge2)) {
+        if (Line2D.linesIntersect(t2.getX(j), t2.getY(j), t2.getX(j + 1), t2.getY(j + 1),
+                t1.getX(i), t1.getY(i), t1.getX(i + 1), t1.getY(i + 1))) {
             return 0;
         } else {
             return getEdgeDistanceNoIntersect(i, j);
@@ -158,9 +155,7 @@ public class DistanceMatrix {
     public double getPointEdgeDistance(int pi, int ej) {
         Preconditions.checkPositionIndex(pi, t1.numPoints(), "pi");
         Preconditions.checkPositionIndex(ej, t2.numEdges(), "ej");
-        final Line2D edge = t2.getEdge(ej);
-        final Point2D point = t1.getPoint(pi);
-        return edge.ptSegDist(point);
+        return Line2D.ptSegDist(t2.getX(ej), t2.getY(ej), t2.getX(ej + 1), t2.getY(ej + 1), t1.getX(pi), t1.getY(pi));
     }
 
     /**
@@ -179,9 +174,7 @@ public class DistanceMatrix {
     public double getEdgePointDistance(int ei, int pj) {
         Preconditions.checkPositionIndex(ei, t1.numEdges(), "ei");
         Preconditions.checkPositionIndex(pj, t2.numPoints(), "pj");
-        final Line2D edge = t1.getEdge(ei);
-        final Point2D point = t2.getPoint(pj);
-        return edge.ptSegDist(point);
+        return Line2D.ptSegDist(t1.getX(ei), t1.getY(ei), t1.getX(ei + 1), t1.getY(ei + 1), t2.getX(pj), t2.getY(pj));
     }
 
 }
@@ -235,17 +235,24 @@ public class DrawOnRoadMap {
         HashMap<RoadSection, Double> lastIndexRoadSection = new HashMap<>();
         HashMap<RoadSection, List<Double>> distanceToRoadSection = new HashMap<>();
 
-        Set<RoadSection> remainingRoadSections = new HashSet<>(roadMap.getPresentRoadSections());
-        remainingRoadSections.removeAll(triedRoadSections);
+        Set<RoadSection> remainingRoadSections = getUntriedRoadSectionsNear(pointList, startIndex,
+                maxSinglePointDistance, triedRoadSections);
 
         for (int i = startIndex; i < pointList.size(); i++) {
             int nopInMerge = 1 + (i - startIndex); // number of points in merge
+            Set<RoadSection> nearbyRoadSections = roadMap.getPresentRoadSectionsNear(pointList.get(i), maxSinglePointDistance);
             for (RoadSection roadSection : new HashSet<>(remainingRoadSections)) {
 
-                Pair<Double, Double> pairBestMerge = DrawGeneralFunctions.findBestMerge(roadSection, pointList, i,
-                        maxMergingHeadingDegreeDifference);
-                double foundMergeDistance = pairBestMerge.getFirst();
-                double foundRoadEdgeIndex = pairBestMerge.getSecond();
+                // The merge distance is at least the distance to the road section, so far away road sections are
+                // dropped without computing it.
+                double foundMergeDistance = Double.MAX_VALUE;
+                double foundRoadEdgeIndex = -1;
+                if (nearbyRoadSections.contains(roadSection)) {
+                    Pair<Double, Double> pairBestMerge = DrawGeneralFunctions.findBestMerge(roadSection, pointList, i,
+                            maxMergingHeadingDegreeDifference);
+                    foundMergeDistance = pairBestMerge.getFirst();
+                    foundRoadEdgeIndex = pairBestMerge.getSecond();
+                }
 
                 if (foundMergeDistance >= maxSinglePointDistance) {
                     remainingRoadSections.remove(roadSection);
@@ -295,8 +302,8 @@ public class DrawOnRoadMap {
                 if (i == startIndex) {
 
                     startIndex++;
-                    remainingRoadSections = new HashSet<>(roadMap.getPresentRoadSections());
-                    remainingRoadSections.removeAll(triedRoadSections);
+                    remainingRoadSections = getUntriedRoadSectionsNear(pointList, startIndex,
+                            maxSinglePointDistance, triedRoadSections);
                     continue;
 
                 } else {
@@ -311,8 +318,8 @@ public class DrawOnRoadMap {
                         }
                         if (!found) {
                             startIndex = i + 1;
-                            remainingRoadSections = new HashSet<>(roadMap.getPresentRoadSections());
-                            remainingRoadSections.removeAll(triedRoadSections);
+                            remainingRoadSections = getUntriedRoadSectionsNear(pointList, startIndex,
+                                    maxSinglePointDistance, triedRoadSections);
                             continue;
                         } else {
                             break;
@@ -356,6 +363,26 @@ public class DrawOnRoadMap {
                 new ArrayList<>(Collections.singletonList(bestMergedPart)), new ArrayList<>(Collections.singletonList(bestRoadEdgePart)));
     }
 
+    /**
+     * Get the road sections that were not tried yet and might be within the given distance of the point at the given
+     * index. The other road sections would be dropped when looking at that point anyway.
+     *
+     * @param pointList         the pointList of the bundleStreet
+     * @param index             index of the point in the pointList
+     * @param distance          the maximum distance to the point
+     * @param triedRoadSections what the tried road sections were.
+     * @return the road sections that should be considered from the point on.
+     */
+    private Set<RoadSection> getUntriedRoadSectionsNear(List<Point2D> pointList, int index, double distance,
+                                                        Set<RoadSection> triedRoadSections) {
+        if (index >= pointList.size()) {
+            return new HashSet<>();
+        }
+        Set<RoadSection> roadSections = roadMap.getPresentRoadSectionsNear(pointList.get(index), distance);
+        roadSections.removeAll(triedRoadSections);
+        return roadSections;
+    }
+
 //    private boolean isBetweenRoadEdge(Point2D point, RoadSection roadSection, double roadSectionIndex) {
 //        if (DoubleMath.fuzzyEquals(roadSectionIndex, Math.floor(roadSectionIndex), 20d)) {
 //            return false;
@@ -120,8 +120,8 @@ public class MapFiltering {
                     roadSections.remove(removedRoad);
                     i--;
 
-                    List<ConnectionVertex> allCVs = roadMap.getConnectionVertices();
-                    if (allCVs.contains(removedRoad.getStartVertex()) && allCVs.contains(removedRoad.getEndVertex())) {
+                    if (roadMap.containsConnectionVertex(removedRoad.getStartVertex()) &&
+                            roadMap.containsConnectionVertex(removedRoad.getEndVertex())) {
                         boolean stillConnected = roadMap.checkIfTwoPointsAreConnected(
                                 removedRoad.getStartVertex(), removedRoad.getEndVertex(),
                                 removedRoad.getContinuousLength() * 3, new HashSet<>());
@@ -224,7 +224,7 @@ public class MapFiltering {
      */
     public static void connectSingleEndings(RoadMap roadMap, double distance) {
         // First we start by finding all lonely ConnectionVertices, which mean they only have one RoadSection connected.
-        List<ConnectionVertex> loners = new ArrayList<>();
+        Set<ConnectionVertex> loners = new HashSet<>();
         for (ConnectionVertex vertex : roadMap.getConnectionVertices()) {
             if (roadMap.getRoadSectionsForConnectionVertex(vertex).size() == 1) {
                 RoadSection roadSection = roadMap.getRoadSectionsForConnectionVertex(vertex).iterator().next();
@@ -237,12 +237,8 @@ public class MapFiltering {
         // Now for all loners, we check whether there are any other loners(including itself) within 50 meters distance.
         HashMap<ConnectionVertex, Set<ConnectionVertex>> mergeCombinations = new HashMap<>();
         for (ConnectionVertex currentVertex : loners) {
-            HashSet<ConnectionVertex> mergeVertices = new HashSet<>();
-            for (ConnectionVertex otherVertex : loners) {
-                if (currentVertex.getLocation().distance(otherVertex.getLocation()) < distance) {
-                    mergeVertices.add(otherVertex);
-                }
-            }
+            Set<ConnectionVertex> mergeVertices = roadMap.getConnectionVerticesNear(currentVertex.getLocation(), distance);
+            mergeVertices.retainAll(loners);
             mergeCombinations.put(currentVertex, mergeVertices);
         }
 
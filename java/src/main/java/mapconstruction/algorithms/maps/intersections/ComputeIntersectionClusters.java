@@ -14,8 +14,18 @@ import static mapconstruction.GUI.datastorage.DataStorage.STORAGE;
 public class ComputeIntersectionClusters {
 
 
+    /**
+     * Maximum distance between two intersection points of the same cluster.
+     */
+    private static final double MAX_MERGE_DISTANCE = 50;
+
     /**
      * Merge similar intersections, such that each intersection is only represented by one object
+     * <p>
+     * Every intersection point is merged with the clusters of the earlier points that are close and merge compatible
+     * with it. The clusters are kept in a union-find structure over the points, of which the root is the point that
+     * created the cluster, and close points are found in a grid of cells of the maximum merge distance. Clusters
+     * already in the list are left as they are.
      *
      * @param mergedInts,     the list where we add the final merged intersection objects to
      * @param roadPointsInts, the intersections found with the help of RoadPoints
@@ -29,40 +39,81 @@ public class ComputeIntersectionClusters {
         allIntersectionsPoints.addAll(roadPointsInts);
         allIntersectionsPoints.addAll(turnInts);
 
-        for (IntersectionPoint intP1 : allIntersectionsPoints) {
-            Set<IntersectionCluster> clustersToMergeWith = new HashSet<>();
-            for (IntersectionCluster cluster : mergedInts) {
-                for (IntersectionPoint intP2 : cluster.getAllIntersectionPoints()) {
-                    if (intP2.getLocation().distance(intP1.getLocation()) > 50) {
-                        continue;
-                    }
-                    if (areIntersectionPointsMergeCompatible(intP1, intP2)) {
-                        clustersToMergeWith.add(cluster);
-                        break;
+        int n = allIntersectionsPoints.size();
+        int[] parent = new int[n];
+        IntersectionCluster[] clusters = new IntersectionCluster[n];
+        Map<Long, List<Integer>> grid = new HashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            IntersectionPoint intP1 = allIntersectionsPoints.get(i);
+            long cellX = (long) Math.floor(intP1.getLocation().getX() / MAX_MERGE_DISTANCE);
+            long cellY = (long) Math.floor(intP1.getLocation().getY() / MAX_MERGE_DISTANCE);
+
+            // Roots of the clusters to merge with, ordered by creation.
+            SortedSet<Integer> clustersToMergeWith = new TreeSet<>();
+            for (long x = cellX - 1; x <= cellX + 1; x++) {
+                for (long y = cellY - 1; y <= cellY + 1; y++) {
+                    for (int j : grid.getOrDefault(cellKey(x, y), Collections.emptyList())) {
+                        IntersectionPoint intP2 = allIntersectionsPoints.get(j);
+                        if (intP2.getLocation().distance(intP1.getLocation()) > MAX_MERGE_DISTANCE) {
+                            continue;
+                        }
+                        int root = find(parent, j);
+                        if (!clustersToMergeWith.contains(root) && areIntersectionPointsMergeCompatible(intP1, intP2)) {
+                            clustersToMergeWith.add(root);
+                        }
                     }
                 }
-
             }
+
             if (clustersToMergeWith.size() == 0) {
-                mergedInts.add(new IntersectionCluster(intP1));
-            } else if (clustersToMergeWith.size() == 1) {
-                clustersToMergeWith.forEach(v -> v.addNewIntersectionPoint(intP1));
-            } else {  // clustersToMergeWith > 1
-                Iterator<IntersectionCluster> clusterIterator = clustersToMergeWith.iterator();
-                IntersectionCluster mainCluster = clusterIterator.next();
+                parent[i] = i;
+                clusters[i] = new IntersectionCluster(intP1);
+            } else {
+                Iterator<Integer> clusterIterator = clustersToMergeWith.iterator();
+                int mainRoot = clusterIterator.next();
+                IntersectionCluster mainCluster = clusters[mainRoot];
                 mainCluster.addNewIntersectionPoint(intP1);
+                parent[i] = mainRoot;
 
                 while (clusterIterator.hasNext()) {
-                    IntersectionCluster cluster = clusterIterator.next();
-                    mainCluster.mergeWithOtherCluster(cluster);
-                    mergedInts.remove(cluster);
+                    int root = clusterIterator.next();
+                    mainCluster.mergeWithOtherCluster(clusters[root]);
+                    clusters[root] = null;
+                    parent[root] = mainRoot;
                 }
             }
+            grid.computeIfAbsent(cellKey(cellX, cellY), k -> new ArrayList<>()).add(i);
+        }
+
+        for (IntersectionCluster cluster : clusters) {
+            if (cluster != null) {
+                mergedInts.add(cluster);
+            }
         }
+    }
+
+    private static long cellKey(long x, long y) {
+        return (x << 32) ^ (y & 0xFFFFFFFFL);
+    }
 
+    /**
+     * Finds the root of the cluster of point i, compressing the path to it.
+     */
+    private static int find(int[] parent, int i) {
+        int root = i;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[i] != root) {
+            int next = parent[i];
+            parent[i] = root;
+            i = next;
+        }
+        return root;
     }
 
-    private static boolean areIntersectionPointsMergeCompatible(IntersectionPoint intP1, IntersectionPoint intP2) {
+    static boolean areIntersectionPointsMergeCompatible(IntersectionPoint intP1, IntersectionPoint intP2) {
         Set<Subtrajectory> P1B1subs = intP1.getLongBundle1().getNonReverseSubtrajectories();
         Set<Subtrajectory> P1B2subs = intP1.getLongBundle2().getNonReverseSubtrajectories();
         Set<Subtrajectory> P2B1subs = intP2.getLongBundle1().getNonReverseSubtrajectories();
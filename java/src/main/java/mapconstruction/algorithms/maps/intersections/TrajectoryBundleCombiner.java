@@ -9,20 +9,18 @@ import mapconstruction.util.Pair;
 import java.awt.geom.Point2D;
 import java.util.*;
 
-import static mapconstruction.GUI.datastorage.DataStorage.STORAGE;
-
 public enum TrajectoryBundleCombiner {
     TBCombiner;
 
     /**
      * Array containing for each trajectory in which DISPLAYED bundle they are found and for which range.
      */
-    private HashMap<Trajectory, List<Pair<Range<Double>, Bundle>>> trajectoriesContainedInDisplayedBundles;
+    private HashMap<Trajectory, TrajectoryRanges> trajectoriesContainedInDisplayedBundles;
 
     /**
      * Array containing for each trajectory in which possibly undisplayed bundle they are found and for which range.
      */
-    private HashMap<Trajectory, List<Pair<Range<Double>, Bundle>>> trajectoriesContainedInUndisplayedBundles;
+    private HashMap<Trajectory, TrajectoryRanges> trajectoriesContainedInUndisplayedBundles;
 
 
     TrajectoryBundleCombiner() {
@@ -40,9 +38,7 @@ public enum TrajectoryBundleCombiner {
      * @param listOfBundles, the list of bundles to be added
      */
     public void addMultipleDisplayedBundles(Set<Bundle> listOfBundles) {
-        for (Bundle b : listOfBundles) {
-            addNewBundle(b, trajectoriesContainedInDisplayedBundles);
-        }
+        addNewBundles(listOfBundles, trajectoriesContainedInDisplayedBundles);
     }
 
     /**
@@ -51,14 +47,23 @@ public enum TrajectoryBundleCombiner {
      * @param listOfBundles, the list of bundles to be added
      */
     public void addMultipleUndisplayedBundles(Set<Bundle> listOfBundles) {
+        addNewBundles(listOfBundles, trajectoriesContainedInUndisplayedBundles);
+    }
+
+    /**
+     * Adds the bundles, after which the indices of the trajectories of their subtrajectories are rebuilt.
+     */
+    private void addNewBundles(Set<Bundle> listOfBundles, HashMap<Trajectory, TrajectoryRanges> tcib) {
+        Set<TrajectoryRanges> changed = new HashSet<>();
         for (Bundle b : listOfBundles) {
-            addNewBundle(b, trajectoriesContainedInUndisplayedBundles);
+            addNewBundle(b, tcib, changed);
+        }
+        for (TrajectoryRanges ranges : changed) {
+            ranges.build();
         }
     }
 
-    private void addNewBundle(Bundle b, HashMap<Trajectory, List<Pair<Range<Double>, Bundle>>> tcib) {
-        int bundleClass = STORAGE.getClassFromBundle(b);
-
+    private void addNewBundle(Bundle b, HashMap<Trajectory, TrajectoryRanges> tcib, Set<TrajectoryRanges> changed) {
         for (Subtrajectory sub : b.getSubtrajectories()) {
             Trajectory t = sub.getParent();
             double fromIndex = sub.getFromIndex();
@@ -77,13 +82,9 @@ public enum TrajectoryBundleCombiner {
             Pair<Range<Double>, Bundle> combination = new Pair<>(range, b);
 
             // Add the bundle with it's range to the list
-            if (tcib.containsKey(t)) {
-                tcib.get(t).add(combination);
-            } else {
-                List<Pair<Range<Double>, Bundle>> list = new ArrayList<>();
-                list.add(combination);
-                tcib.put(t, list);
-            }
+            TrajectoryRanges ranges = tcib.computeIfAbsent(t, k -> new TrajectoryRanges());
+            ranges.combinations.add(combination);
+            changed.add(ranges);
         }
     }
 
@@ -153,22 +154,20 @@ public enum TrajectoryBundleCombiner {
      * @return
      */
     private List<Bundle> getBundlesForTrajectoryAndIndex(Trajectory t, double index,
-                                                         HashMap<Trajectory, List<Pair<Range<Double>, Bundle>>> tcib) {
+                                                         HashMap<Trajectory, TrajectoryRanges> tcib) {
         if (t.isReverse()) {
             t = t.reverse();
             index = t.numPoints() - 1 - index;
         }
 
         List<Bundle> bundles = new LinkedList<>();
-        List<Pair<Range<Double>, Bundle>> bundlesForAllRanges = tcib.get(t);
+        TrajectoryRanges bundlesForAllRanges = tcib.get(t);
 
         if (bundlesForAllRanges == null) {
             return bundles;
         }
-        for (Pair<Range<Double>, Bundle> combination : bundlesForAllRanges) {
-            if (combination.getFirst().contains(index)) {
-                bundles.add(combination.getSecond());
-            }
+        for (int i : bundlesForAllRanges.stab(index)) {
+            bundles.add(bundlesForAllRanges.combinations.get(i).getSecond());
         }
         return bundles;
     }
@@ -182,4 +181,87 @@ public enum TrajectoryBundleCombiner {
         trajectoriesContainedInUndisplayedBundles = null;
     }
 
+    /**
+     * The ranges of a single trajectory covered by bundles, with a static interval tree to find the ranges containing
+     * an index.
+     * <p>
+     * The tree is implicit in the ranges sorted by their lower endpoint: the middle range of every part of the sorted
+     * array is the root of the subtree over that part, and stores the highest upper endpoint in that part. The tree is
+     * rebuilt after every batch of added bundles, and only read by the queries.
+     */
+    private static final class TrajectoryRanges {
+
+        /**
+         * The ranges and their bundles in order of addition.
+         */
+        private final List<Pair<Range<Double>, Bundle>> combinations = new ArrayList<>();
+
+        /**
+         * Position in {@link #combinations} of the ranges sorted by lower endpoint, and their endpoints.
+         */
+        private int[] order = new int[0];
+        private double[] lower = new double[0];
+        private double[] upper = new double[0];
+
+        /**
+         * Highest upper endpoint in the subtree of which the range is the root.
+         */
+        private double[] maxUpper = new double[0];
+
+        void build() {
+            int n = combinations.size();
+            order = new int[n];
+            Integer[] sorted = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = i;
+            }
+            Arrays.sort(sorted, Comparator.comparingDouble(i -> combinations.get(i).getFirst().lowerEndpoint()));
+
+            lower = new double[n];
+            upper = new double[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = sorted[i];
+                lower[i] = combinations.get(order[i]).getFirst().lowerEndpoint();
+                upper[i] = combinations.get(order[i]).getFirst().upperEndpoint();
+            }
+            maxUpper = new double[n];
+            buildMaxUpper(0, n - 1);
+        }
+
+        private double buildMaxUpper(int from, int to) {
+            if (from > to) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            int mid = (from + to) >>> 1;
+            maxUpper[mid] = Math.max(upper[mid], Math.max(buildMaxUpper(from, mid - 1), buildMaxUpper(mid + 1, to)));
+            return maxUpper[mid];
+        }
+
+        /**
+         * @return positions in {@link #combinations} of all ranges containing the index, in increasing order.
+         */
+        List<Integer> stab(double index) {
+            List<Integer> found = new ArrayList<>();
+            stab(index, 0, order.length - 1, found);
+            Collections.sort(found);
+            return found;
+        }
+
+        private void stab(double index, int from, int to, List<Integer> found) {
+            while (from <= to) {
+                int mid = (from + to) >>> 1;
+                if (maxUpper[mid] < index) {
+                    return;
+                }
+                stab(index, from, mid - 1, found);
+                if (lower[mid] > index) {
+                    return;
+                }
+                if (upper[mid] >= index) {
+                    found.add(order[mid]);
+                }
+                from = mid + 1;
+            }
+        }
+    }
 }
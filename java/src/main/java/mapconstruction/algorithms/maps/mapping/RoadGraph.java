@@ -0,0 +1,275 @@
+package mapconstruction.algorithms.maps.mapping;
+
+import com.google.common.collect.SetMultimap;
+
+import java.util.*;
+
+/**
+ * Compact snapshot of the adjacency of a RoadMap, used for the connectivity checks on the road map.
+ * <p>
+ * Every ConnectionVertex gets an id, and the RoadSections leaving vertex {@code v} are stored as the edges
+ * {@code edgeStart[v]} up to {@code edgeStart[v + 1]}, each with the id of the opposite vertex and the continuous
+ * length of the RoadSection. The snapshot does not follow changes to the RoadMap, so the RoadMap creates a new one
+ * after its RoadSections changed.
+ * <p>
+ * Paths are found by a bidirectional Dijkstra bounded by the maximum path length. The distance arrays and heaps are
+ * reused between queries, so a RoadGraph must not be queried by several threads at once.
+ */
+final class RoadGraph {
+
+    private final Map<ConnectionVertex, Integer> vertexIds;
+
+    private final int[] edgeStart;
+    private final int[] edgeTarget;
+    private final double[] edgeLength;
+    private final RoadSection[] edgeSection;
+
+    /**
+     * Scratch space of the forward search from the sources and the backward search from the targets.
+     */
+    private final Search forward;
+    private final Search backward;
+
+    /**
+     * Whether the edge is skipped in the current query.
+     */
+    private final boolean[] excluded;
+
+    RoadGraph(SetMultimap<ConnectionVertex, RoadSection> adjacencyList) {
+        this.vertexIds = new HashMap<>();
+        List<ConnectionVertex> vertices = new ArrayList<>();
+        for (Map.Entry<ConnectionVertex, RoadSection> entry : adjacencyList.entries()) {
+            for (ConnectionVertex vertex : Arrays.asList(entry.getKey(), entry.getValue().getOppositeVertex(entry.getKey()))) {
+                if (!vertexIds.containsKey(vertex)) {
+                    vertexIds.put(vertex, vertices.size());
+                    vertices.add(vertex);
+                }
+            }
+        }
+
+        int n = vertices.size();
+        int m = adjacencyList.size();
+        this.edgeStart = new int[n + 1];
+        this.edgeTarget = new int[m];
+        this.edgeLength = new double[m];
+        this.edgeSection = new RoadSection[m];
+        int e = 0;
+        for (int v = 0; v < n; v++) {
+            edgeStart[v] = e;
+            ConnectionVertex vertex = vertices.get(v);
+            for (RoadSection roadSection : adjacencyList.get(vertex)) {
+                edgeTarget[e] = vertexIds.get(roadSection.getOppositeVertex(vertex));
+                edgeLength[e] = roadSection.getContinuousLength();
+                edgeSection[e] = roadSection;
+                e++;
+            }
+        }
+        edgeStart[n] = e;
+
+        this.forward = new Search(n);
+        this.backward = new Search(n);
+        this.excluded = new boolean[m];
+    }
+
+    /**
+     * Checks whether there is a path from one of the sources to one of the targets of at most the given length. The
+     * length of a path is the given offset of its source, plus the lengths of its RoadSections, plus the given offset
+     * of its target.
+     *
+     * @param sources          the vertices to start at, with their offsets.
+     * @param targets          the vertices to end at, with their offsets.
+     * @param maxPathLength    the maximum length of the path.
+     * @param excludedSections RoadSections the path may not use.
+     * @return whether such a path exists.
+     */
+    boolean isConnected(Map<ConnectionVertex, Double> sources, Map<ConnectionVertex, Double> targets,
+                        double maxPathLength, Set<RoadSection> excludedSections) {
+        if (maxPathLength < 0) {
+            return false;
+        }
+        forward.clear();
+        backward.clear();
+        double best = Double.POSITIVE_INFINITY;
+        for (Map.Entry<ConnectionVertex, Double> source : sources.entrySet()) {
+            Integer id = vertexIds.get(source.getKey());
+            if (id != null) {
+                forward.relax(id, source.getValue());
+            }
+        }
+        for (Map.Entry<ConnectionVertex, Double> target : targets.entrySet()) {
+            Integer id = vertexIds.get(target.getKey());
+            if (id != null) {
+                backward.relax(id, target.getValue());
+                best = Math.min(best, forward.distance(id) + target.getValue());
+            } else if (sources.containsKey(target.getKey())) {
+                // A vertex without RoadSections can still be both a source and a target.
+                best = Math.min(best, sources.get(target.getKey()) + target.getValue());
+            }
+        }
+
+        setExcluded(excludedSections, true);
+        try {
+            // Any path of at most maxPathLength not found yet has a vertex at less than the smallest key from the
+            // sources, and one at less than the smallest key from the targets.
+            while (best > maxPathLength && !forward.isEmpty() && !backward.isEmpty()
+                    && forward.minKey() + backward.minKey() <= maxPathLength) {
+                if (forward.size() <= backward.size()) {
+                    best = Math.min(best, step(forward, backward));
+                } else {
+                    best = Math.min(best, step(backward, forward));
+                }
+            }
+        } finally {
+            setExcluded(excludedSections, false);
+        }
+        return best <= maxPathLength;
+    }
+
+    /**
+     * Settles the closest vertex of the search and relaxes its edges.
+     *
+     * @return the length of the shortest path found through the vertex or its edges and the other search.
+     */
+    private double step(Search search, Search other) {
+        int v = search.poll();
+        double distance = search.distance(v);
+        double best = distance + other.distance(v);
+        for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+            if (excluded[e]) {
+                continue;
+            }
+            int w = edgeTarget[e];
+            search.relax(w, distance + edgeLength[e]);
+            best = Math.min(best, distance + edgeLength[e] + other.distance(w));
+        }
+        return best;
+    }
+
+    private void setExcluded(Set<RoadSection> excludedSections, boolean value) {
+        if (excludedSections.isEmpty()) {
+            return;
+        }
+        for (int e = 0; e < edgeSection.length; e++) {
+            if (excludedSections.contains(edgeSection[e])) {
+                excluded[e] = value;
+            }
+        }
+    }
+
+    /**
+     * Distances and indexed binary heap of a single Dijkstra search. Clearing only resets the vertices touched by
+     * the previous query.
+     */
+    private static final class Search {
+        private final double[] distance;
+        private final int[] heap;
+        /**
+         * Position of every vertex in the heap, -1 if it is not in the heap.
+         */
+        private final int[] position;
+        private final int[] touched;
+        private int touchedCount;
+        private int size;
+
+        Search(int n) {
+            this.distance = new double[n];
+            this.heap = new int[n];
+            this.position = new int[n];
+            this.touched = new int[n];
+            Arrays.fill(distance, Double.POSITIVE_INFINITY);
+            Arrays.fill(position, -1);
+        }
+
+        void clear() {
+            for (int i = 0; i < touchedCount; i++) {
+                distance[touched[i]] = Double.POSITIVE_INFINITY;
+                position[touched[i]] = -1;
+            }
+            touchedCount = 0;
+            size = 0;
+        }
+
+        double distance(int v) {
+            return distance[v];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double minKey() {
+            return distance[heap[0]];
+        }
+
+        /**
+         * Lowers the distance of the vertex, adding it to the heap if it was not reached yet.
+         */
+        void relax(int v, double d) {
+            if (!(d < distance[v])) {
+                return;
+            }
+            if (distance[v] == Double.POSITIVE_INFINITY) {
+                touched[touchedCount++] = v;
+                position[v] = size;
+                heap[size++] = v;
+            } else if (position[v] < 0) {
+                // Settled vertices keep their distance, as the edge lengths are not negative.
+                return;
+            }
+            distance[v] = d;
+            siftUp(position[v]);
+        }
+
+        /**
+         * Removes the closest vertex from the heap, after which its distance is final.
+         */
+        int poll() {
+            int v = heap[0];
+            size--;
+            position[v] = -2;
+            if (size > 0) {
+                heap[0] = heap[size];
+                position[heap[0]] = 0;
+                siftDown(0);
+            }
+            return v;
+        }
+
+        private void siftUp(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distance[heap[parent]] <= distance[v]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                position[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            position[v] = i;
+        }
+
+        private void siftDown(int i) {
+            int v = heap[i];
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && distance[heap[child + 1]] < distance[heap[child]]) {
+                    child++;
+                }
+                if (distance[v] <= distance[heap[child]]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                position[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            position[v] = i;
+        }
+    }
+}
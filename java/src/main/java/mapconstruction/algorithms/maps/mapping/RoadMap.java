@@ -52,6 +52,30 @@ public class RoadMap implements Serializable {
      */
     private int currentUID = 0;
 
+    /**
+     * Size of the cells of the spatial hashes of the ConnectionVertices and the RoadSections.
+     */
+    private static final double VERTEX_CELL_SIZE = 25;
+    private static final double SECTION_CELL_SIZE = 50;
+
+    /**
+     * Spatial hash of the ConnectionVertices, being the keys of the adjacencyList.
+     * Not serialized, but rebuilt when first used.
+     */
+    private transient SpatialHash<ConnectionVertex> vertexIndex;
+
+    /**
+     * Spatial hash of the RoadSections in presentRoadSections, stored in the cells covered by each of their edges.
+     * Contains RoadSections that are marked as removed as well. Not serialized, but rebuilt when first used.
+     */
+    private transient SpatialHash<RoadSection> sectionIndex;
+
+    /**
+     * Adjacency of the ConnectionVertices for the connectivity checks. Not serialized, and recreated when first used
+     * after RoadSections were added or removed.
+     */
+    private transient RoadGraph roadGraph;
+
     public RoadMap() {
         adjacencyList = HashMultimap.create();
         presentRoadSections = new ArrayList<>();
@@ -181,13 +205,14 @@ public class RoadMap implements Serializable {
             checkIfWeShouldRemoveEarlierRoadEdges(roadSection);
         }
 
-        adjacencyList.put(roadSection.getStartVertex(), roadSection);
+        addAdjacency(roadSection.getStartVertex(), roadSection);
         if (roadSection.getStartVertex() != roadSection.getEndVertex()) {
-            adjacencyList.put(roadSection.getEndVertex(), roadSection);
+            addAdjacency(roadSection.getEndVertex(), roadSection);
         }
         // This is to keep track of the order at which things happen.
         roadSection.setRemoved(false);
         presentRoadSections.add(roadSection);
+        indexRoadSection(roadSection);
     }
 
     /**
@@ -196,11 +221,11 @@ public class RoadMap implements Serializable {
      * @param roadSection, the RoadSection to be added to the graph
      */
     public void removeRoadSection(RoadSection roadSection) {
-        adjacencyList.remove(roadSection.getStartVertex(), roadSection);
+        removeAdjacency(roadSection.getStartVertex(), roadSection);
         checkIfRoadSectionsShouldBeMerged(adjacencyList.get(roadSection.getStartVertex()));
 
         if (roadSection.getStartVertex() != roadSection.getEndVertex()) {
-            adjacencyList.remove(roadSection.getEndVertex(), roadSection);
+            removeAdjacency(roadSection.getEndVertex(), roadSection);
             checkIfRoadSectionsShouldBeMerged(adjacencyList.get(roadSection.getEndVertex()));
         }
         // This is to keep track of the order at which things happen.
@@ -215,15 +240,78 @@ public class RoadMap implements Serializable {
      * @param roadSection roadSection
      */
     private void forceRemoveRoadSection(RoadSection roadSection) {
-        adjacencyList.remove(roadSection.getStartVertex(), roadSection);
+        removeAdjacency(roadSection.getStartVertex(), roadSection);
         if (roadSection.getStartVertex() != roadSection.getEndVertex()) {
-            adjacencyList.remove(roadSection.getEndVertex(), roadSection);
+            removeAdjacency(roadSection.getEndVertex(), roadSection);
         }
         // This is to keep track of the order at which things happen.
         presentRoadSections.remove(roadSection);
+        getSectionIndex().remove(roadSection);
         roadSection.setRemoved(true);
     }
 
+    /**
+     * Adds the RoadSection to the adjacent RoadSections of the vertex, keeping the spatial hash up to date.
+     */
+    private void addAdjacency(ConnectionVertex vertex, RoadSection roadSection) {
+        if (!adjacencyList.containsKey(vertex)) {
+            Point2D location = vertex.getLocation();
+            getVertexIndex().insert(vertex, location.getX(), location.getY(), location.getX(), location.getY());
+        }
+        adjacencyList.put(vertex, roadSection);
+        roadGraph = null;
+    }
+
+    /**
+     * Removes the RoadSection from the adjacent RoadSections of the vertex, keeping the spatial hash up to date.
+     */
+    private void removeAdjacency(ConnectionVertex vertex, RoadSection roadSection) {
+        adjacencyList.remove(vertex, roadSection);
+        if (!adjacencyList.containsKey(vertex)) {
+            getVertexIndex().remove(vertex);
+        }
+        roadGraph = null;
+    }
+
+    private void indexRoadSection(RoadSection roadSection) {
+        SpatialHash<RoadSection> index = getSectionIndex();
+        List<Point2D> pointList = roadSection.getPointList();
+        for (int i = 0; i < pointList.size(); i++) {
+            Point2D p1 = pointList.get(i);
+            Point2D p2 = pointList.get(Math.min(i + 1, pointList.size() - 1));
+            index.insert(roadSection, Math.min(p1.getX(), p2.getX()), Math.min(p1.getY(), p2.getY()),
+                    Math.max(p1.getX(), p2.getX()), Math.max(p1.getY(), p2.getY()));
+        }
+    }
+
+    private SpatialHash<ConnectionVertex> getVertexIndex() {
+        if (vertexIndex == null) {
+            vertexIndex = new SpatialHash<>(VERTEX_CELL_SIZE);
+            for (ConnectionVertex vertex : adjacencyList.keySet()) {
+                Point2D location = vertex.getLocation();
+                vertexIndex.insert(vertex, location.getX(), location.getY(), location.getX(), location.getY());
+            }
+        }
+        return vertexIndex;
+    }
+
+    private SpatialHash<RoadSection> getSectionIndex() {
+        if (sectionIndex == null) {
+            sectionIndex = new SpatialHash<>(SECTION_CELL_SIZE);
+            for (RoadSection roadSection : presentRoadSections) {
+                indexRoadSection(roadSection);
+            }
+        }
+        return sectionIndex;
+    }
+
+    private RoadGraph getRoadGraph() {
+        if (roadGraph == null) {
+            roadGraph = new RoadGraph(adjacencyList);
+        }
+        return roadGraph;
+    }
+
     /**
      * Split an edge from the graph on a specific point and return that point as
      * a newly created ConnectionVertex
@@ -483,6 +571,8 @@ public class RoadMap implements Serializable {
                 // Fully remove them to prevent adding them twice later on...
                 presentRoadSections.remove(roadSectionArray.get(0));
                 presentRoadSections.remove(roadSectionArray.get(1));
+                getSectionIndex().remove(roadSectionArray.get(0));
+                getSectionIndex().remove(roadSectionArray.get(1));
 
 
                 forceAddRoadSection(originalRoadSection);
@@ -567,14 +657,58 @@ public class RoadMap implements Serializable {
         if (point2D == null) {
             throw new IllegalArgumentException("Point2D is null");
         }
-        for (ConnectionVertex vertex : getConnectionVertices()) {
-            if (vertex.getLocation().distance(point2D) < 1) {
-                return vertex;
+        ConnectionVertex closest = null;
+        for (ConnectionVertex vertex : getConnectionVerticesNear(point2D, 1)) {
+            if (closest == null || vertex.getLocation().distance(point2D) < closest.getLocation().distance(point2D)) {
+                closest = vertex;
             }
         }
+        if (closest != null) {
+            return closest;
+        }
         return new ConnectionVertex(point2D, null);
     }
 
+    /**
+     * Checks whether the ConnectionVertex is part of the RoadMap, which is the case if any RoadSection is connected
+     * to it.
+     *
+     * @param connectionVertex the ConnectionVertex
+     * @return whether the ConnectionVertex is present.
+     */
+    public boolean containsConnectionVertex(ConnectionVertex connectionVertex) {
+        return adjacencyList.containsKey(connectionVertex);
+    }
+
+    /**
+     * Get all ConnectionVertices at less than the given distance from the point.
+     *
+     * @param point2D  the point
+     * @param distance the distance
+     * @return all ConnectionVertices with {@code vertex.getLocation().distance(point2D) < distance}
+     */
+    public Set<ConnectionVertex> getConnectionVerticesNear(Point2D point2D, double distance) {
+        Set<ConnectionVertex> vertices = getVertexIndex().query(point2D.getX() - distance, point2D.getY() - distance,
+                point2D.getX() + distance, point2D.getY() + distance);
+        vertices.removeIf(vertex -> !(vertex.getLocation().distance(point2D) < distance));
+        return vertices;
+    }
+
+    /**
+     * Get the RoadSections that are not removed and might be at less than the given distance from the point. All
+     * present RoadSections that are closer are returned, but some RoadSections that are further away might be as well.
+     *
+     * @param point2D  the point
+     * @param distance the distance
+     * @return a superset of the present RoadSections at less than the given distance from the point.
+     */
+    public Set<RoadSection> getPresentRoadSectionsNear(Point2D point2D, double distance) {
+        Set<RoadSection> roadSections = getSectionIndex().query(point2D.getX() - distance, point2D.getY() - distance,
+                point2D.getX() + distance, point2D.getY() + distance);
+        roadSections.removeIf(RoadSection::isRemoved);
+        return roadSections;
+    }
+
     /**
      * Check whether the secondPoint can be reached starting from the firstPoint within maxPathLength meters.
      *
@@ -594,54 +728,27 @@ public class RoadMap implements Serializable {
             return (distance < maxPathLength);
         }
 
-        // We calculate if the distance from firstPoint to end of secondRoadSection (passing startingVertex) is
-        // less than maxPathLength in continuous length.
-        double distanceCovered = GeometryUtil.getIndexToIndexDistance(secondRoadSection.getPointList(),
-                0, secondIndex);
-        if (checkIfTwoPointsAreConnectedLoopForRoadSection(
-                firstIndex, firstRoadSection, secondRoadSection.getStartVertex(),
-                maxPathLength - distanceCovered)) {
-            return true;
-        }
+        // The path leaves the firstRoadSection at one of its vertices, and enters the secondRoadSection at one of its
+        // vertices.
+        List<Point2D> firstPointList = firstRoadSection.getPointList();
+        Map<ConnectionVertex, Double> sources = new HashMap<>();
+        putMinimum(sources, firstRoadSection.getStartVertex(),
+                GeometryUtil.getIndexToIndexDistance(firstPointList, 0, firstIndex));
+        putMinimum(sources, firstRoadSection.getEndVertex(),
+                GeometryUtil.getIndexToIndexDistance(firstPointList, firstIndex, firstPointList.size() - 1));
 
-        // We calculate if the distance from firstPoint to end of secondRoadSection (passing endVertex) is
-        // less than maxPathLength in continuous length.
-        distanceCovered = GeometryUtil.getIndexToIndexDistance(secondRoadSection.getPointList(),
-                secondIndex, secondRoadSection.getPointList().size() - 1);
-        return checkIfTwoPointsAreConnectedLoopForRoadSection(
-                firstIndex, firstRoadSection, secondRoadSection.getEndVertex(),
-                maxPathLength - distanceCovered);
-    }
+        List<Point2D> secondPointList = secondRoadSection.getPointList();
+        Map<ConnectionVertex, Double> targets = new HashMap<>();
+        putMinimum(targets, secondRoadSection.getStartVertex(),
+                GeometryUtil.getIndexToIndexDistance(secondPointList, 0, secondIndex));
+        putMinimum(targets, secondRoadSection.getEndVertex(),
+                GeometryUtil.getIndexToIndexDistance(secondPointList, secondIndex, secondPointList.size() - 1));
 
-    /**
-     * Tries to find a path of less than maxRemainingPathLength meters from firstPoint to endVertex, if found
-     * we return true. (firstPoint = firstIndex on firstRoadSection.getPointList()).
-     *
-     * @param firstIndex             the index on the firstRoadSection of the firstPoint
-     * @param firstRoadSection       the roadSection the firstPoint is a part of.
-     * @param endVertex              the final vertex we want to end at
-     * @param maxRemainingPathLength the remaining distance we can travel before we should find our endVertex.
-     * @return whether there is a path of less than maxRemainingPathLength meters from firstPoint to endVertex.
-     */
-    private boolean checkIfTwoPointsAreConnectedLoopForRoadSection(double firstIndex, RoadSection firstRoadSection,
-                                                                   ConnectionVertex endVertex,
-                                                                   double maxRemainingPathLength) {
-        if (maxRemainingPathLength < 0) {
-            return false;
-        }
-        double distanceCovered = GeometryUtil.getIndexToIndexDistance(firstRoadSection.getPointList(),
-                0, firstIndex);
-        if (checkIfTwoPointsAreConnected(firstRoadSection.getStartVertex(), endVertex,
-                maxRemainingPathLength - distanceCovered, new HashSet<>())) {
-            return true;
-        }
+        return getRoadGraph().isConnected(sources, targets, maxPathLength, Collections.emptySet());
+    }
 
-        // We calculate if the distance from firstPoint to end of secondRoadSection (passing endVertex) is
-        // less than maxPathLength in continuous length.
-        distanceCovered = GeometryUtil.getIndexToIndexDistance(firstRoadSection.getPointList(),
-                firstIndex, firstRoadSection.getPointList().size() - 1);
-        return checkIfTwoPointsAreConnected(firstRoadSection.getEndVertex(), endVertex,
-                maxRemainingPathLength - distanceCovered, new HashSet<>());
+    private static void putMinimum(Map<ConnectionVertex, Double> distances, ConnectionVertex vertex, double distance) {
+        distances.merge(vertex, distance, Math::min);
     }
 
     /**
@@ -650,32 +757,13 @@ public class RoadMap implements Serializable {
      * @param startCV                the current connectionVertex we are trying to move away from to goalCV.
      * @param goalCV                 the goalConnectionVertex.
      * @param maxRemainingPathLength the remaining distance we are allowed to cover before we return false
+     * @param settledSections        the roadSections we are not allowed to use.
      * @return true if we can go from startCV to goalCV within the given maxRemainingPathLenght, false otherwise.
      */
     public boolean checkIfTwoPointsAreConnected(ConnectionVertex startCV, ConnectionVertex goalCV,
                                                 double maxRemainingPathLength, Set<RoadSection> settledSections) {
-        if (maxRemainingPathLength < 0) {
-            return false;
-        }
-
-        if (startCV.equals(goalCV)) {
-            return true;
-        }
-
-
-        Set<RoadSection> roadSections = getRoadSectionsForConnectionVertex(startCV);
-        for (RoadSection roadSection : roadSections) {
-            if (settledSections.contains(roadSection)) {
-                continue;
-            }
-            Set<RoadSection> copySettled = new HashSet<>(settledSections);
-            copySettled.add(roadSection);
-            if (checkIfTwoPointsAreConnected(roadSection.getOppositeVertex(startCV), goalCV,
-                    maxRemainingPathLength - roadSection.getContinuousLength(), copySettled)) {
-                return true;
-            }
-        }
-        return false;
+        return getRoadGraph().isConnected(Collections.singletonMap(startCV, 0.0),
+                Collections.singletonMap(goalCV, 0.0), maxRemainingPathLength, settledSections);
     }
 
     /**
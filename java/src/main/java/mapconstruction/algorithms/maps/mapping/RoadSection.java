@@ -154,9 +154,22 @@ public class RoadSection implements Serializable {
     }
 
     RoadSection(List<Point2D> points, int uid) {
+        this(points, new ConnectionVertex(points.get(0), null),
+                new ConnectionVertex(points.get(points.size()-1), null), uid);
+    }
+
+    /**
+     * Create an edge between two ConnectionVertices that is not drawn because of a BundleStreet.
+     *
+     * @param points      the list of points which represent a trajectory
+     * @param startVertex the ConnectionVertex at the start of the points.
+     * @param endVertex   the ConnectionVertex at the end of the points.
+     * @param uid         the uid
+     */
+    RoadSection(List<Point2D> points, ConnectionVertex startVertex, ConnectionVertex endVertex, int uid) {
         this.pointList = points;
-        this.startVertex = new ConnectionVertex(points.get(0), null);
-        this.endVertex = new ConnectionVertex(points.get(points.size()-1), null);
+        this.startVertex = startVertex;
+        this.endVertex = endVertex;
         this.bundleStreets = new HashMap<>();
         this.subtrajectories = new HashSet<>();
         this.uid = uid;
@@ -0,0 +1,98 @@
+package mapconstruction.algorithms.maps.mapping;
+
+import com.google.common.base.Preconditions;
+
+import java.util.*;
+
+/**
+ * Uniform grid of square cells over the plane, only storing the cells that are not empty, mapping every cell to the
+ * values of which the area intersects the cell.
+ * <p>
+ * Values are added with one or more rectangles, and are stored in all cells covered by those. Queries return all
+ * values stored in the cells covered by the queried rectangle, which is a superset of the values of which the area
+ * actually intersects the rectangle. Values are compared by {@code equals}.
+ *
+ * @param <T> type of the values.
+ */
+final class SpatialHash<T> {
+
+    private final double cellSize;
+
+    private final Map<Long, Set<T>> cells;
+
+    /**
+     * Cells every value is stored in, to remove it again.
+     */
+    private final Map<T, Set<Long>> cellsOfValue;
+
+    /**
+     * @param cellSize width and height of the cells, preferably in the order of the queried distances.
+     * @throws IllegalArgumentException if {@code cellSize <= 0}.
+     */
+    SpatialHash(double cellSize) {
+        Preconditions.checkArgument(cellSize > 0, "cellSize <= 0");
+        this.cellSize = cellSize;
+        this.cells = new HashMap<>();
+        this.cellsOfValue = new HashMap<>();
+    }
+
+    /**
+     * Adds the value to all cells covered by the given rectangle, besides the cells it was already added to.
+     */
+    void insert(T value, double minX, double minY, double maxX, double maxY) {
+        Set<Long> valueCells = cellsOfValue.computeIfAbsent(value, k -> new HashSet<>());
+        for (long x = cell(minX); x <= cell(maxX); x++) {
+            for (long y = cell(minY); y <= cell(maxY); y++) {
+                long key = key(x, y);
+                if (valueCells.add(key)) {
+                    cells.computeIfAbsent(key, k -> new HashSet<>()).add(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the value from all cells.
+     */
+    void remove(T value) {
+        Set<Long> valueCells = cellsOfValue.remove(value);
+        if (valueCells == null) {
+            return;
+        }
+        for (long key : valueCells) {
+            Set<T> values = cells.get(key);
+            values.remove(value);
+            if (values.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    boolean contains(T value) {
+        return cellsOfValue.containsKey(value);
+    }
+
+    /**
+     * @return all values stored in the cells covered by the given rectangle.
+     */
+    Set<T> query(double minX, double minY, double maxX, double maxY) {
+        Set<T> found = new HashSet<>();
+        for (long x = cell(minX); x <= cell(maxX); x++) {
+            for (long y = cell(minY); y <= cell(maxY); y++) {
+                Set<T> values = cells.get(key(x, y));
+                if (values != null) {
+                    found.addAll(values);
+                }
+            }
+        }
+        return found;
+    }
+
+    private long cell(double coordinate) {
+        return (long) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(long x, long y) {
+        return (x << 32) ^ (y & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,208 @@
+package mapconstruction.algorithms.representative;
+
+import com.google.common.base.Preconditions;
+import mapconstruction.trajectories.Subtrajectory;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Index over all edges of the subtrajectories of a single bundle, used to find the edges crossed by a short line
+ * without testing every edge of the bundle.
+ * <p>
+ * Every edge gets an id, numbering the edges of the subtrajectories consecutively in the iteration order of the given
+ * collection. Queries return the ids in increasing order, so the candidates are visited in the same order as when
+ * iterating over all subtrajectories and their edges.
+ * <p>
+ * The edges are stored in a uniform grid over the bounding box of the bundle, where each edge is added to all cells
+ * covered by its bounding box. The cells are packed into a single array, as the index is built for every bundle and
+ * building an R-tree costs more than it saves on the small bundles.
+ */
+final class BundleEdgeIndex {
+
+    private final List<Subtrajectory> subtrajectories;
+
+    /**
+     * Edge and its subtrajectory, by id.
+     */
+    private final Line2D[] edges;
+    private final int[] subtrajectoryOf;
+
+    /**
+     * Id of the first edge of every subtrajectory, with the total number of edges appended.
+     */
+    private final int[] firstEdge;
+
+    private double minX;
+    private double minY;
+    private double cellSize;
+    private int columns;
+    private int rows;
+
+    /**
+     * Lowest column and row of the cells covered by every edge.
+     */
+    private final int[] firstColumn;
+    private final int[] firstRow;
+
+    /**
+     * Ids of the edges in cell {@code c} are {@code cellEdges[cellStart[c]]} up to {@code cellEdges[cellStart[c + 1]]}.
+     */
+    private final int[] cellStart;
+    private final int[] cellEdges;
+
+    /**
+     * Margin by which query windows are grown, to not miss edges touching the line due to rounding.
+     */
+    private double margin;
+
+    /**
+     * Builds the index for the edges of the given subtrajectories.
+     *
+     * @param trajectories subtrajectories to index.
+     * @param cellSize     preferred width and height of the cells, usually about the length of the queried lines.
+     *                     The cells are made larger if the grid would get many more cells than edges.
+     * @throws IllegalArgumentException if {@code cellSize <= 0}.
+     */
+    BundleEdgeIndex(Collection<Subtrajectory> trajectories, double cellSize) {
+        Preconditions.checkArgument(cellSize > 0, "cellSize <= 0");
+        this.subtrajectories = new ArrayList<>(trajectories);
+        this.firstEdge = new int[subtrajectories.size() + 1];
+        for (int s = 0; s < subtrajectories.size(); s++) {
+            firstEdge[s + 1] = firstEdge[s] + Math.max(0, subtrajectories.get(s).numPoints() - 1);
+        }
+
+        int n = firstEdge[subtrajectories.size()];
+        this.edges = new Line2D[n];
+        this.subtrajectoryOf = new int[n];
+        for (int s = 0; s < subtrajectories.size(); s++) {
+            Subtrajectory sub = subtrajectories.get(s);
+            for (int j = 0; j < firstEdge[s + 1] - firstEdge[s]; j++) {
+                edges[firstEdge[s] + j] = sub.getEdge(j);
+                subtrajectoryOf[firstEdge[s] + j] = s;
+            }
+        }
+
+        this.firstColumn = new int[n];
+        this.firstRow = new int[n];
+        if (n == 0) {
+            this.cellStart = new int[1];
+            this.cellEdges = new int[0];
+            return;
+        }
+        initGrid(cellSize);
+
+        // Count the edges per cell, then fill the cells.
+        int[] lastColumn = new int[n];
+        int[] lastRow = new int[n];
+        this.cellStart = new int[columns * rows + 1];
+        for (int id = 0; id < n; id++) {
+            Line2D e = edges[id];
+            firstColumn[id] = column(Math.min(e.getX1(), e.getX2()));
+            lastColumn[id] = column(Math.max(e.getX1(), e.getX2()));
+            firstRow[id] = row(Math.min(e.getY1(), e.getY2()));
+            lastRow[id] = row(Math.max(e.getY1(), e.getY2()));
+            for (int r = firstRow[id]; r <= lastRow[id]; r++) {
+                for (int c = firstColumn[id]; c <= lastColumn[id]; c++) {
+                    cellStart[r * columns + c + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        this.cellEdges = new int[cellStart[columns * rows]];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int id = 0; id < n; id++) {
+            for (int r = firstRow[id]; r <= lastRow[id]; r++) {
+                for (int c = firstColumn[id]; c <= lastColumn[id]; c++) {
+                    cellEdges[fill[r * columns + c]++] = id;
+                }
+            }
+        }
+    }
+
+    private void initGrid(double preferredCellSize) {
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Line2D e : edges) {
+            minX = Math.min(minX, Math.min(e.getX1(), e.getX2()));
+            minY = Math.min(minY, Math.min(e.getY1(), e.getY2()));
+            maxX = Math.max(maxX, Math.max(e.getX1(), e.getX2()));
+            maxY = Math.max(maxY, Math.max(e.getY1(), e.getY2()));
+        }
+        double width = maxX - minX;
+        double height = maxY - minY;
+        cellSize = Math.max(preferredCellSize,
+                Math.max(Math.sqrt(width * height / edges.length), Math.max(width, height) / edges.length));
+        columns = (int) (width / cellSize) + 1;
+        rows = (int) (height / cellSize) + 1;
+        double scale = Math.max(Math.max(Math.abs(minX), Math.abs(maxX)), Math.max(Math.abs(minY), Math.abs(maxY)));
+        margin = 1e-9 * Math.max(1, scale);
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+    }
+
+    /**
+     * Finds the edges that may intersect the given line, being all edges of which the bounding box shares a cell with
+     * the bounding box of the line.
+     *
+     * @return ids of the found edges, in increasing order.
+     */
+    int[] candidates(Line2D line) {
+        if (edges.length == 0) {
+            return new int[0];
+        }
+        int c1 = column(Math.min(line.getX1(), line.getX2()) - margin);
+        int c2 = column(Math.max(line.getX1(), line.getX2()) + margin);
+        int r1 = row(Math.min(line.getY1(), line.getY2()) - margin);
+        int r2 = row(Math.max(line.getY1(), line.getY2()) + margin);
+
+        int size = 0;
+        for (int r = r1; r <= r2; r++) {
+            size += cellStart[r * columns + c2 + 1] - cellStart[r * columns + c1];
+        }
+        int[] found = new int[size];
+        int count = 0;
+        for (int r = r1; r <= r2; r++) {
+            for (int c = c1; c <= c2; c++) {
+                for (int i = cellStart[r * columns + c]; i < cellStart[r * columns + c + 1]; i++) {
+                    int id = cellEdges[i];
+                    // An edge covering several of the cells is only reported in the first of those.
+                    if (Math.max(firstColumn[id], c1) == c && Math.max(firstRow[id], r1) == r) {
+                        found[count++] = id;
+                    }
+                }
+            }
+        }
+        int[] ids = Arrays.copyOf(found, count);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    Line2D getEdge(int id) {
+        return edges[id];
+    }
+
+    Subtrajectory getSubtrajectory(int id) {
+        return subtrajectories.get(subtrajectoryOf[id]);
+    }
+
+    /**
+     * @return index of the edge within its subtrajectory.
+     */
+    int getEdgeIndex(int id) {
+        return id - firstEdge[subtrajectoryOf[id]];
+    }
+}
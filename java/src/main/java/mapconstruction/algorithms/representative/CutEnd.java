@@ -29,10 +29,8 @@ public class CutEnd {
                 if (b == null) {
                     System.out.println("ERR " + bList.size());
                 }
-                if (!b.isBundleRepCutOff()) {
-                    cutOffBundleEndWhenUnrepresented(b);
-                    b.setBundleRepCutOff(true);
-                }
+                int bundleClass = STORAGE.getClassFromBundle(b);
+                cutOffBundleEnd(b, STORAGE.getEvolutionDiagram().getBestEpsilon(bundleClass));
             }
             long end = System.currentTimeMillis();
             Log.log(LogLevel.INFO, "Cutting representatives", "Cutting off bundles time: %d ms", end - start);
@@ -40,17 +38,30 @@ public class CutEnd {
         }
     }
 
+    /**
+     * Cut's off the representative of a single bundle, unless it was cut off before. Does not check whether cutting
+     * off is enabled.
+     *
+     * @param b           the bundle to cut off.
+     * @param bestEpsilon the best epsilon of the class of the bundle.
+     */
+    public static void cutOffBundleEnd(Bundle b, double bestEpsilon) {
+        if (!b.isBundleRepCutOff()) {
+            cutOffBundleEndWhenUnrepresented(b, bestEpsilon);
+            b.setBundleRepCutOff(true);
+        }
+    }
+
     /**
      * Given a bundle, we trim/cut the endings of the RepresentativeSubtrajectory where it is badly represented.
      * <p>
      * This is done because often we have a RepresentativeSubtrajectory that is just longer then the rest of the
      * subtrajectories. This causes a lot of noise and bad behavior in our force representative.
      *
-     * @param b the bundle that might get it's RepresentativeSubtrajectory endings trimmed.
+     * @param b           the bundle that might get it's RepresentativeSubtrajectory endings trimmed.
+     * @param bestEpsilon the best epsilon of the class of the bundle.
      */
-    private static void cutOffBundleEndWhenUnrepresented(Bundle b) {
-        int bundleClass = STORAGE.getClassFromBundle(b);
-        double bestEpsilon = STORAGE.getEvolutionDiagram().getBestEpsilon(bundleClass);
+    private static void cutOffBundleEndWhenUnrepresented(Bundle b, double bestEpsilon) {
 
         Subtrajectory repSub = b.getOriginalRepresentative();
 
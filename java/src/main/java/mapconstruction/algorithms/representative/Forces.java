@@ -65,6 +65,9 @@ public class Forces {
         filteredRepPoints = filterInExtraPointsAtVIPPlaces(
                 filteredRepPoints, subtrajectoriesWithoutRepresentative);
 
+        /* The perpendicular lines are short compared to the bundle, so we only test the edges near them */
+        BundleEdgeIndex edgeIndex = new BundleEdgeIndex(trajectories, ALGOCONSTANTS.getForceMaxEps() / 2);
+
         for (int i = 0; i < filteredRepPoints.size(); i++) {
             // SuperSharpCheck: Preventing more than 125 degree turns of making our representative super ugly..
             if (i > 0 && i < filteredRepPoints.size() - 1) {
@@ -81,7 +84,7 @@ public class Forces {
             Line2D perpACThroughB = getLongPerpendicularOnACThroughB(ABCline, filteredRepPoints.get(i));
 
             List<OrthogonalIntersection> intersectionsWithDeltaAngles =
-                    findIntersections(trajectories, perpACThroughB, ABCline, currentPoint);
+                    findIntersections(edgeIndex, perpACThroughB, ABCline, currentPoint);
 
             // Only populate these when their variables are initialized
             if (listOfACLines != null) {
@@ -354,41 +357,41 @@ public class Forces {
      * intersect with the perpendicular line through B. For every intersection get the intersection point and the angle
      * between the edge and edge AC.
      *
-     * @param trajectories      the subtrajectories which points will be on a perpendicular line of OriginalAC.
+     * @param edgeIndex         index over the edges of the subtrajectories which points will be on a perpendicular
+     *                          line of OriginalAC.
      * @param perpendicularLine the
      * @param originalAC        the line where we take the perpendicular lines of which we later on check intersection with
      * @return List of pairs from Point2D to Doubles.
      */
-    private static List<OrthogonalIntersection> findIntersections(Set<Subtrajectory> trajectories,
+    private static List<OrthogonalIntersection> findIntersections(BundleEdgeIndex edgeIndex,
                                                                   Line2D perpendicularLine,
                                                                   Line2D originalAC,
                                                                   Point2D originalPoint) {
         List<OrthogonalIntersection> intersectionsWithAngels = new ArrayList<>();
 
-        for (Subtrajectory sub : trajectories) {
+        // Candidates are ordered by subtrajectory, and by edge within a subtrajectory.
+        int[] candidates = edgeIndex.candidates(perpendicularLine);
+        int k = 0;
+        while (k < candidates.length) {
+            Subtrajectory sub = edgeIndex.getSubtrajectory(candidates[k]);
             double minDistance = Double.MAX_VALUE;
             double minimumAngleFound = 180;
             Point2D minimumAnglePoint = null;
-            int edgeIndex = -1;
-            for (int j = 0; j < sub.numPoints() - 1; j++) {
-                if (perpendicularLine.intersectsLine(sub.getEdge(j))) {
-                    Point2D intersectionPoint = GeometryUtil.intersectionPoint(perpendicularLine, sub.getEdge(j));
+            int minimumEdgeIndex = -1;
+            for (; k < candidates.length && edgeIndex.getSubtrajectory(candidates[k]) == sub; k++) {
+                Line2D edge = edgeIndex.getEdge(candidates[k]);
+                if (perpendicularLine.intersectsLine(edge)) {
+                    Point2D intersectionPoint = GeometryUtil.intersectionPoint(perpendicularLine, edge);
                     if (intersectionPoint != null) {
-                        double differenceAngle =
-                                GeometryUtil.getHeadingDirectionDifference(sub.getEdge(j), originalAC);
+                        double differenceAngle = GeometryUtil.getHeadingDirectionDifference(edge, originalAC);
 
-                        double distance = sub.getEdge(j).ptSegDist(originalPoint);
+                        double distance = edge.ptSegDist(originalPoint);
                         if (distance < minDistance && differenceAngle < 90) {
                             minimumAnglePoint = intersectionPoint;
                             minimumAngleFound = differenceAngle;
-                            edgeIndex = j;
+                            minimumEdgeIndex = edgeIndex.getEdgeIndex(candidates[k]);
                             minDistance = distance;
                         }
-//                        if (differenceAngle < minimumAngleFound) {
-//                            minimumAnglePoint = intersectionPoint;
-//                            minimumAngleFound = differenceAngle;
-//                            edgeIndex = j;
-//                        }
                     } else {
 //                        This is not really an error. It's quite often possible we can't find this..
 //                        System.out.println("Error Forces.calculateForceStep. Not able to find the intersection");
@@ -397,7 +400,7 @@ public class Forces {
             }
             if (minimumAngleFound != 180) {
                 intersectionsWithAngels.add(
-                        new OrthogonalIntersection(minimumAnglePoint, minimumAngleFound, sub, edgeIndex)
+                        new OrthogonalIntersection(minimumAnglePoint, minimumAngleFound, sub, minimumEdgeIndex)
                 );
             }
         }
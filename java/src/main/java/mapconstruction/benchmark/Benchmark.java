@@ -5,45 +5,79 @@ import mapconstruction.log.Log;
 import mapconstruction.log.LogLevel;
 import mapconstruction.trajectories.Bundle;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Helper class for doing in-development benchmarks. Provides functionality for timings and memory measurements.
- * Has the ability to manage both sequential and parallel programs, however requires careful handling when running
- * in parallel.
+ * <p>
+ * Timings are recorded as nested spans. Every thread has its own stack of open spans and its own call tree, so spans
+ * of different threads never interleave, and recording a span takes no locks shared between threads. On reporting,
+ * the trees of all threads are merged by the names of the spans into a single tree of {@link ProfileNode}s, below
+ * the global span opened by {@link #start(BenchmarkManager, String)}.
+ * <p>
+ * Spans of a task running on another thread are placed below the spans that were open when the task was created by
+ * capturing those with {@link #capture()} and opening the task's span with {@link #span(Context, String, Object...)}.
  */
 public class Benchmark {
 
-    private static String name;
-    private static BenchmarkManager instance;
-    private static Timing current;
-    private static Map<String, Set<Bundle>> result;
-    private static boolean enabled;
+    private static final String GLOBAL = "Global";
+
+    /**
+     * Open span that does nothing, returned while not benchmarking.
+     */
+    private static final Span NO_SPAN = () -> {};
+
+    /**
+     * Bean measuring the allocated bytes per thread, or null if the JVM does not support it.
+     */
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+
+    private static volatile Session session;
     private static Thread memMonitor = null;
 
+    /**
+     * Span opened by {@link #span(String, Object...)}, closing it ends the span.
+     */
+    public interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * The spans that were open on a thread at the moment of {@link #capture()}.
+     */
+    public static final class Context {
+        private final List<String> path;
+
+        private Context(List<String> path) {
+            this.path = path;
+        }
+    }
+
     /**
      * Start a new global benchmark, overrides any existing benchmarks.
      */
     public static void start(BenchmarkManager bm, String n) {
-        name = n;
-        instance = bm;
-        // preserve order of insertion
-        result = new LinkedHashMap<>();
-        current = new Timing("Global");
-        current.time();
-        enabled = true;
+        Session s = new Session(bm, n);
+        session = s;
+        s.profile().openGlobal();
         if (memMonitor != null && !memMonitor.isAlive()) memMonitor.start();
 
         Log.log(LogLevel.INFO, "Benchmark", "Starting benchmark of bundling algorithm at %s", new Date());
     }
 
     /**
-     * Stop benchmarking, usually called at the end of a benchmarked algorithm.
+     * Stop benchmarking, usually called at the end of a benchmarked algorithm on the thread that started it. Closes
+     * all spans of this thread, spans still open on other threads are not reported.
      */
     public static void stop() {
-        if (!enabled) return;
-        while (pop()) {}
-        current.time();
+        Session s = session;
+        if (s == null || s.stopped) return;
+        s.profile().closeTo(0);
+        s.stopped = true;
         if (memMonitor != null) memMonitor.interrupt();
 
         Log.log(LogLevel.INFO, "Benchmark", "Completed benchmark of bundling algorithm at %s", new Date());
@@ -53,16 +87,21 @@ public class Benchmark {
      * Report all findings to the configured benchmark folder.
      */
     public static void report() {
-        if (!enabled) return;
+        Session s = session;
+        if (s == null) return;
         Date now = new Date();
+        Map<String, Set<Bundle>> results;
+        synchronized (s.results) {
+            results = new LinkedHashMap<>(s.results);
+        }
         // create yaml
-        for (Map.Entry<String, Set<Bundle>> result : result.entrySet()) {
+        for (Map.Entry<String, Set<Bundle>> result : results.entrySet()) {
             // create image
-            instance.saveSnapshot(name, now, result.getKey(), result.getValue());
+            s.manager.saveSnapshot(s.name, now, result.getKey(), result.getValue());
         }
-        instance.saveStats(name, now, current, result);
+        s.manager.saveStats(s.name, now, s.merge(), results);
 
-        Log.log(LogLevel.INFO, "Benchmark", "Saved benchmark results to %s/%s", name, now);
+        Log.log(LogLevel.INFO, "Benchmark", "Saved benchmark results to %s/%s", s.name, now);
 
     }
 
@@ -72,39 +111,28 @@ public class Benchmark {
     }
 
     /**
-     * Push a new sub-benchmark onto the timings stack
+     * @return the call tree of all threads recorded so far, or null if no benchmark was started.
      */
-    public static void push(String format, Object... arguments) {
-        if (!enabled) return;
-        String name = String.format(format, arguments);
-        // create and start a nested timing
-        current = current.addSubtiming(name);
-        current.time();
+    public static ProfileNode getProfile() {
+        Session s = session;
+        return s == null ? null : s.merge();
     }
 
     /**
-     * Pop from a sub-benchmark on the timings stack
+     * Push a new sub-benchmark onto the timings stack of the current thread
      */
-    public static boolean pop() {
-        if (enabled && current.hasParent()) {
-            current.time(); // pause child timer
-            current = current.getParent();
-            return true;
-        }
-        return false;
+    public static void push(String format, Object... arguments) {
+        Session s = active();
+        if (s == null) return;
+        s.profile().open(null, String.format(format, arguments));
     }
 
     /**
-     * Create a new parallel timing, which doesn't stop the parent and needs to be closed upon its own. Additionally,
-     * a parallel subtiming can be automatically terminated by wrapping it inside a try-catch block.
+     * Pop from a sub-benchmark on the timings stack of the current thread
      */
-    public static Timing parallel(String format, Object... arguments) {
-        if (!enabled) return null;
-        String name = String.format(format, arguments);
-        // create an unbound subtiming and start it
-        Timing subtiming = current.addSubtiming(name);
-        subtiming.time();
-        return subtiming;
+    public static boolean pop() {
+        Session s = active();
+        return s != null && s.profile().pop();
     }
 
     /**
@@ -116,12 +144,45 @@ public class Benchmark {
         }
     }
 
+    /**
+     * Open a new span on the current thread, which is closed together with all spans opened after it by closing the
+     * returned span. Intended to be used in a try-with-resources block.
+     */
+    public static Span span(String format, Object... arguments) {
+        return span(null, format, arguments);
+    }
+
+    /**
+     * Open a new span on the current thread below the spans of the given context, usually captured on the thread
+     * that created the current task.
+     *
+     * @param parent spans to nest the new span in, or null to nest it in the open spans of the current thread.
+     */
+    public static Span span(Context parent, String format, Object... arguments) {
+        Session s = active();
+        if (s == null) return NO_SPAN;
+        ThreadProfile profile = s.profile();
+        int depth = profile.open(parent, String.format(format, arguments));
+        return () -> profile.closeTo(depth);
+    }
+
+    /**
+     * @return the spans currently open on this thread, to nest the spans of tasks on other threads in.
+     */
+    public static Context capture() {
+        Session s = active();
+        return s == null ? null : new Context(s.profile().path());
+    }
+
     /**
      * Report a new (named) result. Used for example when reporting for multiple epsilon.
      */
     public static void addResult(String name, Set<Bundle> bundles) {
-        if (!enabled) return;
-        result.put(name, bundles);
+        Session s = active();
+        if (s == null) return;
+        synchronized (s.results) {
+            s.results.put(name, bundles);
+        }
     }
 
     public static void memMonitor() {
@@ -135,6 +196,172 @@ public class Benchmark {
         }
     }
 
+    private static Session active() {
+        Session s = session;
+        return s == null || s.stopped ? null : s;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+            if (allocations.isThreadAllocatedMemorySupported()) {
+                if (!allocations.isThreadAllocatedMemoryEnabled()) {
+                    allocations.setThreadAllocatedMemoryEnabled(true);
+                }
+                return allocations;
+            }
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATIONS == null ? 0 : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * A single benchmark, from start until it is stopped.
+     */
+    private static final class Session {
+        final BenchmarkManager manager;
+        final String name;
+        // preserve order of insertion
+        final Map<String, Set<Bundle>> results = new LinkedHashMap<>();
+        final Queue<ThreadProfile> profiles = new ConcurrentLinkedQueue<>();
+        final ThreadLocal<ThreadProfile> current = ThreadLocal.withInitial(() -> {
+            ThreadProfile profile = new ThreadProfile();
+            profiles.add(profile);
+            return profile;
+        });
+        volatile boolean stopped;
+
+        Session(BenchmarkManager manager, String name) {
+            this.manager = manager;
+            this.name = name;
+        }
+
+        ThreadProfile profile() {
+            return current.get();
+        }
+
+        /**
+         * Merges the trees of all threads below the global span.
+         */
+        ProfileNode merge() {
+            ProfileNode global = new ProfileNode(GLOBAL);
+            for (ThreadProfile profile : profiles) {
+                synchronized (profile) {
+                    for (ProfileNode node : profile.root.getChildren()) {
+                        if (node.getName().equals(GLOBAL) && profile.hasGlobal) {
+                            global.merge(node);
+                        } else {
+                            global.child(node.getName()).merge(node);
+                        }
+                    }
+                }
+            }
+            return global;
+        }
+    }
+
+    /**
+     * Call tree and open spans of a single thread. Only modified by its own thread; the lock is uncontended except
+     * while the trees are merged.
+     */
+    private static final class ThreadProfile {
+        final ProfileNode root = new ProfileNode("");
+        final Deque<Frame> frames = new ArrayDeque<>();
+        boolean hasGlobal;
+
+        /**
+         * Opens a span, below the spans of the given context if it differs from the open spans.
+         *
+         * @return the number of open spans before opening this one.
+         */
+        synchronized int open(Context parent, String name) {
+            int depth = frames.size();
+            if (parent != null && !parent.path.equals(path())) {
+                for (String p : parent.path) {
+                    push(p, false, depth);
+                }
+            }
+            push(name, true, depth);
+            return depth;
+        }
+
+        /**
+         * Opens the global span, below which the trees of all threads are merged.
+         */
+        synchronized void openGlobal() {
+            hasGlobal = true;
+            push(GLOBAL, true, 0);
+        }
+
+        private void push(String name, boolean recorded, int base) {
+            ProfileNode parent = frames.isEmpty() ? root : frames.peek().node;
+            frames.push(new Frame(parent.child(name), recorded, base));
+        }
+
+        /**
+         * Closes the last opened span, unless it is the global one.
+         */
+        synchronized boolean pop() {
+            Frame top = frames.peek();
+            if (top == null || (hasGlobal && frames.size() == 1)) {
+                return false;
+            }
+            closeTo(top.base);
+            return true;
+        }
+
+        synchronized void closeTo(int depth) {
+            while (frames.size() > depth) {
+                Frame frame = frames.pop();
+                long nanos = System.nanoTime() - frame.start;
+                if (frame.recorded) {
+                    frame.node.record(nanos, frame.childNanos, allocatedBytes() - frame.allocated);
+                }
+                if (!frames.isEmpty()) {
+                    frames.peek().childNanos += nanos;
+                }
+            }
+        }
+
+        /**
+         * @return names of the open spans from the outermost, excluding the global span.
+         */
+        synchronized List<String> path() {
+            List<String> path = new ArrayList<>(frames.size());
+            for (Iterator<Frame> it = frames.descendingIterator(); it.hasNext(); ) {
+                path.add(it.next().node.getName());
+            }
+            if (hasGlobal && !path.isEmpty()) {
+                path.remove(0);
+            }
+            return path;
+        }
+    }
+
+    private static final class Frame {
+        final ProfileNode node;
+        final boolean recorded;
+        /**
+         * Number of open spans before the span this frame was opened for.
+         */
+        final int base;
+        final long start;
+        final long allocated;
+        long childNanos;
+
+        Frame(ProfileNode node, boolean recorded, int base) {
+            this.node = node;
+            this.recorded = recorded;
+            this.base = base;
+            this.allocated = allocatedBytes();
+            this.start = System.nanoTime();
+        }
+    }
+
     private static class MemoryMonitor implements Runnable {
 
         @Override
@@ -0,0 +1,102 @@
+package mapconstruction.benchmark;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Node of the call tree recorded by {@link Benchmark}. A node aggregates all spans with the same name under the same
+ * parent, possibly recorded by several threads.
+ * <p>
+ * The self time of a node is its total time minus the time of the spans nested in it on the same thread. Spans that
+ * are attached to it from other threads count towards the total time of their own nodes only, so the total time of
+ * a node may be less than the sum of its children if those ran in parallel.
+ */
+public class ProfileNode {
+
+    private final String name;
+    private long count;
+    private long totalNanos;
+    private long selfNanos;
+    private long allocatedBytes;
+    private int threads;
+    private final Map<String, ProfileNode> children;
+
+    ProfileNode(String name) {
+        this.name = name;
+        this.children = new LinkedHashMap<>();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of spans aggregated in this node.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getSelfNanos() {
+        return selfNanos;
+    }
+
+    /**
+     * @return bytes allocated during the spans of this node, including nested spans on the same thread, or 0 if the
+     * JVM does not support measuring allocations.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return number of threads that recorded spans of this node.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public Collection<ProfileNode> getChildren() {
+        return children.values();
+    }
+
+    public ProfileNode getChild(String name) {
+        return children.get(name);
+    }
+
+    ProfileNode child(String name) {
+        return children.computeIfAbsent(name, ProfileNode::new);
+    }
+
+    /**
+     * Adds a single span of the recording thread.
+     */
+    void record(long nanos, long childNanos, long allocated) {
+        if (count == 0) {
+            threads = 1;
+        }
+        count++;
+        totalNanos += nanos;
+        selfNanos += nanos - childNanos;
+        allocatedBytes += allocated;
+    }
+
+    /**
+     * Adds the spans of the given tree to this one, matching children by name.
+     */
+    void merge(ProfileNode other) {
+        count += other.count;
+        totalNanos += other.totalNanos;
+        selfNanos += other.selfNanos;
+        allocatedBytes += other.allocatedBytes;
+        threads += other.threads;
+        for (ProfileNode c : other.children.values()) {
+            child(c.name).merge(c);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package mapconstruction.benchmark;
+
+import com.google.common.base.Preconditions;
+import mapconstruction.algorithms.bundles.KLSubbundleAlgorithm;
+import mapconstruction.algorithms.diagram.EvolutionDiagram;
+import mapconstruction.algorithms.diagram.EvolutionDiagramBuilder;
+import mapconstruction.log.Log;
+import mapconstruction.log.LogLevel;
+import mapconstruction.trajectories.Trajectory;
+import org.apache.commons.cli.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static mapconstruction.GUI.datastorage.ConstantsStorage.ALGOCONSTANTS;
+
+/**
+ * Measures how the bundling scales with the size of the input, epsilon and the number of threads, on trajectories of
+ * a {@link SyntheticTrajectoryGenerator}.
+ * <p>
+ * Every combination of dataset size, algorithm, epsilon and thread count is run in this JVM, and written as a row to
+ * a CSV file with the running time, throughput and peak heap usage. The thread count is the number of threads that
+ * generate bundles; the evolution diagram uses one more thread to process the levels in order. Next to these, every
+ * row contains
+ * <ul>
+ * <li>the speedup and scaling efficiency relative to the first thread count for the same size and epsilon;</li>
+ * <li>the growth exponent of the running time relative to the previous dataset size for the same epsilon and thread
+ * count. An exponent near 1 means linear scaling, an exponent near 2 means a quadratic phase dominates.</li>
+ * </ul>
+ */
+public class ScalabilityBenchmark {
+
+    private static final String LOGTAG = "Scalability";
+
+    private static final String HEADER = "algorithm,trajectories,points,epsilon,threads,time_ms,points_per_second,"
+            + "peak_heap_mb,results,speedup,efficiency,growth_exponent";
+
+    /**
+     * The algorithms that can be measured.
+     */
+    public enum Algorithm {
+        /**
+         * The bundles of a single epsilon, by {@link KLSubbundleAlgorithm}.
+         */
+        KL,
+        /**
+         * The evolution diagram from the epsilon step up to epsilon, by {@link EvolutionDiagramBuilder}.
+         */
+        DIAGRAM
+    }
+
+    private final SyntheticTrajectoryGenerator generator;
+    private final List<Integer> sizes;
+    private final List<Double> epsilons;
+    private final List<Integer> threads;
+    private final List<Algorithm> algorithms;
+
+    private double lambdaFactor = 2;
+    private double diagramStep = 5;
+    private int repetitions = 1;
+    private int warmups = 1;
+
+    public ScalabilityBenchmark(SyntheticTrajectoryGenerator generator, List<Integer> sizes, List<Double> epsilons,
+                                List<Integer> threads, List<Algorithm> algorithms) {
+        Preconditions.checkArgument(!sizes.isEmpty() && !epsilons.isEmpty() && !threads.isEmpty() && !algorithms.isEmpty(),
+                "Nothing to measure");
+        Preconditions.checkArgument(threads.stream().allMatch(t -> t > 0), "Thread counts must be positive");
+        this.generator = generator;
+        this.sizes = sizes.stream().sorted().collect(Collectors.toList());
+        this.epsilons = new ArrayList<>(epsilons);
+        this.threads = new ArrayList<>(threads);
+        this.algorithms = new ArrayList<>(algorithms);
+    }
+
+    public void setLambdaFactor(double lambdaFactor) {
+        this.lambdaFactor = lambdaFactor;
+    }
+
+    public void setDiagramStep(double diagramStep) {
+        Preconditions.checkArgument(diagramStep > 0, "diagramStep must be positive");
+        this.diagramStep = diagramStep;
+    }
+
+    /**
+     * Sets the number of times every combination is run. The median running time and largest peak heap are reported.
+     */
+    public void setRepetitions(int repetitions) {
+        Preconditions.checkArgument(repetitions > 0, "repetitions must be positive");
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * Sets the number of unreported runs on the smallest dataset before measuring, to warm up the JIT.
+     */
+    public void setWarmups(int warmups) {
+        Preconditions.checkArgument(warmups >= 0, "warmups must be non-negative");
+        this.warmups = warmups;
+    }
+
+    /**
+     * Runs all combinations, writing a header and one row per combination to out. Rows are flushed as soon as they
+     * are measured, so an interrupted run keeps its results.
+     */
+    public void run(PrintWriter out) {
+        out.println(HEADER);
+        out.flush();
+
+        List<Trajectory> smallest = generator.generate(sizes.get(0));
+        for (int i = 0; i < warmups; i++) {
+            for (Algorithm algorithm : algorithms) {
+                Log.log(LogLevel.INFO, LOGTAG, "Warmup %d of %s", i + 1, algorithm);
+                measure(algorithm, smallest, epsilons.get(0), threads.get(threads.size() - 1));
+            }
+        }
+
+        // Times of earlier rows, to compare later rows against.
+        Map<String, Long> baseTimes = new HashMap<>();
+        Map<String, long[]> previousSizes = new HashMap<>();
+
+        for (int size : sizes) {
+            List<Trajectory> trajectories = generator.generate(size);
+            long points = trajectories.stream().mapToLong(Trajectory::numPoints).sum();
+
+            for (Algorithm algorithm : algorithms) {
+                for (double epsilon : epsilons) {
+                    for (int numThreads : threads) {
+                        Log.log(LogLevel.INFO, LOGTAG, "Measuring %s on %d trajectories, eps=%.2f, threads=%d",
+                                algorithm, size, epsilon, numThreads);
+
+                        long[] times = new long[repetitions];
+                        long peakHeap = 0;
+                        int results = 0;
+                        for (int r = 0; r < repetitions; r++) {
+                            Measurement m = measure(algorithm, trajectories, epsilon, numThreads);
+                            times[r] = m.time;
+                            peakHeap = Math.max(peakHeap, m.peakHeap);
+                            results = m.results;
+                        }
+                        Arrays.sort(times);
+                        long time = Math.max(1, times[repetitions / 2]);
+
+                        String baseKey = algorithm + "/" + size + "/" + epsilon;
+                        baseTimes.putIfAbsent(baseKey, time);
+                        double speedup = (double) baseTimes.get(baseKey) / time;
+                        double efficiency = speedup * threads.get(0) / numThreads;
+
+                        String growthKey = algorithm + "/" + epsilon + "/" + numThreads;
+                        long[] previous = previousSizes.put(growthKey, new long[]{points, time});
+                        String growth = "";
+                        if (previous != null && previous[0] != points) {
+                            growth = format(Math.log((double) time / previous[1]) / Math.log((double) points / previous[0]));
+                        }
+
+                        out.println(String.join(",", algorithm.name(), String.valueOf(size), String.valueOf(points),
+                                format(epsilon), String.valueOf(numThreads), String.valueOf(time),
+                                format(points * 1000.0 / time), format(peakHeap / (1024.0 * 1024.0)),
+                                String.valueOf(results), format(speedup), format(efficiency), growth));
+                        out.flush();
+                    }
+                }
+            }
+        }
+    }
+
+    private Measurement measure(Algorithm algorithm, List<Trajectory> trajectories, double epsilon, int numThreads) {
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .collect(Collectors.toList());
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long start = System.currentTimeMillis();
+        int results;
+        if (algorithm == Algorithm.KL) {
+            KLSubbundleAlgorithm algo = new KLSubbundleAlgorithm(epsilon, epsilon * lambdaFactor, false, numThreads);
+            results = algo.run(trajectories).size();
+        } else {
+            // The diagram takes its number of threads from the constants, and keeps one of them to process the levels
+            // in order, so it gets one more to run numThreads workers.
+            int oldThreads = ALGOCONSTANTS.getNumThreads();
+            ALGOCONSTANTS.setNumThreads(numThreads + 1);
+            try {
+                EvolutionDiagramBuilder algo = EvolutionDiagramBuilder.additive(diagramStep, lambdaFactor,
+                        diagramStep, epsilon, false, k -> k + 1);
+                EvolutionDiagram diagram = algo.run(trajectories);
+                results = diagram.numClasses();
+            } finally {
+                ALGOCONSTANTS.setNumThreads(oldThreads);
+            }
+        }
+        long time = System.currentTimeMillis() - start;
+
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        return new Measurement(time, peakHeap, results);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    private static class Measurement {
+        final long time;
+        final long peakHeap;
+        final int results;
+
+        Measurement(long time, long peakHeap, int results) {
+            this.time = time;
+            this.peakHeap = peakHeap;
+            this.results = results;
+        }
+    }
+
+    public static void main(String[] args) {
+        Options options = getCommandLineOptions();
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.setOptionComparator(null);
+
+        ScalabilityBenchmark benchmark;
+        File output;
+        try {
+            CommandLine commandLine = new DefaultParser().parse(options, args);
+            if (commandLine.hasOption("help")) {
+                formatter.printHelp("ScalabilityBenchmark", options);
+                System.exit(0);
+            }
+
+            SyntheticTrajectoryGenerator generator = new SyntheticTrajectoryGenerator(
+                    Long.parseLong(commandLine.getOptionValue("seed", "42")));
+            generator.setLength(Integer.parseInt(commandLine.getOptionValue("length", "5")));
+            generator.setNoise(Double.parseDouble(commandLine.getOptionValue("noise", "4")));
+            generator.setOverlap(Double.parseDouble(commandLine.getOptionValue("overlap", "2")));
+
+            List<Integer> defaultThreads = new ArrayList<>();
+            for (int t = 1; t <= Runtime.getRuntime().availableProcessors(); t *= 2) {
+                defaultThreads.add(t);
+            }
+
+            benchmark = new ScalabilityBenchmark(generator,
+                    parseList(commandLine.getOptionValue("sizes", "100,200,400,800"), Integer::parseInt),
+                    parseList(commandLine.getOptionValue("epsilons", "20,40"), Double::parseDouble),
+                    commandLine.hasOption("threads")
+                            ? parseList(commandLine.getOptionValue("threads"), Integer::parseInt)
+                            : defaultThreads,
+                    parseList(commandLine.getOptionValue("algorithms", "kl,diagram"),
+                            s -> Algorithm.valueOf(s.toUpperCase(Locale.ROOT))));
+            benchmark.setLambdaFactor(Double.parseDouble(commandLine.getOptionValue("lambda", "2")));
+            benchmark.setDiagramStep(Double.parseDouble(commandLine.getOptionValue("step", "5")));
+            benchmark.setRepetitions(Integer.parseInt(commandLine.getOptionValue("repetitions", "1")));
+            benchmark.setWarmups(Integer.parseInt(commandLine.getOptionValue("warmup", "1")));
+            output = new File(commandLine.getOptionValue("output", "scalability.csv"));
+        } catch (ParseException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            formatter.printHelp("ScalabilityBenchmark", options);
+            System.exit(1);
+            return;
+        }
+
+        try (PrintWriter out = new PrintWriter(output, "UTF-8")) {
+            benchmark.run(out);
+        } catch (IOException e) {
+            System.out.println("Could not write to " + output + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Results written to " + output);
+        System.exit(0);
+    }
+
+    private static <T> List<T> parseList(String value, Function<String, T> parser) {
+        return Arrays.stream(value.split(",")).map(String::trim).map(parser).collect(Collectors.toList());
+    }
+
+    private static Options getCommandLineOptions() {
+        Options options = new Options();
+        options.addOption(new Option("h", "help", false, "Print the options"));
+        options.addOption(new Option("n", "sizes", true, "Comma separated numbers of trajectories (default 100,200,400,800)"));
+        options.addOption(new Option("e", "epsilons", true, "Comma separated epsilons (default 20,40)"));
+        options.addOption(new Option("t", "threads", true, "Comma separated thread counts (default powers of two up to the number of processors)"));
+        options.addOption(new Option("a", "algorithms", true, "Comma separated algorithms, kl and/or diagram (default kl,diagram)"));
+        options.addOption(new Option("o", "output", true, "CSV output file (default scalability.csv)"));
+        options.addOption(new Option("r", "repetitions", true, "Runs per combination, the median time is reported (default 1)"));
+        options.addOption(new Option("w", "warmup", true, "Unreported runs on the smallest dataset (default 1)"));
+        options.addOption(new Option("lambda", true, "Lambda as a factor of epsilon (default 2)"));
+        options.addOption(new Option("step", true, "Epsilon step of the evolution diagram (default 5)"));
+        options.addOption(new Option("seed", true, "Seed of the generated trajectories (default 42)"));
+        options.addOption(new Option("length", true, "Average number of roads per trajectory (default 5)"));
+        options.addOption(new Option("noise", true, "Standard deviation of the measurement error in metres (default 4)"));
+        options.addOption(new Option("overlap", true, "Average number of trajectories per road (default 2)"));
+        return options;
+    }
+}
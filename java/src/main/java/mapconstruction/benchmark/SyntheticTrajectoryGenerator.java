@@ -0,0 +1,190 @@
+package mapconstruction.benchmark;
+
+import com.google.common.base.Preconditions;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic trajectories by random walks over a synthetic road network.
+ * <p>
+ * The road network is a square grid of intersections, each displaced at random, so that roads are not exactly
+ * axis-parallel. A trajectory starts at a random intersection, and at every intersection it continues on a random
+ * road, preferring to go straight on and never turning back. While driving it is sampled at a fixed distance, and
+ * every measurement is displaced by Gaussian noise.
+ * <p>
+ * The generator is deterministic: the same seed and parameters always give the same trajectories.
+ */
+public class SyntheticTrajectoryGenerator {
+
+    private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+
+    /**
+     * Relative odds of going straight on, turning left and turning right at an intersection.
+     */
+    private static final int[] TURNS = {0, 0, 1, 3};
+
+    private final long seed;
+
+    /**
+     * Distance between neighbouring intersections, in metres.
+     */
+    private double blockLength = 200;
+
+    /**
+     * Distance between consecutive measurements, in metres.
+     */
+    private double sampleDistance = 15;
+
+    /**
+     * Standard deviation of the measurement error, in metres.
+     */
+    private double noise = 4;
+
+    /**
+     * Average number of roads a trajectory drives over.
+     */
+    private int length = 5;
+
+    /**
+     * Average number of trajectories driving over every road of the network.
+     */
+    private double overlap = 2;
+
+    public SyntheticTrajectoryGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getBlockLength() {
+        return blockLength;
+    }
+
+    public void setBlockLength(double blockLength) {
+        Preconditions.checkArgument(blockLength > 0, "blockLength must be positive");
+        this.blockLength = blockLength;
+    }
+
+    public double getSampleDistance() {
+        return sampleDistance;
+    }
+
+    public void setSampleDistance(double sampleDistance) {
+        Preconditions.checkArgument(sampleDistance > 0, "sampleDistance must be positive");
+        this.sampleDistance = sampleDistance;
+    }
+
+    public double getNoise() {
+        return noise;
+    }
+
+    public void setNoise(double noise) {
+        Preconditions.checkArgument(noise >= 0, "noise must be non-negative");
+        this.noise = noise;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        Preconditions.checkArgument(length > 0, "length must be positive");
+        this.length = length;
+    }
+
+    public double getOverlap() {
+        return overlap;
+    }
+
+    public void setOverlap(double overlap) {
+        Preconditions.checkArgument(overlap > 0, "overlap must be positive");
+        this.overlap = overlap;
+    }
+
+    /**
+     * Number of intersections along one side of the road network for the given number of trajectories. The network
+     * is sized such that on average {@link #overlap} trajectories drive over every road.
+     */
+    public int gridSize(int count) {
+        // A grid of n x n intersections has 2n(n - 1) roads, roughly 2n^2.
+        double roads = (double) count * length / overlap;
+        return Math.max(3, (int) Math.round(Math.sqrt(roads / 2)));
+    }
+
+    /**
+     * Generates count trajectories, labelled {@code synthetic_<i>} and numbered from 1.
+     */
+    public List<Trajectory> generate(int count) {
+        Preconditions.checkArgument(count >= 0, "count must be non-negative");
+        Random random = new Random(seed);
+
+        int gridSize = gridSize(count);
+        Point2D[][] intersections = new Point2D[gridSize][gridSize];
+        for (int x = 0; x < gridSize; x++) {
+            for (int y = 0; y < gridSize; y++) {
+                intersections[x][y] = new Point2D.Double(
+                        (x + (random.nextDouble() - 0.5) / 4) * blockLength,
+                        (y + (random.nextDouble() - 0.5) / 4) * blockLength);
+            }
+        }
+
+        List<Trajectory> result = new ArrayList<>(count);
+        List<Integer> options = new ArrayList<>(TURNS.length);
+        for (int t = 0; t < count; t++) {
+            int x = random.nextInt(gridSize);
+            int y = random.nextInt(gridSize);
+            int direction = random.nextInt(DIRECTIONS.length);
+            // Between half and one and a half times the average length.
+            int blocks = Math.max(1, length / 2 + random.nextInt(length + 1));
+
+            List<Point2D> points = new ArrayList<>();
+            double offset = random.nextDouble() * sampleDistance;
+            for (int b = 0; b < blocks; b++) {
+                options.clear();
+                for (int turn : TURNS) {
+                    int d = (direction + turn) % DIRECTIONS.length;
+                    int nx = x + DIRECTIONS[d][0];
+                    int ny = y + DIRECTIONS[d][1];
+                    if (nx >= 0 && ny >= 0 && nx < gridSize && ny < gridSize) {
+                        options.add(d);
+                    }
+                }
+                if (options.isEmpty()) {
+                    break;
+                }
+                direction = options.get(random.nextInt(options.size()));
+
+                Point2D from = intersections[x][y];
+                x += DIRECTIONS[direction][0];
+                y += DIRECTIONS[direction][1];
+                Point2D to = intersections[x][y];
+
+                // Keep sampling at the same pace across intersections.
+                double road = from.distance(to);
+                double along = offset;
+                for (; along < road; along += sampleDistance) {
+                    double f = along / road;
+                    points.add(new Point2D.Double(
+                            from.getX() + f * (to.getX() - from.getX()) + random.nextGaussian() * noise,
+                            from.getY() + f * (to.getY() - from.getY()) + random.nextGaussian() * noise));
+                }
+                offset = along - road;
+            }
+            Point2D end = intersections[x][y];
+            points.add(new Point2D.Double(end.getX() + random.nextGaussian() * noise,
+                    end.getY() + random.nextGaussian() * noise));
+
+            FullTrajectory trajectory = new FullTrajectory(points, t + 1);
+            trajectory.setLabel("synthetic_" + t);
+            result.add(trajectory);
+        }
+        return result;
+    }
+}
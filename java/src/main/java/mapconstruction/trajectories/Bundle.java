@@ -38,6 +38,10 @@ public class Bundle implements Serializable {
      * Mapping of subtrajectories by their id
      */
     private final Map<String, Subtrajectory> namedTrajectories;
+    /**
+     * Parent signature, computed on demand.
+     */
+    private transient volatile ParentSignature signature;
     /**
      * Remember hashcode.
      */
@@ -253,6 +257,7 @@ public class Bundle implements Serializable {
             return;
         }
         trajectories.remove(representativeSubtrajectory);
+        signature = null;
         // DISABLED: we do not add the representative explicitly to the bundle
         // trajectories.add(sub);
         representativeSubtrajectory = sub;
@@ -374,6 +379,17 @@ public class Bundle implements Serializable {
         return namedTrajectories.get(name);
     }
 
+    /**
+     * Gets the names under which subtrajectories can be found with
+     * {@link #getTrajectoryByName(String)}.
+     *
+     * @return unmodifiable set of names.
+     */
+    @JsonIgnore
+    public Set<String> getTrajectoryNames() {
+        return Collections.unmodifiableSet(namedTrajectories.keySet());
+    }
+
     /**
      * This is the original representativeSubtrajectory.
      *
@@ -422,7 +438,23 @@ public class Bundle implements Serializable {
     @JsonIgnore
     public void calculateForceProperties() {
         if (unmergedForceRepresentative == null || unmergedForceRepresentative.size() == 0) {
-            calculateForceRelatedProperties();
+            int bundleClass = STORAGE.getClassFromBundle(this);
+            double bestEps = bundleClass == -1 ? Double.NaN : STORAGE.getEvolutionDiagram().getBestEpsilon(bundleClass);
+            calculateForceRelatedProperties(bundleClass, bestEps);
+        }
+    }
+
+    /**
+     * Calculates the force properties for the given class of this bundle and its best epsilon, without looking them
+     * up in the storage. Used to calculate the properties of many bundles in parallel.
+     *
+     * @param bundleClass class of this bundle, or -1 if it has none.
+     * @param bestEps     best epsilon of the class, ignored if the bundle has no class.
+     */
+    @JsonIgnore
+    public void calculateForceProperties(int bundleClass, double bestEps) {
+        if (unmergedForceRepresentative == null || unmergedForceRepresentative.size() == 0) {
+            calculateForceRelatedProperties(bundleClass, bestEps);
         }
     }
     @JsonIgnore
@@ -433,7 +465,7 @@ public class Bundle implements Serializable {
     }
 
     @JsonIgnore
-    private synchronized void calculateForceRelatedProperties() {
+    private synchronized void calculateForceRelatedProperties(int bundleClass, double bestEps) {
         if (debugBundleForceProperties) {
             listOfForceSteps = new ArrayList<>();
             listOfACLines = new ArrayList<>();
@@ -441,11 +473,8 @@ public class Bundle implements Serializable {
             listOfIntersectionsWithAngles = new ArrayList<>();
         }
 
-        int bundleClass = STORAGE.getClassFromBundle(this);
-
         /* Calculate the unmerged force representativeSubtrajectory */
         if (bundleClass != -1) {
-            double bestEps = STORAGE.getEvolutionDiagram().getBestEpsilon(bundleClass);
             unmergedForceRepresentative = Forces.representativeTrajectory(trajectories, representativeSubtrajectory, bestEps,
                     listOfForceSteps, listOfPerpendicularLines, listOfACLines, listOfIntersectionsWithAngles);
         } else {
@@ -617,13 +646,19 @@ public class Bundle implements Serializable {
             return false;
         }
 
+        // Every parent of other must occur in this, reject on the signatures first
+        ParentSignature named = this.getSignature();
+        if (!named.containsAll(other.getSignature())) {
+            return false;
+        }
+
         // For all of the trajectories T1 in other
         // we have to find a matching T2 trajectory in this
         // meaning that
         // T1 is a lambda subtrajectory of T2
         return other.getSubtrajectories().stream()
                 .allMatch(t1 -> {
-                    Subtrajectory t2 = this.getTrajectoryByName(t1.getParent().getUndirectionalLabel());
+                    Subtrajectory t2 = named.get(t1.getParent().getUndirectionalId());
                     return t2 != null && trajectoryHasAsLambdaSubtrajectory(t2, t1, lambda);
                 });
 
@@ -850,4 +885,66 @@ public class Bundle implements Serializable {
     public double euclideanLength() {
         return representativeSubtrajectory.euclideanLength();
     }
+
+    private ParentSignature getSignature() {
+        ParentSignature result = signature;
+        if (result == null || result.generation != Trajectory.getUndirectionalIdGeneration()) {
+            result = new ParentSignature(namedTrajectories, trajectories);
+            signature = result;
+        }
+        return result;
+    }
+
+    /**
+     * Compact signature of the parents of a bundle, by the ids of their undirectional labels.
+     * <p>
+     * It holds the sorted ids of the named subtrajectories, as looked up by {@link #getTrajectoryByName(String)},
+     * and the sorted ids of the parents of the current subtrajectories, which may be fewer after the representative
+     * is replaced. A bundle can only be a lambda-subbundle of another if the parent ids of the former are a subset of
+     * the named ids of the latter.
+     */
+    private static final class ParentSignature {
+        /**
+         * Generation of the undirectional ids the signature was computed with.
+         */
+        private final int generation;
+        private final int[] namedIds;
+        private final Subtrajectory[] named;
+        private final int[] parentIds;
+
+        ParentSignature(Map<String, Subtrajectory> namedTrajectories, Set<Subtrajectory> trajectories) {
+            generation = Trajectory.getUndirectionalIdGeneration();
+            TreeMap<Integer, Subtrajectory> byId = new TreeMap<>();
+            for (Subtrajectory t : namedTrajectories.values()) {
+                byId.put(t.getParent().getUndirectionalId(), t);
+            }
+            namedIds = byId.keySet().stream().mapToInt(Integer::intValue).toArray();
+            named = byId.values().toArray(new Subtrajectory[0]);
+            parentIds = trajectories.stream().mapToInt(t -> t.getParent().getUndirectionalId()).sorted().distinct().toArray();
+        }
+
+        /**
+         * Gets the named subtrajectory with the given undirectional id, null if not present.
+         */
+        Subtrajectory get(int id) {
+            int i = Arrays.binarySearch(namedIds, id);
+            return i < 0 ? null : named[i];
+        }
+
+        /**
+         * Whether all parents of the other signature are named in this signature.
+         */
+        boolean containsAll(ParentSignature other) {
+            int[] a = other.parentIds;
+            int[] b = namedIds;
+            if (a.length > b.length) return false;
+            int j = 0;
+            for (int x : a) {
+                while (j < b.length && b[j] < x) j++;
+                if (j == b.length || b[j] != x) return false;
+                j++;
+            }
+            return true;
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package mapconstruction.trajectories;
+
+import com.google.common.base.Preconditions;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * Trajectory formed by concatenating a list of trajectories, as used for the free space of a single representative
+ * against all trajectories at once.
+ * <p>
+ * The points are copied once into {@link PointColumns}, such that the distance computations on the free space can
+ * read coordinates directly without materializing points or edges. Additionally it keeps a mapping from the index of
+ * the first point of every trajectory to that trajectory.
+ * <p>
+ * Note that the edges between two consecutive trajectories are not part of any of the original trajectories.
+ * <p>
+ * After creation, the concatenation is immutable and can be shared between threads.
+ */
+public class ConcatenatedTrajectory extends Trajectory {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Trajectory> trajectories;
+    private final transient PointColumns columns;
+    private final NavigableMap<Integer, Trajectory> offsets;
+
+    /**
+     * Creates the concatenation of the given trajectories, in the given order.
+     *
+     * @throws NullPointerException if {@code trajectories == null}
+     */
+    public ConcatenatedTrajectory(List<Trajectory> trajectories) {
+        Preconditions.checkNotNull(trajectories, "trajectories == null");
+        this.trajectories = Collections.unmodifiableList(new ArrayList<>(trajectories));
+
+        int numPoints = 0;
+        for (Trajectory t : trajectories) {
+            numPoints += t.numPoints();
+        }
+
+        PointColumns.Builder builder = new PointColumns.Builder(numPoints);
+        TreeMap<Integer, Trajectory> offsets = new TreeMap<>();
+        for (Trajectory t : trajectories) {
+            offsets.put(builder.addAll(t), t);
+        }
+        this.columns = builder.build();
+        this.offsets = Collections.unmodifiableNavigableMap(offsets);
+    }
+
+    /**
+     * @return the concatenated trajectories, in order.
+     */
+    public List<Trajectory> getTrajectories() {
+        return trajectories;
+    }
+
+    /**
+     * @return unmodifiable mapping from the index of the first point of each trajectory to the trajectory.
+     */
+    public NavigableMap<Integer, Trajectory> getOffsets() {
+        return offsets;
+    }
+
+    @Override
+    public int numPoints() {
+        return columns.size();
+    }
+
+    @Override
+    public double getX(int pos) {
+        return columns.getX(pos);
+    }
+
+    @Override
+    public double getY(int pos) {
+        return columns.getY(pos);
+    }
+
+    @Override
+    public Point2D getPoint(int pos) {
+        Preconditions.checkElementIndex(pos, numPoints(), "pos");
+        return new Point2D.Double(columns.getX(pos), columns.getY(pos));
+    }
+
+    /**
+     * Not supported, reverse the individual trajectories instead.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Trajectory reverse() {
+        throw new UnsupportedOperationException("A concatenated trajectory cannot be reversed.");
+    }
+
+    @Override
+    public boolean isReverse() {
+        return false;
+    }
+
+    @Override
+    public String getLabel() {
+        return "<concatenated(" + trajectories.size() + ")>";
+    }
+}
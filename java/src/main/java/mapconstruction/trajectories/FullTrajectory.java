@@ -1,9 +1,8 @@
 package mapconstruction.trajectories;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
-import com.google.common.math.DoubleMath;
 
 import java.awt.geom.Point2D;
 import java.io.IOException;
@@ -21,6 +20,10 @@ import java.util.List;
  * <p>
  * Trajectories can be reversed. In that case the reversed trajectory will get
  * the negative of the identifier. In this way reversing twice yields the same trajectory.
+ * <p>
+ * The points are stored in {@link PointColumns}, possibly shared with other trajectories. A trajectory refers to its
+ * range in the columns by an offset and its number of points. A reversed trajectory shares the columns of the
+ * trajectory it is the reverse of, and reads them back to front.
  *
  * @author Roel
  */
@@ -32,9 +35,19 @@ public class FullTrajectory extends Trajectory implements Serializable {
      */
     private long id;
     /**
-     * Points in this trajectory
+     * Columns containing the points of this trajectory, at indices {@code offset} up to {@code offset + numPoints}.
+     */
+    private transient PointColumns columns;
+
+    /**
+     * Index of the first point of this trajectory in the columns.
      */
-    private List<Point2D> points;
+    private transient int offset;
+
+    /**
+     * Whether the points are read from the columns back to front.
+     */
+    private transient boolean flipped;
 
     /**
      * number of points in the trajectoy.
@@ -54,7 +67,7 @@ public class FullTrajectory extends Trajectory implements Serializable {
     /**
      * Creates a FullTrajectory with the given list of points and ID.
      * Additionally if a non-null reverse is supplied, a reference to it will be stored.
-     * The points are NOT copied, the list is used as-is.
+     * The coordinates of the points are copied into new columns.
      *
      * @param points List of points in proper order representing the trajectory.
      * @param id     Unique id for the trajectory.
@@ -62,17 +75,61 @@ public class FullTrajectory extends Trajectory implements Serializable {
      * @throws NullPointerException if {@code points == null}
      */
     public FullTrajectory(List<Point2D> points, long id, FullTrajectory reverse) {
-        Preconditions.checkNotNull(points, "points == null");
-        this.points = points;
-        this.id = id;
-        this.numPoints = points.size();
+        this(PointColumns.of(points), 0, points.size(), id);
         this.reverse = reverse;
+    }
+
+    /**
+     * Creates a FullTrajectory on a range of the given columns, which may be shared with other trajectories.
+     * The columns are NOT copied.
+     *
+     * @param columns   Columns containing the points in proper order.
+     * @param offset    Index of the first point of the trajectory in the columns.
+     * @param numPoints Number of points of the trajectory.
+     * @param id        Unique id for the trajectory.
+     * @throws NullPointerException      if {@code columns == null}
+     * @throws IndexOutOfBoundsException if the range does not fit the columns.
+     */
+    public FullTrajectory(PointColumns columns, int offset, int numPoints, long id) {
+        Preconditions.checkNotNull(columns, "columns == null");
+        Preconditions.checkPositionIndexes(offset, offset + numPoints, columns.size());
+        this.columns = columns;
+        this.offset = offset;
+        this.numPoints = numPoints;
+        this.flipped = false;
+        this.id = id;
         nextid = id + 1;
     }
 
+    /**
+     * Creates a FullTrajectory over a range of the given columns, with a new ID.
+     *
+     * @param columns   Columns containing the points in proper order.
+     * @param offset    Index of the first point of the trajectory in the columns.
+     * @param numPoints Number of points of the trajectory.
+     * @throws NullPointerException      if {@code columns == null}
+     * @throws IndexOutOfBoundsException if the range does not fit the columns.
+     */
+    public FullTrajectory(PointColumns columns, int offset, int numPoints) {
+        this(columns, offset, numPoints, nextid);
+    }
+
+    /**
+     * Creates the reverse of the given trajectory, sharing its columns.
+     */
+    private FullTrajectory(FullTrajectory original) {
+        this.columns = original.columns;
+        this.offset = original.offset;
+        this.numPoints = original.numPoints;
+        this.flipped = !original.flipped;
+        this.id = -original.id;
+        this.reverse = original;
+        this.label = original.label;
+    }
+
     /**
      * Creates a FullTrajectory with the given list of points and ID.
-     * The points are NOT copied, the list is used as-is.
+     * The coordinates of the points are copied into new columns.
      *
      * @param points List of points in proper order representing the trajectory.
      * @param id     Unique id for the trajectory.
@@ -84,7 +141,7 @@ public class FullTrajectory extends Trajectory implements Serializable {
 
     /**
      * Creates a fullTrajectory with the given list of points.
-     * The points are NOT copied, the list is used as-is.
+     * The coordinates of the points are copied into new columns.
      *
      * @param points List of points in proper order representing the trajectory.
      * @throws NullPointerException if {@code points == null}
@@ -126,7 +183,7 @@ public class FullTrajectory extends Trajectory implements Serializable {
 
     @JsonProperty
     public List<Point2D> getPoints() {
-        return points;
+        return points();
     }
 
 
@@ -136,17 +193,14 @@ public class FullTrajectory extends Trajectory implements Serializable {
     @Override
     public FullTrajectory reverse() {
         if (this.reverse == null) {
-            this.reverse = new FullTrajectory(Lists.reverse(points), -id, this);
-            if (label != null) {
-                this.reverse.setLabel(label);
-            }
+            this.reverse = new FullTrajectory(this);
         }
         return this.reverse;
     }
 
     private void writeObject(java.io.ObjectOutputStream out) throws IOException {
         out.writeLong(id);
-        out.writeObject(new ArrayList<>(points));
+        out.writeObject(new ArrayList<>(points()));
         out.writeInt(numPoints);
         out.writeObject(label);
     }
@@ -155,10 +209,12 @@ public class FullTrajectory extends Trajectory implements Serializable {
         id = in.readLong();
         Object object = in.readObject();
         if (object != null) {
-            points = (List<Point2D>) object;
+            columns = PointColumns.of((List<Point2D>) object);
         } else {
-            points = new ArrayList<>();
+            columns = PointColumns.of(new ArrayList<>());
         }
+        offset = 0;
+        flipped = false;
         numPoints = in.readInt();
         label = (String) in.readObject();
         nextid = Math.max(Math.abs(id) + 1, nextid);
@@ -180,11 +236,35 @@ public class FullTrajectory extends Trajectory implements Serializable {
 
     @Override
     public Point2D getPoint(int pos) {
-        Preconditions.checkPositionIndex(pos, numPoints(), "pos");
-        if (pos >= numPoints()){
-            System.out.println("Error! FullTrajectory.GetPoint out of range");
-        }
-        return points.get(pos);
+        int i = columnIndex(pos);
+        return new Point2D.Double(columns.getX(i), columns.getY(i));
+    }
+
+    @Override
+    public double getX(int pos) {
+        return columns.getX(columnIndex(pos));
+    }
+
+    @Override
+    public double getY(int pos) {
+        return columns.getY(columnIndex(pos));
+    }
+
+    /**
+     * Returns the timestamp of the point at the given position, as read from the input.
+     *
+     * @return seconds after epoch time, or {@link PointColumns#NO_TIME} if the time of the point is unknown.
+     */
+    public long getTimestamp(int pos) {
+        return columns.getTime(columnIndex(pos));
+    }
+
+    /**
+     * Translates a position in this trajectory to an index in the columns.
+     */
+    private int columnIndex(int pos) {
+        Preconditions.checkElementIndex(pos, numPoints, "pos");
+        return flipped ? offset + numPoints - 1 - pos : offset + pos;
     }
 
     /**
@@ -200,6 +280,16 @@ public class FullTrajectory extends Trajectory implements Serializable {
         return "<" + (label == null ? Long.toString(id) : label) + ">" + (isReverse() ? "_(r)" : "");
     }
 
+    /**
+     * Returns the label that was set on this trajectory, without decoration.
+     *
+     * @return the label, or {@code null} if no label was set.
+     */
+    @JsonIgnore
+    public String getRawLabel() {
+        return label;
+    }
+
     /**
      * Sets the label of this trajectory;
      *
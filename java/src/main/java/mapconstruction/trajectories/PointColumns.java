@@ -0,0 +1,163 @@
+package mapconstruction.trajectories;
+
+import com.google.common.base.Preconditions;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar storage of points, as one array of x-coordinates and one array of y-coordinates.
+ * <p>
+ * Multiple trajectories can share a single instance, each one referring to its own range of indices. This avoids
+ * creating a {@link Point2D} object for every point of the input, and keeps the coordinates of consecutive points
+ * close together in memory.
+ * <p>
+ * The columns may additionally hold a timestamp per point, in seconds after epoch time. Points of which the time is
+ * unknown have timestamp {@link #NO_TIME}.
+ * <p>
+ * After creation, the columns are immutable.
+ */
+public final class PointColumns {
+
+    /**
+     * Timestamp of a point of which the time is unknown.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final long[] times;
+
+    /**
+     * Creates columns backed by the given arrays. The arrays are NOT copied.
+     *
+     * @throws IllegalArgumentException if the arrays differ in length.
+     */
+    public PointColumns(double[] xs, double[] ys) {
+        this(xs, ys, null);
+    }
+
+    /**
+     * Creates columns with timestamps, backed by the given arrays. The arrays are NOT copied.
+     *
+     * @param times timestamps of the points, or {@code null} if they are unknown.
+     * @throws IllegalArgumentException if the arrays differ in length.
+     */
+    public PointColumns(double[] xs, double[] ys, long[] times) {
+        Preconditions.checkNotNull(xs, "xs == null");
+        Preconditions.checkNotNull(ys, "ys == null");
+        Preconditions.checkArgument(xs.length == ys.length, "xs and ys must have the same length");
+        Preconditions.checkArgument(times == null || times.length == xs.length, "times must have the same length as xs");
+        this.xs = xs;
+        this.ys = ys;
+        this.times = times;
+    }
+
+    /**
+     * Creates columns containing a copy of the coordinates of the given points.
+     *
+     * @throws NullPointerException if {@code points == null}
+     */
+    public static PointColumns of(List<? extends Point2D> points) {
+        Preconditions.checkNotNull(points, "points == null");
+        double[] xs = new double[points.size()];
+        double[] ys = new double[points.size()];
+        int i = 0;
+        for (Point2D p : points) {
+            xs[i] = p.getX();
+            ys[i] = p.getY();
+            i++;
+        }
+        return new PointColumns(xs, ys);
+    }
+
+    public int size() {
+        return xs.length;
+    }
+
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * @return whether the columns hold timestamps.
+     */
+    public boolean hasTimes() {
+        return times != null;
+    }
+
+    /**
+     * @return timestamp of the point, or {@link #NO_TIME} if it is unknown.
+     */
+    public long getTime(int i) {
+        return times == null ? NO_TIME : times[i];
+    }
+
+    /**
+     * Builder concatenating the points of multiple trajectories into a single instance.
+     */
+    public static class Builder {
+
+        private double[] xs;
+        private double[] ys;
+        private int size;
+
+        public Builder() {
+            this(1024);
+        }
+
+        public Builder(int expectedSize) {
+            xs = new double[Math.max(16, expectedSize)];
+            ys = new double[Math.max(16, expectedSize)];
+        }
+
+        /**
+         * Appends a single point.
+         *
+         * @return index of the point in the resulting columns.
+         */
+        public int add(double x, double y) {
+            ensureCapacity(size + 1);
+            xs[size] = x;
+            ys[size] = y;
+            return size++;
+        }
+
+        /**
+         * Appends all points of the given trajectory.
+         *
+         * @return index of the first point of the trajectory in the resulting columns.
+         */
+        public int addAll(Trajectory trajectory) {
+            int offset = size;
+            ensureCapacity(size + trajectory.numPoints());
+            for (int i = 0; i < trajectory.numPoints(); i++) {
+                xs[size] = trajectory.getX(i);
+                ys[size] = trajectory.getY(i);
+                size++;
+            }
+            return offset;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PointColumns build() {
+            return new PointColumns(Arrays.copyOf(xs, size), Arrays.copyOf(ys, size));
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > xs.length) {
+                int newLength = Math.max(capacity, xs.length * 2);
+                xs = Arrays.copyOf(xs, newLength);
+                ys = Arrays.copyOf(ys, newLength);
+            }
+        }
+    }
+}
@@ -418,6 +418,24 @@ public class Subtrajectory extends Trajectory implements Serializable {
         }
     }
 
+    @Override
+    public double getX(int pos) {
+        if (pos > 0 && pos < numPoints() - 1) {
+            // interior points coincide with points of the parent
+            return parent.getX(DoubleMath.roundToInt(fromIndex, RoundingMode.FLOOR) + pos);
+        }
+        return getPoint(pos).getX();
+    }
+
+    @Override
+    public double getY(int pos) {
+        if (pos > 0 && pos < numPoints() - 1) {
+            // interior points coincide with points of the parent
+            return parent.getY(DoubleMath.roundToInt(fromIndex, RoundingMode.FLOOR) + pos);
+        }
+        return getPoint(pos).getY();
+    }
+
     private Point2D getPointAt(double pos) {
         if (pos < 0 || pos > numEdges()) {
             throw new IndexOutOfBoundsException(String.format("Position out of bounds at %.2f while range is [0,%d]", pos, numEdges()));
@@ -4,12 +4,14 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.math.DoubleMath;
 import mapconstruction.algorithms.distance.RTree;
-import mapconstruction.util.GeometryUtil;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -79,8 +81,8 @@ public abstract class Trajectory implements Serializable {
     public double euclideanLength() {
         if (length == Double.NEGATIVE_INFINITY) {
             double len = 0;
-            for (Line2D l : edges()) {
-                len += GeometryUtil.lineLength(l);
+            for (int i = 0; i < numEdges(); i++) {
+                len += Point2D.distance(getX(i), getY(i), getX(i + 1), getY(i + 1));
             }
             length = len;
         }
@@ -118,6 +120,36 @@ public abstract class Trajectory implements Serializable {
      */
     public abstract Point2D getPoint(int pos);
 
+    /**
+     * Returns the x-coordinate of the point at the given position in the trajectory.
+     * <p>
+     * Subclasses backed by {@link PointColumns} override this to avoid creating a point object.
+     *
+     * @param pos position in the trajectory of the point. Must be
+     *            between 0 (inclusive) and {@code numPoints()} (exclusive)
+     * @return x-coordinate of the point at the given position.
+     * @throws IndexOutOfBoundsException if
+     *                                   {@code pos < 0 || pos >= numPoints()}
+     */
+    public double getX(int pos) {
+        return getPoint(pos).getX();
+    }
+
+    /**
+     * Returns the y-coordinate of the point at the given position in the trajectory.
+     * <p>
+     * Subclasses backed by {@link PointColumns} override this to avoid creating a point object.
+     *
+     * @param pos position in the trajectory of the point. Must be
+     *            between 0 (inclusive) and {@code numPoints()} (exclusive)
+     * @return y-coordinate of the point at the given position.
+     * @throws IndexOutOfBoundsException if
+     *                                   {@code pos < 0 || pos >= numPoints()}
+     */
+    public double getY(int pos) {
+        return getPoint(pos).getY();
+    }
+
     /**
      * Returns the edge at the i-th position in the trajectory.
      *
@@ -222,6 +254,78 @@ public abstract class Trajectory implements Serializable {
         return undirectedLabel;
     }
 
+    /**
+     * Dense ids of the undirectional labels seen so far, starting at 1. The map grows with every label it is asked
+     * for, so it is replaced by an empty one with {@link #resetUndirectionalIds()} when another dataset is loaded.
+     */
+    private static volatile UndirectionalIds undirectionalIds = new UndirectionalIds(0);
+
+    // caching of the id of the undirectional label, null if not yet known
+    private transient UndirectionalId undirectedId;
+
+    /**
+     * Gets a small positive integer identifying the undirectional label of this trajectory. Trajectories have the same
+     * id if and only if they have the same undirectional label. Ids are only valid within a single run of the
+     * application and until the next {@link #resetUndirectionalIds()}, and are not serialized.
+     *
+     * @return id of {@link #getUndirectionalLabel()}.
+     */
+    public int getUndirectionalId() {
+        UndirectionalIds ids = undirectionalIds;
+        UndirectionalId cached = undirectedId;
+        if (cached == null || cached.ids != ids) {
+            cached = new UndirectionalId(ids, ids.get(getUndirectionalLabel()));
+            undirectedId = cached;
+        }
+        return cached.id;
+    }
+
+    /**
+     * Forgets all undirectional ids handed out so far. Ids cached by trajectories are recomputed on their next use,
+     * so ids obtained before the reset must not be compared with ids obtained after it. Must not be called while an
+     * algorithm is running on the trajectories.
+     */
+    public static synchronized void resetUndirectionalIds() {
+        undirectionalIds = new UndirectionalIds(undirectionalIds.generation + 1);
+    }
+
+    /**
+     * Gets the number of times the undirectional ids were reset, to detect ids cached before a reset.
+     */
+    public static int getUndirectionalIdGeneration() {
+        return undirectionalIds.generation;
+    }
+
+    /**
+     * Ids of the undirectional labels between two resets.
+     */
+    private static final class UndirectionalIds {
+        private final int generation;
+        private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger lastId = new AtomicInteger();
+
+        UndirectionalIds(int generation) {
+            this.generation = generation;
+        }
+
+        int get(String label) {
+            return ids.computeIfAbsent(label, l -> lastId.incrementAndGet());
+        }
+    }
+
+    /**
+     * Id of the undirectional label of a trajectory, together with the ids it was taken from.
+     */
+    private static final class UndirectionalId {
+        private final UndirectionalIds ids;
+        private final int id;
+
+        UndirectionalId(UndirectionalIds ids, int id) {
+            this.ids = ids;
+            this.id = id;
+        }
+    }
+
     public boolean hasAsLambdaEndpoints(Trajectory trajectory, double lambda) {
         double distance = Math.max(
                 Math.min(
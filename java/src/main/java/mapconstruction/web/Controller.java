@@ -71,10 +71,12 @@ public class Controller {
      * Keeps track of the time for the save state controllers.
      */
     private long timingStart = System.currentTimeMillis();
-    private TxtTrajectoryReader txtTrajReader;
+    private MappedTxtTrajectoryReader txtTrajReader;
     private IpeTrajectoryReader ipeTrajReader;
+    private ColumnarDatasetReader columnarReader;
     private FileNameExtensionFilterExt txtFilter;
     private FileNameExtensionFilterExt ipeFilter;
+    private FileNameExtensionFilterExt columnarFilter;
     private GeneralConfig generalConfig;
     private SavedStatesIndexer savedStatesIndexer;
     private BenchmarkManager benchmarkManager;
@@ -99,9 +101,11 @@ public class Controller {
     public Controller(GeneralConfig generalConfig) {
         txtFilter = new FileNameExtensionFilterExt(new FileNameExtensionFilter("Text file", "txt"));
         ipeFilter = new FileNameExtensionFilterExt(new FileNameExtensionFilter("Ipe document", "ipe", "xml"));
+        columnarFilter = new FileNameExtensionFilterExt(new FileNameExtensionFilter("Columnar dataset", ColumnarDataset.EXTENSION));
 
-        txtTrajReader = new TxtTrajectoryReader();
+        txtTrajReader = new MappedTxtTrajectoryReader();
         ipeTrajReader = new IpeTrajectoryReader();
+        columnarReader = new ColumnarDatasetReader();
 
         roadmapConsumers = Arrays.asList(
             new RoadmapToSavedState(),
@@ -131,6 +135,9 @@ public class Controller {
         computeRoadNetwork = null;
 
         ALGOCONSTANTS.setNumThreads(generalConfig.getNumOfProcesses());
+        ALGOCONSTANTS.setCheckpointDirectory(generalConfig.getCheckpointDirectory());
+        ALGOCONSTANTS.setDiagramHeapBudget(generalConfig.getDiagramHeapBudget());
+        ALGOCONSTANTS.setDiagramMaxBufferedLevels(generalConfig.getDiagramMaxBufferedLevels());
 
         initLog();
     }
@@ -228,22 +235,26 @@ public class Controller {
         // Add files to the list
         // Load all trajectories
         List<Trajectory> trajs = new ArrayList<>();
+        // Consecutive text files are read together, in parallel
+        List<File> txtFiles = new ArrayList<>();
         for (File f : files) {
-            TrajectoryReader reader;
             if (txtFilter.accept(f)) {
-                // text file
-                reader = txtTrajReader;
-            } else if (ipeFilter.accept(f)) {
-                reader = ipeTrajReader;
+                txtFiles.add(f);
+                continue;
+            }
+            loadTxtTrajectories(txtFiles, trajs);
+
+            if (ipeFilter.accept(f)) {
+                trajs.addAll(ipeTrajReader.parse(f));
+                Log.log(LogLevel.INFO, "Control", "Trajectories from %s added", f.getName());
+            } else if (columnarFilter.accept(f)) {
+                trajs.addAll(columnarReader.parse(f));
+                Log.log(LogLevel.INFO, "Control", "Trajectories from %s added", f.getName());
             } else {
                 Log.log(LogLevel.WARNING, "Control", "Skipped over unsupported file: %s", f.getName());
-                continue;
             }
-
-            trajs.addAll(reader.parse(f));
-
-            Log.log(LogLevel.INFO, "Control", "Trajectories from %s added", f.getName());
         }
+        loadTxtTrajectories(txtFiles, trajs);
         STORAGE.clearBundles();
         STORAGE.setEvolutionDiagram(null);
         STORAGE.setOriginalTrajectories(trajs);
@@ -251,6 +262,14 @@ public class Controller {
         preProcess();
     }
 
+    private void loadTxtTrajectories(List<File> txtFiles, List<Trajectory> trajs) {
+        if (!txtFiles.isEmpty()) {
+            trajs.addAll(txtTrajReader.readFiles(txtFiles));
+            Log.log(LogLevel.INFO, "Control", "Trajectories from %d text files added", txtFiles.size());
+            txtFiles.clear();
+        }
+    }
+
     public void loadRoadmaps(Map<String,Pair<File,File>> roadmaps) {
         Map<String,RoadMap> networks = new LinkedHashMap<>();
 
@@ -485,15 +504,9 @@ public class Controller {
      * @param out, the file where we write the state too. (Note, this is not the path, this is defined somewhere else)
      */
     private void saveState(File out) {
-        try (ObjectOutputStream writer = new ObjectOutputStream(new FileOutputStream(out))) {
-
-            writer.writeObject(STORAGE.getDatasetConfig());
-            writer.writeObject(STORAGE.getOriginalTrajectories());
-            writer.writeObject(STORAGE.getTrajectories());
-            writer.writeObject(STORAGE.getEvolutionDiagram());
-            writer.writeObject(this.computeRoadNetwork);
-            ParameterSerializable params = ParameterSerializable.create();
-            writer.writeObject(params);
+        try {
+            new BinarySavedState(STORAGE.getDatasetConfig(), STORAGE.getOriginalTrajectories(), STORAGE.getTrajectories(),
+                    STORAGE.getEvolutionDiagram(), this.computeRoadNetwork).write(out);
 
             Log.log(LogLevel.INFO, "Control", "State exported to: %s", out.getAbsolutePath());
         } catch (IOException ex) {
@@ -559,26 +572,18 @@ public class Controller {
      * @param in, the File
      */
     public void loadState(File in) {
-        try (ObjectInputStream reader = new ObjectInputStream(new FileInputStream(in))) {
+        try {
             timer("Controller - Starting the loading state");
-            DatasetConfig datasetConfig = (DatasetConfig) reader.readObject();
-            List<Trajectory> originalTrajectories = (List<Trajectory>) reader.readObject();
-            List<Trajectory> trajectories = (List<Trajectory>) reader.readObject();
-            EvolutionDiagram diagram = (EvolutionDiagram) reader.readObject();
-            ComputeRoadNetwork roadMapComputer = (ComputeRoadNetwork) reader.readObject();
+            BinarySavedState state = BinarySavedState.isBinarySavedState(in)
+                    ? BinarySavedState.read(in)
+                    : loadSerializedState(in);
             timer("Controller - Loaded the files into main memory");
 
-            try {
-                ((ParameterSerializable) reader.readObject()).restore(this);
-            } catch (EOFException ex) {
-                Log.log(LogLevel.WARNING, "Control", "Parameters could not be restored");
-            }
-
-            STORAGE.setDatasetConfig(datasetConfig);
-            STORAGE.setOriginalTrajectories(originalTrajectories);
-            STORAGE.setTrajectories(trajectories);
-            STORAGE.setEvolutionDiagram(diagram);
-            this.computeRoadNetwork = roadMapComputer;
+            STORAGE.setDatasetConfig(state.getDatasetConfig());
+            STORAGE.setOriginalTrajectories(state.getOriginalTrajectories());
+            STORAGE.setTrajectories(state.getTrajectories());
+            STORAGE.setEvolutionDiagram(state.getDiagram());
+            this.computeRoadNetwork = state.getRoadNetworkComputer();
             if (this.computeRoadNetwork != null) {
                 STORAGE.setRoadMap(computeRoadNetwork.getRoadMap());
             }
@@ -598,12 +603,34 @@ public class Controller {
 
             timer("Controller - Calculated all bundle properties");
             Log.log(LogLevel.INFO, "Control", "State imported from: %s", in.getAbsolutePath());
-        } catch (IOException | ClassNotFoundException ex) {
+        } catch (IOException ex) {
             Logger.getLogger(Controller.class.getName()).log(Level.SEVERE, null, ex);
             Log.log(LogLevel.ERROR, "Control", "Failed to import state: %s", ex.toString());
         }
     }
 
+    /**
+     * Reads a state that was saved with Java serialization, before saved states were stored in the binary format.
+     */
+    private BinarySavedState loadSerializedState(File in) throws IOException {
+        try (ObjectInputStream reader = new ObjectInputStream(new FileInputStream(in))) {
+            DatasetConfig datasetConfig = (DatasetConfig) reader.readObject();
+            List<Trajectory> originalTrajectories = (List<Trajectory>) reader.readObject();
+            List<Trajectory> trajectories = (List<Trajectory>) reader.readObject();
+            EvolutionDiagram diagram = (EvolutionDiagram) reader.readObject();
+            ComputeRoadNetwork roadMapComputer = (ComputeRoadNetwork) reader.readObject();
+
+            try {
+                ((ParameterSerializable) reader.readObject()).restore(this);
+            } catch (EOFException ex) {
+                Log.log(LogLevel.WARNING, "Control", "Parameters could not be restored");
+            }
+            return new BinarySavedState(datasetConfig, originalTrajectories, trajectories, diagram, roadMapComputer);
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex);
+        }
+    }
+
     public void loadBundleState(File in) {
         try {
             Yaml yaml = new Yaml(new Constructor(BundleConfig.class));
@@ -722,12 +749,6 @@ public class Controller {
 
         }
 
-        public static ParameterSerializable create() {
-            ParameterSerializable o = new ParameterSerializable();
-            o.sweep_size = 0.0;
-            return o;
-        }
-
         public void restore(Controller controller) {
 //            Skipp
         }
@@ -13,12 +13,17 @@ public class GeneralConfig {
     private String savedStatesDirectory;
     private String outputDirectory;
     private String benchmarkDirectory;
+    private String checkpointDirectory;
+    private double diagramHeapBudget;
+    private int diagramMaxBufferedLevels;
 
     private int numOfProcesses;
 
     public GeneralConfig() {
 //        Specific
         numOfProcesses = 4;
+        diagramHeapBudget = 0.7;
+        diagramMaxBufferedLevels = 1;
     }
 
     public int getWebPagePort() {
@@ -78,6 +83,30 @@ public class GeneralConfig {
         this.benchmarkDirectory = benchmarkDirectory;
     }
 
+    public String getCheckpointDirectory() {
+        return checkpointDirectory;
+    }
+
+    public void setCheckpointDirectory(String checkpointDirectory) {
+        this.checkpointDirectory = checkpointDirectory;
+    }
+
+    public double getDiagramHeapBudget() {
+        return diagramHeapBudget;
+    }
+
+    public void setDiagramHeapBudget(double diagramHeapBudget) {
+        this.diagramHeapBudget = diagramHeapBudget;
+    }
+
+    public int getDiagramMaxBufferedLevels() {
+        return diagramMaxBufferedLevels;
+    }
+
+    public void setDiagramMaxBufferedLevels(int diagramMaxBufferedLevels) {
+        this.diagramMaxBufferedLevels = diagramMaxBufferedLevels;
+    }
+
     public int getNumOfProcesses() {
         return numOfProcesses;
     }
@@ -95,7 +124,10 @@ public class GeneralConfig {
                format("5. savedStatesDirectory: %s\n", savedStatesDirectory) +
                format("6. outputDirectory: %s\n", outputDirectory) +
                format("7. benchmarkDirectory: %s\n", benchmarkDirectory) +
-               format("8. numberOfProcesses: %s\n", numOfProcesses);
+               format("8. numberOfProcesses: %s\n", numOfProcesses) +
+               format("9. checkpointDirectory: %s\n", checkpointDirectory) +
+               format("10. diagramHeapBudget: %s\n", diagramHeapBudget) +
+               format("11. diagramMaxBufferedLevels: %s\n", diagramMaxBufferedLevels);
     }
 
 }
@@ -17,6 +17,7 @@ import mapconstruction.trajectories.Bundle;
 import mapconstruction.trajectories.Trajectory;
 import mapconstruction.web.Controller;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.function.IntUnaryOperator;
@@ -24,6 +25,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import static mapconstruction.GUI.datastorage.ConstantsStorage.ALGOCONSTANTS;
 import static mapconstruction.GUI.datastorage.DataStorage.STORAGE;
 
 public class ComputeEvolutionDiagram extends AbortableAlgorithmWorker<EvolutionDiagram, Void> {
@@ -71,6 +73,10 @@ public class ComputeEvolutionDiagram extends AbortableAlgorithmWorker<EvolutionD
             Log.log(LogLevel.INFO, "ComputeEVO", "==> BuildDiagramWorker.class Starting to build diagram @ %s", Calendar.getInstance().getTime());
             Log.log(LogLevel.INFO, "ComputeEVO", "Using trajectories: %s", getTrajectoryLabels());
             List<Trajectory> trajectories = STORAGE.getTrajectories();
+            EvolutionDiagramBuilder builder = (EvolutionDiagramBuilder) algo;
+            builder.setCheckpointFile(getCheckpointFile());
+            builder.setHeapBudget(ALGOCONSTANTS.getDiagramHeapBudget());
+            builder.setMaxBufferedLevels(ALGOCONSTANTS.getDiagramMaxBufferedLevels());
 
             int numPoints = trajectories.stream().mapToInt(Trajectory::numPoints).sum();
             Log.log(LogLevel.INFO, "ComputeEVO", "Total number of points: % d", numPoints);
@@ -144,6 +150,26 @@ public class ComputeEvolutionDiagram extends AbortableAlgorithmWorker<EvolutionD
         STORAGE.setBundlesWithClasses(classBunMapping);
     }
 
+    /**
+     * File in the configured checkpoint directory in which the levels of the diagram of the current dataset are
+     * logged, or null if no checkpoint directory is configured.
+     */
+    private File getCheckpointFile() {
+        String directory = ALGOCONSTANTS.getCheckpointDirectory();
+        if (directory == null || STORAGE.getDatasetConfig() == null) {
+            return null;
+        }
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.log(LogLevel.WARNING, "ComputeEVO", "Could not create checkpoint directory %s, no checkpoint is kept", dir);
+            return null;
+        }
+        String walking = STORAGE.getDatasetConfig().isWalkingDataset() ? "walking_" : "car_";
+        File file = new File(dir, "diagram_" + walking + new File(STORAGE.getDatasetConfig().getPath()).getName() + ".ckpt");
+        Log.log(LogLevel.INFO, "ComputeEVO", "Using checkpoint %s", file);
+        return file;
+    }
+
     private List<String> getTrajectoryLabels() {
         return STORAGE.getTrajectories().stream().map(Trajectory::getLabel).collect(Collectors.toList());
     }
@@ -0,0 +1,128 @@
+package mapconstruction.GUI.io;
+
+import junit.framework.TestCase;
+import mapconstruction.algorithms.diagram.EvolutionDiagram;
+import mapconstruction.algorithms.diagram.EvolutionDiagramBuilder;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.Trajectory;
+import mapconstruction.web.config.DatasetConfig;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.util.*;
+
+/**
+ * @author Roel
+ */
+public class BinarySavedStateTest extends TestCase {
+
+    private List<Trajectory> trajectories;
+    private File file;
+
+    public BinarySavedStateTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Random random = new Random(7);
+        trajectories = new ArrayList<>();
+        for (int t = 0; t < 10; t++) {
+            int corridor = random.nextInt(3);
+            List<Point2D> points = new ArrayList<>();
+            for (int i = 0; i < 10 + random.nextInt(10); i++) {
+                double y = corridor * (i < 8 ? 0 : 2) + random.nextGaussian() * 0.3;
+                points.add(new Point2D.Double(i * 2 + random.nextGaussian() * 0.3, y));
+            }
+            FullTrajectory trajectory = new FullTrajectory(points);
+            if (t % 3 != 0) {
+                trajectory.setLabel("s" + t);
+            }
+            trajectories.add(trajectory);
+        }
+        file = File.createTempFile("state", ".savst");
+        file.deleteOnExit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    private static void assertSameTrajectories(List<Trajectory> expected, List<Trajectory> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+            assertEquals(expected.get(i).getLabel(), actual.get(i).getLabel());
+            assertEquals(expected.get(i).points(), actual.get(i).points());
+        }
+    }
+
+    public void testRoundTrip() throws Exception {
+        System.out.println("roundTrip");
+        DatasetConfig config = new DatasetConfig();
+        config.setPath("synthetic");
+        config.setZone(31);
+        config.setWalkingDataset(true);
+
+        EvolutionDiagram diagram = EvolutionDiagramBuilder.additive(0.5, 2, 0.5, 3, true, k -> k + 1)
+                .runAlgorithmSequential(trajectories);
+        assertTrue(diagram.getEpsilons().size() > 2);
+
+        // A bundle whose representative was replaced, as by the bundle cutoff
+        double eps = diagram.getEpsilons().first();
+        Bundle cut = diagram.getBundleClasses(eps).keySet().stream()
+                .filter(b -> b.getOriginalRepresentative() != null)
+                .findFirst().get();
+        Subtrajectory rep = cut.getOriginalRepresentative();
+        cut.setNewRepresentativeSubtrajectory(new Subtrajectory(rep.getParent(), rep.getFromIndex(),
+                (rep.getFromIndex() + rep.getToIndex()) / 2));
+        cut.setBundleRepCutOff(true);
+
+        List<Trajectory> current = trajectories.subList(2, 8);
+        new BinarySavedState(config, trajectories, current, diagram, null).write(file);
+        assertTrue(BinarySavedState.isBinarySavedState(file));
+
+        BinarySavedState state = BinarySavedState.read(file);
+        assertEquals(config.getPath(), state.getDatasetConfig().getPath());
+        assertEquals(config.getZone(), state.getDatasetConfig().getZone());
+        assertNull(state.getDatasetConfig().getSystem());
+        assertTrue(state.getDatasetConfig().isWalkingDataset());
+        assertNull(state.getRoadNetworkComputer());
+
+        assertSameTrajectories(trajectories, state.getOriginalTrajectories());
+        assertSameTrajectories(current, state.getTrajectories());
+        assertSame(state.getOriginalTrajectories().get(2), state.getTrajectories().get(0));
+
+        EvolutionDiagram restored = state.getDiagram();
+        assertEquals(diagram.getEpsilons(), restored.getEpsilons());
+        for (double e : diagram.getEpsilons()) {
+            assertEquals(diagram.getBundleClasses(e), restored.getBundleClasses(e));
+            assertEquals(diagram.getBirths(e), restored.getBirths(e));
+            assertEquals(diagram.getMerges(e), restored.getMerges(e));
+            for (Bundle b : diagram.getBundleClasses(e).keySet()) {
+                Bundle r = restored.getBundleClasses(e).inverse().get(diagram.getBundleClasses(e).get(b));
+                assertEquals(b.getOriginalRepresentative(), r.getOriginalRepresentative());
+                assertEquals(b.getTrajectoryNames(), r.getTrajectoryNames());
+                assertEquals(b.isBundleRepCutOff(), r.isBundleRepCutOff());
+            }
+        }
+        for (int c : diagram.getClasses()) {
+            assertEquals(diagram.getBirthMoment(c), restored.getBirthMoment(c));
+            assertEquals(diagram.getMergeMoment(c), restored.getMergeMoment(c));
+            assertEquals(diagram.getBestEpsilon(c), restored.getBestEpsilon(c));
+        }
+    }
+
+    public void testSerializedStateIsNotBinary() throws Exception {
+        System.out.println("serializedStateIsNotBinary");
+        try (java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(new java.io.FileOutputStream(file))) {
+            out.writeObject(new DatasetConfig());
+        }
+        assertFalse(BinarySavedState.isBinarySavedState(file));
+    }
+}
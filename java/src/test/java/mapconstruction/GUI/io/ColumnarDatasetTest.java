@@ -0,0 +1,135 @@
+package mapconstruction.GUI.io;
+
+import junit.framework.TestCase;
+import mapconstruction.trajectories.FullTrajectory;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * @author Roel
+ */
+public class ColumnarDatasetTest extends TestCase {
+
+    private File dir;
+
+    public ColumnarDatasetTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("dataset").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+        super.tearDown();
+    }
+
+    private File write(String name, String content) throws IOException {
+        File f = new File(dir, name);
+        try (Writer writer = new FileWriter(f)) {
+            writer.write(content);
+        }
+        return f;
+    }
+
+    private static void assertSameTrajectory(FullTrajectory expected, FullTrajectory actual) {
+        assertEquals(expected, actual);
+        assertEquals(expected.getLabel(), actual.getLabel());
+        assertEquals(expected.points(), actual.points());
+        for (int i = 0; i < expected.numPoints(); i++) {
+            assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+        }
+    }
+
+    public void testConvertDirectory() throws Exception {
+        System.out.println("convertDirectory");
+        Random random = new Random(17);
+        for (int t = 0; t < 25; t++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 20 + random.nextInt(50); i++) {
+                content.append(random.nextDouble() * 100).append(' ').append(random.nextDouble() * 100).append(' ')
+                        .append(1446360000 + i).append('\n');
+            }
+            write("trip_" + t + ".txt", content.toString());
+        }
+        write("trip_25.txt", "");
+
+        File output = new File(dir, "dataset." + ColumnarDataset.EXTENSION);
+        assertEquals(26, ColumnarDatasetConverter.convertDirectory(dir, output));
+        assertTrue(ColumnarDataset.isColumnarDataset(output));
+        assertFalse(ColumnarDataset.isColumnarDataset(new File(dir, "trip_0.txt")));
+
+        File[] txtFiles = dir.listFiles(file -> file.getName().endsWith(".txt"));
+        List<FullTrajectory> expected = new MappedTxtTrajectoryReader(1).readFiles(Arrays.asList(txtFiles));
+        ColumnarDataset dataset = ColumnarDataset.read(output);
+        assertEquals(expected.size(), dataset.getTrajectories().size());
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < expected.size(); i++) {
+            FullTrajectory t = expected.get(i);
+            assertSameTrajectory(t, dataset.getTrajectories().get(i));
+            assertEquals(t.euclideanLength(), dataset.getLength(i));
+            for (int j = 0; j < t.numPoints(); j++) {
+                minX = Math.min(minX, t.getX(j));
+                maxY = Math.max(maxY, t.getY(j));
+            }
+        }
+        Rectangle2D bounds = dataset.getBounds();
+        assertEquals(minX, bounds.getMinX());
+        assertEquals(maxY, bounds.getMaxY());
+    }
+
+    public void testConvertTestSuiteFile() throws Exception {
+        System.out.println("convertTestSuiteFile");
+        File input = write("input.txt",
+                "4 20 1.5 2.5\n" +
+                "4 10 0.5 0.5\n" +
+                "2 5 7 8\n" +
+                "4 30 1.5 2.5\n" +
+                "\n" +
+                "2 6 7 9\n");
+        File output = new File(dir, "dataset." + ColumnarDataset.EXTENSION);
+        assertEquals(2, ColumnarDatasetConverter.convertTestSuiteFile(input, output));
+
+        List<FullTrajectory> trajectories = ColumnarDataset.read(output).getTrajectories();
+        assertEquals(2, trajectories.size());
+
+        // Ordered by time, without the consecutive duplicate
+        FullTrajectory first = trajectories.get(0);
+        assertEquals(5, first.getId());
+        assertEquals("<trip_4.txt>", first.getLabel());
+        assertEquals(2, first.numPoints());
+        assertEquals(0.5, first.getX(0));
+        assertEquals(10, first.getTimestamp(0));
+        assertEquals(2.5, first.getY(1));
+        assertEquals(20, first.getTimestamp(1));
+
+        FullTrajectory second = trajectories.get(1);
+        assertEquals(3, second.getId());
+        assertEquals(9.0, second.getY(1));
+        assertEquals(6, second.getTimestamp(1));
+    }
+
+    public void testReaderSkipsInvalidFile() throws Exception {
+        System.out.println("readerSkipsInvalidFile");
+        File f = write("broken." + ColumnarDataset.EXTENSION, "not a dataset");
+        assertTrue(new ColumnarDatasetReader().parse(f).isEmpty());
+    }
+}
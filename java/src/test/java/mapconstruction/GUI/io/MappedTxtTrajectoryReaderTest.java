@@ -0,0 +1,141 @@
+package mapconstruction.GUI.io;
+
+import junit.framework.TestCase;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.PointColumns;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Roel
+ */
+public class MappedTxtTrajectoryReaderTest extends TestCase {
+
+    private File dir;
+
+    public MappedTxtTrajectoryReaderTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("trips").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+        super.tearDown();
+    }
+
+    private File write(String name, String content) throws IOException {
+        File f = new File(dir, name);
+        try (Writer writer = new FileWriter(f)) {
+            writer.write(content);
+        }
+        return f;
+    }
+
+    private static double parse(String s) {
+        return MappedTxtTrajectoryReader.parseDouble(ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII)), 0, s.length());
+    }
+
+    public void testParseDouble() {
+        System.out.println("parseDouble");
+        String[] numbers = {"0", "-0", "+3", "1.5", "-87.6297982", "41.878113600000001", "447123.1234567", ".5", "5.",
+                "1e3", "-2.5E-4", "4.9e-324", "1.7976931348623157e308", "1234567890123456789", "1446360064",
+                "0.1", "0.30000000000000004", "5841234.56789012", "NaN", "-Infinity"};
+        for (String s : numbers) {
+            assertEquals(s, Double.doubleToRawLongBits(Double.parseDouble(s)), Double.doubleToRawLongBits(parse(s)));
+        }
+        Random random = new Random(11);
+        for (int i = 0; i < 10000; i++) {
+            double d = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(16) - 4);
+            for (String s : new String[]{Double.toString(d), String.format("%.7f", d), String.format("%.3f", d)}) {
+                assertEquals(s, Double.parseDouble(s), parse(s));
+            }
+        }
+        for (String s : new String[]{"", "-", ".", "1e", "1,5", "abc"}) {
+            try {
+                parse(s);
+                fail("Should have thrown exception for " + s);
+            } catch (NumberFormatException e) {
+
+            }
+        }
+    }
+
+    /**
+     * The trajectories must be the same as those of {@link TxtTrajectoryReader}, with the timestamps kept.
+     */
+    public void testSameAsTxtReader() throws Exception {
+        System.out.println("sameAsTxtReader");
+        Random random = new Random(13);
+        List<File> files = new ArrayList<>();
+        for (int t = 0; t < 40; t++) {
+            StringBuilder content = new StringBuilder();
+            long time = 1446360000L + random.nextInt(10000);
+            for (int i = 0; i < 50 + random.nextInt(200); i++) {
+                double x = 447000 + random.nextDouble() * 1000;
+                double y = 4637000 + random.nextDouble() * 1000;
+                content.append(x).append(' ').append(y).append(' ').append(time).append('\n');
+                if (random.nextInt(10) == 0) {
+                    // Duplicate point
+                    content.append(x).append('\t').append(y).append(' ').append(time + 1).append("\r\n");
+                }
+                time += 1 + random.nextInt(5);
+            }
+            files.add(write("trip_" + t + ".txt", content.toString()));
+        }
+        files.add(write("untimed.txt", "1.5 2.5\n3 4\n"));
+
+        List<FullTrajectory> read = new MappedTxtTrajectoryReader(4).readFiles(files);
+        assertEquals(files.size(), read.size());
+        TxtTrajectoryReader txtReader = new TxtTrajectoryReader();
+        for (int i = 0; i < files.size(); i++) {
+            FullTrajectory expected = txtReader.readFile(files.get(i));
+            FullTrajectory actual = read.get(i);
+            assertEquals(files.get(i).getName(), expected.getLabel(), actual.getLabel());
+            assertEquals(expected.points(), actual.points());
+            if (i < 40) {
+                assertEquals(expected, actual);
+            }
+        }
+
+        List<String> lines = Files.readAllLines(files.get(0).toPath());
+        assertEquals(Long.parseLong(lines.get(0).split(" ")[2]), read.get(0).getTimestamp(0));
+        assertEquals(PointColumns.NO_TIME, read.get(40).getTimestamp(1));
+        FullTrajectory first = read.get(0);
+        assertEquals(first.getTimestamp(0), first.reverse().getTimestamp(first.numPoints() - 1));
+    }
+
+    public void testMalformedFileIsSkipped() throws Exception {
+        System.out.println("malformedFileIsSkipped");
+        List<File> files = new ArrayList<>();
+        files.add(write("trip_1.txt", "1 2 3\n4 5 6\n"));
+        files.add(write("trip_2.txt", "1 2 3\n4 x 6\n"));
+        files.add(write("trip_3.txt", "1 2 3\n4\n"));
+        files.add(write("trip_4.txt", "\n7 8 9\n"));
+        List<FullTrajectory> read = new MappedTxtTrajectoryReader(2).readFiles(files);
+        assertEquals(2, read.size());
+        assertEquals("<trip_1.txt>", read.get(0).getLabel());
+        assertEquals("<trip_4.txt>", read.get(1).getLabel());
+        assertEquals(9, read.get(1).getTimestamp(0));
+    }
+}
@@ -1,6 +1,7 @@
 package mapconstruction.algorithms.bundles;
 
 import junit.framework.TestCase;
+import mapconstruction.trajectories.Bundle;
 import mapconstruction.trajectories.FullTrajectory;
 import mapconstruction.trajectories.Trajectory;
 
@@ -8,7 +9,12 @@ import java.awt.*;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 public class KLSubbundleAlgorithmTest extends TestCase {
 
@@ -58,4 +64,115 @@ public class KLSubbundleAlgorithmTest extends TestCase {
 
     }
 
+    /**
+     * Creates trajectories following a few shared corridors with some seeded noise, such that bundles of various sizes
+     * arise.
+     */
+    private List<Trajectory> makeNoisyCorridors(int count, long seed) {
+        Random random = new Random(seed);
+        List<Trajectory> trajectories = new ArrayList<>();
+        for (int t = 0; t < count; t++) {
+            int corridor = t % 3;
+            List<Point2D> points = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                double x = i * 2 + random.nextGaussian() * 0.2;
+                double y = corridor * (i < 10 ? 0 : 3) + random.nextGaussian() * 0.2;
+                points.add(new Point2D.Double(x, y));
+            }
+            trajectories.add(new FullTrajectory(points));
+        }
+        return trajectories;
+    }
+
+    public void testParallelMatchesSequential() {
+        List<Trajectory> trajectories = makeNoisyCorridors(12, 42);
+
+        KLSubbundleAlgorithm sequential = new KLSubbundleAlgorithm(1d, 2d, true);
+        KLSubbundleAlgorithm parallel = new KLSubbundleAlgorithm(1d, 2d, true, 4);
+
+        List<Bundle> expected = new ArrayList<>(sequential.run(trajectories));
+        List<Bundle> result = new ArrayList<>(parallel.run(trajectories));
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, result);
+        assertEquals(sequential.getMerges(), parallel.getMerges());
+    }
+
+    public void testSharedIndexMatchesUnshared() {
+        List<Trajectory> trajectories = makeNoisyCorridors(12, 7);
+        TrajectorySegmentIndex index = TrajectorySegmentIndex.build(trajectories, true);
+
+        for (double eps : new double[]{1d, 2d}) {
+            KLSubbundleAlgorithm unshared = new KLSubbundleAlgorithm(eps, 2 * eps, true);
+            KLSubbundleAlgorithm shared = new KLSubbundleAlgorithm(eps, 2 * eps, true, 1, index);
+
+            List<Bundle> expected = new ArrayList<>(unshared.run(trajectories));
+            List<Bundle> result = new ArrayList<>(shared.run(trajectories));
+
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, result);
+            assertEquals(unshared.getMerges(), shared.getMerges());
+        }
+    }
+
+    public void testSharedIndexMismatch() {
+        List<Trajectory> trajectories = makeNoisyCorridors(6, 7);
+        TrajectorySegmentIndex index = TrajectorySegmentIndex.build(trajectories.subList(0, 3), true);
+
+        assertTrue(index.isIndexOf(trajectories.subList(0, 3), true));
+        assertFalse(index.isIndexOf(trajectories.subList(0, 3), false));
+        assertFalse(index.isIndexOf(trajectories, true));
+
+        // an index for other trajectories is not used
+        KLSubbundleAlgorithm unshared = new KLSubbundleAlgorithm(1d, 2d, true);
+        KLSubbundleAlgorithm shared = new KLSubbundleAlgorithm(1d, 2d, true, 1, index);
+        assertEquals(new ArrayList<>(unshared.run(trajectories)), new ArrayList<>(shared.run(trajectories)));
+    }
+
+    public void testMultiEpsilonMatchesPerLevel() {
+        List<Trajectory> trajectories = makeNoisyCorridors(12, 11);
+        double[] epsilons = {0.5, 1d, 2d, 4d};
+
+        List<KLSubbundleAlgorithm> levels = new ArrayList<>();
+        for (double eps : epsilons) {
+            levels.add(new KLSubbundleAlgorithm(eps, 2 * eps, true));
+        }
+        TrajectorySegmentIndex index = TrajectorySegmentIndex.build(trajectories, true);
+        List<Set<Bundle>> generated = new MultiEpsilonBundleGenerator(levels, index, 2).generate();
+        assertEquals(epsilons.length, generated.size());
+
+        for (int k = 0; k < epsilons.length; k++) {
+            KLSubbundleAlgorithm direct = new KLSubbundleAlgorithm(epsilons[k], 2 * epsilons[k], true);
+            List<Bundle> expected = new ArrayList<>(direct.run(trajectories));
+            List<Bundle> result = new ArrayList<>(levels.get(k).runOnGeneratedBundles(generated.get(k)));
+
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, result);
+            assertEquals(direct.getMerges(), levels.get(k).getMerges());
+        }
+    }
+
+    public void testIndexedRemovalMatchesPairwise() {
+        List<Trajectory> trajectories = makeNoisyCorridors(15, 5);
+
+        for (double eps : new double[]{0.5, 1d, 3d}) {
+            KLSubbundleAlgorithm level = new KLSubbundleAlgorithm(eps, 2 * eps, true);
+            Set<Bundle> generated = new MultiEpsilonBundleGenerator(Arrays.asList(level), TrajectorySegmentIndex.build(trajectories, true), 1).generate().get(0);
+
+            KLSubbundleAlgorithm pairwise = new KLSubbundleAlgorithm(eps, 2 * eps, true);
+            Set<Bundle> expected = new LinkedHashSet<>(generated);
+            pairwise.removeLambdaSubbundles(expected, 2 * eps);
+
+            for (int parallelism : new int[]{1, 3}) {
+                Set<Bundle> result = new LinkedHashSet<>(generated);
+                Map<Bundle, Bundle> merges = new HashMap<>();
+                new LambdaSubbundleRemoval(eps, 2 * eps, parallelism).removeLambdaSubbundles(result, merges);
+
+                assertTrue(expected.size() < generated.size());
+                assertEquals(new ArrayList<>(expected), new ArrayList<>(result));
+                assertEquals(pairwise.getMerges(), merges);
+            }
+        }
+    }
+
 }
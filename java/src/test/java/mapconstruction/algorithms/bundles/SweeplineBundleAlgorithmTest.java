@@ -0,0 +1,81 @@
+package mapconstruction.algorithms.bundles;
+
+import junit.framework.TestCase;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Roel
+ */
+public class SweeplineBundleAlgorithmTest extends TestCase {
+
+    public SweeplineBundleAlgorithmTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Random trajectories along a few shared corridors.
+     */
+    private static List<Trajectory> makeTrajectories(Random random, int count) {
+        List<Trajectory> trajectories = new ArrayList<>();
+        for (int t = 0; t < count; t++) {
+            int corridor = random.nextInt(3);
+            int start = random.nextInt(10);
+            List<Point2D> points = new ArrayList<>();
+            for (int i = start; i < start + 2 + random.nextInt(20); i++) {
+                double x = i * 2 + random.nextGaussian() * 0.4;
+                double y = corridor * (i < 12 ? 0 : 3) + random.nextGaussian() * 0.4;
+                points.add(new Point2D.Double(x, y));
+            }
+            if (random.nextBoolean()) {
+                Collections.reverse(points);
+            }
+            trajectories.add(new FullTrajectory(points, t + 1));
+        }
+        return trajectories;
+    }
+
+    private static void assertSameAsSequential(List<Trajectory> trajectories, double eps, int k, boolean ignoreDirection,
+                                               boolean allowMultiple) {
+        SweeplineBundleAlgorithm sequential = new SweeplineBundleAlgorithm(eps, k, ignoreDirection, !allowMultiple, allowMultiple);
+        SweeplineBundleAlgorithm parallel = new SweeplineBundleAlgorithm(eps, k, ignoreDirection, !allowMultiple, allowMultiple, 3);
+        List<Bundle> expected = new ArrayList<>(sequential.run(trajectories));
+        List<Bundle> actual = new ArrayList<>(parallel.run(trajectories));
+        assertEquals(expected, actual);
+    }
+
+    public void testParallelSweep() {
+        System.out.println("parallelSweep");
+        Random random = new Random(11);
+        for (int i = 0; i < 10; i++) {
+            List<Trajectory> trajectories = makeTrajectories(random, 5 + random.nextInt(20));
+            for (int k : new int[]{2, 3}) {
+                assertSameAsSequential(trajectories, 1.5, k, false, false);
+                assertSameAsSequential(trajectories, 1.5, k, false, true);
+            }
+        }
+    }
+
+    public void testParallelSweepIgnoreDirection() {
+        System.out.println("parallelSweepIgnoreDirection");
+        Random random = new Random(13);
+        for (int i = 0; i < 10; i++) {
+            List<Trajectory> trajectories = makeTrajectories(random, 5 + random.nextInt(20));
+            assertSameAsSequential(trajectories, 1.5, 2, true, false);
+            assertSameAsSequential(trajectories, 1.5, 2, true, true);
+        }
+    }
+
+    public void testParallelSweepSingleTrajectory() {
+        System.out.println("parallelSweepSingleTrajectory");
+        List<Trajectory> trajectories = makeTrajectories(new Random(17), 1);
+        assertSameAsSequential(trajectories, 1.5, 1, false, false);
+    }
+}
@@ -0,0 +1,73 @@
+package mapconstruction.algorithms.bundles.graph.representation;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PackedLabelledGraphTest extends TestCase {
+
+    public void testFindOrAdd1() {
+        PackedLabelledGraph graph = new PackedLabelledGraph(1);
+
+        int a = graph.findOrAdd(4, 7);
+        int b = graph.findOrAdd(-3, 2);
+
+        TestCase.assertEquals(a, graph.findOrAdd(4, 7));
+        TestCase.assertEquals(b, graph.find(-3, 2));
+        TestCase.assertEquals(-1, graph.find(7, 4));
+        TestCase.assertEquals(-3, graph.x(b));
+        TestCase.assertEquals(2, graph.y(b));
+        TestCase.assertEquals(2, graph.numVertices());
+    }
+
+    public void testGrow1() {
+        PackedLabelledGraph graph = new PackedLabelledGraph(1);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+
+        for (int i = 0; i < 10000; i++) {
+            int x = random.nextInt(500);
+            int y = random.nextInt(500);
+            int v = graph.findOrAdd(x, y);
+            Integer previous = expected.putIfAbsent(((long) x << 32) | y, v);
+            if (previous != null) {
+                TestCase.assertEquals((int) previous, v);
+            }
+        }
+
+        TestCase.assertEquals(expected.size(), graph.numVertices());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            int x = (int) (entry.getKey() >> 32);
+            int y = (int) (long) entry.getKey();
+            TestCase.assertEquals((int) entry.getValue(), graph.find(x, y));
+        }
+    }
+
+    public void testEdges1() {
+        PackedLabelledGraph graph = new PackedLabelledGraph();
+        int v = graph.findOrAdd(2, 3);
+
+        TestCase.assertFalse(graph.hasEdges(v));
+        TestCase.assertEquals(-1, graph.minLabelEdge(v));
+
+        int e1 = graph.addEdge(v, 0, 3, 5, 0, 3);
+        int e2 = graph.addEdge(v, 1, 2, 1, 1, 1);
+        int e3 = graph.addEdge(v, 1, 2, 1, 0, 0);
+
+        // edges are kept in order of insertion
+        TestCase.assertEquals(e1, graph.firstEdge(v));
+        TestCase.assertEquals(e2, graph.nextEdge(e1));
+        TestCase.assertEquals(e3, graph.nextEdge(e2));
+        TestCase.assertEquals(-1, graph.nextEdge(e3));
+
+        // the first edge with the smallest label is returned
+        TestCase.assertEquals(e2, graph.minLabelEdge(v));
+        TestCase.assertEquals(1, graph.targetX(e2));
+        TestCase.assertEquals(2, graph.targetY(e2));
+        TestCase.assertEquals(1, graph.label(e2));
+        TestCase.assertEquals(1, graph.originX(e2));
+        TestCase.assertEquals(1, graph.originY(e2));
+    }
+}
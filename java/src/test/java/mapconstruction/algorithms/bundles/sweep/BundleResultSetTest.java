@@ -0,0 +1,117 @@
+package mapconstruction.algorithms.bundles.sweep;
+
+import junit.framework.TestCase;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.UndirectionalBundle;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * @author Roel
+ */
+public class BundleResultSetTest extends TestCase {
+
+    private static final double LAMBDA = 15;
+
+    public BundleResultSetTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * The indexed result set must find the same lambda-subbundle relations as testing all bundles, also between
+     * subtrajectories of a trajectory and of its reverse.
+     */
+    public void testMixedDirections() {
+        System.out.println("mixedDirections");
+        for (int run = 0; run < 20; run++) {
+            Random random = new Random(run);
+            List<FullTrajectory> trajectories = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                List<Point2D> points = new ArrayList<>();
+                double x = random.nextDouble() * 100;
+                double y = random.nextDouble() * 100;
+                for (int j = 0; j < 30; j++) {
+                    points.add(new Point2D.Double(x, y));
+                    x += random.nextDouble() * 10;
+                    y += random.nextDouble() * 10 - 5;
+                }
+                FullTrajectory t = new FullTrajectory(points);
+                t.setLabel("t" + i);
+                trajectories.add(t);
+            }
+
+            BundleResultSet results = new BundleResultSet(LAMBDA);
+            Set<Bundle> expected = new HashSet<>();
+            List<Bundle> generated = new ArrayList<>();
+            for (int step = 0; step < 200; step++) {
+                Bundle b;
+                if (generated.isEmpty() || random.nextInt(3) == 0) {
+                    b = randomBundle(trajectories, random);
+                } else {
+                    b = perturb(generated.get(random.nextInt(generated.size())), random);
+                }
+                generated.add(b);
+
+                boolean hasSuper = expected.stream().anyMatch(c -> c.hasAsLambdaSubBundle(b, LAMBDA));
+                assertEquals(hasSuper, results.hasSuperBundleOf(b));
+
+                Set<Bundle> subBundles = new HashSet<>();
+                for (Bundle r : expected) {
+                    if (b.hasAsLambdaSubBundle(r, LAMBDA)) {
+                        subBundles.add(r);
+                    }
+                }
+                assertEquals(subBundles, new HashSet<>(results.findSubBundlesOf(b)));
+
+                if (!hasSuper) {
+                    subBundles.forEach(expected::remove);
+                    subBundles.forEach(results::remove);
+                    expected.add(b);
+                    results.add(b);
+                }
+                assertEquals(expected, results.getResults());
+            }
+        }
+    }
+
+    private static Bundle randomBundle(List<FullTrajectory> trajectories, Random random) {
+        List<FullTrajectory> shuffled = new ArrayList<>(trajectories);
+        Collections.shuffle(shuffled, random);
+        List<Subtrajectory> subs = new ArrayList<>();
+        for (FullTrajectory t : shuffled.subList(0, 3 + random.nextInt(3))) {
+            double from = random.nextDouble() * 20;
+            double to = from + 1 + random.nextDouble() * (28 - from);
+            subs.add(orient(new Subtrajectory(t, from, to), random));
+        }
+        return UndirectionalBundle.create(subs);
+    }
+
+    /**
+     * Moves the ends of the subtrajectories by a few points, may drop one of them and reverses some of them.
+     */
+    private static Bundle perturb(Bundle b, Random random) {
+        List<Subtrajectory> subs = new ArrayList<>();
+        for (Subtrajectory sub : b.getSubtrajectories()) {
+            Subtrajectory forward = sub.isReverse() ? sub.reverse() : sub;
+            int last = forward.getParent().numPoints() - 1;
+            double from = Math.max(0, forward.getFromIndex() + random.nextDouble() * 4 - 2);
+            double to = Math.min(last, forward.getToIndex() + random.nextDouble() * 4 - 2);
+            if (from >= to) {
+                to = Math.min(last, from + 0.5);
+                from = to - 0.5;
+            }
+            subs.add(orient(new Subtrajectory(forward.getParent(), from, to), random));
+        }
+        if (subs.size() > 3 && random.nextBoolean()) {
+            subs.remove(random.nextInt(subs.size()));
+        }
+        return UndirectionalBundle.create(subs);
+    }
+
+    private static Subtrajectory orient(Subtrajectory sub, Random random) {
+        return random.nextBoolean() ? sub.reverse() : sub;
+    }
+}
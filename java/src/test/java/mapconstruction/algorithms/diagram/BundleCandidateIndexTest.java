@@ -0,0 +1,101 @@
+package mapconstruction.algorithms.diagram;
+
+import junit.framework.TestCase;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.Trajectory;
+import mapconstruction.trajectories.UndirectionalBundle;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * @author Roel
+ */
+public class BundleCandidateIndexTest extends TestCase {
+
+    private List<Trajectory> trajectories;
+
+    public BundleCandidateIndexTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        trajectories = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            List<Point2D> points = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                points.add(new Point2D.Double(i, t * 0.1));
+            }
+            FullTrajectory trajectory = new FullTrajectory(points);
+            trajectory.setLabel("c" + t);
+            trajectories.add(trajectory);
+        }
+    }
+
+    private List<Bundle> randomBundles(Random random, int count, boolean undirectional) {
+        List<Bundle> bundles = new ArrayList<>();
+        for (int b = 0; b < count; b++) {
+            List<Trajectory> parents = new ArrayList<>(trajectories);
+            Collections.shuffle(parents, random);
+            List<Subtrajectory> subs = new ArrayList<>();
+            for (Trajectory parent : parents.subList(0, 1 + random.nextInt(3))) {
+                int from = random.nextInt(5);
+                Subtrajectory sub = new Subtrajectory(parent, from, from + 1 + random.nextInt(4));
+                subs.add(undirectional && random.nextBoolean() ? sub.reverse() : sub);
+            }
+            bundles.add(undirectional ? UndirectionalBundle.create(subs) : Bundle.create(subs));
+        }
+        return bundles;
+    }
+
+    private static List<Integer> scan(List<Bundle> bundles, java.util.function.IntPredicate relation) {
+        List<Integer> result = new ArrayList<>();
+        for (int j = 0; j < bundles.size(); j++) {
+            if (relation.test(j)) {
+                result.add(j);
+            }
+        }
+        return result;
+    }
+
+    private static List<Integer> filter(int[] candidates, java.util.function.IntPredicate relation) {
+        List<Integer> result = new ArrayList<>();
+        for (int j : candidates) {
+            if (relation.test(j)) {
+                result.add(j);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The candidates reported by the index, filtered on the relation, must be exactly the bundles of a full scan, in
+     * the same order.
+     */
+    public void testCandidatesMatchScan() {
+        System.out.println("candidatesMatchScan");
+        Random random = new Random(3);
+        for (boolean undirectional : new boolean[]{false, true}) {
+            List<Bundle> indexed = randomBundles(random, 150, undirectional);
+            List<Bundle> queries = randomBundles(random, 150, undirectional);
+            BundleCandidateIndex index = new BundleCandidateIndex(indexed);
+            assertEquals(indexed, index.getBundles());
+
+            for (Bundle b : queries) {
+                assertEquals(
+                        scan(indexed, j -> b.size() == indexed.get(j).size() && b.hasAsSubBundle(indexed.get(j))),
+                        filter(index.candidateSubBundles(b), j -> b.hasAsSubBundle(indexed.get(j))));
+                assertEquals(
+                        scan(indexed, j -> b.size() == indexed.get(j).size() && b.hasAsLambdaSubBundle(indexed.get(j), 1.5)),
+                        filter(index.candidateLambdaSubBundles(b), j -> b.hasAsLambdaSubBundle(indexed.get(j), 1.5)));
+                assertEquals(
+                        scan(indexed, j -> indexed.get(j).hasAsLambdaSubBundle(b, 1.5)),
+                        filter(index.candidateSuperBundles(b), j -> indexed.get(j).hasAsLambdaSubBundle(b, 1.5)));
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package mapconstruction.algorithms.diagram;
+
+import junit.framework.TestCase;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Roel
+ */
+public class EvolutionDiagramBuilderTest extends TestCase {
+
+    private List<Trajectory> trajectories;
+    private File checkpointFile;
+
+    public EvolutionDiagramBuilderTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Random random = new Random(5);
+        trajectories = new ArrayList<>();
+        for (int t = 0; t < 12; t++) {
+            int corridor = random.nextInt(3);
+            int start = random.nextInt(6);
+            List<Point2D> points = new ArrayList<>();
+            for (int i = start; i < start + 10 + random.nextInt(10); i++) {
+                double y = corridor * (i < 8 ? 0 : 2) + random.nextGaussian() * 0.3;
+                points.add(new Point2D.Double(i * 2 + random.nextGaussian() * 0.3, y));
+            }
+            FullTrajectory trajectory = new FullTrajectory(points);
+            trajectory.setLabel("e" + t);
+            trajectories.add(trajectory);
+        }
+        checkpointFile = File.createTempFile("diagram", ".ckpt");
+        checkpointFile.deleteOnExit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        checkpointFile.delete();
+        super.tearDown();
+    }
+
+    private EvolutionDiagramBuilder builder() {
+        return EvolutionDiagramBuilder.additive(0.5, 2, 0.5, 3, false, k -> k + 1);
+    }
+
+    private static void assertSameDiagram(EvolutionDiagram expected, EvolutionDiagram actual) {
+        assertEquals(expected.getEpsilons(), actual.getEpsilons());
+        for (double eps : expected.getEpsilons()) {
+            assertEquals(expected.getBundleClasses(eps), actual.getBundleClasses(eps));
+            assertEquals(expected.getBirths(eps), actual.getBirths(eps));
+            assertEquals(expected.getMerges(eps), actual.getMerges(eps));
+        }
+        assertEquals(expected.getClasses(), actual.getClasses());
+        for (int c : expected.getClasses()) {
+            assertEquals(expected.getBirthMoment(c), actual.getBirthMoment(c));
+            assertEquals(expected.getMergeMoment(c), actual.getMergeMoment(c));
+        }
+    }
+
+    /**
+     * Resuming from a checkpoint that was cut off in the middle of a level must give the same diagram as an
+     * uninterrupted construction.
+     */
+    public void testResumeFromCheckpoint() throws Exception {
+        System.out.println("resumeFromCheckpoint");
+        EvolutionDiagram expected = builder().runAlgorithmSequential(trajectories);
+        assertTrue(expected.getEpsilons().size() > 2);
+
+        EvolutionDiagramBuilder first = builder();
+        first.setCheckpointFile(checkpointFile);
+        assertSameDiagram(expected, first.runAlgorithmSequential(trajectories));
+
+        // Simulate a run that was killed while writing a level
+        try (RandomAccessFile raf = new RandomAccessFile(checkpointFile, "rw")) {
+            raf.setLength(raf.length() * 3 / 5);
+        }
+
+        EvolutionDiagramBuilder resumed = builder();
+        resumed.setCheckpointFile(checkpointFile);
+        assertSameDiagram(expected, resumed.runAlgorithmSequential(trajectories));
+
+        // The log is complete again, so all levels are replayed
+        EvolutionDiagramBuilder replayed = builder();
+        replayed.setCheckpointFile(checkpointFile);
+        assertSameDiagram(expected, replayed.runAlgorithmSequential(trajectories));
+    }
+
+    public void testCheckpointOfOtherParameters() throws Exception {
+        System.out.println("checkpointOfOtherParameters");
+        EvolutionDiagramBuilder first = builder();
+        first.setCheckpointFile(checkpointFile);
+        first.runAlgorithmSequential(trajectories);
+
+        EvolutionDiagramBuilder other = EvolutionDiagramBuilder.additive(0.5, 2, 0.5, 4, false, k -> k + 1);
+        other.setCheckpointFile(checkpointFile);
+        try {
+            other.runAlgorithmSequential(trajectories);
+            fail("Should have thrown exception");
+        } catch (IllegalStateException e) {
+
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package mapconstruction.algorithms.maps.intersections;
+
+import junit.framework.TestCase;
+import mapconstruction.algorithms.maps.intersections.containers.IntersectionCluster;
+import mapconstruction.algorithms.maps.intersections.containers.IntersectionPoint;
+import mapconstruction.algorithms.maps.intersections.containers.IntersectionPointByRoadPoint;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * @author Roel
+ */
+public class ComputeIntersectionClustersTest extends TestCase {
+
+    public ComputeIntersectionClustersTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * The clusters must be the same as when comparing every point with every point of every earlier cluster.
+     */
+    public void testMergeSimilarPairs() {
+        System.out.println("mergeSimilarPairs");
+        Random random = new Random(5);
+        List<Trajectory> trajectories = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            List<Point2D> points = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                points.add(new Point2D.Double(i * 10, t * 10));
+            }
+            trajectories.add(new FullTrajectory(points));
+        }
+        List<Bundle> bundles = new ArrayList<>();
+        for (int b = 0; b < 12; b++) {
+            List<Subtrajectory> subs = new ArrayList<>();
+            for (int s = 0; s < 2; s++) {
+                Trajectory t = trajectories.get(random.nextInt(trajectories.size()));
+                int from = random.nextInt(15);
+                subs.add(new Subtrajectory(t, from, from + 1 + random.nextInt(4)));
+            }
+            bundles.add(Bundle.create(subs));
+        }
+        List<IntersectionPoint> points = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            points.add(new IntersectionPointByRoadPoint(bundles.get(random.nextInt(bundles.size())),
+                    bundles.get(random.nextInt(bundles.size())), null, null,
+                    new Point2D.Double(random.nextDouble() * 600 - 300, random.nextDouble() * 600 - 300)));
+        }
+        List<IntersectionPoint> roadPoints = points.subList(0, 300);
+        List<IntersectionPoint> turns = points.subList(300, points.size());
+
+        List<IntersectionCluster> clusters = new ArrayList<>();
+        ComputeIntersectionClusters.mergeSimilarPairs(clusters, roadPoints, turns);
+
+        List<List<IntersectionPoint>> expected = new ArrayList<>();
+        for (IntersectionPoint p1 : points) {
+            List<List<IntersectionPoint>> mergeWith = new ArrayList<>();
+            for (List<IntersectionPoint> cluster : expected) {
+                for (IntersectionPoint p2 : cluster) {
+                    if (p2.getLocation().distance(p1.getLocation()) <= 50 &&
+                            ComputeIntersectionClusters.areIntersectionPointsMergeCompatible(p1, p2)) {
+                        mergeWith.add(cluster);
+                        break;
+                    }
+                }
+            }
+            if (mergeWith.isEmpty()) {
+                expected.add(new ArrayList<>(Collections.singletonList(p1)));
+            } else {
+                mergeWith.get(0).add(p1);
+                for (List<IntersectionPoint> cluster : mergeWith.subList(1, mergeWith.size())) {
+                    mergeWith.get(0).addAll(cluster);
+                    expected.remove(cluster);
+                }
+            }
+        }
+
+        assertTrue(expected.size() < points.size());
+        assertEquals(expected.size(), clusters.size());
+        for (int c = 0; c < expected.size(); c++) {
+            assertEquals(expected.get(c), clusters.get(c).getAllIntersectionPoints());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package mapconstruction.algorithms.maps.intersections;
+
+import junit.framework.TestCase;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+import static mapconstruction.algorithms.maps.intersections.TrajectoryBundleCombiner.TBCombiner;
+
+/**
+ * @author Roel
+ */
+public class TrajectoryBundleCombinerTest extends TestCase {
+
+    public TrajectoryBundleCombinerTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TBCombiner.destroy();
+        super.tearDown();
+    }
+
+    /**
+     * The bundles found must be the bundles with a subtrajectory containing the index, in order of addition.
+     */
+    public void testBundlesForTrajectoryAndIndex() {
+        System.out.println("bundlesForTrajectoryAndIndex");
+        Random random = new Random(9);
+        List<Trajectory> trajectories = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            List<Point2D> points = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                points.add(new Point2D.Double(i, t));
+            }
+            trajectories.add(new FullTrajectory(points));
+        }
+        Set<Bundle> displayed = new LinkedHashSet<>();
+        Set<Bundle> undisplayed = new LinkedHashSet<>();
+        for (int b = 0; b < 200; b++) {
+            List<Subtrajectory> subs = new ArrayList<>();
+            for (int s = 0; s < 1 + random.nextInt(3); s++) {
+                Trajectory t = trajectories.get(random.nextInt(trajectories.size()));
+                double from = random.nextInt(25) + random.nextDouble();
+                Subtrajectory sub = new Subtrajectory(t, from, from + random.nextDouble() * 4);
+                subs.add(random.nextBoolean() ? sub : sub.reverse());
+            }
+            (b % 4 == 0 ? displayed : undisplayed).add(Bundle.create(subs));
+        }
+        undisplayed.addAll(displayed);
+
+        TBCombiner.initialize();
+        TBCombiner.addMultipleDisplayedBundles(displayed);
+        TBCombiner.addMultipleUndisplayedBundles(undisplayed);
+
+        for (int q = 0; q < 300; q++) {
+            Trajectory t = trajectories.get(random.nextInt(trajectories.size()));
+            double index = q % 3 == 0 ? random.nextInt(30) : random.nextDouble() * 29;
+            assertEquals(expected(displayed, t, index), TBCombiner.getDisplayedBundlesForTrajectoryAndIndex(t, index));
+            assertEquals(expected(undisplayed, t, index), TBCombiner.getUndisplayedBundlesForTrajectoryAndIndex(t, index));
+            assertEquals(expected(undisplayed, t, index),
+                    TBCombiner.getUndisplayedBundlesForTrajectoryAndIndex(t.reverse(), t.numPoints() - 1 - index));
+        }
+    }
+
+    private static List<Bundle> expected(Set<Bundle> bundles, Trajectory t, double index) {
+        List<Bundle> expected = new ArrayList<>();
+        for (Bundle b : bundles) {
+            for (Subtrajectory sub : b.getSubtrajectories()) {
+                Subtrajectory forward = sub.isReverse() ? sub.reverse() : sub;
+                if (forward.getParent().equals(t) && forward.getFromIndex() <= index && index <= forward.getToIndex()) {
+                    expected.add(b);
+                }
+            }
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,209 @@
+package mapconstruction.algorithms.maps.mapping;
+
+import junit.framework.TestCase;
+import mapconstruction.util.GeometryUtil;
+import mapconstruction.web.config.DatasetConfig;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.util.*;
+
+import static mapconstruction.GUI.datastorage.DataStorage.STORAGE;
+
+/**
+ * @author Roel
+ */
+public class RoadMapTest extends TestCase {
+
+    private DatasetConfig previousConfig;
+
+    public RoadMapTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        previousConfig = STORAGE.getDatasetConfig();
+        STORAGE.setDatasetConfig(new DatasetConfig());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        STORAGE.setDatasetConfig(previousConfig);
+        super.tearDown();
+    }
+
+    /**
+     * A ConnectionVertex within 1 meter must be reused, taking the closest one.
+     */
+    public void testGetConnectionVertex() {
+        System.out.println("getConnectionVertex");
+        RoadMap roadMap = new RoadMap();
+        RoadSection a = new RoadSection(Arrays.asList(new Point2D.Double(0, 0), new Point2D.Double(10, 0)), 0);
+        RoadSection b = new RoadSection(Arrays.asList(new Point2D.Double(0.8, 0), new Point2D.Double(0.8, 10)), 1);
+        roadMap.forceAddRoadSection(a);
+        roadMap.forceAddRoadSection(b);
+
+        assertSame(a.getStartVertex(), roadMap.getConnectionVertex(new Point2D.Double(0.2, 0)));
+        assertSame(b.getStartVertex(), roadMap.getConnectionVertex(new Point2D.Double(0.7, 0)));
+        assertSame(a.getEndVertex(), roadMap.getConnectionVertex(new Point2D.Double(10, -0.5)));
+
+        ConnectionVertex vertex = roadMap.getConnectionVertex(new Point2D.Double(5, 5));
+        assertFalse(roadMap.containsConnectionVertex(vertex));
+        assertEquals(new Point2D.Double(5, 5), vertex.getLocation());
+
+        roadMap.removeRoadSection(b);
+        assertFalse(roadMap.containsConnectionVertex(b.getStartVertex()));
+        assertSame(a.getStartVertex(), roadMap.getConnectionVertex(new Point2D.Double(0.7, 0)));
+    }
+
+    /**
+     * The nearby vertices and road sections must match a search over all of them while sections are added and
+     * removed, also after serializing the road map.
+     */
+    public void testNear() throws Exception {
+        System.out.println("near");
+        Random random = new Random(5);
+        RoadMap roadMap = new RoadMap();
+        List<RoadSection> added = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            List<Point2D> points = new ArrayList<>();
+            points.add(new Point2D.Double(random.nextDouble() * 1000, random.nextDouble() * 1000));
+            for (int j = random.nextInt(5); j >= 0; j--) {
+                Point2D last = points.get(points.size() - 1);
+                points.add(new Point2D.Double(last.getX() + random.nextDouble() * 200 - 100,
+                        last.getY() + random.nextDouble() * 200 - 100));
+            }
+            RoadSection roadSection = new RoadSection(points, i);
+            roadMap.forceAddRoadSection(roadSection);
+            added.add(roadSection);
+            if (random.nextInt(4) == 0) {
+                roadMap.removeRoadSection(added.get(random.nextInt(added.size())));
+            }
+        }
+        assertNear(roadMap, random);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(roadMap);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertNear((RoadMap) in.readObject(), random);
+        }
+    }
+
+    /**
+     * The connectivity checks must agree with a search over all paths that do not use a road section twice.
+     */
+    public void testConnected() {
+        System.out.println("connected");
+        Random random = new Random(7);
+        for (int g = 0; g < 20; g++) {
+            RoadMap roadMap = new RoadMap();
+            List<ConnectionVertex> vertices = new ArrayList<>();
+            for (int v = 0; v < 10; v++) {
+                vertices.add(new ConnectionVertex(new Point2D.Double(random.nextDouble() * 100, random.nextDouble() * 100), null));
+            }
+            List<RoadSection> roadSections = new ArrayList<>();
+            for (int i = 0; i < 14; i++) {
+                ConnectionVertex start = vertices.get(random.nextInt(vertices.size()));
+                ConnectionVertex end = vertices.get(random.nextInt(vertices.size()));
+                Point2D middle = new Point2D.Double(random.nextDouble() * 100, random.nextDouble() * 100);
+                RoadSection roadSection = new RoadSection(
+                        Arrays.asList(start.getLocation(), middle, end.getLocation()), start, end, i);
+                roadMap.forceAddRoadSection(roadSection);
+                roadSections.add(roadSection);
+            }
+            roadMap.removeRoadSection(roadSections.get(random.nextInt(roadSections.size())));
+
+            for (int q = 0; q < 50; q++) {
+                ConnectionVertex start = vertices.get(random.nextInt(vertices.size()));
+                ConnectionVertex goal = vertices.get(random.nextInt(vertices.size()));
+                double maxPathLength = random.nextDouble() * 400 - 20;
+                Set<RoadSection> excluded = new HashSet<>();
+                if (q % 2 == 0) {
+                    excluded.add(roadSections.get(random.nextInt(roadSections.size())));
+                }
+                assertEquals(isConnected(roadMap, start, goal, maxPathLength, excluded),
+                        roadMap.checkIfTwoPointsAreConnected(start, goal, maxPathLength, excluded));
+
+                RoadSection first = roadSections.get(random.nextInt(roadSections.size()));
+                RoadSection second = roadSections.get(random.nextInt(roadSections.size()));
+                if (first == second) {
+                    continue;
+                }
+                double firstIndex = random.nextDouble() * 2;
+                double secondIndex = random.nextDouble() * 2;
+                boolean expected = false;
+                for (int f = 0; f < 2; f++) {
+                    for (int t = 0; t < 2; t++) {
+                        ConnectionVertex from = f == 0 ? first.getStartVertex() : first.getEndVertex();
+                        ConnectionVertex to = t == 0 ? second.getStartVertex() : second.getEndVertex();
+                        double firstLength = f == 0
+                                ? GeometryUtil.getIndexToIndexDistance(first.getPointList(), 0, firstIndex)
+                                : GeometryUtil.getIndexToIndexDistance(first.getPointList(), firstIndex, 2);
+                        double secondLength = t == 0
+                                ? GeometryUtil.getIndexToIndexDistance(second.getPointList(), 0, secondIndex)
+                                : GeometryUtil.getIndexToIndexDistance(second.getPointList(), secondIndex, 2);
+                        expected |= maxPathLength - secondLength >= 0 && isConnected(roadMap, from, to,
+                                maxPathLength - secondLength - firstLength, new HashSet<>());
+                    }
+                }
+                assertEquals(expected, roadMap.checkIfTwoPointsAreConnectedWithinDistance(
+                        firstIndex, first, secondIndex, second, maxPathLength));
+            }
+        }
+    }
+
+    private static boolean isConnected(RoadMap roadMap, ConnectionVertex start, ConnectionVertex goal,
+                                       double maxPathLength, Set<RoadSection> settledSections) {
+        if (maxPathLength < 0) {
+            return false;
+        }
+        if (start == goal) {
+            return true;
+        }
+        for (RoadSection roadSection : roadMap.getRoadSectionsForConnectionVertex(start)) {
+            if (settledSections.contains(roadSection)) {
+                continue;
+            }
+            Set<RoadSection> settled = new HashSet<>(settledSections);
+            settled.add(roadSection);
+            if (isConnected(roadMap, roadSection.getOppositeVertex(start), goal,
+                    maxPathLength - roadSection.getContinuousLength(), settled)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void assertNear(RoadMap roadMap, Random random) {
+        for (int q = 0; q < 200; q++) {
+            Point2D p = new Point2D.Double(random.nextDouble() * 1000, random.nextDouble() * 1000);
+            double distance = random.nextDouble() * 100;
+
+            Set<ConnectionVertex> expectedVertices = new HashSet<>();
+            for (ConnectionVertex vertex : roadMap.getConnectionVertices()) {
+                if (vertex.getLocation().distance(p) < distance) {
+                    expectedVertices.add(vertex);
+                }
+            }
+            assertEquals(expectedVertices, roadMap.getConnectionVerticesNear(p, distance));
+
+            Set<RoadSection> found = roadMap.getPresentRoadSectionsNear(p, distance);
+            for (RoadSection roadSection : roadMap.getPresentRoadSections()) {
+                List<Point2D> points = roadSection.getPointList();
+                for (int i = 0; i < points.size() - 1; i++) {
+                    if (new Line2D.Double(points.get(i), points.get(i + 1)).ptSegDist(p) < distance) {
+                        assertTrue(found.contains(roadSection));
+                    }
+                }
+            }
+            for (RoadSection roadSection : found) {
+                assertFalse(roadSection.isRemoved());
+            }
+        }
+    }
+}
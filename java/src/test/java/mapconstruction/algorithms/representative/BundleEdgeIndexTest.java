@@ -0,0 +1,67 @@
+package mapconstruction.algorithms.representative;
+
+import junit.framework.TestCase;
+import mapconstruction.benchmark.SyntheticTrajectoryGenerator;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * @author Roel
+ */
+public class BundleEdgeIndexTest extends TestCase {
+
+    public BundleEdgeIndexTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * The candidates must contain every intersected edge exactly once, in the order of the subtrajectories.
+     */
+    public void testCandidates() {
+        System.out.println("candidates");
+        Set<Subtrajectory> subs = new LinkedHashSet<>();
+        for (Trajectory t : new SyntheticTrajectoryGenerator(11).generate(40)) {
+            subs.add(new Subtrajectory(t, 0.5, t.numPoints() - 1.5));
+        }
+        List<Subtrajectory> ordered = new ArrayList<>(subs);
+        BundleEdgeIndex index = new BundleEdgeIndex(subs, 50);
+
+        Random random = new Random(3);
+        for (int q = 0; q < 500; q++) {
+            Point2D p = ordered.get(random.nextInt(ordered.size())).getPoint(0);
+            double angle = random.nextInt(8) * Math.PI / 4 + (q % 2 == 0 ? 0 : random.nextDouble());
+            double length = 10 + random.nextDouble() * 150;
+            Line2D line = new Line2D.Double(p.getX() - Math.cos(angle) * length / 2, p.getY() - Math.sin(angle) * length / 2,
+                    p.getX() + Math.cos(angle) * length / 2, p.getY() + Math.sin(angle) * length / 2);
+
+            List<String> expected = new ArrayList<>();
+            for (int s = 0; s < ordered.size(); s++) {
+                for (int j = 0; j < ordered.get(s).numEdges(); j++) {
+                    if (line.intersectsLine(ordered.get(s).getEdge(j))) {
+                        expected.add(s + ":" + j);
+                    }
+                }
+            }
+            List<String> found = new ArrayList<>();
+            int previous = -1;
+            for (int id : index.candidates(line)) {
+                assertTrue(id > previous);
+                previous = id;
+                if (line.intersectsLine(index.getEdge(id))) {
+                    found.add(ordered.indexOf(index.getSubtrajectory(id)) + ":" + index.getEdgeIndex(id));
+                }
+            }
+            assertEquals(expected, found);
+        }
+    }
+
+    public void testEmpty() {
+        System.out.println("empty");
+        BundleEdgeIndex index = new BundleEdgeIndex(Collections.emptySet(), 50);
+        assertEquals(0, index.candidates(new Line2D.Double(0, 0, 10, 10)).length);
+    }
+}
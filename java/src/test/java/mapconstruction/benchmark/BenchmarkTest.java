@@ -0,0 +1,109 @@
+package mapconstruction.benchmark;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author Roel
+ */
+public class BenchmarkTest extends TestCase {
+
+    public BenchmarkTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Benchmark.stop();
+        super.tearDown();
+    }
+
+    public void testNestedSpans() {
+        System.out.println("nestedSpans");
+        Benchmark.start(null, "test");
+        for (int i = 0; i < 3; i++) {
+            Benchmark.push("outer");
+            try (Benchmark.Span span = Benchmark.span("inner %d", i % 2)) {
+                work();
+            }
+            Benchmark.pop();
+        }
+        assertFalse(Benchmark.pop());
+        Benchmark.stop();
+        Benchmark.push("after stop");
+
+        ProfileNode global = Benchmark.getProfile();
+        assertEquals("Global", global.getName());
+        assertEquals(1, global.getCount());
+        assertEquals(1, global.getChildren().size());
+
+        ProfileNode outer = global.getChild("outer");
+        assertEquals(3, outer.getCount());
+        assertEquals(1, outer.getThreads());
+        assertEquals(2, outer.getChild("inner 0").getCount());
+        assertEquals(1, outer.getChild("inner 1").getCount());
+
+        long inner = outer.getChild("inner 0").getTotalNanos() + outer.getChild("inner 1").getTotalNanos();
+        assertEquals(outer.getTotalNanos() - inner, outer.getSelfNanos());
+        assertTrue(global.getTotalNanos() >= outer.getTotalNanos());
+    }
+
+    /**
+     * Spans of tasks on other threads must be nested in the spans that were open when the tasks were created.
+     */
+    public void testParallelSpans() throws Exception {
+        System.out.println("parallelSpans");
+        Benchmark.start(null, "test");
+        Benchmark.push("outer");
+        Benchmark.Context context = Benchmark.capture();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                int task = i;
+                tasks.add(() -> {
+                    try (Benchmark.Span span = Benchmark.span(context, "task %d", task % 2)) {
+                        Benchmark.push("inner");
+                        work();
+                        Benchmark.pop();
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> f : executor.invokeAll(tasks)) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Benchmark.pop();
+        Benchmark.stop();
+
+        ProfileNode outer = Benchmark.getProfile().getChild("outer");
+        assertEquals(1, outer.getCount());
+        assertEquals(2, outer.getChildren().size());
+        for (int t = 0; t < 2; t++) {
+            ProfileNode task = outer.getChild("task " + t);
+            assertEquals(8, task.getCount());
+            assertTrue(task.getThreads() >= 1 && task.getThreads() <= 4);
+            assertEquals(8, task.getChild("inner").getCount());
+            assertTrue(task.getSelfNanos() >= 0);
+            assertTrue(task.getTotalNanos() >= task.getChild("inner").getTotalNanos());
+        }
+    }
+
+    private static void work() {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package mapconstruction.benchmark;
+
+import junit.framework.TestCase;
+import mapconstruction.trajectories.Trajectory;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Roel
+ */
+public class SyntheticTrajectoryGeneratorTest extends TestCase {
+
+    public SyntheticTrajectoryGeneratorTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * The same seed must give the same trajectories.
+     */
+    public void testDeterministic() {
+        System.out.println("deterministic");
+        List<Trajectory> first = new SyntheticTrajectoryGenerator(7).generate(30);
+        List<Trajectory> second = new SyntheticTrajectoryGenerator(7).generate(30);
+        assertEquals(30, first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getLabel(), second.get(i).getLabel());
+            assertEquals(first.get(i).points(), second.get(i).points());
+        }
+        assertFalse(first.get(0).points().equals(new SyntheticTrajectoryGenerator(8).generate(30).get(0).points()));
+    }
+
+    /**
+     * Without noise, consecutive measurements are the sample distance apart, except around intersections.
+     */
+    public void testSampling() {
+        System.out.println("sampling");
+        SyntheticTrajectoryGenerator generator = new SyntheticTrajectoryGenerator(3);
+        generator.setNoise(0);
+        for (Trajectory t : generator.generate(20)) {
+            assertTrue(t.numPoints() >= 2);
+            for (int i = 1; i < t.numPoints(); i++) {
+                assertTrue(t.getPoint(i - 1).distance(t.getPoint(i)) <= generator.getSampleDistance() + 1e-9);
+            }
+        }
+    }
+
+    /**
+     * More overlap must give a smaller road network, and longer trajectories a larger one.
+     */
+    public void testGridSize() {
+        System.out.println("gridSize");
+        SyntheticTrajectoryGenerator generator = new SyntheticTrajectoryGenerator(0);
+        int base = generator.gridSize(1000);
+        generator.setOverlap(generator.getOverlap() * 4);
+        assertTrue(generator.gridSize(1000) < base);
+        generator.setLength(generator.getLength() * 16);
+        assertTrue(generator.gridSize(1000) > base);
+    }
+
+    /**
+     * The scalability benchmark must write one row per combination.
+     */
+    public void testScalabilityBenchmark() {
+        System.out.println("scalabilityBenchmark");
+        ScalabilityBenchmark benchmark = new ScalabilityBenchmark(new SyntheticTrajectoryGenerator(1),
+                Arrays.asList(16, 8), Collections.singletonList(30.0), Arrays.asList(1, 2),
+                Arrays.asList(ScalabilityBenchmark.Algorithm.values()));
+        benchmark.setDiagramStep(15);
+        benchmark.setWarmups(0);
+
+        StringWriter csv = new StringWriter();
+        benchmark.run(new PrintWriter(csv));
+        String[] lines = csv.toString().trim().split("\\R");
+        assertEquals(1 + 2 * 2 * 2, lines.length);
+        int columns = lines[0].split(",").length;
+        for (int i = 1; i < lines.length; i++) {
+            String[] row = lines[i].split(",", -1);
+            assertEquals(columns, row.length);
+            // Sizes are measured from small to large, so only the larger one has a growth exponent.
+            assertEquals(i > 4, !row[columns - 1].isEmpty());
+        }
+    }
+}
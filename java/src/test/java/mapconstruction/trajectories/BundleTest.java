@@ -327,4 +327,29 @@ public class BundleTest extends TestCase {
         assertEquals(expResult, result);
     }
 
+    /**
+     * Test of hasAsLambdaSubBundle method, of class Bundle.
+     */
+    public void testHasAsLambdaSubBundle5() {
+        System.out.println("hasAsLambdaSubBundle: false, parent of other not in bundle");
+        Subtrajectory s1 = new Subtrajectory(t1, 0, 4);
+        Subtrajectory s2 = new Subtrajectory(t2, 0, 4);
+
+        ArrayList<Subtrajectory> list = new ArrayList<>();
+        list.add(s1);
+        list.add(s2);
+        Bundle instance = Bundle.create(list);
+
+        ArrayList<Subtrajectory> list2 = new ArrayList<>();
+        list2.add(new Subtrajectory(t1, 1, 3));
+        list2.add(new Subtrajectory(t3, 1, 3));
+        Bundle other = Bundle.create(list2);
+
+        assertFalse(instance.hasAsLambdaSubBundle(other, 10, false));
+
+        ArrayList<Subtrajectory> list3 = new ArrayList<>();
+        list3.add(new Subtrajectory(t2, 1, 3));
+        assertTrue(instance.hasAsLambdaSubBundle(Bundle.create(list3), 0));
+    }
+
 }
@@ -96,4 +96,38 @@ public class FullTrajectoryTest extends TrajectoryTestCases {
         assertEquals(instance2, result);
     }
 
+    public void testGetUndirectionalId() {
+        System.out.println("getUndirectionalId");
+        FullTrajectory a = new FullTrajectory(TestUtil.doubleArrayToTrajectory(new double[][]{{0, 0}, {1, 0}}));
+        FullTrajectory b = new FullTrajectory(TestUtil.doubleArrayToTrajectory(new double[][]{{0, 1}, {1, 1}}));
+        a.setLabel("a");
+        b.setLabel("b");
+
+        assertTrue(a.getUndirectionalId() > 0);
+        assertEquals(a.getUndirectionalId(), a.reverse().getUndirectionalId());
+        assertFalse(a.getUndirectionalId() == b.getUndirectionalId());
+    }
+
+    public void testResetUndirectionalIds() {
+        System.out.println("resetUndirectionalIds");
+        FullTrajectory a = new FullTrajectory(TestUtil.doubleArrayToTrajectory(new double[][]{{0, 0}, {1, 0}}));
+        FullTrajectory b = new FullTrajectory(TestUtil.doubleArrayToTrajectory(new double[][]{{0, 1}, {1, 1}}));
+        FullTrajectory c = new FullTrajectory(TestUtil.doubleArrayToTrajectory(new double[][]{{0, 2}, {1, 2}}));
+        a.setLabel("a");
+        b.setLabel("b");
+        c.setLabel("c");
+        a.getUndirectionalId();
+        b.getUndirectionalId();
+
+        int generation = Trajectory.getUndirectionalIdGeneration();
+        Trajectory.resetUndirectionalIds();
+        assertEquals(generation + 1, Trajectory.getUndirectionalIdGeneration());
+
+        // The ids start over, and ids cached before the reset are not used.
+        assertEquals(1, c.getUndirectionalId());
+        assertEquals(2, a.getUndirectionalId());
+        assertEquals(2, a.reverse().getUndirectionalId());
+        assertEquals(3, b.getUndirectionalId());
+    }
+
 }
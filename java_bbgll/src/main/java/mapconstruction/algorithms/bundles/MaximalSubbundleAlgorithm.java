@@ -11,6 +11,8 @@ import java.util.*;
 import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 
+import static mapconstruction.GUI.datastorage.ConstantsStorage.ALGOCONSTANTS;
+
 /**
  * For a given epsilon and lambda, this algorithm finds all maximal length
  * bundles for all sizes.
@@ -158,7 +160,7 @@ public class MaximalSubbundleAlgorithm extends BundleGenerationAlgorithm {
         Set<Bundle> M;
         do {
             checkAbort();
-            bundleAlgo = new SweeplineBundleAlgorithm(epsilon, k, this.ignoreDirection, false, true);
+            bundleAlgo = new SweeplineBundleAlgorithm(epsilon, k, this.ignoreDirection, false, true, ALGOCONSTANTS.getNumThreads());
             M = bundleAlgo.run(trajectories);
             result.addAll(M);
             setProgress((int) (100.0 * k / N));
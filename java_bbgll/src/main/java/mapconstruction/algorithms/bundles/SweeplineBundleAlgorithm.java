@@ -2,8 +2,9 @@ package mapconstruction.algorithms.bundles;
 
 import com.google.common.collect.*;
 import mapconstruction.algorithms.bundles.graph.LabelledGraph;
-import mapconstruction.algorithms.bundles.graph.SemiWeakFDLabelledGraphIntBased;
+import mapconstruction.algorithms.bundles.graph.SparseSemiWeakFDLabelledGraph;
 import mapconstruction.algorithms.distance.DistanceMatrix;
+import mapconstruction.exceptions.AlgorithmAbortedException;
 import mapconstruction.log.Log;
 import mapconstruction.log.LogLevel;
 import mapconstruction.trajectories.*;
@@ -12,6 +13,8 @@ import mapconstruction.util.GeometryUtil;
 import java.awt.geom.Point2D;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Algorithm for finding maximal length bundles in a set of trajectories.
@@ -53,7 +56,12 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
      * Size of the bundles to find.
      */
     private int k;
-    private LabelledGraph labelledGraph;
+    /**
+     * Number of threads used to sweep. A value of 1 sweeps the whole
+     * concatenation on the calling thread.
+     */
+    private final int parallelism;
+    private SparseSemiWeakFDLabelledGraph labelledGraph;
 
     /**
      * Constructs the algorithm to work on the given trajectories.
@@ -79,11 +87,30 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
      * @param allowMultipleSubOfSameTraj
      */
     public SweeplineBundleAlgorithm(double dist, int size, boolean ignoreDirection, boolean allowPartialBounds, boolean allowMultipleSubOfSameTraj) {
+        this(dist, size, ignoreDirection, allowPartialBounds, allowMultipleSubOfSameTraj, 1);
+    }
+
+    /**
+     * Constructs the algorithm to work on the given trajectories.
+     * <p>
+     * If parallelism is larger than 1, the concatenation is split into blocks
+     * of whole trajectories, which are swept concurrently. The result is the
+     * same as that of the sequential sweep.
+     *
+     * @param dist
+     * @param size
+     * @param ignoreDirection
+     * @param allowPartialBounds
+     * @param allowMultipleSubOfSameTraj
+     * @param parallelism                number of threads used to sweep.
+     */
+    public SweeplineBundleAlgorithm(double dist, int size, boolean ignoreDirection, boolean allowPartialBounds, boolean allowMultipleSubOfSameTraj, int parallelism) {
         super(ignoreDirection);
         this.epsilon = dist;
         this.k = size;
         this.allowPartialBounds = allowPartialBounds;
         this.allowMultipleSubOfSameTraj = allowMultipleSubOfSameTraj;
+        this.parallelism = Math.max(1, parallelism);
     }
 
     /**
@@ -120,10 +147,16 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
             initialize(trajectories);
 
             Log.log(LogLevel.STATUS, LOGTAG, "Sweep");
+            int max;
             if (this.ignoreDirection) {
-                result = sweep(0, (concatenated.numPoints() - 1) / 2);
+                max = (concatenated.numPoints() - 1) / 2;
+            } else {
+                max = concatenated.numPoints() - 1;
+            }
+            if (parallelism > 1 && max > 0) {
+                result = parallelSweep(max);
             } else {
-                result = sweep(0, concatenated.numPoints() - 1);
+                result = sweep(0, max);
             }
         }
         Log.log(LogLevel.STATUS, LOGTAG, "Sweep line algorithm finished");
@@ -187,7 +220,7 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
         dm = new DistanceMatrix(concatenated, concatenated);
 
         // create labelled graph
-        labelledGraph = new SemiWeakFDLabelledGraphIntBased(concatenated, borders, epsilon);
+        labelledGraph = new SparseSemiWeakFDLabelledGraph(concatenated, borders, epsilon);
     }
 
     /**
@@ -199,6 +232,27 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
      * @return generated bundle
      */
     private Set<Bundle> sweep(int min, int max) {
+        Set<Bundle> result = sweep(labelledGraph, min, max, true);
+        setProgress(100);
+        return result;
+    }
+
+    /**
+     * Sweeps both lines from min to max over the given graph, which must not
+     * contain any columns yet, and returns the longest bundle found.
+     * <p>
+     * If min is the first point of a trajectory and max the last point of a
+     * trajectory, the sweep visits exactly the representatives of the full
+     * sweep between min and max: representatives never span multiple
+     * trajectories, and the sweep lines restart at every first point.
+     *
+     * @param graph          graph to sweep over, starting at column min.
+     * @param min
+     * @param max
+     * @param reportProgress whether to report the progress of the sweep.
+     * @return generated bundle
+     */
+    private Set<Bundle> sweep(LabelledGraph graph, int min, int max, boolean reportProgress) {
         // sweep lines
         int ls = min;
         int lt = min;
@@ -206,7 +260,7 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
         // Set of maximal length bundles.
         Set<Bundle> maxLengthBundles = new LinkedHashSet<>();
 
-        labelledGraph.addColumn();
+        graph.addColumn();
         /*
          * cluster curves and representativeSubtrajectory found in
          * the previous iteration, if any.
@@ -220,10 +274,12 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
 
         while (ls < max) {
             checkAbort();
-            setProgress((int) (50.0 * ls / max + 50.0 * lt / max));
+            if (reportProgress) {
+                setProgress((int) (50.0 * ls / max + 50.0 * lt / max));
+            }
             if (ls == lt) {
                 lt++;
-                labelledGraph.addColumn();
+                graph.addColumn();
                 continue;
             }
 
@@ -236,7 +292,7 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
                 // Find the cluster curves between ls and lt, not
                 // taking the span [s,t] into account
                 // The set includes the representativeSubtrajectory itself
-                Set<Subtrajectory> curves = findClusterCurves(ls, lt, representative);
+                Set<Subtrajectory> curves = findClusterCurves(graph, ls, lt, representative);
                 // System.out.println("sweep [" + ls + ", " + lt + "] -> " + curves.size());
                 if (curves.size() >= k) {
                     // Found enough cluster curves
@@ -254,7 +310,7 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
 
                     lt++;
                     if (lt <= max) {
-                        labelledGraph.addColumn();
+                        graph.addColumn();
                     }
                     continue;
 
@@ -263,7 +319,7 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
 
 
             ls++;
-            labelledGraph.removeColumn();
+            graph.removeColumn();
         }
         // ls has to be increased, hence we have to report the previous
         // found longest bundle
@@ -271,21 +327,116 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
             maxLengthBundles.add(prevBundle);
             prevBundle = null;
         }
-        setProgress(100);
         return maxLengthBundles;
 
     }
 
+    /**
+     * Sweeps from 0 to max by splitting the concatenation into blocks of whole
+     * trajectories, and sweeping the blocks concurrently.
+     * <p>
+     * Every block is swept on its own graph. Since representatives never cross
+     * a trajectory border, the blocks together visit the same representatives
+     * as the sequential sweep. The longest bundle of the blocks is kept, and
+     * among equally long ones the first, as the sequential sweep would.
+     *
+     * @param max
+     * @return generated bundle
+     */
+    private Set<Bundle> parallelSweep(int max) {
+        List<Range<Integer>> blocks = sweepBlocks(max, 4 * parallelism);
+        Log.log(LogLevel.INFO, LOGTAG, "Sweeping %d blocks on %d threads", blocks.size(), parallelism);
+
+        AtomicInteger swept = new AtomicInteger();
+        List<Callable<Set<Bundle>>> sweeps = new ArrayList<>(blocks.size());
+        for (Range<Integer> block : blocks) {
+            int min = block.lowerEndpoint();
+            int end = block.upperEndpoint();
+            sweeps.add(() -> {
+                Set<Bundle> bundles = sweep(labelledGraph.startingAt(min), min, end, false);
+                int done = swept.addAndGet(end - min + 1);
+                synchronized (this) {
+                    setProgress((int) (100.0 * done / (max + 1)));
+                }
+                return bundles;
+            });
+        }
+
+        Bundle longest = null;
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (Future<Set<Bundle>> future : executor.invokeAll(sweeps)) {
+                for (Bundle b : future.get()) {
+                    if (longest == null || representativeLength(b) > representativeLength(longest)) {
+                        longest = b;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AlgorithmAbortedException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        setProgress(100);
+
+        Set<Bundle> result = new LinkedHashSet<>();
+        if (longest != null) {
+            result.add(longest);
+        }
+        return result;
+    }
+
+    /**
+     * Number of edges of the representative of a bundle found by the sweep.
+     */
+    private static double representativeLength(Bundle b) {
+        Subtrajectory representative = b.getOriginalRepresentative();
+        return representative.getToIndex() - representative.getFromIndex();
+    }
+
+    /**
+     * Splits the range [0, max] into at most the given number of blocks of
+     * consecutive trajectories, with roughly the same number of points.
+     *
+     * @param max       last point of the last trajectory to sweep.
+     * @param numBlocks
+     * @return closed ranges of the blocks, in order.
+     */
+    private List<Range<Integer>> sweepBlocks(int max, int numBlocks) {
+        int blockSize = Math.max(1, (max + numBlocks) / numBlocks);
+        List<Range<Integer>> blocks = new ArrayList<>();
+        int start = 0;
+        for (Range<Integer> range : trajectories.asMapOfRanges().keySet()) {
+            int end = range.upperEndpoint();
+            if (end >= max) {
+                break;
+            }
+            if (end - start + 1 >= blockSize) {
+                blocks.add(Range.closed(start, end));
+                start = end + 1;
+            }
+        }
+        blocks.add(Range.closed(start, max));
+        return blocks;
+    }
+
     /**
      * Determines the cluster curves between s and t.
      * <p>
      * Includes the representativeSubtrajectory itself
      *
+     * @param graph
      * @param s
      * @param t
      * @return
      */
-    private Set<Subtrajectory> findClusterCurves(int s, int t, Subtrajectory representative) {
+    private Set<Subtrajectory> findClusterCurves(LabelledGraph graph, int s, int t, Subtrajectory representative) {
         HashSet<Subtrajectory> clusterCurves = new HashSet<>();
         clusterCurves.add(representative);
 
@@ -332,6 +483,12 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
          */
         Range<Integer> currentTrajectoryRange = null;
         while (yt >= 0) {
+            // Skip end points from which no curve can start.
+            yt = graph.previousEnd(t, yt);
+            if (yt < 0) {
+                break;
+            }
+
             if (currentTrajectoryRange == null || !currentTrajectoryRange.contains(yt)) {
                 // update trajectory we are checking.
                 Entry<Range<Integer>, Trajectory> entry = trajectories.getEntry(yt);
@@ -349,7 +506,7 @@ public class SweeplineBundleAlgorithm extends BundleGenerationAlgorithm {
             }
 
             // Find a path in the labelled graph.
-            OptionalInt optYS = labelledGraph.findStart(s, t, yt, forbiddenRanges.values());
+            OptionalInt optYS = graph.findStart(s, t, yt, forbiddenRanges.values());
             if (!optYS.isPresent()) {
                 // No curve exists.
                 yt--;
@@ -0,0 +1,388 @@
+package mapconstruction.algorithms.bundles.graph;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Range;
+import mapconstruction.algorithms.distance.RTree;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+
+/**
+ * Labelled graph based on the Semi-weak frechet distance, with the same
+ * vertices, edges and labels as {@link SemiWeakFDLabelledGraphIntBased}, but
+ * only materializing the grid edges that are part of the free space.
+ * <p>
+ * Instead of testing every grid edge of a new column, the free grid edges are
+ * found by querying an R-tree over the edges of the concatenated trajectory.
+ * Per column, the free grid edges are stored as sorted arrays of their
+ * y-coordinates together with the labels of their at most two outgoing edges.
+ * The targets of the outgoing edges are implied by their direction. Hence both
+ * the time to add a column and the memory of the graph are proportional to the
+ * free space, instead of to the number of points.
+ *
+ * @author Roel
+ */
+public class SparseSemiWeakFDLabelledGraph extends LabelledGraph {
+
+    /**
+     * Label of an absent edge. Larger than any column, so an absent edge is
+     * never taken.
+     */
+    private static final int NONE = Integer.MAX_VALUE;
+
+    /**
+     * Array storing for each potential start coordinate of an edge,
+     * whether that edge is a border.
+     */
+    private final boolean[] borderCheck;
+
+    /**
+     * R-tree mapping each edge of the concatenated trajectory to its index.
+     * {@code null} if the trajectory has no edges.
+     */
+    private final RTree<Line2D, Integer> rTree;
+
+    /**
+     * Margin added to epsilon in queries, such that rounding never causes a
+     * free grid edge to be missed.
+     */
+    private final double margin;
+
+    /**
+     * Columns of the graph that are currently present, by x-coordinate.
+     */
+    private final Map<Integer, Column> columns;
+
+    private int graphMin;
+    private int graphMax;
+
+    public SparseSemiWeakFDLabelledGraph(Trajectory concatenated, Set<Range<Integer>> borders, double epsilon) {
+        super(concatenated, epsilon);
+        columns = new HashMap<>();
+        graphMin = 0;
+        graphMax = -1;
+        borderCheck = new boolean[concatenated.numPoints()];
+        borders.stream().mapToInt(r -> r.lowerEndpoint())
+                .filter(i -> i >= 0)
+                .forEach(i -> borderCheck[i] = true);
+
+        Map<Line2D, Integer> edges = new HashMap<>();
+        for (int i = 0; i < concatenated.numEdges(); i++) {
+            edges.put(new Line2D.Double(concatenated.getPoint(i), concatenated.getPoint(i + 1)), i);
+        }
+        if (edges.isEmpty()) {
+            rTree = null;
+            margin = 0;
+        } else {
+            rTree = new RTree<>(10, edges);
+            Rectangle2D bounds = rTree.getBounds();
+            double scale = Math.max(Math.max(Math.abs(bounds.getMinX()), Math.abs(bounds.getMaxX())),
+                    Math.max(Math.abs(bounds.getMinY()), Math.abs(bounds.getMaxY())));
+            margin = 1e-9 * Math.max(1, Math.max(scale, epsilon));
+        }
+    }
+
+    private SparseSemiWeakFDLabelledGraph(SparseSemiWeakFDLabelledGraph graph, int firstColumn) {
+        super(graph.dm.getT1(), graph.epsilon);
+        columns = new HashMap<>();
+        graphMin = firstColumn;
+        graphMax = firstColumn - 1;
+        borderCheck = graph.borderCheck;
+        rTree = graph.rTree;
+        margin = graph.margin;
+    }
+
+    /**
+     * Creates an empty graph on the same concatenation, sharing the index of
+     * this graph, of which the first column added is the given column.
+     * <p>
+     * The column must be the first point of a trajectory, such that the free
+     * space in it does not depend on the columns before it.
+     *
+     * @param firstColumn first point of a trajectory in the concatenation.
+     * @return
+     * @throws IllegalArgumentException if the column is not the first point of a trajectory.
+     */
+    public SparseSemiWeakFDLabelledGraph startingAt(int firstColumn) {
+        Preconditions.checkArgument(firstColumn >= 0 && firstColumn < getTotalNumPoints() && crossesBorder(firstColumn - 1),
+                "Column %s is not the start of a trajectory", firstColumn);
+        return new SparseSemiWeakFDLabelledGraph(this, firstColumn);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * To find the curve between s and t, we try to find a path from the
+     * vertical edge ending at (t, yt) to a vertical edge on s.
+     * <p>
+     * This is to make sure the end points of the representativeSubtrajectory are matched.
+     */
+    @Override
+    public OptionalInt findStart(int s, int t, int yt, Collection<Range<Integer>> forbidden) {
+        // Current vertex of the graph, the topmost edge ending at (t, yt)
+        boolean vertical = true;
+        int x = t;
+        int y = yt - 1;
+
+        if (!isVerticalFree(x, y)) {
+            // ending edge is not free
+            return OptionalInt.empty();
+        }
+
+        // For a horizontal grid edge, x is the column it ends in.
+        while ((vertical ? x : x - 1) >= 0) {
+            Column column = columns.get(x);
+            Cells cells = column == null ? null : (vertical ? column.vertical : column.horizontal);
+            int index = cells == null ? -1 : cells.indexOf(y);
+            int left = index < 0 ? NONE : cells.left[index];
+            int bottom = index < 0 ? NONE : cells.bottom[index];
+
+            // Instead of picking the topmost, we pick the bottom most edge as long as possible.
+            // This ensures we make the cluster curves as
+            // long as possible
+            int upy = vertical ? y + 1 : y;
+            boolean takeLeft;
+            if (forbidden.stream().anyMatch(r -> r.lowerEndpoint() <= upy && upy <= r.upperEndpoint() + 1)) {
+                takeLeft = left <= s;
+                if (!takeLeft && bottom > s) {
+                    return OptionalInt.empty();
+                }
+            } else {
+                takeLeft = bottom > s;
+                if (takeLeft && left > s) {
+                    return OptionalInt.empty();
+                }
+            }
+
+            if (vertical) {
+                if (takeLeft) {
+                    x--;
+                } else {
+                    vertical = false;
+                }
+            } else {
+                if (takeLeft) {
+                    vertical = true;
+                    x--;
+                }
+                y--;
+            }
+
+            if (vertical && x == s) {
+                return OptionalInt.of(y);
+            }
+        }
+        return OptionalInt.of(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns one above the highest free vertical grid edge of column t that
+     * starts below yt.
+     */
+    @Override
+    public int previousEnd(int t, int yt) {
+        Column column = columns.get(t);
+        if (column == null) {
+            return yt;
+        }
+        Cells cells = column.vertical;
+        int index = Arrays.binarySearch(cells.ys, 0, cells.size, yt - 1);
+        if (index < 0) {
+            // index of the highest y below yt - 1
+            index = -index - 2;
+        }
+        return index < 0 ? -1 : cells.ys[index] + 1;
+    }
+
+    @Override
+    public void addColumn() {
+        /*
+        When adding a column (of the free space), we have to do two things:
+        - add entries for vertical edges in the column.
+        - add entries for horizontal edges ending in this column. (except first column)
+        Entries are added bottom to top, as the bottom edges of an entry refer to the
+        entry below it.
+         */
+        int i = ++graphMax;
+        Column previous = columns.get(i - 1);
+        Column column = new Column();
+
+        for (int j : candidates(i)) {
+            // horizontal grid edge from (i - 1, j) to (i, j)
+            if (isHorizontalFree(i - 1, j)) {
+                int left = NONE;
+                int bottom = NONE;
+                if (isVerticalFree(i - 1, j - 1)) {
+                    left = labelToVertical(previous, i - 1, j - 1);
+                }
+                if (!crossesBorder(j - 1) && isHorizontalFree(i - 1, j - 1)) {
+                    bottom = column.horizontal.minLabel(j - 1);
+                }
+                column.horizontal.add(j, left, bottom);
+            }
+
+            // vertical grid edge from (i, j) to (i, j + 1)
+            if (j < getTotalNumPoints() - 1 && isVerticalFree(i, j)) {
+                int left = NONE;
+                int bottom = NONE;
+                if (!crossesBorder(i - 1) && isVerticalFree(i - 1, j)) {
+                    left = labelToVertical(previous, i - 1, j);
+                }
+                if (isHorizontalFree(i - 1, j)) {
+                    bottom = column.horizontal.minLabel(j);
+                }
+                column.vertical.add(j, left, bottom);
+            }
+        }
+
+        column.horizontal.trim();
+        column.vertical.trim();
+        columns.put(i, column);
+    }
+
+    @Override
+    public void removeColumn() {
+        /*
+        When we remove a column, we need to remove the vertical edges and
+        horizontal edges. ending in the column
+         */
+        columns.remove(graphMin++);
+    }
+
+    /**
+     * Gets the y-coordinates of all grid edges of column i that may be free, in
+     * ascending order: the points within epsilon of edge i - 1, and the edges
+     * within epsilon of point i.
+     */
+    private int[] candidates(int i) {
+        if (rTree == null) {
+            return new int[0];
+        }
+        double range = epsilon + margin;
+        Point2D p = dm.getT1().getPoint(i);
+        Set<Integer> edges = rTree.windowQuery(p.getX() - range, p.getY() - range, p.getX() + range, p.getY() + range);
+
+        Set<Integer> pointEdges = Collections.emptySet();
+        if (!crossesBorder(i - 1)) {
+            Point2D q = dm.getT1().getPoint(i - 1);
+            double x1 = q.getX();
+            double y1 = q.getY();
+            double x2 = p.getX();
+            double y2 = p.getY();
+            pointEdges = rTree.windowQuery(Math.min(x1, x2) - range, Math.min(y1, y2) - range,
+                    Math.max(x1, x2) + range, Math.max(y1, y2) + range);
+        }
+
+        int[] result = new int[edges.size() + 2 * pointEdges.size()];
+        int size = 0;
+        for (int e : edges) {
+            result[size++] = e;
+        }
+        // points near the edge are endpoints of edges near the edge
+        for (int e : pointEdges) {
+            result[size++] = e;
+            result[size++] = e + 1;
+        }
+        Arrays.sort(result);
+        return Arrays.stream(result).distinct().toArray();
+    }
+
+    /**
+     * Label of an edge to the vertical grid edge from (x, y) to (x, y + 1):
+     * the smallest label of its outgoing edges, or x if it has none.
+     */
+    private int labelToVertical(Column column, int x, int y) {
+        int label = column == null ? NONE : column.vertical.minLabel(y);
+        return label == NONE ? x : label;
+    }
+
+    /**
+     * Whether the vertical grid edge from (x, y) to (x, y + 1) is free.
+     */
+    private boolean isVerticalFree(int x, int y) {
+        // y range must not cross forbidden boundaries.
+        return !crossesBorder(y) && dm.getPointEdgeDistance(x, y) <= epsilon;
+    }
+
+    /**
+     * Whether the horizontal grid edge from (x, y) to (x + 1, y) is free.
+     */
+    private boolean isHorizontalFree(int x, int y) {
+        // x range must not cross forbidden boundaries.
+        return !crossesBorder(x) && dm.getEdgePointDistance(x, y) <= epsilon;
+    }
+
+    /**
+     * Checks whether the edge starting at the given point index crosses an
+     * invalid border.
+     */
+    private boolean crossesBorder(int low) {
+        return low == -1 || borderCheck[low];
+    }
+
+    /**
+     * Free grid edges of a single column of the free space.
+     */
+    private static class Column {
+        /**
+         * Horizontal grid edges ending in this column.
+         */
+        final Cells horizontal = new Cells();
+
+        /**
+         * Vertical grid edges in this column.
+         */
+        final Cells vertical = new Cells();
+    }
+
+    /**
+     * Grid edges of one orientation in a column, sorted on their y-coordinate,
+     * with the labels of their outgoing edges to the left and to the bottom.
+     */
+    private static class Cells {
+        int[] ys = new int[8];
+        int[] left = new int[8];
+        int[] bottom = new int[8];
+        int size;
+
+        /**
+         * Adds a grid edge above all grid edges added before.
+         */
+        void add(int y, int leftLabel, int bottomLabel) {
+            if (size == ys.length) {
+                ys = Arrays.copyOf(ys, 2 * size);
+                left = Arrays.copyOf(left, 2 * size);
+                bottom = Arrays.copyOf(bottom, 2 * size);
+            }
+            ys[size] = y;
+            left[size] = leftLabel;
+            bottom[size] = bottomLabel;
+            size++;
+        }
+
+        int indexOf(int y) {
+            int index = Arrays.binarySearch(ys, 0, size, y);
+            return index < 0 ? -1 : index;
+        }
+
+        /**
+         * Smallest label of the outgoing edges of the grid edge at y, or
+         * {@link #NONE} if it has none or is not present.
+         */
+        int minLabel(int y) {
+            int index = indexOf(y);
+            return index < 0 ? NONE : Math.min(left[index], bottom[index]);
+        }
+
+        void trim() {
+            ys = Arrays.copyOf(ys, size);
+            left = Arrays.copyOf(left, size);
+            bottom = Arrays.copyOf(bottom, size);
+        }
+    }
+}
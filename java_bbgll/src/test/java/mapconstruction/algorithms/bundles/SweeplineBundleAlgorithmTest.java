@@ -0,0 +1,135 @@
+package mapconstruction.algorithms.bundles;
+
+import junit.framework.TestCase;
+import mapconstruction.trajectories.Bundle;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Subtrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * @author Roel
+ */
+public class SweeplineBundleAlgorithmTest extends TestCase {
+
+    public SweeplineBundleAlgorithmTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Random trajectories along a few shared corridors.
+     */
+    private static List<Trajectory> makeTrajectories(Random random, int count) {
+        List<Trajectory> trajectories = new ArrayList<>();
+        for (int t = 0; t < count; t++) {
+            int corridor = random.nextInt(3);
+            int start = random.nextInt(10);
+            List<Point2D> points = new ArrayList<>();
+            for (int i = start; i < start + 2 + random.nextInt(20); i++) {
+                double x = i * 2 + random.nextGaussian() * 0.4;
+                double y = corridor * (i < 12 ? 0 : 3) + random.nextGaussian() * 0.4;
+                points.add(new Point2D.Double(x, y));
+            }
+            if (random.nextBoolean()) {
+                Collections.reverse(points);
+            }
+            trajectories.add(new FullTrajectory(points, t + 1));
+        }
+        return trajectories;
+    }
+
+    /**
+     * Many short trajectories, with the first, middle and last one following the same long path, so that the longest
+     * bundle consists of trajectories in different blocks of the parallel sweep.
+     */
+    private static List<Trajectory> makeSpreadTrajectories(Random random, int count, boolean reverseMiddle) {
+        List<Trajectory> trajectories = new ArrayList<>();
+        for (int t = 0; t < count; t++) {
+            List<Point2D> points = new ArrayList<>();
+            if (t == 0 || t == count / 2 || t == count - 1) {
+                for (int i = 0; i < 30; i++) {
+                    points.add(new Point2D.Double(i * 2 + random.nextGaussian() * 0.3, random.nextGaussian() * 0.3));
+                }
+                if (reverseMiddle && t == count / 2) {
+                    Collections.reverse(points);
+                }
+            } else {
+                double y = 20 + t * 10;
+                for (int i = 0; i < 4 + random.nextInt(4); i++) {
+                    points.add(new Point2D.Double(i * 2 + random.nextGaussian() * 0.3, y + random.nextGaussian() * 0.3));
+                }
+            }
+            trajectories.add(new FullTrajectory(points, t + 1));
+        }
+        return trajectories;
+    }
+
+    private static List<Bundle> assertSameAsSequential(List<Trajectory> trajectories, double eps, int k,
+                                                       boolean ignoreDirection, boolean allowMultiple) {
+        SweeplineBundleAlgorithm sequential = new SweeplineBundleAlgorithm(eps, k, ignoreDirection, !allowMultiple, allowMultiple, 1);
+        SweeplineBundleAlgorithm parallel = new SweeplineBundleAlgorithm(eps, k, ignoreDirection, !allowMultiple, allowMultiple, 3);
+        List<Bundle> expected = new ArrayList<>(sequential.run(trajectories));
+        List<Bundle> actual = new ArrayList<>(parallel.run(trajectories));
+        assertEquals(expected, actual);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getOriginalRepresentative(), actual.get(i).getOriginalRepresentative());
+            assertEquals(expected.get(i).getSubtrajectories(), actual.get(i).getSubtrajectories());
+        }
+        return actual;
+    }
+
+    public void testParallelSweep() {
+        System.out.println("parallelSweep");
+        Random random = new Random(11);
+        for (int i = 0; i < 10; i++) {
+            List<Trajectory> trajectories = makeTrajectories(random, 5 + random.nextInt(20));
+            for (int k : new int[]{2, 3}) {
+                assertSameAsSequential(trajectories, 1.5, k, false, false);
+                assertSameAsSequential(trajectories, 1.5, k, false, true);
+            }
+        }
+    }
+
+    public void testParallelSweepIgnoreDirection() {
+        System.out.println("parallelSweepIgnoreDirection");
+        Random random = new Random(13);
+        for (int i = 0; i < 10; i++) {
+            List<Trajectory> trajectories = makeTrajectories(random, 5 + random.nextInt(20));
+            for (int k : new int[]{2, 3}) {
+                assertSameAsSequential(trajectories, 1.5, k, true, false);
+                assertSameAsSequential(trajectories, 1.5, k, true, true);
+            }
+        }
+    }
+
+    /**
+     * The trajectories of the longest bundle lie in different blocks, so the bundle is only found by following the
+     * free space across the block borders.
+     */
+    public void testParallelSweepAcrossBlocks() {
+        System.out.println("parallelSweepAcrossBlocks");
+        Random random = new Random(19);
+        for (boolean ignoreDirection : new boolean[]{false, true}) {
+            int count = 40;
+            List<Trajectory> trajectories = makeSpreadTrajectories(random, count, ignoreDirection);
+            List<Bundle> bundles = assertSameAsSequential(trajectories, 1.5, 3, ignoreDirection, true);
+            assertEquals(1, bundles.size());
+
+            Set<Trajectory> parents = new HashSet<>();
+            for (Subtrajectory sub : bundles.get(0).getSubtrajectories()) {
+                parents.add(sub.isReverse() ? sub.getParent().reverse() : sub.getParent());
+            }
+            assertEquals(new HashSet<>(Arrays.asList(trajectories.get(0), trajectories.get(count / 2),
+                    trajectories.get(count - 1))), parents);
+        }
+    }
+
+    public void testParallelSweepSingleTrajectory() {
+        System.out.println("parallelSweepSingleTrajectory");
+        List<Trajectory> trajectories = makeTrajectories(new Random(17), 1);
+        assertSameAsSequential(trajectories, 1.5, 1, false, false);
+        assertSameAsSequential(trajectories, 1.5, 1, true, false);
+    }
+}
@@ -0,0 +1,160 @@
+package mapconstruction.algorithms.bundles.graph;
+
+import com.google.common.collect.Range;
+import junit.framework.TestCase;
+import mapconstruction.trajectories.FullTrajectory;
+import mapconstruction.trajectories.Trajectory;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * @author Roel
+ */
+public class SparseSemiWeakFDLabelledGraphTest extends TestCase {
+
+    public SparseSemiWeakFDLabelledGraphTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Concatenates random walks along a common route, adding the borders the
+     * same way as the sweepline algorithm.
+     */
+    private static Trajectory concatenate(Random random, int numTrajectories, boolean reversed, Set<Range<Integer>> borders) {
+        List<List<Point2D>> trajectories = new ArrayList<>();
+        for (int t = 0; t < numTrajectories; t++) {
+            List<Point2D> points = new ArrayList<>();
+            double x = random.nextDouble() * 3;
+            double y = random.nextDouble() * 3;
+            for (int i = 0; i < 3 + random.nextInt(12); i++) {
+                points.add(new Point2D.Double(x, y));
+                x += random.nextDouble() * 2;
+                y += random.nextDouble() - 0.5;
+            }
+            trajectories.add(points);
+        }
+        if (reversed) {
+            for (int t = numTrajectories - 1; t >= 0; t--) {
+                List<Point2D> points = new ArrayList<>(trajectories.get(t));
+                Collections.reverse(points);
+                trajectories.add(points);
+            }
+        }
+
+        borders.add(Range.closed(-1, 0));
+        List<Point2D> points = new ArrayList<>();
+        for (List<Point2D> trajectory : trajectories) {
+            points.addAll(trajectory);
+            borders.add(Range.closed(points.size() - 1, points.size()));
+        }
+        return new FullTrajectory(points);
+    }
+
+    /**
+     * Sweeps both graphs over the concatenation, and compares all queries.
+     */
+    private static void assertSameSweep(Random random, int numTrajectories, boolean reversed, double epsilon) {
+        Set<Range<Integer>> borders = new HashSet<>();
+        Trajectory concatenated = concatenate(random, numTrajectories, reversed, borders);
+        assertSameSweep(random, concatenated, borders, epsilon, 0);
+    }
+
+    /**
+     * Sweeps both graphs over the concatenation from the given column on, the
+     * sparse graph being started at that column as in the parallel sweep.
+     */
+    private static void assertSameSweep(Random random, Trajectory concatenated, Set<Range<Integer>> borders,
+                                        double epsilon, int firstColumn) {
+        int n = concatenated.numPoints();
+
+        LabelledGraph expected = new SemiWeakFDLabelledGraphIntBased(concatenated, borders, epsilon);
+        LabelledGraph actual = new SparseSemiWeakFDLabelledGraph(concatenated, borders, epsilon).startingAt(firstColumn);
+
+        int ls = firstColumn;
+        int lt = firstColumn;
+        expected.addColumn();
+        for (int i = 0; i < firstColumn; i++) {
+            expected.addColumn();
+            expected.removeColumn();
+        }
+        actual.addColumn();
+        while (ls < n - 1) {
+            if (ls == lt || (lt < n - 1 && random.nextBoolean())) {
+                lt++;
+                expected.addColumn();
+                actual.addColumn();
+            } else {
+                ls++;
+                expected.removeColumn();
+                actual.removeColumn();
+            }
+            if (ls == lt) {
+                continue;
+            }
+
+            List<Range<Integer>> forbidden = new ArrayList<>();
+            forbidden.add(Range.closed(ls, lt));
+            int low = random.nextInt(n);
+            forbidden.add(Range.closed(low, Math.min(n - 1, low + random.nextInt(4))));
+
+            int previous = n - 1;
+            for (int yt = n - 1; yt >= 0; yt--) {
+                OptionalInt start = expected.findStart(ls, lt, yt, forbidden);
+                assertEquals(start, actual.findStart(ls, lt, yt, forbidden));
+
+                // No curve may end between the skipped end points.
+                if (yt == previous) {
+                    previous = actual.previousEnd(lt, yt);
+                    assertTrue(previous <= yt);
+                }
+                if (yt > previous) {
+                    assertFalse(start.isPresent());
+                }
+            }
+        }
+    }
+
+    public void testSameAsIntBased() {
+        System.out.println("sameAsIntBased");
+        Random random = new Random(3);
+        for (int i = 0; i < 40; i++) {
+            assertSameSweep(random, 2 + random.nextInt(5), false, 0.5 + random.nextDouble() * 2);
+        }
+    }
+
+    public void testSameAsIntBasedReversed() {
+        System.out.println("sameAsIntBasedReversed");
+        Random random = new Random(5);
+        for (int i = 0; i < 40; i++) {
+            assertSameSweep(random, 2 + random.nextInt(5), true, 0.5 + random.nextDouble() * 2);
+        }
+    }
+
+    public void testStartingAt() {
+        System.out.println("startingAt");
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            Set<Range<Integer>> borders = new HashSet<>();
+            Trajectory concatenated = concatenate(random, 2 + random.nextInt(5), i % 2 == 1, borders);
+            double epsilon = 0.5 + random.nextDouble() * 2;
+            for (Range<Integer> border : borders) {
+                if (border.upperEndpoint() < concatenated.numPoints()) {
+                    assertSameSweep(random, concatenated, borders, epsilon, border.upperEndpoint());
+                }
+            }
+        }
+    }
+
+    public void testSinglePoint() {
+        System.out.println("singlePoint");
+        Set<Range<Integer>> borders = new HashSet<>();
+        borders.add(Range.closed(-1, 0));
+        borders.add(Range.closed(0, 1));
+        LabelledGraph graph = new SparseSemiWeakFDLabelledGraph(
+                new FullTrajectory(Collections.singletonList(new Point2D.Double(1, 1))), borders, 1);
+        graph.addColumn();
+        assertFalse(graph.findStart(0, 0, 0, Collections.emptyList()).isPresent());
+        assertEquals(-1, graph.previousEnd(0, 0));
+    }
+}